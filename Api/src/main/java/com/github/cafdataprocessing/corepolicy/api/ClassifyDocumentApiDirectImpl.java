@@ -71,11 +71,13 @@ public class ClassifyDocumentApiDirectImpl implements ClassifyDocumentApi {
     @Override
     public Collection<ClassifyDocumentResult> classify(long collectionSequenceId, Collection<Document> documentsToClassify) {
         initialisePolicyHandlerIfNeeded();
-        ArrayList<ClassifyDocumentResult> results = new ArrayList<>();
-        for(Document documentToClassify:documentsToClassify){
-            results.add(policyEngine.classify(collectionSequenceId, documentToClassify));
-        }
-        return results;
+        return policyEngine.classify(collectionSequenceId, documentsToClassify);
+    }
+
+    @Override
+    public Collection<ClassifyDocumentResult> classifyParallel(long collectionSequenceId, Collection<Document> documentsToClassify) {
+        initialisePolicyHandlerIfNeeded();
+        return policyEngine.classifyParallel(collectionSequenceId, documentsToClassify);
     }
 
     @Override
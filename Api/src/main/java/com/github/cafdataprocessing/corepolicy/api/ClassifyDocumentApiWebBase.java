@@ -50,9 +50,21 @@ public abstract class ClassifyDocumentApiWebBase extends WebApiBase implements C
 
     @Override
     public Collection<ClassifyDocumentResult> classify(long collectionSequenceId, Collection<Document> documentsToClassify){
+        return classify(collectionSequenceId, documentsToClassify, false);
+    }
+
+    @Override
+    public Collection<ClassifyDocumentResult> classifyParallel(long collectionSequenceId, Collection<Document> documentsToClassify){
+        return classify(collectionSequenceId, documentsToClassify, true);
+    }
+
+    private Collection<ClassifyDocumentResult> classify(long collectionSequenceId, Collection<Document> documentsToClassify, boolean parallel){
         LinkedList<NameValuePair> params = new LinkedList<>();
 
         params.add(new BasicNameValuePair("collection_sequence", String.valueOf(collectionSequenceId)));
+        if(parallel){
+            params.add(new BasicNameValuePair("parallel", "true"));
+        }
 
         DocumentArrayWrapper classifyDocumentRequest = new DocumentArrayWrapper();
         classifyDocumentRequest.document = documentsToClassify;
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.api;
+
+import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long lived, connection pooled http client shared by the web api implementations, so that calls reuse connections
+ * rather than paying for connection setup every time.
+ */
+public class PooledHttpClient implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(PooledHttpClient.class);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ScheduledExecutorService idleConnectionEvictor;
+
+    public PooledHttpClient(ApiProperties apiProperties) {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(apiProperties.getWebPoolMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(apiProperties.getWebPoolMaxPerRoute());
+
+        final long keepAliveMs = apiProperties.getWebPoolKeepAliveMs();
+        final long idleEvictMs = apiProperties.getWebPoolIdleEvictMs();
+
+        // Content compression (Accept-Encoding: gzip and transparent decompression of responses) is enabled by
+        // default on the builder, so it is only the keep alive and connection handling we need to add.
+        httpClient = createHttpClientBuilder(apiProperties)
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(createKeepAliveStrategy(keepAliveMs))
+                .build();
+
+        idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("corepolicy-http-evictor-%d").build());
+        idleConnectionEvictor.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleEvictMs, TimeUnit.MILLISECONDS);
+        }, idleEvictMs, idleEvictMs, TimeUnit.MILLISECONDS);
+    }
+
+    public CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * @return  the leased, available, pending and max connection counts across all routes.
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        idleConnectionEvictor.shutdownNow();
+        httpClient.close();
+    }
+
+    private static HttpClientBuilder createHttpClientBuilder(ApiProperties apiProperties) {
+        if (!Strings.isNullOrEmpty(apiProperties.getHttpClientBuilderClass())) {
+            try {
+                Class<?> httpClientBuilderClass = Class.forName(apiProperties.getHttpClientBuilderClass());
+                return (HttpClientBuilder) httpClientBuilderClass.newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return HttpClientBuilder.create();
+    }
+
+    /**
+     * Honours the timeout the server sends in its Keep-Alive header, otherwise keeps connections for the configured time.
+     */
+    private static ConnectionKeepAliveStrategy createKeepAliveStrategy(final long keepAliveMs) {
+        return (HttpResponse response, HttpContext context) -> {
+            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement element = it.nextElement();
+                if (element.getValue() != null && "timeout".equalsIgnoreCase(element.getName())) {
+                    try {
+                        return Long.parseLong(element.getValue()) * 1000;
+                    } catch (NumberFormatException e) {
+                        logger.debug("Ignoring invalid Keep-Alive timeout: " + element.getValue());
+                    }
+                }
+            }
+            return keepAliveMs;
+        };
+    }
+}
@@ -35,14 +35,15 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.entity.GzipCompressingEntity;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
@@ -55,6 +56,7 @@ import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class containing util methods for calling our web services (Java).
@@ -64,7 +66,12 @@ public abstract class WebApiBase {
     protected CorePolicyObjectMapper mapper;
     private ApiProperties apiProperties;
 
-    private HttpClientBuilder httpClientBuilder;
+    /**
+     * The pooled clients, shared by every WebApiBase with the same pool settings.
+     */
+    private static final Map<List<Object>, PooledHttpClient> pooledHttpClients = new ConcurrentHashMap<>();
+
+    private volatile PooledHttpClient pooledHttpClient;
 
     public WebApiBase(ApiProperties apiProperties){
         this.apiProperties = apiProperties;
@@ -238,31 +245,45 @@ public abstract class WebApiBase {
         }
     }
 
-    HttpClientBuilder getHttpClientBuilder(){
-        if(httpClientBuilder==null){
-            synchronized (WebApiBase.class) {
-                if (httpClientBuilder == null) {
-                    if (!Strings.isNullOrEmpty(apiProperties.getHttpClientBuilderClass())){
-                        try {
-                            Class<?> httpClientBuilderClass = Class.forName(apiProperties.getHttpClientBuilderClass());
-                            httpClientBuilder = (HttpClientBuilder)httpClientBuilderClass.newInstance();
-                        } catch (Exception e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
-                    else{
-                        httpClientBuilder = HttpClientBuilder.create();//.setProxy(new HttpHost("localhost", 8888));
-                    }
-                }
-            }
+    PooledHttpClient getPooledHttpClient(){
+        PooledHttpClient client = pooledHttpClient;
+        if(client==null){
+            List<Object> poolSettings = Arrays.asList(apiProperties.getHttpClientBuilderClass(),
+                    apiProperties.getWebPoolMaxTotal(), apiProperties.getWebPoolMaxPerRoute(),
+                    apiProperties.getWebPoolKeepAliveMs(), apiProperties.getWebPoolIdleEvictMs());
+            client = pooledHttpClients.computeIfAbsent(poolSettings, settings -> new PooledHttpClient(apiProperties));
+            pooledHttpClient = client;
         }
 
-        return httpClientBuilder;
+        return client;
+    }
+
+    /**
+     * @return  the connection pool statistics summed across the shared http clients, or null if no request has been
+     * made yet.
+     */
+    public static PoolStats getConnectionPoolStats(){
+        if(pooledHttpClients.isEmpty()){
+            return null;
+        }
+        int leased = 0;
+        int pending = 0;
+        int available = 0;
+        int max = 0;
+        for(PooledHttpClient client : pooledHttpClients.values()){
+            PoolStats poolStats = client.getPoolStats();
+            leased += poolStats.getLeased();
+            pending += poolStats.getPending();
+            available += poolStats.getAvailable();
+            max += poolStats.getMax();
+        }
+        return new PoolStats(leased, pending, available, max);
     }
 
     String makeRequest(WebApiAction requestType, Collection<NameValuePair> params){
 
-        try(CloseableHttpClient httpClient = getHttpClientBuilder().build()){
+        try {
+            CloseableHttpClient httpClient = getPooledHttpClient().getHttpClient();
 
             URIBuilder builder = createBaseUrl(requestType);
             HttpUriRequest request = createRequest(builder, params);
@@ -310,7 +331,8 @@ public abstract class WebApiBase {
 
     String makeRequest(WebApiAction requestType, JsonNode root){
 
-        try(CloseableHttpClient httpClient = getHttpClientBuilder().build()){
+        try {
+            CloseableHttpClient httpClient = getPooledHttpClient().getHttpClient();
 
             URIBuilder builder = createBaseUrl(requestType);
             HttpUriRequest request = createRequest(builder, root);
@@ -490,7 +512,7 @@ public abstract class WebApiBase {
             getLogger().trace("CREATING POST: " + URLDecoder.decode(uri.toString(), "UTF-8") + "?" + URLDecoder.decode(writer.toString(), "UTF-8"));
 
             HttpPost post = new HttpPost(uri);
-            post.setEntity(formEntity);
+            post.setEntity(apiProperties.getWebGzipRequests() ? new GzipCompressingEntity(formEntity) : formEntity);
             return post;
         }
     }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.api;
+
+import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that requests made through WebApiBase share the pooled client's connections rather than opening a new one
+ * per request. The pooled client is shared by every WebApiBase with the same pool settings, so the pool may also hold
+ * connections to the servers of earlier tests.
+ */
+public class WebApiBaseConnectionReuseTest {
+    private final static Logger logger = LoggerFactory.getLogger(WebApiBaseConnectionReuseTest.class);
+
+    private HttpServer server;
+    private final List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<>());
+    private WebApiBase webApi;
+
+    @Before
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            // The request has to be read fully for the connection to be used again.
+            IOUtils.toByteArray(exchange.getRequestBody());
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+
+        webApi = createWebApi(createApiProperties(50));
+    }
+
+    @After
+    public void cleanup() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testSequentialRequestsReuseConnection() {
+        for (int i = 0; i < 5; i++) {
+            webApi.makeRequest(WebApiAction.RETRIEVE, new LinkedList<>());
+        }
+
+        Assert.assertEquals(5, clientPorts.size());
+        Assert.assertEquals("All requests should have been sent on one connection.",
+                1, new HashSet<>(clientPorts).size());
+
+        PoolStats poolStats = WebApiBase.getConnectionPoolStats();
+        Assert.assertNotNull(poolStats);
+        Assert.assertEquals(0, poolStats.getLeased());
+        Assert.assertTrue(poolStats.getAvailable() >= 1);
+    }
+
+    @Test
+    public void testConcurrentRequestsReturnConnectionsToPool() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 5; j++) {
+                    webApi.makeRequest(WebApiAction.RETRIEVE, new LinkedList<>());
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(20, clientPorts.size());
+        Assert.assertTrue("Connections should have been reused across requests.",
+                new HashSet<>(clientPorts).size() <= threads.size());
+
+        PoolStats poolStats = WebApiBase.getConnectionPoolStats();
+        Assert.assertEquals(0, poolStats.getLeased());
+        Assert.assertTrue(poolStats.getAvailable() >= new HashSet<>(clientPorts).size());
+    }
+
+    @Test
+    public void testClientsSharedOnlyBetweenSamePoolSettings() {
+        WebApiBase sameSettingsWebApi = createWebApi(createApiProperties(50));
+        WebApiBase otherSettingsWebApi = createWebApi(createApiProperties(7));
+
+        Assert.assertSame(webApi.getPooledHttpClient(), sameSettingsWebApi.getPooledHttpClient());
+        Assert.assertNotSame(webApi.getPooledHttpClient(), otherSettingsWebApi.getPooledHttpClient());
+        Assert.assertEquals(7, otherSettingsWebApi.getPooledHttpClient().getPoolStats().getMax());
+        Assert.assertTrue(WebApiBase.getConnectionPoolStats().getMax() >= 57);
+    }
+
+    private ApiProperties createApiProperties(int maxTotal) {
+        ApiProperties apiProperties = mock(ApiProperties.class);
+        when(apiProperties.getUseHttpGet()).thenReturn(false);
+        when(apiProperties.getWebPoolMaxTotal()).thenReturn(maxTotal);
+        when(apiProperties.getWebPoolMaxPerRoute()).thenReturn(20);
+        when(apiProperties.getWebPoolKeepAliveMs()).thenReturn(30000L);
+        when(apiProperties.getWebPoolIdleEvictMs()).thenReturn(30000L);
+        return apiProperties;
+    }
+
+    private WebApiBase createWebApi(ApiProperties apiProperties) {
+        final int port = server.getAddress().getPort();
+        return new WebApiBase(apiProperties) {
+            @Override
+            protected Logger getLogger() {
+                return logger;
+            }
+
+            @Override
+            protected URIBuilder createBaseUrl(WebApiAction apiAction) {
+                return new URIBuilder().setScheme("http").setHost("127.0.0.1").setPort(port)
+                        .setPath("/corepolicy/" + apiAction.toValue());
+            }
+
+            @Override
+            protected Collection<NameValuePair> getApiParams() {
+                return new LinkedList<>();
+            }
+        };
+    }
+}
@@ -43,6 +43,10 @@ public class ApiProperties {
     private final static Logger logger = LoggerFactory.getLogger(ApiProperties.class);
     private final static long DEFAULT_CACHE_MAX_AGE_MS = 600000; //10 minute cache default
     private final static long DEFAULT_CACHE_MAX_SIZE = 1000;
+    private final static long DEFAULT_WEB_POOL_MAX_TOTAL = 50;
+    private final static long DEFAULT_WEB_POOL_MAX_PER_ROUTE = 20;
+    private final static long DEFAULT_WEB_POOL_KEEP_ALIVE_MS = 30000;
+    private final static long DEFAULT_WEB_POOL_IDLE_EVICT_MS = 30000;
 
     public enum ApiMode {
         none,
@@ -88,6 +92,10 @@ public class ApiProperties {
         return environment.getProperty("api.direct.repository");
     }
 
+    public String getEnvironmentSnapshotRepository(){
+        return environment.getProperty("api.direct.environmentsnapshotrepository");
+    }
+
     public Boolean getUseHttpGet() {
         return Boolean.parseBoolean(environment.getProperty("api.web.useget"));
     }
@@ -96,10 +104,41 @@ public class ApiProperties {
         return environment.getProperty("api.web.httpclientbuilderclass");
     }
 
+    public int getWebPoolMaxTotal() {
+        return (int) getLongWithDefaultAndMin("api.web.pool.maxtotal", 1, DEFAULT_WEB_POOL_MAX_TOTAL);
+    }
+
+    public int getWebPoolMaxPerRoute() {
+        return (int) getLongWithDefaultAndMin("api.web.pool.maxperroute", 1, DEFAULT_WEB_POOL_MAX_PER_ROUTE);
+    }
+
+    public long getWebPoolKeepAliveMs() {
+        return getLongWithDefaultAndMin("api.web.pool.keepalivems", 0, DEFAULT_WEB_POOL_KEEP_ALIVE_MS);
+    }
+
+    public long getWebPoolIdleEvictMs() {
+        return getLongWithDefaultAndMin("api.web.pool.idleevictms", 1000, DEFAULT_WEB_POOL_IDLE_EVICT_MS);
+    }
+
+    /**
+     * Request bodies are only gzipped when asked for, as the server, or a proxy in front of it, has to decompress them.
+     */
+    public boolean getWebGzipRequests() {
+        return Boolean.parseBoolean(environment.getProperty("api.web.gziprequests", "false"));
+    }
+
     public boolean getStreamsCacheEnabled() {
         return Boolean.parseBoolean(environment.getProperty("api.streams.cache", "true"));
     }
 
+    /**
+     * The number of characters of a stream held in memory, beyond which its text is spilled to a memory-mapped
+     * temporary file. Zero or less holds the whole of every stream in memory.
+     */
+    public Integer getStreamsSpillThreshold() {
+        return Integer.parseInt(environment.getProperty("api.streams.spillthreshold", "1048576"));
+    }
+
     public boolean getAdminBaseDataEnabled(){
         // defaults to FALSE if not present.  I didn't put this value in the default api.properties file
         // as it should be a hidden property.
@@ -163,9 +202,16 @@ public class ApiProperties {
         entries.put("api.mode", getMode());
         entries.put("api.webservice.url", getWebServiceUrl());
         entries.put("api.direct.repository", getRepository());
+        entries.put("api.direct.environmentsnapshotrepository", getEnvironmentSnapshotRepository());
         entries.put("api.web.useget", String.valueOf(getUseHttpGet()));
         entries.put("api.web.httpclientbuilderclass", getHttpClientBuilderClass());
+        entries.put("api.web.pool.maxtotal", String.valueOf(getWebPoolMaxTotal()));
+        entries.put("api.web.pool.maxperroute", String.valueOf(getWebPoolMaxPerRoute()));
+        entries.put("api.web.pool.keepalivems", String.valueOf(getWebPoolKeepAliveMs()));
+        entries.put("api.web.pool.idleevictms", String.valueOf(getWebPoolIdleEvictMs()));
+        entries.put("api.web.gziprequests", String.valueOf(getWebGzipRequests()));
         entries.put("api.streams.cache", String.valueOf(getStreamsCacheEnabled()));
+        entries.put("api.streams.spillthreshold", String.valueOf(getStreamsSpillThreshold()));
         entries.put("api.admin.basedata", String.valueOf(getAdminBaseDataEnabled()));
 
         return StringHelper.mapToHtml(entries);
@@ -201,6 +201,8 @@ public class ApiStrings {
 
             public final static String FIELD = "field";
 
+            public final static String WARNING = "warning";
+
             public final static String CONDITION = "condition";
 
             public final static String CHILDREN = "children";
@@ -325,6 +327,8 @@ public class ApiStrings {
 
             public final static String TYPE = "type";
 
+            public final static String WARNING = "warning";
+
         }
 
     }
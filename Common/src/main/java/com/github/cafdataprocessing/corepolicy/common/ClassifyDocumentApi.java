@@ -27,6 +27,12 @@ public interface ClassifyDocumentApi {
     Collection<ClassifyDocumentResult> classify(long collectionSequenceId, Collection<Document> documents);
     ClassifyDocumentResult classify(long collectionSequenceId, Document document);
 
+    /**
+     * Classifies the documents in parallel. Results are returned in the same order as the documents, and a document
+     * which fails to classify is returned as a result with its error set rather than failing the whole request.
+     */
+    Collection<ClassifyDocumentResult> classifyParallel(long collectionSequenceId, Collection<Document> documents);
+
     Collection<Document> execute(Long collectionSequenceId, Collection<DocumentToExecutePolicyOn> documentsToExecutePolicyOn);
     Document execute(Long collectionSequenceId, DocumentToExecutePolicyOn documentToExecutePolicyOn);
 }
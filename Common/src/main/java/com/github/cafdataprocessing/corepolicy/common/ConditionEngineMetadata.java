@@ -15,8 +15,6 @@
  */
 package com.github.cafdataprocessing.corepolicy.common;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.cafdataprocessing.corepolicy.common.dto.ClassifyDocumentResult;
 import com.github.cafdataprocessing.corepolicy.common.dto.ConditionEngineResult;
 import com.github.cafdataprocessing.corepolicy.common.dto.MatchedCollection;
@@ -24,7 +22,6 @@ import com.github.cafdataprocessing.corepolicy.common.dto.MatchedCondition;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.excpetionErrors.BackEndRequestFailedErrors;
-import com.github.cafdataprocessing.corepolicy.common.shared.CorePolicyObjectMapper;
 import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
 import com.google.common.base.Strings;
 import com.google.common.collect.Multimap;
@@ -43,7 +40,6 @@ import java.util.Collection;
 @Component
 public class ConditionEngineMetadata {
     private static final Logger logger = LoggerFactory.getLogger(ConditionEngineMetadata.class);
-    private static final ObjectMapper mapper = new CorePolicyObjectMapper();
     private HashProvider hashProvider;
 
     @Autowired
@@ -58,13 +54,12 @@ public class ConditionEngineMetadata {
             return new ConditionEngineResult();
 
         try {
-            String decodedSignature = ZipUtils.decompressEncodedString(classifyDocumentResult.signature);
+            ConditionEngineResultFormat.Serialized decodedSignature = ConditionEngineResultFormat.decode(classifyDocumentResult.signature);
 
-            if(Strings.isNullOrEmpty(decodedSignature))
+            if(decodedSignature.bytes.length == 0)
                 return new ConditionEngineResult();
 
-            ObjectMapper mapper = new CorePolicyObjectMapper();
-            return mapper.readValue(decodedSignature, ConditionEngineResult.class);
+            return ConditionEngineResultFormat.deserialize(decodedSignature);
         } catch (IOException e) {
             logger.info("Problem de-serializing Classify signature, ignoring.");
             return new ConditionEngineResult();
@@ -119,26 +114,36 @@ public class ConditionEngineMetadata {
     }
 
     private ConditionEngineResult validateConditionEngineResult(String blob, String hash) {
-        //deserialize the blob and validate with the hash, if all checks out then we're good.
+        //validate the decompressed blob with the hash before deserializing it, if all checks out then we're good.
         try {
-            ConditionEngineResult conditionEngineResult = mapper.readValue(ZipUtils.decompressEncodedString(blob), ConditionEngineResult.class);
+            ConditionEngineResultFormat.Serialized serializedResult = ConditionEngineResultFormat.decode(blob);
 
-            if (!isValidHash(conditionEngineResult, hash)) {
+            if (!isValidSignature(serializedResult.bytes, hash)) {
                 logger.info("Invalid hash for deserialized classify result, ignoring.");
                 return new ConditionEngineResult();
             }
-            return conditionEngineResult;
+            return ConditionEngineResultFormat.deserialize(serializedResult);
         } catch (IOException e) {
             logger.debug("There was a problem de-serializing ClassifyDocumentResult, ignoring.", e);
             return new ConditionEngineResult();
         }
     }
     /**
-     * Verifies that a hash matches the supplied classify result.
+     * Verifies that a hash matches the supplied classify result, in either the binary or the JSON encoding.
      */
     public boolean isValidHash(ConditionEngineResult conditionEngineResult, String hash){
-        String generatedHash = generateSecurityHash(conditionEngineResult);
-        return generatedHash.equals(hash);
+        return isValidSignature(serialize(conditionEngineResult, true).bytes, hash)
+                || isValidSignature(serialize(conditionEngineResult, false).bytes, hash);
+    }
+
+    private boolean isValidSignature(byte[] serializedResult, String hash){
+        try {
+            return hashProvider.isValidSignature(serializedResult, hash);
+        } catch (NoSuchAlgorithmException e) {
+            CpeException cpeException = new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e);
+            logger.error("Unable to create hash provider.", cpeException);
+            throw cpeException;
+        }
     }
 
     /**
@@ -152,10 +157,10 @@ public class ConditionEngineMetadata {
             document.getMetadata().removeAll(DocumentFields.EvaluationInformationBlob);
             document.getMetadata().removeAll(DocumentFields.MetadataHash);
 
-            //now lets get new values and add them to the document
-            String sourceJson = mapper.writeValueAsString(conditionEngineResult);
-            String compressedBlob = ZipUtils.compressStringAndEncode(sourceJson);
-            String securityHash = generateSecurityHash(conditionEngineResult);
+            //now lets get new values and add them to the document, signing the same bytes that are compressed
+            ConditionEngineResultFormat.Serialized serializedResult = serialize(conditionEngineResult);
+            String compressedBlob = ConditionEngineResultFormat.encode(serializedResult);
+            String securityHash = sign(serializedResult.bytes);
 
             document.getMetadata().put(DocumentFields.EvaluationInformationBlob, compressedBlob);
             document.getMetadata().put(DocumentFields.MetadataHash, securityHash);
@@ -213,8 +218,7 @@ public class ConditionEngineMetadata {
 
 
     public String compressAndEncode(ConditionEngineResult conditionEngineResult) throws IOException {
-        String sourceJson = mapper.writeValueAsString(conditionEngineResult);
-        return ZipUtils.compressStringAndEncode(sourceJson);
+        return ConditionEngineResultFormat.encode(serialize(conditionEngineResult));
     }
 
 
@@ -222,15 +226,31 @@ public class ConditionEngineMetadata {
         if(conditionEngineResult == null)
             throw new IllegalArgumentException("classifyDocumentResult");
 
-        try {
-            String evaluationMetadataString = mapper.writeValueAsString(conditionEngineResult);
-            return hashProvider.encryptAndGetHash(evaluationMetadataString);
+        return sign(serialize(conditionEngineResult).bytes);
+    }
 
+    private String sign(byte[] serializedResult) {
+        try {
+            return hashProvider.sign(serializedResult);
         } catch (NoSuchAlgorithmException e) {
             CpeException cpeException = new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e);
             logger.error("Unable to create hash provider.", cpeException);
             throw cpeException;
-        } catch (JsonProcessingException e) {
+        }
+    }
+
+    /**
+     * The serialized result, which is both compressed into the blob and signed for the hash. This is the compact
+     * binary encoding, unless the legacy signature is in use for services which only read the JSON encoding.
+     */
+    private ConditionEngineResultFormat.Serialized serialize(ConditionEngineResult conditionEngineResult) {
+        return serialize(conditionEngineResult, !hashProvider.usesLegacySignature());
+    }
+
+    private static ConditionEngineResultFormat.Serialized serialize(ConditionEngineResult conditionEngineResult, boolean binary) {
+        try {
+            return ConditionEngineResultFormat.serialize(conditionEngineResult, binary);
+        } catch (IOException e) {
             CpeException cpeException = new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e);
             logger.error("Unable to serialise Classify result.", cpeException);
             throw cpeException;
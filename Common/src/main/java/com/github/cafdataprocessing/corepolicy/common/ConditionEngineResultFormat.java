@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.github.cafdataprocessing.corepolicy.common.dto.ConditionEngineResult;
+import com.github.cafdataprocessing.corepolicy.common.shared.CorePolicyObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encoding of the ConditionEngineResult carried on documents between evaluations.
+ *
+ * Layout: a magic number and format version, followed by the Smile encoding of the result compressed with raw deflate,
+ * all Base64 encoded. Smile writes ids as variable length integers and refers back to the names and values it has
+ * already written, which acts as a string table for the document references, field names and condition names
+ * repeated across the conditions. Raw deflate leaves out the gzip header and checksum, the hash already covers that.
+ * Results written before this format are Base64 encoded gzip JSON. Those start with the gzip magic number instead and
+ * are still read, and can still be written for services which only read JSON.
+ */
+final class ConditionEngineResultFormat {
+    static final byte[] MAGIC = {'C', 'E'};
+    static final byte VERSION = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ObjectMapper jsonMapper = new CorePolicyObjectMapper();
+    private static final ObjectMapper smileMapper;
+
+    static {
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        smileMapper = new CorePolicyObjectMapper(smileFactory);
+    }
+
+    private ConditionEngineResultFormat(){}
+
+    /**
+     * A result as serialized before compression, which is what its hash is made from.
+     */
+    static final class Serialized {
+        final byte[] bytes;
+        final boolean binary;
+
+        Serialized(byte[] bytes, boolean binary) {
+            this.bytes = bytes;
+            this.binary = binary;
+        }
+    }
+
+    static Serialized serialize(ConditionEngineResult conditionEngineResult, boolean binary) throws IOException {
+        return new Serialized((binary ? smileMapper : jsonMapper).writeValueAsBytes(conditionEngineResult), binary);
+    }
+
+    static ConditionEngineResult deserialize(Serialized serialized) throws IOException {
+        return (serialized.binary ? smileMapper : jsonMapper).readValue(serialized.bytes, ConditionEngineResult.class);
+    }
+
+    static String encode(Serialized serialized) throws IOException {
+        if (!serialized.binary) {
+            return ZipUtils.compressAndEncode(serialized.bytes);
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (ByteArrayOutputStream output = new ByteArrayOutputStream(serialized.bytes.length / 2 + MAGIC.length + 1)) {
+            output.write(MAGIC);
+            output.write(VERSION);
+            deflater.setInput(serialized.bytes);
+            deflater.finish();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return Base64.getEncoder().encodeToString(output.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reverses encode for either format, inflating straight into the serialized bytes.
+     * @throws IOException if the blob is not a supported encoding, or is corrupt.
+     */
+    static Serialized decode(String blob) throws IOException {
+        byte[] encoded;
+        try {
+            encoded = Base64.getDecoder().decode(blob);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Evaluation information is not Base64 encoded.", e);
+        }
+
+        if (encoded.length < MAGIC.length + 1 || encoded[0] != MAGIC[0] || encoded[1] != MAGIC[1]) {
+            return new Serialized(ZipUtils.decompressBytes(encoded), false);
+        }
+        if (encoded[MAGIC.length] != VERSION) {
+            throw new IOException("Unsupported evaluation information version " + encoded[MAGIC.length] + ".");
+        }
+
+        Inflater inflater = new Inflater(true);
+        try (ByteArrayOutputStream output = new ByteArrayOutputStream(encoded.length * 4)) {
+            int offset = MAGIC.length + 1;
+            inflater.setInput(encoded, offset, encoded.length - offset);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Evaluation information is truncated.");
+                }
+                output.write(buffer, 0, inflated);
+            }
+            return new Serialized(output.toByteArray(), true);
+        } catch (DataFormatException e) {
+            throw new IOException("Evaluation information is corrupt.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -29,7 +29,7 @@ import java.util.Collection;
  */
 public class DocumentImpl implements Document {
     private static Logger logger = LoggerFactory.getLogger(DocumentImpl.class);
-    private CaseInsensitiveMultimap<String> metadata = CaseInsensitiveMultimap.create();
+    private CaseInsensitiveMultimap<String> metadata = CaseInsensitiveMultimap.createLinked();
     private CaseInsensitiveKeyMultimap<InputStream> streams = CaseInsensitiveKeyMultimap.create();
 
     private Collection<Document> documents = new ArrayList<>();
@@ -105,6 +105,9 @@ public class DtoSerializer extends JsonSerializer<DtoBase>{
             else{
                 jgen.writeStringField(ApiStrings.LexiconExpressions.Arguments.EXPRESSION,null);
             }
+            if(lexiconExpression.warning!=null) {
+                jgen.writeStringField(ApiStrings.LexiconExpressions.Arguments.WARNING, lexiconExpression.warning);
+            }
             jgen.writeEndObject(); //End additional
         }
         jgen.writeEndObject(); //end LexiconExpression
@@ -600,6 +603,9 @@ public class DtoSerializer extends JsonSerializer<DtoBase>{
                     else {
                         jgen.writeStringField(ApiStrings.Conditions.Arguments.FIELD,null);
                     }
+                    if(((RegexCondition) value).warning!=null) {
+                        jgen.writeStringField(ApiStrings.Conditions.Arguments.WARNING, ((RegexCondition) value).warning);
+                    }
                     break;
                 case STRING:
                     if(((StringCondition)value).value!=null) {
@@ -92,6 +92,20 @@ public class ElasticsearchProperties {
         return Period.parse(environment.getProperty("POLICY_ELASTICSEARCH_INDEX_AVAILABILITY_DELAY"));
     }
 
+    /**
+     * Whether boolean agents should be evaluated in process with Lucene instead of being percolated in Elasticsearch.
+     */
+    public boolean isBooleanAgentEngineLucene() {
+        return "lucene".equalsIgnoreCase(environment.getProperty("POLICY_BOOLEAN_AGENT_ENGINE"));
+    }
+
+    /**
+     * The number of snapshot instances whose boolean agents the Lucene engine holds in memory at once.
+     */
+    public Integer getBooleanAgentLuceneMaxInstances() {
+        return Integer.parseInt(environment.getProperty("POLICY_BOOLEAN_AGENT_LUCENE_MAX_INSTANCES"));
+    }
+
     public Period getAgentExpiry(){
         return Period.parse(environment.getProperty("POLICY_ELASTICSEARCH_AGENT_EXPIRY"));
     }
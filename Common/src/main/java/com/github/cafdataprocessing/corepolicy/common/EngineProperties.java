@@ -69,20 +69,91 @@ public class EngineProperties extends PropertiesBase{
         return environment.getProperty("engine.environmentcache.verifyperiod");
     }
 
+    public Integer getEnvironmentCacheRefreshThreads(){
+        String refreshThreads = environment.getProperty("engine.environmentcache.refreshthreads");
+        return refreshThreads == null ? 2 : Integer.parseInt(refreshThreads);
+    }
+
+    public Period getEnvironmentCacheMaxStalePeriod(){
+        String maxStalePeriod = environment.getProperty("engine.environmentcache.maxstaleperiod");
+        return maxStalePeriod == null ? getEnvironmentCacheExpiry() : Period.parse(maxStalePeriod);
+    }
+
+    public Period getEnvironmentCacheJanitorPeriod(){
+        return Period.parse(environment.getProperty("engine.environmentcache.janitorperiod", "PT10M"));
+    }
+
     public String getEnvironmentCacheLocation() {
         return environment.getProperty("engine.environmentcache.location", ".");
     }
 
     public String getEnvironmentCacheMode() { return environment.getProperty("engine.environmentcache.mode", "memory"); }
 
+    public String getEnvironmentCacheFormat() { return environment.getProperty("engine.environmentcache.format", "binary"); }
+
+    public boolean getWarmupEnabled(){
+        return Boolean.parseBoolean(environment.getProperty("engine.warmup.enabled", "true"));
+    }
+
+    public String getWarmupProjectId(){
+        return environment.getProperty("engine.warmup.projectid");
+    }
+
+    public String getWarmupSequences(){
+        return environment.getProperty("engine.warmup.sequences");
+    }
+
+    public Integer getWarmupRecentSequences(){
+        return Integer.parseInt(environment.getProperty("engine.warmup.recentsequences", "0"));
+    }
+
+    public Integer getWarmupClassifications(){
+        return Integer.parseInt(environment.getProperty("engine.warmup.classifications", "0"));
+    }
+
     public Integer getRegexTimeout(){
         return Integer.parseInt(environment.getProperty("engine.regextimeout"));
     }
 
+    public String getRegexEngine(){
+        return environment.getProperty("engine.regexengine", "auto");
+    }
+
+    public Integer getRegexExecutorThreads(){
+        String regexExecutorThreads = environment.getProperty("engine.regexexecutor.threads");
+        return regexExecutorThreads == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(regexExecutorThreads);
+    }
+
+    public boolean getConditionResultCacheEnabled(){
+        return Boolean.parseBoolean(environment.getProperty("engine.conditionresultcache.enabled", "false"));
+    }
+
+    public Long getConditionResultCacheMaxWeight(){
+        return Long.parseLong(environment.getProperty("engine.conditionresultcache.maxweight", "10000000"));
+    }
+
+    public boolean getConditionOrderingEnabled(){
+        return Boolean.parseBoolean(environment.getProperty("engine.conditionordering.enabled", "false"));
+    }
+
+    public Integer getClassifyExecutorThreads(){
+        String classifyExecutorThreads = environment.getProperty("engine.classifyexecutor.threads");
+        return classifyExecutorThreads == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(classifyExecutorThreads);
+    }
+
+    public Integer getClassifyExecutorMaxInFlight(){
+        String classifyExecutorMaxInFlight = environment.getProperty("engine.classifyexecutor.maxinflight");
+        return classifyExecutorMaxInFlight == null ? getClassifyExecutorThreads() * 2 : Integer.parseInt(classifyExecutorMaxInFlight);
+    }
+
     public String getHashPassword(){
         return getSetting("engine.hash.password", "{g<tg}>Gc%PbtC$uY4xx4>#H)FX}*'");
     }
 
+    public String getHashSignature(){
+        return environment.getProperty("engine.hash.signature", "hmac");
+    }
+
     public Integer getDefaultBatchSize(){
         //Returns the number of expressions to insert per call.
         return Integer.parseInt(environment.getProperty("engine.defaultbatchsize"));
@@ -102,9 +173,26 @@ public class EngineProperties extends PropertiesBase{
         entries.put("engine.environmentcache.expiryhours", String.valueOf(getEnvironmentCacheExpiryHours()));
         entries.put("engine.environmentcache.expiry", String.valueOf(getEnvironmentCacheExpiry()));
         entries.put("engine.environmentcache.verifyperiod", getEnvironmentCacheVerifyPeriod());
+        entries.put("engine.environmentcache.refreshthreads", String.valueOf(getEnvironmentCacheRefreshThreads()));
+        entries.put("engine.environmentcache.maxstaleperiod", String.valueOf(getEnvironmentCacheMaxStalePeriod()));
+        entries.put("engine.environmentcache.janitorperiod", String.valueOf(getEnvironmentCacheJanitorPeriod()));
         entries.put("engine.environmentcache.location", getEnvironmentCacheLocation());
         entries.put("engine.environmentcache.mode", getEnvironmentCacheMode());
+        entries.put("engine.environmentcache.format", getEnvironmentCacheFormat());
+        entries.put("engine.warmup.enabled", String.valueOf(getWarmupEnabled()));
+        entries.put("engine.warmup.projectid", getWarmupProjectId());
+        entries.put("engine.warmup.sequences", getWarmupSequences());
+        entries.put("engine.warmup.recentsequences", String.valueOf(getWarmupRecentSequences()));
+        entries.put("engine.warmup.classifications", String.valueOf(getWarmupClassifications()));
         entries.put("engine.regextimeout", String.valueOf(getRegexTimeout()));
+        entries.put("engine.regexengine", getRegexEngine());
+        entries.put("engine.regexexecutor.threads", String.valueOf(getRegexExecutorThreads()));
+        entries.put("engine.conditionresultcache.enabled", String.valueOf(getConditionResultCacheEnabled()));
+        entries.put("engine.conditionresultcache.maxweight", String.valueOf(getConditionResultCacheMaxWeight()));
+        entries.put("engine.conditionordering.enabled", String.valueOf(getConditionOrderingEnabled()));
+        entries.put("engine.classifyexecutor.threads", String.valueOf(getClassifyExecutorThreads()));
+        entries.put("engine.classifyexecutor.maxinflight", String.valueOf(getClassifyExecutorMaxInFlight()));
+        entries.put("engine.hash.signature", getHashSignature());
         return StringHelper.mapToHtml(entries);
     }
 
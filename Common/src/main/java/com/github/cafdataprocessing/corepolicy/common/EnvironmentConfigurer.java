@@ -74,6 +74,7 @@ public class EnvironmentConfigurer {
                 configurableEnvironment.addActiveProfile("apidirect");
 
                 // Only if we are in direct mode should we be using the api.direct.repository
+                boolean hibernateRepository = false;
                 if(apiProperties.getRepository()!=null){
                     if(apiProperties.getRepository().equalsIgnoreCase("h2")) {
                         configurableEnvironment.addActiveProfile("h2");
@@ -81,9 +82,16 @@ public class EnvironmentConfigurer {
                     if(apiProperties.getRepository().equalsIgnoreCase("hibernate")) {
                         configurableEnvironment.addActiveProfile("apihibernate");
                         configurableEnvironment.addActiveProfile("administrationusercontext");
+                        hibernateRepository = true;
                     }
                 }
-                configurableEnvironment.addActiveProfile("apidirect-environment-snapshot-repository-none");
+                // Snapshots are recorded in the database alongside the policy items unless turned off.
+                if(hibernateRepository && !"none".equalsIgnoreCase(apiProperties.getEnvironmentSnapshotRepository())) {
+                    configurableEnvironment.addActiveProfile("apidirect-environment-snapshot-repository-hibernate");
+                }
+                else {
+                    configurableEnvironment.addActiveProfile("apidirect-environment-snapshot-repository-none");
+                }
             }
         }
 
@@ -94,6 +102,9 @@ public class EnvironmentConfigurer {
         if(elasticsearchProperties.isElasticsearchDisabled()){
             configurableEnvironment.addActiveProfile("noelastic");
         }
+        else if(elasticsearchProperties.isBooleanAgentEngineLucene()){
+            configurableEnvironment.addActiveProfile("lucene");
+        }
         else{
             configurableEnvironment.addActiveProfile("elastic");
         }
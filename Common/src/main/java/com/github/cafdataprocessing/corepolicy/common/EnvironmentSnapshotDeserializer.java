@@ -112,7 +112,10 @@ public class EnvironmentSnapshotDeserializer extends JsonDeserializer<Environmen
         return value;
     }
 
-    private void addConditions(Condition condition, EnvironmentSnapshotImpl environmentSnapshot){
+    /**
+     * Adds the condition, and any conditions nested beneath it, to the snapshot's condition map.
+     */
+    public static void addConditions(Condition condition, EnvironmentSnapshotImpl environmentSnapshot){
         if(condition==null){
             return;
         }
@@ -15,12 +15,21 @@
  */
 package com.github.cafdataprocessing.corepolicy.common;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.io.BaseEncoding;
 import org.jasypt.encryption.StringEncryptor;
 import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
 import org.jasypt.salt.StringFixedSaltGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -30,16 +39,25 @@ import java.security.NoSuchAlgorithmException;
 @Component
 public class HashProvider {
 
+    private static final String signaturePrefix = "hmac-sha256:";
+    private static final int keyDerivationIterations = 10000;
+
     private String hashType = "MD5";
     private final String salt = "M<tg>'q]D)3@-*??x@RVR![2_yj^mw";
     private EngineProperties engineProperties;
 
+    // The encryptor and the signing key are derived from the password the first time they are needed, rather than
+    // for every hash.
+    private final Supplier<StringEncryptor> encryptor = Suppliers.memoize(this::createEncryptor);
+    private final Supplier<SecretKeySpec> signingKey = Suppliers.memoize(this::deriveSigningKey);
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
     @Autowired
     public HashProvider(EngineProperties engineProperties) {
         this.engineProperties = engineProperties;
     }
 
-    private StringEncryptor getEncryptor() {
+    private StringEncryptor createEncryptor() {
 
         StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
         encryptor.setPassword(engineProperties.getHashPassword());
@@ -49,11 +67,31 @@ public class HashProvider {
         return encryptor;
     }
 
+    private SecretKeySpec deriveSigningKey() {
+        try {
+            PBEKeySpec keySpec = new PBEKeySpec(engineProperties.getHashPassword().toCharArray(),
+                    salt.getBytes(StandardCharsets.UTF_8), keyDerivationIterations, 256);
+            byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(keySpec).getEncoded();
+            return new SecretKeySpec(key, "HmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to derive the signing key.", e);
+        }
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(signingKey.get());
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to create the signing MAC.", e);
+        }
+    }
 
     public String encryptAndGetHash( String input ) throws NoSuchAlgorithmException {
         // useful for taking a long string, and then encrypting it so user can't easily
         // produce our hash simply using an md5 generator.
-        String toBeHashed = getEncryptor().encrypt(input);
+        String toBeHashed = encryptor.get().encrypt(input);
 
         return makeHash( toBeHashed );
     }
@@ -71,4 +109,42 @@ public class HashProvider {
 
         return sb.toString();
     }
+
+    /**
+     * Signs the UTF-8 bytes of a value, with an HMAC-SHA256 unless engine.hash.signature asks for the legacy hash
+     * of encryptAndGetHash.
+     */
+    public String sign(byte[] input) throws NoSuchAlgorithmException {
+        if (usesLegacySignature()) {
+            return encryptAndGetHash(new String(input, StandardCharsets.UTF_8));
+        }
+        return signaturePrefix + BaseEncoding.base16().lowerCase().encode(macs.get().doFinal(input));
+    }
+
+    /**
+     * Whether engine.hash.signature asks for what services before the HMAC signature read.
+     */
+    public boolean usesLegacySignature() {
+        return "legacy".equalsIgnoreCase(engineProperties.getHashSignature());
+    }
+
+    /**
+     * Verifies a signature of the UTF-8 bytes of a value, made either by sign or, before it, by encryptAndGetHash.
+     */
+    public boolean isValidSignature(byte[] input, String signature) throws NoSuchAlgorithmException {
+        if (signature == null) {
+            return false;
+        }
+        if (signature.startsWith(signaturePrefix)) {
+            byte[] expected = macs.get().doFinal(input);
+            byte[] actual;
+            try {
+                actual = BaseEncoding.base16().lowerCase().decode(signature.substring(signaturePrefix.length()));
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            return MessageDigest.isEqual(expected, actual);
+        }
+        return encryptAndGetHash(new String(input, StandardCharsets.UTF_8)).equals(signature);
+    }
 }
@@ -15,30 +15,31 @@
  */
 package com.github.cafdataprocessing.corepolicy.common;
 
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- *
+ * Matcher whose find calls are abandoned with a RegexTimeoutException once they exceed the timeout. The timeout is
+ * enforced on the calling thread, each find call gets the full timeout.
  */
 public class MatcherWithTimeout {
-    private final ExecutorService executor = Executors.newCachedThreadPool();
-    private final Callable<Boolean> task;
+    private final TimeLimitedCharSequence input;
     private final Matcher matcher;
-    private final int timeoutSeconds;
+    private final long timeoutNanos;
 
-    public MatcherWithTimeout(final Matcher matcher, int timeoutSeconds){
-        this.timeoutSeconds = timeoutSeconds;
-        task = () -> matcher.find();
-        this.matcher = matcher;
+    public MatcherWithTimeout(final Pattern pattern, final CharSequence input, int timeoutSeconds){
+        this.input = new TimeLimitedCharSequence(input);
+        this.matcher = pattern.matcher(this.input);
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
     }
 
     public boolean find(){
-        Future<Boolean> future = executor.submit(task);
+        input.startDeadline(timeoutNanos);
         try {
-            return future.get(timeoutSeconds, TimeUnit.SECONDS);
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
+            return matcher.find();
+        } finally {
+            input.clearDeadline();
         }
     }
 
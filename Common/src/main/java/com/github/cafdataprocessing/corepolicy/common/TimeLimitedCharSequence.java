@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.common;
+
+/**
+ * CharSequence wrapper which checks a deadline as the regex engine reads characters, so a long running match can be
+ * abandoned on the calling thread rather than having to be run on a separate thread and waited on.
+ */
+public class TimeLimitedCharSequence implements CharSequence {
+    // Checking the clock on every read would dominate the cost of simple matches, so only check every 256 reads.
+    private static final int CHECK_INTERVAL_MASK = 0xFF;
+
+    private final CharSequence inner;
+    private long deadlineNanos;
+    private boolean deadlineSet;
+    private int reads;
+
+    public TimeLimitedCharSequence(CharSequence inner) {
+        this.inner = inner;
+    }
+
+    /**
+     * Starts a new deadline, relative to now, which applies until cleared or restarted.
+     */
+    public void startDeadline(long timeoutNanos) {
+        this.deadlineNanos = System.nanoTime() + timeoutNanos;
+        this.deadlineSet = true;
+        this.reads = 0;
+    }
+
+    public void clearDeadline() {
+        this.deadlineSet = false;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (deadlineSet && (++reads & CHECK_INTERVAL_MASK) == 0 && System.nanoTime() - deadlineNanos > 0) {
+            deadlineSet = false;
+            throw new RegexTimeoutException("Regular expression evaluation exceeded its timeout.");
+        }
+        return inner.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return inner.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return inner.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return inner.toString();
+    }
+}
@@ -18,6 +18,7 @@ package com.github.cafdataprocessing.corepolicy.common;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -28,37 +29,41 @@ import java.util.zip.GZIPOutputStream;
 public class ZipUtils {
 
     public static byte[] compress(String string) throws IOException {
+        return compress(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static byte[] compress(byte[] bytes) throws IOException {
 
-        try(ByteArrayOutputStream os = new ByteArrayOutputStream(string.length()) ) {
+        try(ByteArrayOutputStream os = new ByteArrayOutputStream(bytes.length) ) {
             try(  GZIPOutputStream gos = new GZIPOutputStream(os)) {
-                gos.write(string.getBytes());
+                gos.write(bytes);
                 gos.finish();
             }
-
-            byte[] compressed = os.toByteArray();
-            return compressed;
+            return os.toByteArray();
         }
-
     }
 
-    public static String decompress(byte[] compressed) throws IOException {
-        final int BUFFER_SIZE = 32;
+    public static byte[] decompressBytes(byte[] compressed) throws IOException {
+        final int BUFFER_SIZE = 8192;
 
         try( ByteArrayInputStream is = new ByteArrayInputStream(compressed))
         {
-            try( GZIPInputStream gis = new GZIPInputStream(is, BUFFER_SIZE) ) {
-                StringBuilder string = new StringBuilder();
+            try( GZIPInputStream gis = new GZIPInputStream(is, BUFFER_SIZE);
+                 ByteArrayOutputStream os = new ByteArrayOutputStream(compressed.length * 4) ) {
                 byte[] data = new byte[BUFFER_SIZE];
                 int bytesRead;
                 while ((bytesRead = gis.read(data)) != -1) {
-                    string.append(new String(data, 0, bytesRead));
+                    os.write(data, 0, bytesRead);
                 }
-
-                return string.toString();
+                return os.toByteArray();
             }
         }
     }
 
+    public static String decompress(byte[] compressed) throws IOException {
+        return new String(decompressBytes(compressed), StandardCharsets.UTF_8);
+    }
+
     public static String compressStringAndEncode(String str) throws IOException{
         if (str == null || str.length() == 0) {
             return str;
@@ -68,6 +73,13 @@ public class ZipUtils {
         return new String(Base64.getEncoder().encode( bytes ));
     }
 
+    /**
+     * Compresses the bytes and Base64 encodes the result, as compressStringAndEncode does for a string.
+     */
+    public static String compressAndEncode(byte[] bytes) throws IOException{
+        return Base64.getEncoder().encodeToString( compress( bytes ) );
+    }
+
     public static String decompressEncodedString(String str) throws IOException{
         if (str == null || str.length() == 0) {
             return str;
@@ -17,6 +17,7 @@ package com.github.cafdataprocessing.corepolicy.common.dto;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -60,6 +61,13 @@ public class ClassifyDocumentResult {
     @JsonProperty("resolved_policies")
     public Collection<Long> resolvedPolicies;
 
+    /**
+     * Set instead of the evaluation results when the document could not be classified as part of a parallel batch.
+     */
+    @JsonProperty("error")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String error;
+
     @JsonIgnore
     public String signature;
 
@@ -98,6 +106,18 @@ public class ClassifyDocumentResult {
         return classifyDocumentResult;
     }
 
+    /**
+     * Creates the result for a document which failed to classify, so the failure can be reported alongside the
+     * results of the other documents in its batch.
+     */
+    public static ClassifyDocumentResult createFailed(String reference, Throwable error) {
+        ClassifyDocumentResult classifyDocumentResult = new ClassifyDocumentResult(new ConditionEngineResult());
+        classifyDocumentResult.reference = reference;
+        classifyDocumentResult.resolvedPolicies = new ArrayList<>();
+        classifyDocumentResult.error = error.getMessage() == null ? error.getClass().getName() : error.getMessage();
+        return classifyDocumentResult;
+    }
+
 
     /**
      * Return a friendly json serialized representation of the result. Applications should use an object mapper
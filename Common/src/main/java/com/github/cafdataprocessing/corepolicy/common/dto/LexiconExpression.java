@@ -13,4 +13,4 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package com.github.cafdataprocessing.corepolicy.common.dto;import com.fasterxml.jackson.annotation.JsonIgnoreProperties;import com.fasterxml.jackson.annotation.JsonProperty;import com.github.cafdataprocessing.corepolicy.common.ApiStrings;/** * *///@JsonIgnoreProperties({"name","description"})@JsonIgnoreProperties({ApiStrings.Lexicons.Arguments.NAME,ApiStrings.Lexicons.Arguments.DESCRIPTION})public class LexiconExpression extends DtoBase {    @JsonProperty(ApiStrings.LexiconExpressions.Arguments.LEXICON_ID)    public Long lexiconId;    public String expression;    public String fingerprint;    @JsonProperty(ApiStrings.LexiconExpressions.Arguments.TYPE)    public LexiconExpressionType type;}
\ No newline at end of file
+package com.github.cafdataprocessing.corepolicy.common.dto;import com.fasterxml.jackson.annotation.JsonIgnoreProperties;import com.fasterxml.jackson.annotation.JsonProperty;import com.github.cafdataprocessing.corepolicy.common.ApiStrings;/** * *///@JsonIgnoreProperties({"name","description"})@JsonIgnoreProperties({ApiStrings.Lexicons.Arguments.NAME,ApiStrings.Lexicons.Arguments.DESCRIPTION})public class LexiconExpression extends DtoBase {    @JsonProperty(ApiStrings.LexiconExpressions.Arguments.LEXICON_ID)    public Long lexiconId;    public String expression;    public String fingerprint;    @JsonProperty(ApiStrings.LexiconExpressions.Arguments.TYPE)    public LexiconExpressionType type;    /**     * Why a regex expression may be slow to run, or null. Set on expressions returned by the api, it is not stored.     */    @JsonProperty(ApiStrings.LexiconExpressions.Arguments.WARNING)    public String warning;}
\ No newline at end of file
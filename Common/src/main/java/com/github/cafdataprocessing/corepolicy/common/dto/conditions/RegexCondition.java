@@ -13,4 +13,4 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package com.github.cafdataprocessing.corepolicy.common.dto.conditions;import com.fasterxml.jackson.annotation.JsonIgnoreProperties;import com.fasterxml.jackson.annotation.JsonProperty;import com.github.cafdataprocessing.corepolicy.common.ApiStrings;/** * */@JsonIgnoreProperties({        ApiStrings.Conditions.Arguments.DESC,        ApiStrings.Conditions.Arguments.CONDITION,        ApiStrings.Conditions.Arguments.OPERATOR,        ApiStrings.Conditions.Arguments.CHILDREN})public class RegexCondition extends FieldCondition {    public RegexCondition(){        conditionType = ConditionType.REGEX;    }    @JsonProperty(ApiStrings.Conditions.Arguments.VALUE)    public String value;}
\ No newline at end of file
+package com.github.cafdataprocessing.corepolicy.common.dto.conditions;import com.fasterxml.jackson.annotation.JsonIgnoreProperties;import com.fasterxml.jackson.annotation.JsonProperty;import com.github.cafdataprocessing.corepolicy.common.ApiStrings;/** * */@JsonIgnoreProperties({        ApiStrings.Conditions.Arguments.DESC,        ApiStrings.Conditions.Arguments.CONDITION,        ApiStrings.Conditions.Arguments.OPERATOR,        ApiStrings.Conditions.Arguments.CHILDREN})public class RegexCondition extends FieldCondition {    public RegexCondition(){        conditionType = ConditionType.REGEX;    }    @JsonProperty(ApiStrings.Conditions.Arguments.VALUE)    public String value;    /**     * Why the regular expression may be slow to run, or null. Set on conditions returned by the api, it is not stored.     */    @JsonProperty(ApiStrings.Conditions.Arguments.WARNING)    public String warning;}
\ No newline at end of file
@@ -13,4 +13,4 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package com.github.cafdataprocessing.corepolicy.common.exceptions.excpetionErrors;/** * Defines errors that can occurs trying to access core policy backend */public enum BackEndRequestFailedErrors implements ExceptionErrorsEnum {    GeneralFailure(0),    DatabaseConnectionFailed(1),    ClassifyDocumentResultCannotBeNull(2),    UnableToAddTemporaryMetadata(3),    IncorrectConfiguration(4),    InvalidDataDetected(5),    ElasticsearchConnectionFailed(6),    CANNOT_SEND_TO_QUEUE(7),    CANT_CONNECT_TO_DATA_STORE(8)    ;    private final Integer errorCode;    BackEndRequestFailedErrors(Integer errorCode) {        this.errorCode = errorCode;    }    @Override    public String getKey() {        return errorCode.toString();    }    @Override    public String getResourceName() {        return "backEndRequestFailedErrors";    }}
\ No newline at end of file
+package com.github.cafdataprocessing.corepolicy.common.exceptions.excpetionErrors;/** * Defines errors that can occurs trying to access core policy backend */public enum BackEndRequestFailedErrors implements ExceptionErrorsEnum {    GeneralFailure(0),    DatabaseConnectionFailed(1),    ClassifyDocumentResultCannotBeNull(2),    UnableToAddTemporaryMetadata(3),    IncorrectConfiguration(4),    InvalidDataDetected(5),    ElasticsearchConnectionFailed(6),    CANNOT_SEND_TO_QUEUE(7),    CANT_CONNECT_TO_DATA_STORE(8),        WarmUpInProgress(9)    ;    private final Integer errorCode;    BackEndRequestFailedErrors(Integer errorCode) {        this.errorCode = errorCode;    }    @Override    public String getKey() {        return errorCode.toString();    }    @Override    public String getResourceName() {        return "backEndRequestFailedErrors";    }}
\ No newline at end of file
@@ -15,6 +15,7 @@
  */
 package com.github.cafdataprocessing.corepolicy.common.shared;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -30,7 +31,15 @@ import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
  */
 public class CorePolicyObjectMapper extends ObjectMapper {
     public CorePolicyObjectMapper(){
-        super();
+        this(null);
+    }
+
+    /**
+     * Creates a mapper with the core policy (de)serializers over the supplied factory, e.g. a binary format
+     * factory. A null factory uses the default JSON factory.
+     */
+    public CorePolicyObjectMapper(JsonFactory jsonFactory){
+        super(jsonFactory);
         SimpleModule module = new SimpleModule("EnvironmentObjectMapperModule", new Version(0, 1, 0, ""));
 //        module.addDeserializer(Condition.class, new ConditionDeserializer(this));
         module.addSerializer(Document.class, new DocumentSerializer());
@@ -26,6 +26,7 @@ import java.io.InputStream;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -37,6 +38,7 @@ public class MetadataValue implements Comparable {
     private String stringValue;
     private boolean hasStream;
     private boolean haveCachedStream;
+    private CharSequence cachedStreamText;
     private ApiProperties apiProperties;
 
     protected MetadataValue( ApiProperties apiProperties )
@@ -127,6 +129,33 @@ public class MetadataValue implements Comparable {
         return this.toString().compareTo(objB.toString());
     }
 
+    /**
+     * String values are equal when their strings are. Stream values are deliberately only equal when they hold the
+     * same stream, so that two streams are never read just to compare them, and a field keeps each stream it is given
+     * even when two have the same content. compareTo orders streams by toString rather than content for the same
+     * reason, so for strings the two agree, and for streams they only disagree if distinct values share an identity
+     * hash code.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof MetadataValue)) {
+            return false;
+        }
+        MetadataValue other = (MetadataValue) obj;
+        if (hasStream || other.hasStream) {
+            return hasStream && other.hasStream && streamValue == other.streamValue;
+        }
+        return Objects.equals(stringValue, other.stringValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return hasStream ? System.identityHashCode(streamValue) : Objects.hashCode(stringValue);
+    }
+
     /**
      * Regardless of the format of the item, force the information is returned as string!
      *
@@ -142,22 +171,41 @@ public class MetadataValue implements Comparable {
 
         // the stream needs to be turned into a string.  Only possibly used when converting
         // to interfaces which only contain strings, such as setTerms or the like.
-        // N.B. now adding a configurable cache of the stream, which if converted to a string
-        // once we hold onto this for the duration of the evaluation.
-        if (!apiProperties.getStreamsCacheEnabled()) {
-            return asString(getStreamValue());
+        // N.B. a stream spilled to a file is turned into a string each time it is asked for, it is not held.
+        return getAsCharSequence().toString();
+    }
+
+    /**
+     * Returns the text of the item, without turning a stream longer than the spill threshold into a string. The text
+     * of such a stream is read from a memory-mapped temporary file, so it should be read in place rather than copied.
+     *
+     * @return
+     */
+    public CharSequence getAsCharSequence() {
+        if (!hasStream) {
+            return getStringValue();
         }
 
+        // N.B. now adding a configurable cache of the stream, which if converted to text
+        // once we hold onto this for the duration of the evaluation.
         if (haveCachedStream) {
-            return getStringValue();
+            return cachedStreamText;
         }
 
-        // otherwise we have cache enabled, but haven't yet converted it to a string.
-        // get the string from the stream, and indicate we have done this.
-        String strValue = asString(getStreamValue());
-        setStringValue(strValue);
-        haveCachedStream = true;
-        return strValue;
+        CharSequence text = asCharSequence(getStreamValue(), getSpillThreshold());
+        if (apiProperties.getStreamsCacheEnabled()) {
+            if (text instanceof String) {
+                setStringValue((String) text);
+            }
+            cachedStreamText = text;
+            haveCachedStream = true;
+        }
+        return text;
+    }
+
+    private int getSpillThreshold() {
+        Integer spillThreshold = apiProperties.getStreamsSpillThreshold();
+        return spillThreshold == null ? 0 : spillThreshold;
     }
 
     /**
@@ -242,6 +290,15 @@ public class MetadataValue implements Comparable {
         }
     }
 
+    private static CharSequence asCharSequence(InputStream stream, int spillThreshold)
+    {
+        try {
+            return StreamText.read(stream, spillThreshold);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read the text of a stream.", e);
+        }
+    }
+
     public ApiProperties getApiProperties() {
         return apiProperties;
     }
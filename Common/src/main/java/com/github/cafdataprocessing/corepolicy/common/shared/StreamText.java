@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.common.shared;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the text of a stream, holding up to a threshold of characters in memory. The text of a longer stream is
+ * written as UTF-16 to a temporary file which is memory-mapped, so it can be read as a CharSequence without being held
+ * on the heap.
+ */
+final class StreamText {
+    private final static int bufferLength = 8192;
+    private final static int segmentShift = 28;
+    private final static int segmentLength = 1 << segmentShift;
+
+    private StreamText() {
+    }
+
+    /**
+     * Reads the text of the stream as UTF-8 from its start.
+     * @param spillThreshold the number of characters held in memory, zero or less to hold the whole text.
+     * @return a String if the text is within the threshold, otherwise a sequence over the memory-mapped text.
+     */
+    static CharSequence read(InputStream stream, int spillThreshold) throws IOException {
+        stream.reset();
+        Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[bufferLength];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            text.append(buffer, 0, read);
+            if (spillThreshold > 0 && text.length() > spillThreshold) {
+                return spill(text, reader, buffer);
+            }
+        }
+        return text.toString();
+    }
+
+    private static CharSequence spill(StringBuilder text, Reader reader, char[] buffer) throws IOException {
+        Path file = Files.createTempFile("corepolicy-stream", ".txt");
+        try {
+            long length;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = ByteBuffer.allocate(bufferLength * 2);
+                write(channel, bytes, CharBuffer.wrap(text));
+                length = text.length();
+                text.setLength(0);
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    write(channel, bytes, CharBuffer.wrap(buffer, 0, read));
+                    length += read;
+                    if (length > Integer.MAX_VALUE) {
+                        throw new IOException("The stream is longer than " + Integer.MAX_VALUE + " characters.");
+                    }
+                }
+
+                // The mappings remain valid once the channel is closed and the file deleted.
+                CharBuffer[] segments = new CharBuffer[(int) ((length + segmentLength - 1) >> segmentShift)];
+                for (int i = 0; i < segments.length; i++) {
+                    long start = (long) i << segmentShift;
+                    long segmentChars = Math.min(segmentLength, length - start);
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start * 2, segmentChars * 2).asCharBuffer();
+                }
+                return new MappedText(segments, 0, (int) length);
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Some platforms do not allow a mapped file to be deleted.
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer bytes, CharBuffer chars) throws IOException {
+        while (chars.hasRemaining()) {
+            bytes.clear();
+            CharBuffer view = bytes.asCharBuffer();
+            int count = Math.min(view.remaining(), chars.remaining());
+            for (int i = 0; i < count; i++) {
+                view.put(chars.get());
+            }
+            bytes.limit(count * 2);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * The memory-mapped text of a stream, held in segments as a single mapping is limited to 2GB.
+     */
+    private static final class MappedText implements CharSequence {
+        private final CharBuffer[] segments;
+        private final int offset;
+        private final int length;
+
+        MappedText(CharBuffer[] segments, int offset, int length) {
+            this.segments = segments;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            int position = offset + index;
+            return segments[position >>> segmentShift].get(position & (segmentLength - 1));
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+            }
+            return new MappedText(segments, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                text.append(charAt(i));
+            }
+            return text.toString();
+        }
+    }
+}
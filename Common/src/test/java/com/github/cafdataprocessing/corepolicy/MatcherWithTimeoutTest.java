@@ -16,13 +16,15 @@
 package com.github.cafdataprocessing.corepolicy;
 
 import com.github.cafdataprocessing.corepolicy.common.MatcherWithTimeout;
+import com.github.cafdataprocessing.corepolicy.common.RegexTimeoutException;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.regex.Pattern;
 
 public class MatcherWithTimeoutTest {
 
-    @Test(expected = Exception.class)
+    @Test(expected = RegexTimeoutException.class)
     public void testFindthrows() throws Exception {
 
         String note = "在十几年前的中国，“海归”们在工作、薪水、社会地位等方面都是非常不错的。但是，近年来，随着留学人数的增多，\n" +
@@ -30,9 +32,20 @@ public class MatcherWithTimeoutTest {
                 "很多留学回国的海归在中国国内找不到“存在感”，他们的身份让他们在中国职场处于尴尬的位置，\n" +
                 "对于中国的社会环境也诸多不适\n";
         Pattern pattern = Pattern.compile("(?i)海归\\s*(\\S*\\s*){0,12}工作|工作\\s*(\\S*\\s*){0,12}海归");
-        MatcherWithTimeout matcher = new MatcherWithTimeout(pattern.matcher(note), 1) ;
+        MatcherWithTimeout matcher = new MatcherWithTimeout(pattern, note, 1) ;
         while(matcher.find()){
             System.out.println(matcher.group());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFindReturnsAllMatches() throws Exception {
+        Pattern pattern = Pattern.compile("hel+o?");
+        MatcherWithTimeout matcher = new MatcherWithTimeout(pattern, "some value hello hell", 1);
+        Assert.assertTrue(matcher.find());
+        Assert.assertEquals("hello", matcher.group());
+        Assert.assertTrue(matcher.find());
+        Assert.assertEquals("hell", matcher.group());
+        Assert.assertFalse(matcher.find());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.benchmarks;
+
+import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
+import com.github.cafdataprocessing.corepolicy.common.Document;
+import com.github.cafdataprocessing.corepolicy.common.DocumentFields;
+import com.github.cafdataprocessing.corepolicy.common.DocumentImpl;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.HashProvider;
+import com.github.cafdataprocessing.corepolicy.common.dto.*;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.ExistsCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.LexiconCondition;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing and reading back the evaluation information carried on a document tree in the compact binary
+ * encoding against the gzipped JSON written before it, which is still written with engine.hash.signature=legacy.
+ * The size of the blob each write produces is reported as its blobCharacters counter. Run with the test classpath, e.g.
+ * java -cp target/test-classes:[test classpath] com.github.cafdataprocessing.corepolicy.benchmarks.ConditionEngineMetadataBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionEngineMetadataBenchmark {
+
+    @Param({"1", "50"})
+    public int documentCount;
+
+    private ConditionEngineResult conditionEngineResult;
+    private ConditionEngineMetadata binaryMetadata;
+    private ConditionEngineMetadata legacyMetadata;
+    private Document binaryDocument;
+    private Document legacyDocument;
+
+    @Setup
+    public void setup() {
+        conditionEngineResult = createResult(documentCount);
+        binaryMetadata = new ConditionEngineMetadata(new HashProvider(new BenchmarkEngineProperties("hmac")));
+        legacyMetadata = new ConditionEngineMetadata(new HashProvider(new BenchmarkEngineProperties("legacy")));
+
+        binaryDocument = new DocumentImpl();
+        binaryMetadata.applyTemporaryMetadataToDocument(conditionEngineResult, binaryDocument);
+        legacyDocument = new DocumentImpl();
+        legacyMetadata.applyTemporaryMetadataToDocument(conditionEngineResult, legacyDocument);
+
+    }
+
+    /**
+     * Reports the size of the blob written by each write benchmark alongside its time. JMH sums event counters over
+     * the measurement iterations, so each iteration records its share of the size.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class BlobSize {
+        public double blobCharacters;
+        private int measurementIterations;
+
+        @Setup(Level.Trial)
+        public void setup(BenchmarkParams benchmarkParams) {
+            measurementIterations = benchmarkParams.getMeasurement().getCount();
+        }
+
+        void record(Document document) {
+            blobCharacters = (double) blobLength(document) / measurementIterations;
+        }
+    }
+
+    @Benchmark
+    public Document writeBinary(BlobSize blobSize) {
+        Document document = new DocumentImpl();
+        binaryMetadata.applyTemporaryMetadataToDocument(conditionEngineResult, document);
+        blobSize.record(document);
+        return document;
+    }
+
+    @Benchmark
+    public Document writeLegacy(BlobSize blobSize) {
+        Document document = new DocumentImpl();
+        legacyMetadata.applyTemporaryMetadataToDocument(conditionEngineResult, document);
+        blobSize.record(document);
+        return document;
+    }
+
+    @Benchmark
+    public ConditionEngineResult readBinary() {
+        return binaryMetadata.createResult(binaryDocument.getMetadata());
+    }
+
+    @Benchmark
+    public ConditionEngineResult readLegacy() {
+        return legacyMetadata.createResult(legacyDocument.getMetadata());
+    }
+
+    private static int blobLength(Document document) {
+        return document.getMetadata().get(DocumentFields.EvaluationInformationBlob).stream().findFirst().map(String::length).orElse(0);
+    }
+
+    /**
+     * A result for a container of documents, each with matched and unmatched field conditions and matches on
+     * several collections, as for a zip of emails.
+     */
+    private static ConditionEngineResult createResult(int documentCount) {
+        ConditionEngineResult result = new ConditionEngineResult();
+        result.reference = "/mnt/share/archive/2018/quarterly-exports.zip";
+        for (int document = 0; document < documentCount; document++) {
+            String reference = result.reference + "/message-" + document + ".eml";
+            Collection<MatchedCondition> matchedConditions = new ArrayList<>();
+            for (long id = 1; id <= 20; id++) {
+                if ((id + document) % 2 == 0) {
+                    LexiconCondition condition = new LexiconCondition();
+                    condition.id = 1000 + id;
+                    condition.name = "Lexicon condition " + id;
+                    condition.field = "CONTENT";
+                    condition.value = 10L;
+                    MatchedCondition matchedCondition = new MatchedCondition(reference, condition);
+                    MatchedLexiconExpression matchedLexiconExpression = new MatchedLexiconExpression();
+                    matchedLexiconExpression.setLexiconExpressionId(5000 + id);
+                    matchedLexiconExpression.getTerms().add("confidential");
+                    matchedCondition.getMatchedLexiconExpressions().add(matchedLexiconExpression);
+                    matchedConditions.add(matchedCondition);
+                    result.matchedConditions.add(matchedCondition);
+                } else {
+                    ExistsCondition condition = new ExistsCondition();
+                    condition.id = 1000 + id;
+                    condition.name = "Exists condition " + id;
+                    condition.field = "DRECONTENT";
+                    result.unmatchedConditions.add(new UnmatchedCondition(reference, condition));
+                }
+            }
+            for (long id = 1; id <= 3; id++) {
+                DocumentCollection collection = new DocumentCollection();
+                collection.id = id;
+                collection.name = "Collection " + id;
+                collection.policyIds = new HashSet<>();
+                collection.policyIds.add(100 + id);
+                result.matchedCollections.add(new MatchedCollection(collection, matchedConditions));
+            }
+        }
+        return result;
+    }
+
+    private static class BenchmarkEngineProperties extends EngineProperties {
+        private final String hashSignature;
+
+        BenchmarkEngineProperties(String hashSignature) {
+            this.hashSignature = hashSignature;
+        }
+
+        @Override
+        public String getHashPassword() {
+            return "password";
+        }
+
+        @Override
+        public String getHashSignature() {
+            return hashSignature;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConditionEngineMetadataBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.benchmarks;
+
+import com.github.cafdataprocessing.corepolicy.common.MatcherWithTimeout;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the cooperative MatcherWithTimeout against the previous implementation, which created a thread pool per
+ * matcher and ran every find call on it. Run with the test classpath, e.g.
+ * java -cp target/test-classes:[test classpath] com.github.cafdataprocessing.corepolicy.benchmarks.MatcherWithTimeoutBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatcherWithTimeoutBenchmark {
+
+    @Param({"64", "4096"})
+    public int valueLength;
+
+    private Pattern pattern;
+    private String value;
+
+    @Setup
+    public void setup() {
+        pattern = Pattern.compile("\\b(?:policy|condition)\\w*");
+        StringBuilder sb = new StringBuilder();
+        String[] words = {"the", "policy", "engine", "evaluates", "each", "condition", "against", "fields"};
+        for (int i = 0; sb.length() < valueLength; i++) {
+            sb.append(words[i % words.length]).append(' ');
+        }
+        value = sb.substring(0, valueLength);
+    }
+
+    @Benchmark
+    public Set<String> cooperativeTimeout() {
+        Set<String> matches = new HashSet<>();
+        MatcherWithTimeout matcher = new MatcherWithTimeout(pattern, value, 2);
+        while (matcher.find()) {
+            matches.add(matcher.group());
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public Set<String> threadPerMatcher() {
+        Set<String> matches = new HashSet<>();
+        LegacyMatcherWithTimeout matcher = new LegacyMatcherWithTimeout(pattern.matcher(value), 2);
+        try {
+            while (matcher.find()) {
+                matches.add(matcher.group());
+            }
+        } finally {
+            matcher.shutdown();
+        }
+        return matches;
+    }
+
+    /**
+     * Copy of the previous MatcherWithTimeout. The shutdown is only added so the benchmark does not exhaust threads,
+     * production code never shut its pools down.
+     */
+    private static class LegacyMatcherWithTimeout {
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final Callable<Boolean> task;
+        private final Matcher matcher;
+        private final int timeoutSeconds;
+
+        LegacyMatcherWithTimeout(final Matcher matcher, int timeoutSeconds) {
+            this.timeoutSeconds = timeoutSeconds;
+            this.task = matcher::find;
+            this.matcher = matcher;
+        }
+
+        boolean find() {
+            Future<Boolean> future = executor.submit(task);
+            try {
+                return future.get(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        String group() {
+            return matcher.group();
+        }
+
+        void shutdown() {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MatcherWithTimeoutBenchmark.class.getSimpleName()).build()).run();
+    }
+}
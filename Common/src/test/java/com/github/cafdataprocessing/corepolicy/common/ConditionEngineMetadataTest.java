@@ -17,6 +17,7 @@ package com.github.cafdataprocessing.corepolicy.common;
 
 import com.github.cafdataprocessing.corepolicy.common.dto.*;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.ExistsCondition;
+import com.github.cafdataprocessing.corepolicy.common.shared.CorePolicyObjectMapper;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -183,4 +184,77 @@ public class ConditionEngineMetadataTest {
         Assert.assertTrue("Hash must be valid", conditionEngineMetadata.isValidHash(cer, hash));
     }
 
+    @Test
+    public void testLegacyHashIsValid() throws Exception
+    {
+        // a hash and blob made before results were signed with a MAC and encoded as binary must still be accepted
+        String legacyJson = new CorePolicyObjectMapper().writeValueAsString(cer);
+        String legacyHash = hashProvider.encryptAndGetHash(legacyJson);
+        String legacyBlob = ZipUtils.compressStringAndEncode(legacyJson);
+        Assert.assertNotEquals("Hash must not be the legacy hash", legacyHash, conditionEngineMetadata.generateSecurityHash(cer));
+        Assert.assertTrue("Legacy hash must be valid", conditionEngineMetadata.isValidHash(cer, legacyHash));
+
+        Document document = new DocumentImpl();
+        document.getMetadata().put(DocumentFields.EvaluationInformationBlob, legacyBlob);
+        document.getMetadata().put(DocumentFields.MetadataHash, legacyHash);
+
+        ConditionEngineResult recreatedResult = conditionEngineMetadata.createResult(document.getMetadata());
+        Assert.assertEquals("Matched collections must be recreated.", cer.matchedCollections.size(), recreatedResult.matchedCollections.size());
+
+        when(engineProperties.getHashSignature()).thenReturn("legacy");
+        Assert.assertEquals("Hash must be the legacy hash when configured", legacyHash, conditionEngineMetadata.generateSecurityHash(cer));
+        Assert.assertEquals("Blob must be the legacy blob when configured", legacyJson,
+                ZipUtils.decompressEncodedString(conditionEngineMetadata.compressAndEncode(cer)));
+    }
+
+    @Test
+    public void testBinaryBlobIsCompact() throws Exception
+    {
+        // the references and names repeated across the conditions of a document tree are only written once
+        ConditionEngineResult treeResult = new ConditionEngineResult();
+        for (int i = 0; i < 20; i++) {
+            String reference = getUniqueString("DocumentRef_");
+            treeResult.matchedConditions.add(new MatchedCondition(reference, matchedCondition));
+            treeResult.unmatchedConditions.add(new UnmatchedCondition(reference, unmatchedCondition));
+        }
+        Assert.assertTrue("Binary blob must be smaller than the legacy blob",
+                conditionEngineMetadata.compressAndEncode(treeResult).length()
+                        < ZipUtils.compressStringAndEncode(new CorePolicyObjectMapper().writeValueAsString(treeResult)).length());
+
+        String legacyBlob = ZipUtils.compressStringAndEncode(new CorePolicyObjectMapper().writeValueAsString(cer));
+        String blob = conditionEngineMetadata.compressAndEncode(cer);
+
+        // the signature passed back on a classify result is read in either format
+        ClassifyDocumentResult cdr = ClassifyDocumentResult.create(cer, conditionEngineMetadata);
+        Assert.assertEquals("Signature must be the binary blob", blob, cdr.signature);
+        Assert.assertEquals("Unevaluated conditions must be recreated.", 1, conditionEngineMetadata.createResult(cdr).unevaluatedConditions.size());
+        cdr.signature = legacyBlob;
+        Assert.assertEquals("Unevaluated conditions must be recreated.", 1, conditionEngineMetadata.createResult(cdr).unevaluatedConditions.size());
+
+        // a corrupt blob is ignored rather than failing evaluation
+        Document document = new DocumentImpl();
+        conditionEngineMetadata.applyTemporaryMetadataToDocument(cer, document);
+        document.getMetadata().removeAll(DocumentFields.EvaluationInformationBlob);
+        document.getMetadata().put(DocumentFields.EvaluationInformationBlob, blob.substring(0, blob.length() / 2));
+        Assert.assertTrue("Corrupt blob must be ignored.", conditionEngineMetadata.createResult(document.getMetadata()).matchedCollections.isEmpty());
+    }
+
+    @Test
+    public void testHashIsInvalidForChangedResult()
+    {
+        String hash = conditionEngineMetadata.generateSecurityHash(cer);
+
+        cer.incompleteCollections.add(7L);
+        Assert.assertFalse("Hash must be invalid for a changed result", conditionEngineMetadata.isValidHash(cer, hash));
+        Assert.assertFalse("Truncated hash must be invalid", conditionEngineMetadata.isValidHash(cer, hash.substring(0, hash.length() - 1)));
+
+        Document document = new DocumentImpl();
+        conditionEngineMetadata.applyTemporaryMetadataToDocument(cer, document);
+        document.getMetadata().removeAll(DocumentFields.MetadataHash);
+        document.getMetadata().put(DocumentFields.MetadataHash, hash);
+
+        ConditionEngineResult recreatedResult = conditionEngineMetadata.createResult(document.getMetadata());
+        Assert.assertTrue("Result with an invalid hash must be ignored.", recreatedResult.matchedCollections.isEmpty());
+    }
+
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.common.shared;
+
+import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for reading the text of stream metadata values.
+ */
+public class MetadataValueTest {
+    private ApiProperties apiProperties;
+    private String text;
+
+    @Before
+    public void setup() {
+        apiProperties = mock(ApiProperties.class);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append("word").append(i).append(" \u00E9\u4E2D\uD83D\uDE00 ");
+        }
+        text = builder.toString();
+    }
+
+    @Test
+    public void testShortStreamHeldAsString() {
+        when(apiProperties.getStreamsSpillThreshold()).thenReturn(text.length());
+        MetadataValue value = new MetadataValue(apiProperties, stream(text));
+
+        Assert.assertTrue(value.getAsCharSequence() instanceof String);
+        Assert.assertEquals(text, value.getAsString());
+    }
+
+    @Test
+    public void testLongStreamSpilled() {
+        when(apiProperties.getStreamsSpillThreshold()).thenReturn(1000);
+        MetadataValue value = new MetadataValue(apiProperties, stream(text));
+
+        CharSequence spilled = value.getAsCharSequence();
+        Assert.assertFalse(spilled instanceof String);
+        Assert.assertEquals(text.length(), spilled.length());
+        Assert.assertEquals(text, spilled.toString());
+        Assert.assertEquals(text.substring(20000, 20100), spilled.subSequence(20000, 20100).toString());
+        Assert.assertEquals(text, value.getAsString());
+
+        Matcher matcher = Pattern.compile("word4999 \\S+").matcher(spilled);
+        Assert.assertTrue(matcher.find());
+        Assert.assertEquals("word4999 \u00E9\u4E2D\uD83D\uDE00", matcher.group());
+    }
+
+    @Test
+    public void testSpilledStreamCached() {
+        when(apiProperties.getStreamsSpillThreshold()).thenReturn(1000);
+        when(apiProperties.getStreamsCacheEnabled()).thenReturn(true);
+        MetadataValue value = new MetadataValue(apiProperties, stream(text));
+
+        Assert.assertSame(value.getAsCharSequence(), value.getAsCharSequence());
+        Assert.assertNull(value.getStringValue());
+    }
+
+    @Test
+    public void testEquality() {
+        MetadataValue string = new MetadataValue(apiProperties, "value");
+        Assert.assertEquals(string, new MetadataValue(apiProperties, "value"));
+        Assert.assertEquals(string.hashCode(), new MetadataValue(apiProperties, "value").hashCode());
+        Assert.assertEquals(0, string.compareTo(new MetadataValue(apiProperties, "value")));
+        Assert.assertNotEquals(string, new MetadataValue(apiProperties, "other"));
+
+        // streams are only equal to values holding the same stream, they are never read to be compared
+        ByteArrayInputStream stream = stream("value");
+        MetadataValue streamValue = new MetadataValue(apiProperties, stream);
+        Assert.assertEquals(streamValue, new MetadataValue(apiProperties, stream));
+        Assert.assertEquals(streamValue.hashCode(), new MetadataValue(apiProperties, stream).hashCode());
+        Assert.assertNotEquals(streamValue, new MetadataValue(apiProperties, stream("value")));
+        Assert.assertNotEquals(0, streamValue.compareTo(new MetadataValue(apiProperties, stream("value"))));
+        Assert.assertNotEquals(streamValue, string);
+        Assert.assertNotEquals(string, streamValue);
+        Assert.assertEquals(5, stream.available());
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
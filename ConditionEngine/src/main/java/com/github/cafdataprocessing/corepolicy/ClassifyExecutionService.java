@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Engine wide worker pool for evaluating the documents of a batch in parallel.
+ */
+public interface ClassifyExecutionService {
+    /**
+     * Runs the tasks on the classify worker pool, with at most the configured number of tasks of the batch in flight
+     * at once, and returns their results in the order the tasks were supplied. Tasks are expected to handle their own
+     * failures; the first exception thrown by a task fails the whole batch.
+     */
+    <T> List<T> invokeAll(List<? extends Callable<T>> tasks);
+}
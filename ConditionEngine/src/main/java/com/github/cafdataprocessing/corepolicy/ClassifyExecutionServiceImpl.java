@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy;
+
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.excpetionErrors.BackEndRequestFailedErrors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs the documents of a batch on a fixed size pool shared by the whole engine. Each batch keeps a sliding window of
+ * submitted tasks so one large batch cannot queue work ahead of every other request.
+ */
+public class ClassifyExecutionServiceImpl implements ClassifyExecutionService, DisposableBean {
+    private final static Logger logger = LoggerFactory.getLogger(ClassifyExecutionServiceImpl.class);
+
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    @Autowired
+    public ClassifyExecutionServiceImpl(EngineProperties engineProperties){
+        Integer threads = Runtime.getRuntime().availableProcessors();
+        Integer inFlight = threads * 2;
+
+        try {
+            threads = engineProperties.getClassifyExecutorThreads();
+            inFlight = engineProperties.getClassifyExecutorMaxInFlight();
+        } catch (Exception e) {
+            logger.warn("Problem loading classify executor settings from config, using default.", e);
+        }
+
+        int poolSize = threads == null || threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+        this.maxInFlight = inFlight == null || inFlight < 1 ? poolSize * 2 : inFlight;
+        this.executor = Executors.newFixedThreadPool(poolSize,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("corepolicy-classify-%d").build());
+    }
+
+    @Override
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+        Object[] results = new Object[tasks.size()];
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Integer>> futures = new ArrayList<>(tasks.size());
+
+        try {
+            int submitted = 0;
+            int completed = 0;
+            while (completed < tasks.size()) {
+                while (submitted < tasks.size() && submitted - completed < maxInFlight) {
+                    final int index = submitted++;
+                    final Callable<T> task = tasks.get(index);
+                    futures.add(completionService.submit(() -> {
+                        results[index] = task.call();
+                        return index;
+                    }));
+                }
+                completionService.take().get();
+                completed++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> orderedResults = (List<T>) Arrays.asList(results);
+        return orderedResults;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        executor.shutdownNow();
+    }
+}
@@ -20,10 +20,19 @@ import com.github.cafdataprocessing.corepolicy.common.dto.ConditionEngineResult;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
 
+import java.util.Collection;
+
 /**
  *
  */
 public interface ConditionEngine {
     ConditionEngineResult evaluate(DocumentUnderEvaluation document, long collectionSequenceId) throws CpeException;
     ConditionEngineResult evaluate(DocumentUnderEvaluation document, long collectionSequenceId, EnvironmentSnapshot environmentSnapshot) throws CpeException;
+
+    /**
+     * Retrieve, in as few back end requests as possible, the boolean agent results needed to evaluate all of the
+     * supplied documents (and their children) against the snapshot. Calling this before evaluating a batch of
+     * documents is optional; evaluate will fetch anything which has not been prefetched.
+     */
+    void prefetch(Collection<DocumentUnderEvaluation> documents, EnvironmentSnapshot environmentSnapshot) throws CpeException;
 }
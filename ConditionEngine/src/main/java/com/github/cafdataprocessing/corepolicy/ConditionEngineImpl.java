@@ -17,16 +17,20 @@ package com.github.cafdataprocessing.corepolicy;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
 import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 import com.github.cafdataprocessing.corepolicy.common.dto.*;
 import com.github.cafdataprocessing.corepolicy.conditionEvaluators.ConditionEvaluationResult;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.ContentExpressionHelper;
 import com.google.common.base.Stopwatch;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.excpetionErrors.BackEndRequestFailedErrors;
 import com.github.cafdataprocessing.corepolicy.conditionEvaluators.EvaluateCondition;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.EvaluationPlan;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.EvaluationPlanCompiler;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.slf4j.Logger;
@@ -44,17 +48,25 @@ public class ConditionEngineImpl implements ConditionEngine {
     private EvaluateCondition evaluateCondition;
     private EnvironmentSnapshotCache environmentSnapshotCache;
     private ConditionEngineMetadata conditionEngineMetadata;
-
+    private BooleanAgentServices booleanAgentServices;
+    private ContentExpressionHelper contentExpressionHelper;
+    private EvaluationPlanCompiler evaluationPlanCompiler;
 
     @Autowired
     public ConditionEngineImpl(
             EvaluateCondition evaluateCondition,
             EnvironmentSnapshotCache environmentSnapshotCache,
-            ConditionEngineMetadata conditionEngineMetadata
+            ConditionEngineMetadata conditionEngineMetadata,
+            BooleanAgentServices booleanAgentServices,
+            ContentExpressionHelper contentExpressionHelper,
+            EvaluationPlanCompiler evaluationPlanCompiler
     ) {
         this.evaluateCondition = evaluateCondition;
         this.environmentSnapshotCache = environmentSnapshotCache;
         this.conditionEngineMetadata = conditionEngineMetadata;
+        this.booleanAgentServices = booleanAgentServices;
+        this.contentExpressionHelper = contentExpressionHelper;
+        this.evaluationPlanCompiler = evaluationPlanCompiler;
     }
 
     @Override
@@ -87,6 +99,23 @@ public class ConditionEngineImpl implements ConditionEngine {
             return conditionEngineResult;
         }
 
+        // prefetching is only an optimisation, if it fails each boolean agent field is queried as a condition needs it,
+        // so only the documents whose conditions reach the failing fields fail.
+        Stopwatch prefetchStopwatch = Stopwatch.createStarted();
+        try {
+            prefetch(Collections.singletonList(document), environmentSnapshot);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to prefetch boolean agent results for document " + document.getReference()
+                    + ", they will be fetched as they are needed.", e);
+        }
+        document.logTime("Evaluate-Prefetch", prefetchStopwatch);
+
+        // Once a document has all of its metadata, a missing field will not arrive later, so collections needing a
+        // field the document lacks are known not to match without evaluating their conditions, unless the document
+        // already holds results for those conditions. A full evaluation reports every condition, so nothing is skipped.
+        EvaluationPlan evaluationPlan = document.getFullMetadata() && !Boolean.TRUE.equals(collectionSequence.fullConditionEvaluation)
+                ? evaluationPlanCompiler.getPlan(environmentSnapshot) : null;
+
         Collection<CollectionSequenceEntry> collectionSequenceEntries = collectionSequence.collectionSequenceEntries;
         for (CollectionSequenceEntry entry : collectionSequenceEntries) {
 
@@ -96,6 +125,12 @@ public class ConditionEngineImpl implements ConditionEngine {
             Collection<Long> collectionIds = entry.collectionIds;
             for (Long collectionId : collectionIds) {
                 Stopwatch collectionStopwatch = Stopwatch.createStarted();
+                if(evaluationPlan != null && !evaluationPlan.hasRequiredFields(collectionId, document)
+                        && !evaluationPlan.hasCachedResults(collectionId, document)
+                        && recordMissingRequiredFields(document, conditionEngineResult, environmentSnapshot, evaluationPlan, collectionId)){
+                    document.logTime("Evaluate-Collection"+collectionId, collectionStopwatch);
+                    continue;
+                }
                 if(evaluateCollection(collectionSequence, document, conditionEngineResult, environmentSnapshot, collectionId)){
                     matchedTheCollection = true;
                 }
@@ -159,6 +194,11 @@ public class ConditionEngineImpl implements ConditionEngine {
         return conditionEngineResult;
     }
 
+    @Override
+    public void prefetch(Collection<DocumentUnderEvaluation> documents, EnvironmentSnapshot environmentSnapshot) throws CpeException {
+        contentExpressionHelper.prefetchBooleanAgentExpressions(environmentSnapshot, booleanAgentServices, documents);
+    }
+
     protected EnvironmentSnapshot getConditionEngineRepository(long collectionSequenceId) throws CpeException {
 
         EnvironmentSnapshot environmentSnapshot;
@@ -183,6 +223,29 @@ public class ConditionEngineImpl implements ConditionEngine {
         conditionEngineResult.collectionIdAssignedByDefault = defaultCollection.id;
     }
 
+    /**
+     * Records the result of a collection lacking required fields without evaluating its condition. The conditions
+     * reported unmatched are those evaluating it would report, which is only known when the condition fails before any
+     * field the document has would be evaluated.
+     * @return false if the collection has to be evaluated instead
+     */
+    private boolean recordMissingRequiredFields(DocumentUnderEvaluation document, ConditionEngineResult conditionEngineResult,
+                                                EnvironmentSnapshot environmentSnapshot, EvaluationPlan evaluationPlan,
+                                                Long collectionId) {
+        DocumentCollection collection = environmentSnapshot.getCollection(collectionId);
+        if (collection == null || collection.condition == null) {
+            return false;
+        }
+        ConditionEvaluationResult conditionEvaluationResult =
+                evaluationPlan.getMissingFieldsResult(collection.condition, document, environmentSnapshot);
+        if (conditionEvaluationResult == null) {
+            return false;
+        }
+        logger.trace("Collection " + collectionId + " skipped as the document lacks the fields it requires");
+        conditionEngineResult.unmatchedConditions.addAll(conditionEvaluationResult.getUnmatchedConditions());
+        return true;
+    }
+
     private boolean evaluateCollection(CollectionSequence collectionSequence, DocumentUnderEvaluation document, ConditionEngineResult conditionEngineResult,
                                        EnvironmentSnapshot environmentSnapshot, Long collectionId) throws CpeException {
         boolean matchedTheCollection = false;
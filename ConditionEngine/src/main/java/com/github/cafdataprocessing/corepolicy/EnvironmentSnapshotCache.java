@@ -23,4 +23,19 @@ import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 public interface EnvironmentSnapshotCache {
     EnvironmentSnapshot get(Long sequenceId) throws Exception;
     void invalidate(Long sequenceId);
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getLoadCount();
+
+    long getLoadFailureCount();
+
+    double getAverageLoadMillis();
+
+    /**
+     * The number of requests answered with a snapshot that was due to be verified, while it was reloaded in the background.
+     */
+    long getStaleServedCount();
 }
@@ -51,6 +51,25 @@ public interface PolicyEngine {
      */
     ClassifyDocumentResult classify(long collectionSequenceId, Document document);
 
+    /**
+     * Evaluate a batch of documents for collection membership and policy against a single snapshot, retrieving the
+     * boolean agent results for the whole batch up front.
+     * @param collectionSequenceId
+     * @param documents
+     * @return the results, in the same order as the documents
+     */
+    Collection<ClassifyDocumentResult> classify(long collectionSequenceId, Collection<Document> documents);
+
+    /**
+     * Evaluate a batch of documents as classify does, spreading the documents across the classify worker pool.
+     * Policies are still resolved on the calling thread, so policy handlers are never called concurrently.
+     * A document which fails to classify is returned as a result with its error set rather than failing the batch.
+     * @param collectionSequenceId
+     * @param documents
+     * @return the results, in the same order as the documents
+     */
+    Collection<ClassifyDocumentResult> classifyParallel(long collectionSequenceId, Collection<Document> documents);
+
     /**
      * Execute the requested policies on the supplied document, if a suitable policy handler is not registered no action is taken.
      * @param collectionSequenceId
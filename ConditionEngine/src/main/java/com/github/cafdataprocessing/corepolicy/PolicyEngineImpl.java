@@ -19,6 +19,7 @@ import com.github.cafdataprocessing.corepolicy.common.*;
 import com.github.cafdataprocessing.corepolicy.common.dto.*;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
+import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluationImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,8 +27,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 /**
@@ -41,12 +44,17 @@ public class PolicyEngineImpl implements PolicyEngine {
     private final ConditionEngine conditionEngine;
     private final ApiProperties apiProperties;
     private ConditionEngineMetadata conditionEngineMetadata;
+    private final ClassifyExecutionService classifyExecutionService;
+    private final UserContext userContext;
     private final Collection<PolicyHandler> policyHandlers = new ArrayList<>();
     private static Logger logger = LoggerFactory.getLogger(PolicyEngineImpl.class);
 
     @Autowired
-    public PolicyEngineImpl(PolicyApi policyApi, EnvironmentSnapshotCache environmentSnapshotCache, ConditionEngine conditionEngine, ConditionEngineMetadata conditionEngineMetadata, ApiProperties apiProperties){
+    public PolicyEngineImpl(PolicyApi policyApi, EnvironmentSnapshotCache environmentSnapshotCache, ConditionEngine conditionEngine, ConditionEngineMetadata conditionEngineMetadata, ApiProperties apiProperties,
+                            ClassifyExecutionService classifyExecutionService, UserContext userContext){
         this.policyApi = policyApi;
+        this.classifyExecutionService = classifyExecutionService;
+        this.userContext = userContext;
         this.environmentSnapshotCache = environmentSnapshotCache;
         this.conditionEngine = conditionEngine;
         this.conditionEngineMetadata = conditionEngineMetadata;
@@ -83,11 +91,119 @@ public class PolicyEngineImpl implements PolicyEngine {
 
     @Override
     public ClassifyDocumentResult classify(long collectionSequenceId, Document document) {
-        DocumentUnderEvaluationImpl documentUnderEvaluation = new DocumentUnderEvaluationImpl(document, conditionEngineMetadata, apiProperties);
-        documentUnderEvaluation.addMetadataString(DocumentFields.KV_Metadata_Present_FieldName, String.valueOf(document.getFullMetadata()));
+        DocumentUnderEvaluationImpl documentUnderEvaluation = createDocumentUnderEvaluation(document);
+
+        EnvironmentSnapshot environmentSnapshot = getEnvironmentSnapshot(collectionSequenceId);
+
+        return classify(collectionSequenceId, document, documentUnderEvaluation, environmentSnapshot);
+    }
+
+    @Override
+    public Collection<ClassifyDocumentResult> classify(long collectionSequenceId, Collection<Document> documents) {
+        List<Document> documentList = new ArrayList<>(documents);
+        List<DocumentUnderEvaluation> documentsUnderEvaluation = documentList.stream()
+                .map(this::createDocumentUnderEvaluation)
+                .collect(Collectors.toList());
 
         EnvironmentSnapshot environmentSnapshot = getEnvironmentSnapshot(collectionSequenceId);
 
+        // as in classifyParallel, a failure to prefetch leaves each document to fetch what it needs as it is evaluated.
+        try {
+            conditionEngine.prefetch(documentsUnderEvaluation, environmentSnapshot);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to prefetch boolean agent results for a batch of " + documentsUnderEvaluation.size()
+                    + " documents, they will be fetched per document.", e);
+        }
+
+        Collection<ClassifyDocumentResult> results = new ArrayList<>();
+        for (int i = 0; i < documentList.size(); i++) {
+            results.add(classify(collectionSequenceId, documentList.get(i), documentsUnderEvaluation.get(i), environmentSnapshot));
+        }
+        return results;
+    }
+
+    @Override
+    public Collection<ClassifyDocumentResult> classifyParallel(long collectionSequenceId, Collection<Document> documents) {
+        EnvironmentSnapshot environmentSnapshot = getEnvironmentSnapshot(collectionSequenceId);
+
+        List<Document> documentList = new ArrayList<>(documents);
+        DocumentUnderEvaluation[] documentsUnderEvaluation = new DocumentUnderEvaluation[documentList.size()];
+        RuntimeException[] preparationFailures = new RuntimeException[documentList.size()];
+        List<DocumentUnderEvaluation> documentsToPrefetch = new ArrayList<>(documentList.size());
+
+        for (int i = 0; i < documentList.size(); i++) {
+            try {
+                documentsUnderEvaluation[i] = createDocumentUnderEvaluation(documentList.get(i));
+                documentsToPrefetch.add(documentsUnderEvaluation[i]);
+            } catch (RuntimeException e) {
+                preparationFailures[i] = e;
+            }
+        }
+
+        // prefetching is only an optimisation, if it fails each document fetches what it needs as it is evaluated,
+        // so a failure there is reported against the documents it affects rather than the whole batch.
+        try {
+            conditionEngine.prefetch(documentsToPrefetch, environmentSnapshot);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to prefetch boolean agent results for a batch of " + documentsToPrefetch.size()
+                    + " documents, they will be fetched per document.", e);
+        }
+
+        // the pool threads have no request of their own, so evaluate on them with the project of the caller.
+        final String projectId = userContext.getProjectId();
+        ConditionEngineResult[] conditionEngineResults = new ConditionEngineResult[documentList.size()];
+        List<Callable<ClassifyDocumentResult>> tasks = new ArrayList<>(documentList.size());
+        for (int i = 0; i < documentList.size(); i++) {
+            final int index = i;
+            final Document document = documentList.get(i);
+            final DocumentUnderEvaluation documentUnderEvaluation = documentsUnderEvaluation[i];
+            final RuntimeException preparationFailure = preparationFailures[i];
+            tasks.add(() -> {
+                userContext.setProjectId(projectId);
+                try {
+                    if (preparationFailure != null) {
+                        throw preparationFailure;
+                    }
+                    ConditionEngineResult conditionEngineResult = conditionEngine.evaluate(documentUnderEvaluation,
+                            collectionSequenceId, environmentSnapshot);
+                    ClassifyDocumentResult classifyResult = ClassifyDocumentResult.create(conditionEngineResult, conditionEngineMetadata);
+                    conditionEngineResults[index] = conditionEngineResult;
+                    return classifyResult;
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to classify document " + document.getReference() + ".", e);
+                    return ClassifyDocumentResult.createFailed(document.getReference(), e);
+                } finally {
+                    userContext.setProjectId(null);
+                }
+            });
+        }
+
+        List<ClassifyDocumentResult> results = new ArrayList<>(classifyExecutionService.invokeAll(tasks));
+
+        // policy handlers are not guaranteed to be thread safe, so policies are resolved here on the calling thread.
+        for (int i = 0; i < results.size(); i++) {
+            if (conditionEngineResults[i] == null) {
+                continue;
+            }
+            Document document = documentList.get(i);
+            try {
+                results.get(i).resolvedPolicies = resolvePolicies(environmentSnapshot, document, conditionEngineResults[i]);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to classify document " + document.getReference() + ".", e);
+                results.set(i, ClassifyDocumentResult.createFailed(document.getReference(), e));
+            }
+        }
+        return results;
+    }
+
+    private DocumentUnderEvaluationImpl createDocumentUnderEvaluation(Document document) {
+        DocumentUnderEvaluationImpl documentUnderEvaluation = new DocumentUnderEvaluationImpl(document, conditionEngineMetadata, apiProperties);
+        documentUnderEvaluation.addMetadataString(DocumentFields.KV_Metadata_Present_FieldName, String.valueOf(document.getFullMetadata()));
+        return documentUnderEvaluation;
+    }
+
+    private ClassifyDocumentResult classify(long collectionSequenceId, Document document,
+                                            DocumentUnderEvaluation documentUnderEvaluation, EnvironmentSnapshot environmentSnapshot) {
         // Use the same snapshot across both calls, JIC it gets invalidated between the 2.
         ConditionEngineResult conditionEngineResult = conditionEngine.evaluate(documentUnderEvaluation,
                 collectionSequenceId,
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy;
+
+/**
+ * Warms up the service once the application context has started, so the first requests do not pay for opening
+ * connections and building environment snapshots.
+ */
+public interface StartupWarmUp {
+    /**
+     * Whether the warm-up has finished, successfully or not. The service should not be reported as ready before then.
+     */
+    boolean isComplete();
+
+    long getSequencesLoadedCount();
+
+    long getSequenceLoadFailureCount();
+
+    long getClassificationCount();
+
+    long getDurationMillis();
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy;
+
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
+import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
+import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
+import com.github.cafdataprocessing.corepolicy.common.DocumentFields;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.UserContext;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.FieldCondition;
+import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
+import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluationImpl;
+import com.github.cafdataprocessing.corepolicy.environment.EnvironmentSnapshotIndex;
+import com.github.cafdataprocessing.corepolicy.repositories.ExecutionContextProvider;
+import com.github.cafdataprocessing.corepolicy.repositories.RepositoryType;
+import com.github.cafdataprocessing.corepolicy.repositories.v2.ExecutionContext;
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the warm-up on its own thread once the application context has been refreshed. It opens a repository
+ * execution context, which builds the Hibernate session factory and checks the database version, connects to the
+ * boolean agent services, loads the environment snapshots of the configured and most recently persisted collection
+ * sequences, and then classifies synthetic documents against each of them so the evaluation code is compiled before
+ * real documents arrive. Any failure is logged and the warm-up carries on; it is only an accelerator.
+ */
+public class StartupWarmUpImpl implements StartupWarmUp, ApplicationListener<ContextRefreshedEvent> {
+    private final static Logger logger = LoggerFactory.getLogger(StartupWarmUpImpl.class);
+
+    private static final String SYNTHETIC_TEXT = "The quick brown fox jumps over the lazy dog 0123456789";
+
+    private final ApplicationContext applicationContext;
+    private final EngineProperties engineProperties;
+    private final ApiProperties apiProperties;
+    private final UserContext userContext;
+    private final BooleanAgentServices booleanAgentServices;
+    private final EnvironmentSnapshotCache environmentSnapshotCache;
+    private final ConditionEngine conditionEngine;
+    private final ConditionEngineMetadata conditionEngineMetadata;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean complete;
+    private final AtomicLong sequencesLoadedCount = new AtomicLong();
+    private final AtomicLong sequenceLoadFailureCount = new AtomicLong();
+    private final AtomicLong classificationCount = new AtomicLong();
+    private volatile long durationMillis;
+
+    @Autowired
+    public StartupWarmUpImpl(ApplicationContext applicationContext, EngineProperties engineProperties,
+                             ApiProperties apiProperties, UserContext userContext,
+                             BooleanAgentServices booleanAgentServices, EnvironmentSnapshotCache environmentSnapshotCache,
+                             ConditionEngine conditionEngine, ConditionEngineMetadata conditionEngineMetadata) {
+        this.applicationContext = applicationContext;
+        this.engineProperties = engineProperties;
+        this.apiProperties = apiProperties;
+        this.userContext = userContext;
+        this.booleanAgentServices = booleanAgentServices;
+        this.environmentSnapshotCache = environmentSnapshotCache;
+        this.conditionEngine = conditionEngine;
+        this.conditionEngineMetadata = conditionEngineMetadata;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // Child contexts, e.g. the dispatcher servlet's, publish their refresh to this context's listeners as well.
+        if (event.getApplicationContext() != applicationContext || !started.compareAndSet(false, true)) {
+            return;
+        }
+        if (!engineProperties.getWarmupEnabled()) {
+            complete = true;
+            return;
+        }
+        Thread thread = new Thread(this::run, "corepolicy-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run() {
+        long start = System.currentTimeMillis();
+        logger.info("Starting warm-up");
+        try {
+            openExecutionContexts();
+            connectBooleanAgentServices();
+            for (Map.Entry<Long, String> sequence : getSequences().entrySet()) {
+                warmUpSequence(sequence.getKey(), sequence.getValue());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Warm-up failed", e);
+        } finally {
+            userContext.setProjectId(null);
+            durationMillis = System.currentTimeMillis() - start;
+            complete = true;
+            logger.info("Warm-up completed in {}ms, loaded {} sequences with {} failures and ran {} classifications",
+                    durationMillis, sequencesLoadedCount.get(), sequenceLoadFailureCount.get(), classificationCount.get());
+        }
+    }
+
+    private void openExecutionContexts() {
+        for (ExecutionContextProvider executionContextProvider : applicationContext.getBeansOfType(ExecutionContextProvider.class).values()) {
+            try (ExecutionContext executionContext = executionContextProvider.getExecutionContext(RepositoryType.CONDITION_ENGINE)) {
+                logger.debug("Opened execution context " + executionContext.getClass().getSimpleName());
+            } catch (Exception e) {
+                logger.warn("Could not open an execution context during warm-up", e);
+            }
+        }
+    }
+
+    private void connectBooleanAgentServices() {
+        if (booleanAgentServices.getAvailable() && !booleanAgentServices.canConnect()) {
+            logger.warn("Could not connect to the boolean agent services during warm-up");
+        }
+    }
+
+    /**
+     * @return the sequences to warm up, in order, mapped to the project id to load them with.
+     */
+    Map<Long, String> getSequences() {
+        String defaultProjectId = engineProperties.getWarmupProjectId();
+        Map<Long, String> sequences = new LinkedHashMap<>();
+        String configuredSequences = engineProperties.getWarmupSequences();
+        if (!Strings.isNullOrEmpty(configuredSequences)) {
+            for (String configuredSequence : configuredSequences.split(",")) {
+                configuredSequence = configuredSequence.trim();
+                if (configuredSequence.isEmpty()) {
+                    continue;
+                }
+                int separator = configuredSequence.lastIndexOf(':');
+                try {
+                    Long collectionSequenceId = Long.parseLong(configuredSequence.substring(separator + 1).trim());
+                    sequences.put(collectionSequenceId, separator < 0 ? defaultProjectId : configuredSequence.substring(0, separator).trim());
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring invalid warm-up sequence: " + configuredSequence);
+                }
+            }
+        }
+        EnvironmentSnapshotIndex index = new EnvironmentSnapshotIndex(Paths.get(engineProperties.getEnvironmentCacheLocation()));
+        for (Long collectionSequenceId : index.getRecentSequenceIds(engineProperties.getWarmupRecentSequences())) {
+            sequences.putIfAbsent(collectionSequenceId, defaultProjectId);
+        }
+        return sequences;
+    }
+
+    private void warmUpSequence(Long collectionSequenceId, String projectId) {
+        try {
+            // set even when null, so a sequence without a project is not loaded with the previous one's.
+            userContext.setProjectId(projectId);
+            EnvironmentSnapshot environmentSnapshot = environmentSnapshotCache.get(collectionSequenceId);
+            sequencesLoadedCount.incrementAndGet();
+
+            int classifications = engineProperties.getWarmupClassifications();
+            for (int i = 0; i < classifications; i++) {
+                conditionEngine.evaluate(createSyntheticDocument(environmentSnapshot), collectionSequenceId, environmentSnapshot);
+                classificationCount.incrementAndGet();
+            }
+        } catch (Exception e) {
+            sequenceLoadFailureCount.incrementAndGet();
+            logger.warn("Could not warm up collection sequence " + collectionSequenceId, e);
+        }
+    }
+
+    /**
+     * Creates a document with a value for every field the snapshot's conditions refer to, so that each of them is
+     * evaluated rather than skipped as missing.
+     */
+    private DocumentUnderEvaluation createSyntheticDocument(EnvironmentSnapshot environmentSnapshot) {
+        DocumentUnderEvaluationImpl document = new DocumentUnderEvaluationImpl(conditionEngineMetadata, apiProperties);
+        document.addMetadataString(DocumentFields.DreReference, "warmup-" + UUID.randomUUID());
+        for (Condition condition : environmentSnapshot.getConditions().values()) {
+            if (condition instanceof FieldCondition && !Strings.isNullOrEmpty(((FieldCondition) condition).field)) {
+                document.addMetadataString(((FieldCondition) condition).field, SYNTHETIC_TEXT);
+            }
+        }
+        return document;
+    }
+
+    @Override
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public long getSequencesLoadedCount() {
+        return sequencesLoadedCount.get();
+    }
+
+    @Override
+    public long getSequenceLoadFailureCount() {
+        return sequenceLoadFailureCount.get();
+    }
+
+    @Override
+    public long getClassificationCount() {
+        return classificationCount.get();
+    }
+
+    @Override
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
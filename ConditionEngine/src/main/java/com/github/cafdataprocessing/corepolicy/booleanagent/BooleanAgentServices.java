@@ -20,6 +20,8 @@ import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
 import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocuments;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -27,7 +29,33 @@ import java.util.Collection;
 public interface BooleanAgentServices {
     boolean getAvailable();
     BooleanAgentQueryResult query(String instanceId, Collection<MetadataValue> fieldValues) throws Exception;
+
+    /**
+     * Queries several groups of field values in a single request to the boolean agent back end.
+     * @param instanceId the environment snapshot instance id the agents were created for
+     * @param fieldValueGroups the field values to query, one group per field (and language) being evaluated
+     * @return one result per group, in the same order as the supplied groups
+     * @throws Exception
+     */
+    List<BooleanAgentQueryResult> queryBatch(String instanceId, List<? extends Collection<MetadataValue>> fieldValueGroups) throws Exception;
     void create(String instanceId, BooleanAgentDocuments documents) throws CpeException;
+
+    /**
+     * Changes the agents of an instance in place, leaving any agent not named here as it is.
+     * @param instanceId the environment snapshot instance id the agents were created for
+     * @param documents the agents to register, each replacing any agent with the same reference
+     * @param removedReferences the references of the agents to delete
+     * @throws CpeException
+     */
+    void update(String instanceId, BooleanAgentDocuments documents, Collection<String> removedReferences) throws CpeException;
+
+    /**
+     * Returns the fingerprints of the agents registered for an instance, keyed by agent reference. An agent registered
+     * without a fingerprint has an empty one.
+     * @param instanceId the environment snapshot instance id the agents were created for
+     * @return the fingerprints, empty if no agents exist for the instance
+     */
+    Map<String, String> getAgentFingerprints(String instanceId);
     void delete(String instanceId);
     boolean existForInstanceId(String instanceId);
     void isValidExpression(String string);
@@ -18,6 +18,8 @@ package com.github.cafdataprocessing.corepolicy.booleanagent;
 import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocument;
 import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocuments;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.github.cafdataprocessing.corepolicy.common.ElasticsearchProperties;
 import com.github.cafdataprocessing.corepolicy.common.UserContext;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
@@ -31,8 +33,15 @@ import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.admin.indices.validate.query.QueryExplanation;
 import org.elasticsearch.action.admin.indices.validate.query.ValidateQueryRequest;
 import org.elasticsearch.action.admin.indices.validate.query.ValidateQueryResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.percolate.MultiPercolateRequestBuilder;
+import org.elasticsearch.action.percolate.MultiPercolateResponse;
+import org.elasticsearch.action.percolate.PercolateRequestBuilder;
 import org.elasticsearch.action.percolate.PercolateResponse;
 import org.elasticsearch.action.percolate.PercolateSourceBuilder;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.termvectors.TermVectorsResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.transport.TransportClient;
@@ -43,7 +52,6 @@ import org.elasticsearch.common.transport.InetSocketTransportAddress;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
-import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
@@ -60,11 +68,13 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.*;
@@ -88,6 +98,10 @@ public final class BooleanAgentServicesElasticImpl extends BooleanAgentServicesB
     private static final String conditionIdFieldName = "condition_id";
     private static final String lexiconIdFieldName = "lexicon_id";
     private static final String lexiconExpressionIdFieldName = "lexicon_expression_id";
+    private static final String fingerprintFieldName = "fingerprint";
+    private static final int maxCachedInstances = 32;
+    private static final int fingerprintPageSize = 1000;
+    private static final TimeValue fingerprintScrollKeepAlive = TimeValue.timeValueMinutes(1);
 
     private static Logger logger = LoggerFactory.getLogger(BooleanAgentServicesElasticImpl.class);
 
@@ -97,6 +111,12 @@ public final class BooleanAgentServicesElasticImpl extends BooleanAgentServicesB
     private String policyIndexName;
     private Client elasticClient;
     private boolean initialized = false;
+    private final Cache<String, ConcurrentMap<String, Map<String, Object>>> agentSourceCache = CacheBuilder.newBuilder()
+            .maximumSize(maxCachedInstances)
+            .build();
+    private final Cache<String, Map<String, String>> agentFingerprintCache = CacheBuilder.newBuilder()
+            .maximumSize(maxCachedInstances)
+            .build();
 
     @Autowired
     public BooleanAgentServicesElasticImpl(ElasticsearchProperties elasticsearchProperties, UserContext userContext) {
@@ -113,44 +133,149 @@ public final class BooleanAgentServicesElasticImpl extends BooleanAgentServicesB
 
     @Override
     public BooleanAgentQueryResult query(String instanceId, Collection<MetadataValue> fieldValues) throws Exception {
-        BooleanAgentQueryResult booleanAgentQueryResult = new BooleanAgentQueryResultImpl();
-        if (!fieldValues.isEmpty()) {
-            try {
-                initialize();
-                MetadataValue.getStringValues(fieldValues).stream()
-                        .filter(t -> !Strings.isNullOrEmpty(t))
-                        .forEach(t -> {
-                            try {
-                                queryBooleanAgents(instanceId, t, booleanAgentQueryResult);
-                            } catch (IOException ioe) {
-                                throw new UncheckedIOException(ioe);
-                            }
-                        });
-            } catch (UncheckedIOException | IOException e) {
-                throw new BackEndRequestFailedCpeException(e.getCause());
+        if (fieldValues.isEmpty()) {
+            return new BooleanAgentQueryResultImpl();
+        }
+        return queryBatch(instanceId, Collections.singletonList(fieldValues)).get(0);
+    }
+
+    @Override
+    public List<BooleanAgentQueryResult> queryBatch(String instanceId, List<? extends Collection<MetadataValue>> fieldValueGroups) throws Exception {
+        List<BooleanAgentQueryResult> results = new ArrayList<>(fieldValueGroups.size());
+        List<PercolatedText> percolatedTexts = new ArrayList<>();
+        for (Collection<MetadataValue> fieldValues : fieldValueGroups) {
+            BooleanAgentQueryResult booleanAgentQueryResult = new BooleanAgentQueryResultImpl();
+            results.add(booleanAgentQueryResult);
+            MetadataValue.getStringValues(fieldValues).stream()
+                    .filter(t -> !Strings.isNullOrEmpty(t))
+                    .forEach(t -> percolatedTexts.add(new PercolatedText(t, booleanAgentQueryResult)));
+        }
+        if (fieldValueGroups.stream().allMatch(Collection::isEmpty)) {
+            return results;
+        }
+        try {
+            initialize();
+            if (!percolatedTexts.isEmpty()) {
+                queryBooleanAgents(instanceId, percolatedTexts);
             }
+        } catch (IOException e) {
+            throw new BackEndRequestFailedCpeException(e);
         }
-        return booleanAgentQueryResult;
+        return results;
     }
 
     @Override
     public void create(String instanceId, BooleanAgentDocuments documents) throws CpeException {
-        if (documents == null || documents.getDocuments() == null || documents.getDocuments().isEmpty()) {
+        update(instanceId, documents, Collections.emptyList());
+    }
+
+    @Override
+    public void update(String instanceId, BooleanAgentDocuments documents, Collection<String> removedReferences) throws CpeException {
+        boolean hasDocuments = documents != null && documents.getDocuments() != null && !documents.getDocuments().isEmpty();
+        if (!hasDocuments && removedReferences.isEmpty()) {
             return;
         }
         try {
             initialize();
-            for (BooleanAgentDocument booleanAgentDocument : documents.getDocuments()) {
-                Optional<String> booleanRestriction = booleanAgentDocument.getBooleanRestriction().stream().findFirst();
-                createStoredQuery(instanceId, getTtl(), booleanAgentDocument, booleanRestriction);
+            agentSourceCache.invalidate(instanceId);
+            // index and delete every agent in a single bulk request with one refresh at the end, rather than a request
+            // and an index refresh per agent, which dominates snapshot refresh time for large lexicons.
+            String ttl = getTtl();
+            BulkRequestBuilder bulkRequest = getElasticClient().prepareBulk().setRefresh(true);
+            if (hasDocuments) {
+                for (BooleanAgentDocument booleanAgentDocument : documents.getDocuments()) {
+                    Optional<String> booleanRestriction = booleanAgentDocument.getBooleanRestriction().stream().findFirst();
+                    bulkRequest.add(prepareStoredQuery(instanceId, ttl, booleanAgentDocument, booleanRestriction));
+                }
+            }
+            for (String removedReference : removedReferences) {
+                bulkRequest.add(getElasticClient().prepareDelete(policyIndexName, percolatorTypeName, getAgentId(removedReference, instanceId)));
+            }
+            BulkResponse bulkResponse = bulkRequest.get(elasticsearchProperties.getElasticsearchSearchTimeout());
+            if (bulkResponse.hasFailures()) {
+                agentFingerprintCache.invalidate(instanceId);
+                throw new BackEndRequestFailedCpeException(new Exception(bulkResponse.buildFailureMessage()));
             }
         } catch (IOException e) {
+            agentFingerprintCache.invalidate(instanceId);
             throw new BackEndRequestFailedCpeException(e);
         }
+
+        Map<String, String> fingerprints = agentFingerprintCache.getIfPresent(instanceId);
+        if (fingerprints != null) {
+            Map<String, String> updatedFingerprints = new HashMap<>(fingerprints);
+            updatedFingerprints.keySet().removeAll(removedReferences);
+            if (hasDocuments) {
+                for (BooleanAgentDocument booleanAgentDocument : documents.getDocuments()) {
+                    updatedFingerprints.put(booleanAgentDocument.getReference(), Strings.nullToEmpty(booleanAgentDocument.getFingerprint()));
+                }
+            }
+            agentFingerprintCache.put(instanceId, Collections.unmodifiableMap(updatedFingerprints));
+        }
+    }
+
+    /**
+     * Returns the fingerprints of the agents of an instance. They are read from Elasticsearch the first time, and then
+     * kept up to date by updates made here. Any agent sources cached before they were read may predate an update made
+     * by another worker, so those are dropped.
+     */
+    @Override
+    public Map<String, String> getAgentFingerprints(String instanceId) {
+        Map<String, String> fingerprints = agentFingerprintCache.getIfPresent(instanceId);
+        if (fingerprints != null) {
+            return fingerprints;
+        }
+        try {
+            initialize();
+            fingerprints = Collections.unmodifiableMap(readAgentFingerprints(instanceId));
+        } catch (IOException e) {
+            throw new BackEndRequestFailedCpeException(e);
+        }
+        agentSourceCache.invalidate(instanceId);
+        if (!fingerprints.isEmpty()) {
+            agentFingerprintCache.put(instanceId, fingerprints);
+        }
+        return fingerprints;
+    }
+
+    private Map<String, String> readAgentFingerprints(String instanceId) throws UnknownHostException {
+        String agentIdSuffix = getAgentId("", instanceId);
+        Map<String, String> fingerprints = new HashMap<>();
+        SearchResponse response = getElasticClient()
+                .prepareSearch(policyIndexName)
+                .setTypes(percolatorTypeName)
+                .setQuery(matchQuery(instanceIdFieldName, instanceId))
+                .setFetchSource(fingerprintFieldName, null)
+                .setScroll(fingerprintScrollKeepAlive)
+                .setSize(fingerprintPageSize)
+                .get(elasticsearchProperties.getElasticsearchSearchTimeout());
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit agentHit : response.getHits()) {
+                    // the match on the instance id is analyzed, so may also find agents of other instances.
+                    if (!agentHit.getId().endsWith(agentIdSuffix)) {
+                        continue;
+                    }
+                    Map<String, Object> agentSource = agentHit.getSource();
+                    Object fingerprint = agentSource == null ? null : agentSource.get(fingerprintFieldName);
+                    fingerprints.put(agentHit.getId().substring(0, agentHit.getId().length() - agentIdSuffix.length()),
+                            fingerprint == null ? "" : String.valueOf(fingerprint));
+                }
+                response = getElasticClient()
+                        .prepareSearchScroll(response.getScrollId())
+                        .setScroll(fingerprintScrollKeepAlive)
+                        .get(elasticsearchProperties.getElasticsearchSearchTimeout());
+            }
+        } finally {
+            getElasticClient().prepareClearScroll().addScrollId(response.getScrollId()).get(elasticsearchProperties.getElasticsearchSearchTimeout());
+        }
+        return fingerprints;
     }
 
     @Override
     public void delete(String instanceId) {
+        agentSourceCache.invalidate(instanceId);
+        agentFingerprintCache.invalidate(instanceId);
         try {
             String storedQueryId = getStoredQueryId(instanceId);
             if (storedQueryId != null) {
@@ -463,18 +588,20 @@ public final class BooleanAgentServicesElasticImpl extends BooleanAgentServicesB
         return String.valueOf((expireTime.getMillis() - now.getMillis()) / 1000) + "s";
     }
 
-    private void createStoredQuery(String instanceId, String ttl, BooleanAgentDocument booleanAgentDocument, Optional<String> booleanRestriction) throws IOException {
-        String reference = booleanAgentDocument.getReference() + "_" + instanceId;
+    private IndexRequestBuilder prepareStoredQuery(String instanceId, String ttl, BooleanAgentDocument booleanAgentDocument, Optional<String> booleanRestriction) throws IOException {
+        String reference = getAgentId(booleanAgentDocument.getReference(), instanceId);
 
         XContentBuilder storedQuery = prepareStoredQuery(instanceId, booleanAgentDocument, booleanRestriction, reference);
 
         // replaces an existing document with a new document by using the reference value as the Elasticsearch _id.
-        getElasticClient()
+        return getElasticClient()
                 .prepareIndex(policyIndexName, percolatorTypeName, reference)
                 .setSource(storedQuery)
-                .setRefresh(true)
-                .setTTL(ttl)
-                .get(elasticsearchProperties.getElasticsearchSearchTimeout());
+                .setTTL(ttl);
+    }
+
+    private static String getAgentId(String reference, String instanceId) {
+        return reference + "_" + instanceId;
     }
 
     private XContentBuilder prepareStoredQuery(String instanceId, BooleanAgentDocument booleanAgentDocument, Optional<String> booleanRestriction, String queryReference) throws IOException {
@@ -486,6 +613,9 @@ public final class BooleanAgentServicesElasticImpl extends BooleanAgentServicesB
                 .field(projectIdFieldName, userContext.getProjectId() + "_" + instanceId)
                 .field(instanceIdFieldName, instanceId);
 
+        if (booleanAgentDocument.getFingerprint() != null) {
+            storedQueryBuilder = storedQueryBuilder.field(fingerprintFieldName, booleanAgentDocument.getFingerprint());
+        }
         if (booleanRestriction.isPresent()) {
             storedQueryBuilder = storedQueryBuilder.field(booleanRestrictionFieldName, booleanRestriction.get());
             QueryBuilder query = parseQuery(booleanRestriction.get());
@@ -517,8 +647,40 @@ public final class BooleanAgentServicesElasticImpl extends BooleanAgentServicesB
         return parser.parse(booleanRestriction);
     }
 
-    private void queryBooleanAgents(String instanceId, String textToQuery, BooleanAgentQueryResult booleanAgentQueryResult) throws IOException {
-        PercolateResponse response = getElasticClient()
+    private void queryBooleanAgents(String instanceId, List<PercolatedText> percolatedTexts) throws IOException {
+        MultiPercolateRequestBuilder multiPercolateRequestBuilder = getElasticClient().prepareMultiPercolate();
+        for (PercolatedText percolatedText : percolatedTexts) {
+            multiPercolateRequestBuilder.add(preparePercolate(instanceId, percolatedText.getText()));
+        }
+        MultiPercolateResponse multiResponse = multiPercolateRequestBuilder
+                .get(elasticsearchProperties.getElasticsearchSearchTimeout());
+
+        MultiPercolateResponse.Item[] items = multiResponse.getItems();
+        List<String> matchedAgentIds = new ArrayList<>();
+        for (MultiPercolateResponse.Item item : items) {
+            if (item.isFailure()) {
+                throw new BackEndRequestFailedCpeException(new Exception(item.getErrorMessage(), item.getFailure()));
+            }
+            for (PercolateResponse.Match match : item.getResponse()) {
+                matchedAgentIds.add(match.getId().string());
+            }
+        }
+
+        Map<String, Map<String, Object>> agentSources = getAgentSources(instanceId, matchedAgentIds);
+
+        for (int i = 0; i < items.length; i++) {
+            PercolatedText percolatedText = percolatedTexts.get(i);
+            for (PercolateResponse.Match match : items[i].getResponse()) {
+                String agentId = match.getId().string();
+                BooleanAgentDocument booleanAgentDocument = convertToBooleanAgentDocument(
+                        new AgentResult(agentId, match, agentSources.get(agentId)));
+                extractTermsFromBooleanAgentDocument(percolatedText.getText(), percolatedText.getResult(), booleanAgentDocument);
+            }
+        }
+    }
+
+    private PercolateRequestBuilder preparePercolate(String instanceId, String textToQuery) throws IOException {
+        return getElasticClient()
                 .preparePercolate()
                 .setIndices(policyIndexName)
                 .setDocumentType(dbTypeName)
@@ -535,53 +697,46 @@ public final class BooleanAgentServicesElasticImpl extends BooleanAgentServicesB
                         .field(contentFieldName)
                         .preTags(getStartTagGuid())
                         .postTags(getEndTagGuid()))
-                .setSize(elasticsearchProperties.getElasticsearchMaxStoredqueryResults())
-                .get(elasticsearchProperties.getElasticsearchSearchTimeout());
-
-        List<BooleanAgentDocument> booleanAgentDocuments = convertToBooleanAgentDocuments(response);
-        booleanAgentDocuments.forEach(d -> extractTermsFromBooleanAgentDocument(textToQuery, booleanAgentQueryResult, d));
+                .setSize(elasticsearchProperties.getElasticsearchMaxStoredqueryResults());
     }
 
-    private List<BooleanAgentDocument> convertToBooleanAgentDocuments(PercolateResponse response) throws UnknownHostException {
-        Collection<AgentResult> agents = getAgents(response);
-        return agents
-                .stream()
-                .map(this::convertToBooleanAgentDocument)
-                .collect(Collectors.toList());
-    }
+    /**
+     * Returns the stored query sources for the supplied agent ids. Sources only change when the agents of the instance
+     * are updated, which drops those cached for it, so only those not already cached are fetched, in a single search.
+     */
+    private Map<String, Map<String, Object>> getAgentSources(String instanceId, Collection<String> agentIds) throws UnknownHostException {
+        ConcurrentMap<String, Map<String, Object>> instanceSources;
+        try {
+            instanceSources = agentSourceCache.get(instanceId, ConcurrentHashMap::new);
+        } catch (ExecutionException e) {
+            throw new BackEndRequestFailedCpeException(e.getCause());
+        }
 
-    private Collection<AgentResult> getAgents(PercolateResponse response) throws UnknownHostException {
-        Map<String, AgentResult> indexedAgents = new HashMap<>();
+        Set<String> missingAgentIds = agentIds.stream()
+                .filter(id -> !instanceSources.containsKey(id))
+                .collect(Collectors.toSet());
 
-        BoolQueryBuilder agentsQueryBuilder = QueryBuilders.boolQuery();
-        for (PercolateResponse.Match match : response) {
-            String agentId = match.getId().string();
-            agentsQueryBuilder = agentsQueryBuilder.should(termQuery("_id", agentId));
-            indexedAgents.put(agentId, new AgentResult(agentId, match, null));
-        }
+        if (!missingAgentIds.isEmpty()) {
+            SearchHits agentHits = getElasticClient()
+                    .prepareSearch(policyIndexName)
+                    .setTypes(percolatorTypeName)
+                    .setQuery(QueryBuilders.idsQuery(percolatorTypeName).ids(missingAgentIds))
+                    .setSize(missingAgentIds.size())
+                    .get(elasticsearchProperties.getElasticsearchSearchTimeout())
+                    .getHits();
 
-        SearchHits agentHits = getElasticClient()
-                .prepareSearch(policyIndexName)
-                .setTypes(percolatorTypeName)
-                .setQuery(agentsQueryBuilder)
-                .setSize(elasticsearchProperties.getElasticsearchMaxStoredqueries())
-                .get(elasticsearchProperties.getElasticsearchSearchTimeout())
-                .getHits();
-
-        for (SearchHit agentHit : agentHits) {
-            AgentResult agentResult = indexedAgents.get(agentHit.getId());
-            if (agentResult != null) {
-                agentResult.setSource(agentHit.sourceAsMap());
+            for (SearchHit agentHit : agentHits) {
+                instanceSources.put(agentHit.getId(), agentHit.sourceAsMap());
             }
         }
 
-        if (indexedAgents.values().stream().anyMatch(r -> r.getSource() == null)) {
+        if (agentIds.stream().anyMatch(id -> !instanceSources.containsKey(id))) {
             String error = "Failed to retrieve all the expected boolean agents from Elasticsearch";
             logger.error(error);
             throw new RuntimeException(error);
         }
 
-        return indexedAgents.values();
+        return instanceSources;
     }
 
     private BooleanAgentDocument convertToBooleanAgentDocument(AgentResult agentResult) {
@@ -647,6 +802,24 @@ public final class BooleanAgentServicesElasticImpl extends BooleanAgentServicesB
     }
 
 
+    private static class PercolatedText {
+        private final String text;
+        private final BooleanAgentQueryResult result;
+
+        public PercolatedText(String text, BooleanAgentQueryResult result) {
+            this.text = text;
+            this.result = result;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public BooleanAgentQueryResult getResult() {
+            return result;
+        }
+    }
+
     private class AgentResult {
         private String agentId;
         private PercolateResponse.Match match;
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.booleanagent;
+
+import com.github.cafdataprocessing.corepolicy.common.ElasticsearchProperties;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
+import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocument;
+import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocuments;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.NullFragmenter;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * An implementation of BooleanAgentServices that evaluates boolean agents in process. The agents created for a
+ * snapshot instance are compiled into Lucene queries and held in memory, each field value is indexed into a
+ * MemoryIndex and all of the instance's queries are run against it, so no requests are made to Elasticsearch.
+ */
+public class BooleanAgentServicesLuceneImpl extends BooleanAgentServicesBaseImpl implements BooleanAgentServices {
+    private static final String contentFieldName = "DRECONTENT";
+
+    private static Logger logger = LoggerFactory.getLogger(BooleanAgentServicesLuceneImpl.class);
+
+    private final Analyzer analyzer = new StandardAnalyzer(CharArraySet.EMPTY_SET);
+    private final BooleanExpressionLuceneQueryFactory queryFactory = new BooleanExpressionLuceneQueryFactory(contentFieldName, analyzer);
+    private final ThreadLocal<MemoryIndex> memoryIndexes = ThreadLocal.withInitial(MemoryIndex::new);
+
+    /**
+     * The compiled agents for each instance, keyed by agent reference. Entries expire after the agent expiry period in
+     * the same way stored queries do in Elasticsearch, the BooleanAgentInitializer recreating them when required. As
+     * nothing deletes the agents of a snapshot that has been replaced, the number of instances held is also bounded,
+     * the least recently used being dropped first.
+     */
+    private final Cache<String, Map<String, CompiledAgent>> agentsByInstanceId;
+
+    @Autowired
+    public BooleanAgentServicesLuceneImpl(ElasticsearchProperties elasticsearchProperties) {
+        this.agentsByInstanceId = CacheBuilder.newBuilder()
+                .maximumSize(elasticsearchProperties.getBooleanAgentLuceneMaxInstances())
+                .expireAfterWrite(elasticsearchProperties.getAgentExpiry().toStandardDuration().getMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Override
+    public boolean getAvailable() {
+        return true;
+    }
+
+    @Override
+    public BooleanAgentQueryResult query(String instanceId, Collection<MetadataValue> fieldValues) throws Exception {
+        return queryBatch(instanceId, Collections.singletonList(fieldValues)).get(0);
+    }
+
+    @Override
+    public List<BooleanAgentQueryResult> queryBatch(String instanceId, List<? extends Collection<MetadataValue>> fieldValueGroups) throws Exception {
+        Map<String, CompiledAgent> agents = agentsByInstanceId.getIfPresent(instanceId);
+        if (agents == null) {
+            logger.debug("No boolean agents exist for instance {}", instanceId);
+            agents = Collections.emptyMap();
+        }
+
+        List<BooleanAgentQueryResult> results = new ArrayList<>(fieldValueGroups.size());
+        for (Collection<MetadataValue> fieldValues : fieldValueGroups) {
+            BooleanAgentQueryResult booleanAgentQueryResult = new BooleanAgentQueryResultImpl();
+            results.add(booleanAgentQueryResult);
+            if (agents.isEmpty()) {
+                continue;
+            }
+            for (String text : MetadataValue.getStringValues(fieldValues)) {
+                if (!Strings.isNullOrEmpty(text)) {
+                    queryBooleanAgents(agents.values(), text, booleanAgentQueryResult);
+                }
+            }
+        }
+        return results;
+    }
+
+    private void queryBooleanAgents(Collection<CompiledAgent> agents, String textToQuery, BooleanAgentQueryResult booleanAgentQueryResult) {
+        MemoryIndex memoryIndex = memoryIndexes.get();
+        memoryIndex.reset();
+        memoryIndex.addField(contentFieldName, textToQuery, analyzer);
+
+        for (CompiledAgent agent : agents) {
+            if (memoryIndex.search(agent.getQuery()) > 0.0f) {
+                BooleanAgentDocument matchedAgent = agent.createMatch(getHighlightLinks(agent.getQuery(), textToQuery));
+                extractTermsFromBooleanAgentDocument(textToQuery, booleanAgentQueryResult, matchedAgent);
+            }
+        }
+    }
+
+    private Collection<String> getHighlightLinks(Query query, String text) {
+        Highlighter highlighter = new Highlighter(new SimpleHTMLFormatter(getStartTagGuid(), getEndTagGuid()),
+                new QueryScorer(query, contentFieldName));
+        highlighter.setTextFragmenter(new NullFragmenter());
+        highlighter.setMaxDocCharsToAnalyze(Integer.MAX_VALUE);
+        try {
+            String highlightedText = highlighter.getBestFragment(analyzer, contentFieldName, text);
+            if (highlightedText == null) {
+                return Collections.emptyList();
+            }
+            return extractLinksFromHighlightedText(highlightedText).stream().distinct().collect(Collectors.toList());
+        } catch (IOException | InvalidTokenOffsetsException e) {
+            throw new BackEndRequestFailedCpeException(e);
+        }
+    }
+
+    @Override
+    public void create(String instanceId, BooleanAgentDocuments documents) throws CpeException {
+        update(instanceId, documents, Collections.emptyList());
+    }
+
+    @Override
+    public void update(String instanceId, BooleanAgentDocuments documents, Collection<String> removedReferences) throws CpeException {
+        boolean hasDocuments = documents != null && documents.getDocuments() != null && !documents.getDocuments().isEmpty();
+        if (!hasDocuments && removedReferences.isEmpty()) {
+            return;
+        }
+        Map<String, CompiledAgent> compiledAgents = new LinkedHashMap<>();
+        Map<String, CompiledAgent> existingAgents = agentsByInstanceId.getIfPresent(instanceId);
+        if (existingAgents != null) {
+            compiledAgents.putAll(existingAgents);
+        }
+        compiledAgents.keySet().removeAll(removedReferences);
+        if (hasDocuments) {
+            BooleanExpressionParser parser = new BooleanExpressionParser(contentFieldName);
+            try {
+                for (BooleanAgentDocument booleanAgentDocument : documents.getDocuments()) {
+                    Optional<String> booleanRestriction = booleanAgentDocument.getBooleanRestriction().stream().findFirst();
+                    if (booleanRestriction.isPresent()) {
+                        Query query = parser.parse(booleanRestriction.get(), queryFactory);
+                        compiledAgents.put(booleanAgentDocument.getReference(), new CompiledAgent(booleanAgentDocument, query));
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                throw new BackEndRequestFailedCpeException(e);
+            }
+        }
+        // queries in progress keep the map they started with, so they never see a partly updated set of agents.
+        agentsByInstanceId.put(instanceId, Collections.unmodifiableMap(compiledAgents));
+    }
+
+    @Override
+    public Map<String, String> getAgentFingerprints(String instanceId) {
+        Map<String, CompiledAgent> agents = agentsByInstanceId.getIfPresent(instanceId);
+        if (agents == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> fingerprints = new HashMap<>();
+        agents.forEach((reference, agent) -> fingerprints.put(reference, Strings.nullToEmpty(agent.getFingerprint())));
+        return fingerprints;
+    }
+
+    @Override
+    public void delete(String instanceId) {
+        agentsByInstanceId.invalidate(instanceId);
+    }
+
+    @Override
+    public boolean existForInstanceId(String instanceId) {
+        return agentsByInstanceId.getIfPresent(instanceId) != null;
+    }
+
+    @Override
+    public void isValidExpression(String string) {
+        try {
+            new BooleanExpressionParser(contentFieldName).parse(string, queryFactory);
+        } catch (IOException | UncheckedIOException e) {
+            throw new BackEndRequestFailedCpeException(e);
+        }
+    }
+
+    @Override
+    public Collection<Term> doTermGetInfo(String text) {
+        Map<String, Term> terms = new TreeMap<>();
+        try (TokenStream tokenStream = analyzer.tokenStream(contentFieldName, text)) {
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                Term term = terms.computeIfAbsent(termAttribute.toString(), termString -> {
+                    Term newTerm = new Term();
+                    newTerm.setTermString(termString);
+                    newTerm.setDocumentOccurrences(1);
+                    newTerm.setStartPosition(offsetAttribute.startOffset());
+                    newTerm.setLength(offsetAttribute.endOffset() - offsetAttribute.startOffset());
+                    newTerm.setApcmWeight(0);
+                    newTerm.setTermCase(0);
+                    return newTerm;
+                });
+                term.setTotalOccurrences(term.getTotalOccurrences() + 1);
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new BackEndRequestFailedCpeException(e);
+        }
+        return new ArrayList<>(terms.values());
+    }
+
+    @Override
+    public boolean canConnect() {
+        return true;
+    }
+
+    private static class CompiledAgent {
+        private final BooleanAgentDocument agent;
+        private final Query query;
+
+        public CompiledAgent(BooleanAgentDocument agent, Query query) {
+            this.agent = agent;
+            this.query = query;
+        }
+
+        public Query getQuery() {
+            return query;
+        }
+
+        public String getFingerprint() {
+            return agent.getFingerprint();
+        }
+
+        public BooleanAgentDocument createMatch(Collection<String> links) {
+            BooleanAgentDocument match = new BooleanAgentDocument();
+            match.setReference(agent.getReference());
+            match.setBooleanRestriction(agent.getBooleanRestriction());
+            match.setCondition_id(agent.getCondition_id());
+            match.setLexicon_id(agent.getLexicon_id());
+            match.setLexicon_expression_id(agent.getLexicon_expression_id());
+            match.setLinks(links);
+            return match;
+        }
+    }
+}
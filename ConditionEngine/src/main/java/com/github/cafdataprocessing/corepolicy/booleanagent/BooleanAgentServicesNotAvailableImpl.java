@@ -21,6 +21,8 @@ import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocument
 import org.apache.commons.lang3.NotImplementedException;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -36,11 +38,26 @@ public class BooleanAgentServicesNotAvailableImpl implements BooleanAgentService
         throw new NotImplementedException("query is not available");
     }
 
+    @Override
+    public List<BooleanAgentQueryResult> queryBatch(String instanceId, List<? extends Collection<MetadataValue>> fieldValueGroups) throws Exception {
+        throw new NotImplementedException("queryBatch is not available");
+    }
+
     @Override
     public void create(String instanceId, BooleanAgentDocuments documents) throws CpeException {
         throw new NotImplementedException("create is not available");
     }
 
+    @Override
+    public void update(String instanceId, BooleanAgentDocuments documents, Collection<String> removedReferences) throws CpeException {
+        throw new NotImplementedException("update is not available");
+    }
+
+    @Override
+    public Map<String, String> getAgentFingerprints(String instanceId) {
+        throw new NotImplementedException("getAgentFingerprints is not available");
+    }
+
     @Override
     public void delete(String instanceId) {
         throw new NotImplementedException("delete is not available");
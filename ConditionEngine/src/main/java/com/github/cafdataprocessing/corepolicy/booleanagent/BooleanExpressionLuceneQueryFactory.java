@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.booleanagent;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Builds Lucene queries from parsed boolean expressions, mirroring the Elasticsearch queries built by
+ * BooleanExpressionParser so that expressions match the same text when evaluated in process.
+ */
+public class BooleanExpressionLuceneQueryFactory implements BooleanExpressionQueryFactory<Query> {
+    private static final Pattern whitespacePattern = Pattern.compile("\\s+");
+    private static final Pattern wildcardPattern = Pattern.compile("[?*]");
+
+    private final String fieldName;
+    private final Analyzer analyzer;
+
+    public BooleanExpressionLuceneQueryFactory(String fieldName, Analyzer analyzer) {
+        this.fieldName = fieldName;
+        this.analyzer = analyzer;
+    }
+
+    @Override
+    public Query literal(String value) {
+        return phraseQuery(value, 0);
+    }
+
+    @Override
+    public Query wildcardLiteral(String value) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String word : whitespacePattern.split(value.trim())) {
+            Query wordQuery = wildcardPattern.matcher(word).find()
+                    ? new WildcardQuery(new Term(fieldName, word.toLowerCase(Locale.ROOT)))
+                    : phraseQuery(word, 0);
+            builder.add(wordQuery, BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public Query or(List<Query> queries) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        queries.forEach(q -> builder.add(q, BooleanClause.Occur.SHOULD));
+        return builder.build();
+    }
+
+    @Override
+    public Query and(List<Query> queries) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        queries.forEach(q -> builder.add(q, BooleanClause.Occur.MUST));
+        return builder.build();
+    }
+
+    @Override
+    public Query not(Query query) {
+        // A bool query with only a must_not clause matches all other documents in Elasticsearch.
+        return new BooleanQuery.Builder()
+                .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                .add(query, BooleanClause.Occur.MUST_NOT)
+                .build();
+    }
+
+    @Override
+    public Query proximity(String concatenatedLiterals, int distance) {
+        return phraseQuery(concatenatedLiterals, distance);
+    }
+
+    private Query phraseQuery(String text, int slop) {
+        PhraseQuery.Builder builder = new PhraseQuery.Builder();
+        builder.setSlop(slop);
+        Term lastTerm = null;
+        int termCount = 0;
+        try (TokenStream tokenStream = analyzer.tokenStream(fieldName, text)) {
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute positionAttribute = tokenStream.addAttribute(PositionIncrementAttribute.class);
+            tokenStream.reset();
+            int position = -1;
+            while (tokenStream.incrementToken()) {
+                position += positionAttribute.getPositionIncrement();
+                lastTerm = new Term(fieldName, termAttribute.toString());
+                builder.add(lastTerm, position);
+                termCount++;
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (termCount == 0) {
+            // Nothing to match, an empty bool query matches no documents.
+            return new BooleanQuery.Builder().build();
+        }
+        if (termCount == 1) {
+            return new TermQuery(lastTerm);
+        }
+        return builder.build();
+    }
+}
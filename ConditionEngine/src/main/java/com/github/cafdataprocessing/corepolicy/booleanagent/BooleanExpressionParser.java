@@ -34,7 +34,8 @@ import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
 //TODO: Fully implement parsing as per the definitive definition of Verity Universal Search Syntax when it becomes available.
 
 /**
- * A parser that transforms a boolean expression into an Elasticsearch query.
+ * A parser that transforms a boolean expression into an Elasticsearch query, or into any other kind of query through
+ * a BooleanExpressionQueryFactory.
  * It is a recursive descent parser, implementing a recursive version of the Shunting Yard algorithm
  * to transform the infix input expression format into a query tree.
  * The parser expects boolean expressions conforming to the syntax defined by the following EBNF grammar:
@@ -80,14 +81,20 @@ public class BooleanExpressionParser {
     }
 
     public QueryBuilder parse(String expression) throws IOException {
+        return parse(expression, new ElasticsearchQueryFactory(literalFieldName));
+    }
+
+    public <Q> Q parse(String expression, BooleanExpressionQueryFactory<Q> queryFactory) throws IOException {
         if (expression == null) {
             return null;
         }
         this.tokenizer = new BooleanExpressionTokenizer(expression);
+        operators.clear();
+        operands.clear();
         operators.push(SENTINEL);
         parseExpression();
         expect(BooleanExpressionTokenizer.END);
-        return operands.peek().getQuery();
+        return operands.peek().buildQuery(queryFactory);
     }
 
     private void expect(BooleanExpressionTokenizer.Token token) throws IOException{
@@ -180,7 +187,6 @@ public class BooleanExpressionParser {
     private class Node {
         private BooleanExpressionTokenizer.Token token;
         private List<Node> childNodes = new ArrayList<>();
-        private QueryBuilder query;
 
         public Node(BooleanExpressionTokenizer.Token token, Node... children) {
             this.token = token;
@@ -189,40 +195,28 @@ public class BooleanExpressionParser {
             }
         }
 
-        public QueryBuilder getQuery() {
-            if (query == null) {
-                buildQuery();
-            }
-            return query;
+        private <Q> List<Q> buildChildQueries(BooleanExpressionQueryFactory<Q> queryFactory) {
+            return childNodes.stream().map(n -> n.buildQuery(queryFactory)).collect(Collectors.toList());
         }
 
-        private void buildQuery() {
+        public <Q> Q buildQuery(BooleanExpressionQueryFactory<Q> queryFactory) {
             if (token instanceof BooleanExpressionTokenizer.WildcardLiteral) {
-                this.query = queryStringQuery(((BooleanExpressionTokenizer.Literal) token).getValue()).analyzeWildcard(true);
-                return;
+                return queryFactory.wildcardLiteral(((BooleanExpressionTokenizer.Literal) token).getValue());
             }
             if (token instanceof BooleanExpressionTokenizer.Literal) {
-                this.query = matchPhraseQuery(literalFieldName, ((BooleanExpressionTokenizer.Literal) token).getValue());
-                return;
+                return queryFactory.literal(((BooleanExpressionTokenizer.Literal) token).getValue());
             }
             if (token instanceof BooleanExpressionTokenizer.Or) {
-                BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
-                childNodes.forEach(n -> boolQuery.should(n.getQuery()));
-                this.query = boolQuery;
-                return;
+                return queryFactory.or(buildChildQueries(queryFactory));
             }
             if (token instanceof BooleanExpressionTokenizer.And) {
-                BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
-                childNodes.forEach(n -> boolQuery.must(n.getQuery()));
-                this.query = boolQuery;
-                return;
+                return queryFactory.and(buildChildQueries(queryFactory));
             }
             if (token instanceof BooleanExpressionTokenizer.Not) {
                 if (childNodes.size() != 1) {
                     throw new RuntimeException("Encountered a \"not\" operator that does not have exactly one operand.");
                 }
-                this.query = QueryBuilders.boolQuery().mustNot(childNodes.get(0).getQuery());
-                return;
+                return queryFactory.not(childNodes.get(0).buildQuery(queryFactory));
             }
             if (token instanceof BooleanExpressionTokenizer.Proximity) {
                 if (childNodes.stream().anyMatch(n -> !(n.token instanceof BooleanExpressionTokenizer.Literal))) {
@@ -232,12 +226,53 @@ public class BooleanExpressionParser {
                         .stream()
                         .map(n -> ((BooleanExpressionTokenizer.Literal)n.token).getValue())
                         .collect(Collectors.joining(" "));
-                this.query = matchPhraseQuery(literalFieldName, concatenatedLiterals).slop(((BooleanExpressionTokenizer.Proximity) token).getDistance());
-                return;
+                return queryFactory.proximity(concatenatedLiterals, ((BooleanExpressionTokenizer.Proximity) token).getDistance());
             }
             String error = MessageFormat.format("Query building found an unexpected token. Expected \"literal\", \"or\", \"and\", \"not\", or \"proximity\" but encountered \"{0}\".",
                     token.getClass().getSimpleName().toLowerCase());
             throw new RuntimeException(error);
         }
     }
+
+    private static class ElasticsearchQueryFactory implements BooleanExpressionQueryFactory<QueryBuilder> {
+        private final String literalFieldName;
+
+        public ElasticsearchQueryFactory(String literalFieldName) {
+            this.literalFieldName = literalFieldName;
+        }
+
+        @Override
+        public QueryBuilder literal(String value) {
+            return matchPhraseQuery(literalFieldName, value);
+        }
+
+        @Override
+        public QueryBuilder wildcardLiteral(String value) {
+            return queryStringQuery(value).analyzeWildcard(true);
+        }
+
+        @Override
+        public QueryBuilder or(List<QueryBuilder> queries) {
+            BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
+            queries.forEach(boolQuery::should);
+            return boolQuery;
+        }
+
+        @Override
+        public QueryBuilder and(List<QueryBuilder> queries) {
+            BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
+            queries.forEach(boolQuery::must);
+            return boolQuery;
+        }
+
+        @Override
+        public QueryBuilder not(QueryBuilder query) {
+            return QueryBuilders.boolQuery().mustNot(query);
+        }
+
+        @Override
+        public QueryBuilder proximity(String concatenatedLiterals, int distance) {
+            return matchPhraseQuery(literalFieldName, concatenatedLiterals).slop(distance);
+        }
+    }
 }
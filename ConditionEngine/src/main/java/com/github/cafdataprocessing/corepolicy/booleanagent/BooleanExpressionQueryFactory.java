@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.booleanagent;
+
+import java.util.List;
+
+/**
+ * Creates the queries for the nodes of a boolean expression parsed by BooleanExpressionParser, allowing the same
+ * expression to be built into queries for different search engines.
+ * @param <Q> the type of query created
+ */
+public interface BooleanExpressionQueryFactory<Q> {
+    /**
+     * @param value one or more words which must appear as a phrase
+     */
+    Q literal(String value);
+
+    /**
+     * @param value one or more words, at least one of which contains the wildcard characters '*' or '?'
+     */
+    Q wildcardLiteral(String value);
+
+    Q or(List<Q> queries);
+
+    Q and(List<Q> queries);
+
+    Q not(Q query);
+
+    /**
+     * @param concatenatedLiterals the words which must appear within the given distance of each other
+     * @param distance the maximum number of positions the words may be moved to match
+     */
+    Q proximity(String concatenatedLiterals, int distance);
+}
@@ -17,6 +17,8 @@ package com.github.cafdataprocessing.corepolicy.booleanagent;
 
 import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TextCondition;
+import com.github.cafdataprocessing.corepolicy.common.shared.FingerprintGenerator;
+import com.github.cafdataprocessing.corepolicy.common.shared.Sha1FingerprintGenerator;
 import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocument;
 import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocuments;
 import org.springframework.stereotype.Component;
@@ -30,6 +32,8 @@ import java.util.Collection;
  */
 @Component
 public class ConditionToBooleanAgentConverterImpl implements ConditionToBooleanAgentConverter {
+    private final FingerprintGenerator fingerprintGenerator = new Sha1FingerprintGenerator();
+
     @Override
     public BooleanAgentDocuments convert(Collection<TextCondition> contentExpressionConditions, Collection<LexiconExpression> lexiconExpressions) {
         BooleanAgentDocuments addToTextIndexDocuments = new BooleanAgentDocuments();
@@ -42,6 +46,7 @@ public class ConditionToBooleanAgentConverterImpl implements ConditionToBooleanA
                 document.setReference(String.valueOf(contentExpressionCondition.id));
                 document.setBooleanRestriction(Arrays.asList(String.valueOf(contentExpressionCondition.value)));
                 document.setCondition_id(Arrays.asList(String.valueOf(contentExpressionCondition.id)));
+                document.setFingerprint(getFingerprint(document));
                 documents.add(document);
             }
         }
@@ -53,10 +58,16 @@ public class ConditionToBooleanAgentConverterImpl implements ConditionToBooleanA
                 document.setBooleanRestriction(Arrays.asList(String.valueOf(lexiconExpression.expression)));
                 document.setLexicon_id(Arrays.asList(String.valueOf(lexiconExpression.lexiconId)));
                 document.setLexicon_expression_id(Arrays.asList(String.valueOf(lexiconExpression.id)));
+                document.setFingerprint(getFingerprint(document));
                 documents.add(document);
             }
         }
 
         return addToTextIndexDocuments;
     }
+
+    private String getFingerprint(BooleanAgentDocument document) {
+        // the reference tells condition agents from lexicon expression agents, as only the latter contain '_'.
+        return fingerprintGenerator.generate(document.getReference() + "\n" + String.join("\n", document.getBooleanRestriction()));
+    }
 }
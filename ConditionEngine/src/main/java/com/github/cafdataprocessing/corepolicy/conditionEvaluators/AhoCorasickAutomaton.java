@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over a fixed set of literal patterns. A single pass over a text reports every occurrence of
+ * every pattern, including overlapping occurrences, in order of the position they end at.
+ */
+final class AhoCorasickAutomaton {
+
+    /**
+     * Receives the occurrences found by a scan.
+     */
+    interface MatchListener {
+        /**
+         * @param patternIndex the index of the pattern in the list the automaton was built from
+         * @param endIndex the index of the last character of the occurrence in the text
+         */
+        void onMatch(int patternIndex, int endIndex);
+    }
+
+    private static final int[] NO_OUTPUTS = new int[0];
+
+    // Per state: sorted transition characters with their target states, the failure state, the patterns ending at
+    // the state and the nearest state on the failure chain which has patterns ending at it.
+    private final char[][] transitionCharacters;
+    private final int[][] transitionTargets;
+    private final int[] failures;
+    private final int[][] outputs;
+    private final int[] outputLinks;
+
+    AhoCorasickAutomaton(List<String> patterns) {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> trieOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        trieOutputs.add(new ArrayList<>());
+
+        for (int patternIndex = 0; patternIndex < patterns.size(); patternIndex++) {
+            String pattern = patterns.get(patternIndex);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = trie.get(state).get(pattern.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    trieOutputs.add(new ArrayList<>());
+                    trie.get(state).put(pattern.charAt(i), next);
+                }
+                state = next;
+            }
+            if (state != 0) {
+                trieOutputs.get(state).add(patternIndex);
+            }
+        }
+
+        int stateCount = trie.size();
+        transitionCharacters = new char[stateCount][];
+        transitionTargets = new int[stateCount][];
+        outputs = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            Map<Character, Integer> transitions = trie.get(state);
+            transitionCharacters[state] = new char[transitions.size()];
+            transitionTargets[state] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                transitionCharacters[state][i] = transition.getKey();
+                transitionTargets[state][i] = transition.getValue();
+                i++;
+            }
+            List<Integer> stateOutputs = trieOutputs.get(state);
+            outputs[state] = stateOutputs.isEmpty() ? NO_OUTPUTS : stateOutputs.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        failures = new int[stateCount];
+        outputLinks = new int[stateCount];
+        outputLinks[0] = -1;
+        Deque<Integer> pending = new ArrayDeque<>();
+        for (int child : transitionTargets[0]) {
+            failures[child] = 0;
+            outputLinks[child] = -1;
+            pending.add(child);
+        }
+        while (!pending.isEmpty()) {
+            int state = pending.poll();
+            for (int i = 0; i < transitionCharacters[state].length; i++) {
+                char c = transitionCharacters[state][i];
+                int child = transitionTargets[state][i];
+                int failure = failures[state];
+                int next;
+                while ((next = getTransition(failure, c)) < 0 && failure != 0) {
+                    failure = failures[failure];
+                }
+                failures[child] = next < 0 ? 0 : next;
+                outputLinks[child] = outputs[failures[child]].length > 0 ? failures[child] : outputLinks[failures[child]];
+                pending.add(child);
+            }
+        }
+    }
+
+    /**
+     * Reports every occurrence of the patterns in the text to the listener.
+     */
+    void scan(CharSequence text, MatchListener listener) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = getTransition(state, c)) < 0 && state != 0) {
+                state = failures[state];
+            }
+            state = next < 0 ? 0 : next;
+            for (int outputState = outputs[state].length > 0 ? state : outputLinks[state]; outputState >= 0;
+                 outputState = outputLinks[outputState]) {
+                for (int patternIndex : outputs[outputState]) {
+                    listener.onMatch(patternIndex, i);
+                }
+            }
+        }
+    }
+
+    private int getTransition(int state, char c) {
+        int i = Arrays.binarySearch(transitionCharacters[state], c);
+        return i < 0 ? -1 : transitionTargets[state][i];
+    }
+}
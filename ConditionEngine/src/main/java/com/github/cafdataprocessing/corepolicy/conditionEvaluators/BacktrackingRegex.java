@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.MatcherWithTimeout;
+
+import java.util.regex.Pattern;
+
+/**
+ * Regular expression run with java.util.regex.
+ */
+final class BacktrackingRegex implements CompiledRegex {
+    private final Pattern pattern;
+
+    BacktrackingRegex(Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    @Override
+    public String getExpression() {
+        return pattern.pattern();
+    }
+
+    @Override
+    public RegexEngine getEngine() {
+        return RegexEngine.BACKTRACKING;
+    }
+
+    @Override
+    public RegexMatcher matcher(CharSequence input, int timeoutSeconds) {
+        MatcherWithTimeout matcher = new MatcherWithTimeout(pattern, input, timeoutSeconds);
+        return new RegexMatcher() {
+            @Override
+            public boolean find() {
+                return matcher.find();
+            }
+
+            @Override
+            public String group() {
+                return matcher.group();
+            }
+
+            @Override
+            public int start() {
+                return matcher.getMatcher().start();
+            }
+        };
+    }
+}
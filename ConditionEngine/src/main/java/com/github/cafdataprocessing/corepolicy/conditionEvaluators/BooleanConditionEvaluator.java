@@ -43,10 +43,12 @@ class BooleanConditionEvaluator extends ConditionEvaluatorBase<BooleanCondition>
     private final static Logger logger = LoggerFactory.getLogger(BooleanConditionEvaluator.class);
 
     private EvaluateCondition evaluateCondition;
+    private ConditionCostModel conditionCostModel;
 
     @Autowired
-    public BooleanConditionEvaluator(EvaluateCondition evaluateCondition){
+    public BooleanConditionEvaluator(EvaluateCondition evaluateCondition, ConditionCostModel conditionCostModel){
         this.evaluateCondition = evaluateCondition;
+        this.conditionCostModel = conditionCostModel;
     }
 
     @Override
@@ -76,9 +78,20 @@ class BooleanConditionEvaluator extends ConditionEvaluatorBase<BooleanCondition>
 
         boolean foundMatch = false;
 
+        // Unless every child has to be evaluated for reporting, the children most likely to settle the result cheaply
+        // are evaluated first. The match is the same in any order, though fewer children may be reported as unmatched.
+        boolean reorder = conditionCostModel.isEnabled() && conditions.size() > 1
+                && collectionSequence != null && !collectionSequence.fullConditionEvaluation;
+        Collection<Condition> evaluationOrder = reorder ? conditionCostModel.order(operator, conditions, environmentSnapshot) : conditions;
+
         //loop through each condition and evaluate
-        for(Condition containedCondition : conditions){
+        for(Condition containedCondition : evaluationOrder){
+            boolean evaluatedThisRun = containedCondition.id != null && Boolean.TRUE.equals(document.hasConditionBeenEvaluatedThisRun(containedCondition.id));
+            long startNanos = System.nanoTime();
             ConditionEvaluationResult containedConditionResult = evaluateCondition.evaluate(collectionSequence, document, containedCondition, environmentSnapshot);
+            if(conditionCostModel.isEnabled() && !evaluatedThisRun && containedConditionResult.getUnevaluatedConditions().isEmpty()){
+                conditionCostModel.record(containedCondition, System.nanoTime() - startNanos, containedConditionResult.isMatch());
+            }
 
 			// Regardless of whether its a match or not, record any unevaluated / unmatched conditions
             unmatchedConditions.addAll(containedConditionResult.getUnmatchedConditions());
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanOperator;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Estimates the cost and outcome of evaluating conditions, so the children of a boolean condition can be evaluated
+ * in the order most likely to settle its result cheaply.
+ */
+public interface ConditionCostModel {
+    /**
+     * Whether boolean conditions should evaluate their children in the order returned by {@link #order}.
+     */
+    boolean isEnabled();
+
+    /**
+     * Orders the children of a boolean condition so that those which are cheap and likely to settle the result come
+     * first, an AND settling on a child which does not match and an OR on a child which does. Children with the same
+     * rank keep their stored order.
+     * @param operator the operator of the boolean condition
+     * @param children the children in their stored order
+     * @param environmentSnapshot the snapshot the children belong to
+     * @return the children in the order to evaluate them
+     */
+    List<Condition> order(BooleanOperator operator, Collection<Condition> children, EnvironmentSnapshot environmentSnapshot);
+
+    /**
+     * Records an evaluation of a condition, refining its estimated cost and match rate.
+     * @param condition the condition evaluated
+     * @param nanos how long the evaluation took
+     * @param match whether the condition matched
+     */
+    void record(Condition condition, long nanos, boolean match);
+}
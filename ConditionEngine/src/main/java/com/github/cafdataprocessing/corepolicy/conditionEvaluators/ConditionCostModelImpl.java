@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanOperator;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.FragmentCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.NotCondition;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranks conditions by their expected cost per evaluation which settles a boolean condition. The cost of a condition
+ * starts from a fixed estimate for its type and, once it has been evaluated often enough, is taken from the observed
+ * average along with its observed match rate.
+ */
+@Component
+@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+public class ConditionCostModelImpl implements ConditionCostModel {
+    private final static Logger logger = LoggerFactory.getLogger(ConditionCostModelImpl.class);
+    // Observations needed before they replace the estimates for a condition.
+    private final static long minimumObservations = 20;
+    private final static double defaultMatchRate = 0.5;
+    // Keeps a condition which always or never matches ahead of more expensive ones without ranking it as free.
+    private final static double minimumSettleRate = 0.01;
+    private final static int maximumDepth = 8;
+    private final static int maximumConditionStatistics = 100000;
+
+    private final boolean enabled;
+    private final Cache<Long, ConditionStatistics> statistics = CacheBuilder.newBuilder()
+            .maximumSize(maximumConditionStatistics)
+            .build();
+
+    @Autowired
+    public ConditionCostModelImpl(EngineProperties engineProperties){
+        boolean orderingEnabled = false;
+        try {
+            orderingEnabled = engineProperties.getConditionOrderingEnabled();
+        } catch (Exception e) {
+            logger.warn("Problem loading condition ordering setting from config, boolean conditions are evaluated in stored order.", e);
+        }
+        this.enabled = orderingEnabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public List<Condition> order(BooleanOperator operator, Collection<Condition> children, EnvironmentSnapshot environmentSnapshot) {
+        Map<Condition, Double> ranks = new IdentityHashMap<>();
+        for (Condition child : children) {
+            double matchRate = getMatchRate(child);
+            double settleRate = operator == BooleanOperator.AND ? 1 - matchRate : matchRate;
+            ranks.put(child, getCost(child, environmentSnapshot, 0) / Math.max(settleRate, minimumSettleRate));
+        }
+        List<Condition> ordered = new ArrayList<>(children);
+        // The sort is stable, so children without any difference between them keep their stored order.
+        ordered.sort(Comparator.comparing(ranks::get));
+        return ordered;
+    }
+
+    @Override
+    public void record(Condition condition, long nanos, boolean match) {
+        if (condition.id == null) {
+            return;
+        }
+        ConditionStatistics conditionStatistics = statistics.asMap().computeIfAbsent(condition.id, id -> new ConditionStatistics());
+        conditionStatistics.add(nanos, match);
+    }
+
+    private double getCost(Condition condition, EnvironmentSnapshot environmentSnapshot, int depth) {
+        ConditionStatistics conditionStatistics = condition.id == null ? null : statistics.getIfPresent(condition.id);
+        if (conditionStatistics != null && conditionStatistics.getCount() >= minimumObservations) {
+            return conditionStatistics.getAverageNanos();
+        }
+        return getEstimatedCost(condition, environmentSnapshot, depth);
+    }
+
+    private double getMatchRate(Condition condition) {
+        ConditionStatistics conditionStatistics = condition.id == null ? null : statistics.getIfPresent(condition.id);
+        if (conditionStatistics != null && conditionStatistics.getCount() >= minimumObservations) {
+            return conditionStatistics.getMatchRate();
+        }
+        return defaultMatchRate;
+    }
+
+    /**
+     * The fixed estimate of the cost in nanoseconds of evaluating a condition of its type, a boolean condition costing
+     * as much as all of its children.
+     */
+    private double getEstimatedCost(Condition condition, EnvironmentSnapshot environmentSnapshot, int depth) {
+        if (condition.conditionType == null || depth > maximumDepth) {
+            return 10000;
+        }
+        switch (condition.conditionType) {
+            case EXISTS:
+                return 500;
+            case NUMBER:
+            case STRING:
+                return 1000;
+            case DATE:
+                return 5000;
+            case REGEX:
+                return 20000;
+            case LEXICON:
+                return 100000;
+            case TEXT:
+                // A query against the boolean agent, which is usually a round trip to Elasticsearch.
+                return 2000000;
+            default:
+                break;
+        }
+        if (condition instanceof NotCondition) {
+            Condition child = ((NotCondition) condition).condition;
+            return child == null ? 0 : getCost(child, environmentSnapshot, depth + 1);
+        }
+        if (condition instanceof FragmentCondition) {
+            Long target = ((FragmentCondition) condition).value;
+            Condition targetCondition = target == null ? null : environmentSnapshot.getCondition(target);
+            return targetCondition == null ? 0 : getCost(targetCondition, environmentSnapshot, depth + 1);
+        }
+        if (condition instanceof BooleanCondition) {
+            Collection<Condition> children = ((BooleanCondition) condition).children;
+            double cost = 0;
+            if (children != null) {
+                for (Condition child : children) {
+                    cost += getCost(child, environmentSnapshot, depth + 1);
+                }
+            }
+            return cost;
+        }
+        return 10000;
+    }
+
+    private static final class ConditionStatistics {
+        private long count;
+        private long matches;
+        private long totalNanos;
+
+        synchronized void add(long nanos, boolean match) {
+            count++;
+            totalNanos += nanos;
+            if (match) {
+                matches++;
+            }
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized double getAverageNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        synchronized double getMatchRate() {
+            return count == 0 ? defaultMatchRate : (double) matches / count;
+        }
+    }
+}
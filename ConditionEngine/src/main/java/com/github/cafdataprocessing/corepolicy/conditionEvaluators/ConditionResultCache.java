@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.FieldCondition;
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Engine wide cache of field condition results, so documents which repeat the same field values do not evaluate the
+ * same conditions on them again. Results are keyed by the snapshot fingerprint, the condition fingerprint and a hash
+ * of the field values the condition was evaluated against.
+ */
+public interface ConditionResultCache {
+    /**
+     * Gets the key for the result of a condition on the field values, or null if the result cannot be cached, such as
+     * when the cache is disabled, the snapshot or condition has no fingerprint or the values include streams.
+     */
+    Key getKey(EnvironmentSnapshot environmentSnapshot, FieldCondition condition, Collection<MetadataValue> fieldValues);
+
+    /**
+     * @return the result held for the key, or null if there is none.
+     */
+    Result get(Key key);
+
+    void put(Key key, Result result);
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    /**
+     * Counts the times the results of a snapshot were discarded because a newer snapshot of its collection
+     * sequence was evaluated.
+     */
+    long getFlushCount();
+
+    long getSize();
+
+    /**
+     * Identifies the result of a condition on a set of field values within a snapshot.
+     */
+    final class Key {
+        final String snapshotFingerprint;
+        final String conditionFingerprint;
+        final HashCode valuesHash;
+
+        Key(String snapshotFingerprint, String conditionFingerprint, HashCode valuesHash) {
+            this.snapshotFingerprint = snapshotFingerprint;
+            this.conditionFingerprint = conditionFingerprint;
+            this.valuesHash = valuesHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return snapshotFingerprint.equals(key.snapshotFingerprint)
+                    && conditionFingerprint.equals(key.conditionFingerprint)
+                    && valuesHash.equals(key.valuesHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(snapshotFingerprint, conditionFingerprint, valuesHash);
+        }
+    }
+
+    /**
+     * Whether the condition matched and the terms it matched on.
+     */
+    final class Result {
+        private final boolean match;
+        private final Collection<String> terms;
+
+        public Result(boolean match, Collection<String> terms) {
+            this.match = match;
+            this.terms = terms == null ? ImmutableList.of() : ImmutableList.copyOf(terms);
+        }
+
+        public boolean isMatch() {
+            return match;
+        }
+
+        public Collection<String> getTerms() {
+            return terms;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.FieldCondition;
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds field condition results in memory, bounded by their approximate size in characters. The results of a
+ * snapshot are discarded once a newer snapshot of the same collection sequence is evaluated. Requests still evaluating
+ * against an older snapshot neither flush nor replace the newest one, so they cannot make the cache flush repeatedly.
+ */
+@Component
+@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+public class ConditionResultCacheImpl implements ConditionResultCache {
+    private final static Logger logger = LoggerFactory.getLogger(ConditionResultCacheImpl.class);
+    private final static HashFunction valuesHashFunction = Hashing.murmur3_128();
+    // Approximate size of a key and result excluding their strings.
+    private final static int entryOverhead = 128;
+
+    private final Cache<Key, Result> results;
+    private final Map<Long, SnapshotVersion> latestSnapshots = new ConcurrentHashMap<>();
+    private final AtomicLong flushCount = new AtomicLong();
+
+    @Autowired
+    public ConditionResultCacheImpl(EngineProperties engineProperties){
+        boolean enabled = false;
+        long maxWeight = 0;
+        try {
+            enabled = engineProperties.getConditionResultCacheEnabled();
+            Long configuredMaxWeight = engineProperties.getConditionResultCacheMaxWeight();
+            maxWeight = configuredMaxWeight == null ? 0 : configuredMaxWeight;
+        } catch (Exception e) {
+            logger.warn("Problem loading condition result cache settings from config, the cache is disabled.", e);
+        }
+
+        this.results = enabled && maxWeight > 0
+                ? CacheBuilder.newBuilder()
+                    .maximumWeight(maxWeight)
+                    .weigher(ConditionResultCacheImpl::weigh)
+                    .recordStats()
+                    .build()
+                : null;
+    }
+
+    @Override
+    public Key getKey(EnvironmentSnapshot environmentSnapshot, FieldCondition condition, Collection<MetadataValue> fieldValues) {
+        if (results == null || environmentSnapshot.getFingerprint() == null || condition.fingerprint == null) {
+            return null;
+        }
+
+        Hasher hasher = valuesHashFunction.newHasher();
+        hasher.putInt(fieldValues.size());
+        for (MetadataValue fieldValue : fieldValues) {
+            // Reading a stream to hash it would consume it before the condition is evaluated.
+            if (fieldValue.isHasStream()) {
+                return null;
+            }
+            String value = fieldValue.getStringValue();
+            if (value == null) {
+                hasher.putInt(-1);
+            } else {
+                hasher.putInt(value.length()).putUnencodedChars(value);
+            }
+        }
+
+        flushIfReplaced(environmentSnapshot);
+        return new Key(environmentSnapshot.getFingerprint(), condition.fingerprint, hasher.hash());
+    }
+
+    @Override
+    public Result get(Key key) {
+        return results.getIfPresent(key);
+    }
+
+    @Override
+    public void put(Key key, Result result) {
+        results.put(key, result);
+    }
+
+    @Override
+    public long getHitCount() {
+        return results == null ? 0 : results.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return results == null ? 0 : results.stats().missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return results == null ? 0 : results.stats().evictionCount();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    @Override
+    public long getSize() {
+        return results == null ? 0 : results.size();
+    }
+
+    private void flushIfReplaced(EnvironmentSnapshot environmentSnapshot) {
+        Long sequenceId = environmentSnapshot.getCollectionSequenceId();
+        if (sequenceId == null) {
+            return;
+        }
+        SnapshotVersion snapshotVersion = new SnapshotVersion(environmentSnapshot);
+        SnapshotVersion latest = latestSnapshots.get(sequenceId);
+        if (latest != null && !snapshotVersion.isNewerThan(latest)) {
+            return;
+        }
+        SnapshotVersion[] replaced = new SnapshotVersion[1];
+        latestSnapshots.compute(sequenceId, (id, current) -> {
+            if (current != null && !snapshotVersion.isNewerThan(current)) {
+                return current;
+            }
+            replaced[0] = current;
+            return snapshotVersion;
+        });
+        if (replaced[0] != null) {
+            String previousFingerprint = replaced[0].fingerprint;
+            logger.debug("Flushing condition results of snapshot with fingerprint: " + previousFingerprint);
+            results.asMap().keySet().removeIf(key -> key.snapshotFingerprint.equals(previousFingerprint));
+            flushCount.incrementAndGet();
+        }
+    }
+
+    private static int weigh(Key key, Result result) {
+        long weight = entryOverhead + key.snapshotFingerprint.length() + key.conditionFingerprint.length();
+        for (String term : result.getTerms()) {
+            weight += term.length();
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private static class SnapshotVersion {
+        private final String fingerprint;
+        private final DateTime lastModifiedDate;
+
+        SnapshotVersion(EnvironmentSnapshot environmentSnapshot) {
+            this.fingerprint = environmentSnapshot.getFingerprint();
+            this.lastModifiedDate = environmentSnapshot.getCollectionSequenceLastModifiedDate();
+        }
+
+        /**
+         * A snapshot without a last modified date cannot be ordered, so is never taken to be newer than another.
+         */
+        boolean isNewerThan(SnapshotVersion other) {
+            return !fingerprint.equals(other.fingerprint)
+                    && lastModifiedDate != null
+                    && (other.lastModifiedDate == null || lastModifiedDate.isAfter(other.lastModifiedDate));
+        }
+    }
+}
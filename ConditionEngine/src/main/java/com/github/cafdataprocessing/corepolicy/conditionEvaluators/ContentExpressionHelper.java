@@ -18,10 +18,15 @@ package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
 import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
 import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentQueryResult;
-import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 import com.github.cafdataprocessing.corepolicy.common.IsoToLanguageEnumConverter;
 import com.github.cafdataprocessing.corepolicy.common.LanguagesEnum;
-import com.github.cafdataprocessing.corepolicy.common.MatcherWithTimeout;
+import com.github.cafdataprocessing.corepolicy.common.dto.FieldLabel;
+import com.github.cafdataprocessing.corepolicy.common.dto.Lexicon;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionType;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.LexiconCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TextCondition;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
@@ -29,9 +34,16 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -41,62 +53,118 @@ import java.util.stream.Collectors;
 @Component
 public class ContentExpressionHelper {
     private RegexMatcherFactory matcherFactory;
-    private final EngineProperties engineProperties;
+    private final RegexExecutionService regexExecutionService;
 
     @Autowired
     public ContentExpressionHelper(RegexMatcherFactory matcherFactory,
-                                   EngineProperties engineProperties){
+                                   RegexExecutionService regexExecutionService){
         this.matcherFactory = matcherFactory;
-        this.engineProperties = engineProperties;
+        this.regexExecutionService = regexExecutionService;
     }
 
     public BooleanAgentQueryResult handleBooleanAgentExpression(String instanceId, BooleanAgentServices booleanAgentServices,
                                                                 DocumentUnderEvaluation document, String fieldName,
                                                                 String languageCode) throws CpeException {
 
-        LanguagesEnum languagesEnum = null;
-        if(languageCode!=null){
-            languagesEnum = IsoToLanguageEnumConverter.convert(languageCode.toLowerCase());
-        }
-        final LanguagesEnum finalLanguagesEnum = languagesEnum;
-
-        final Collection<MetadataValue> returnedFieldValues = getFieldValues(document, fieldName).stream().
-                filter(fv -> isValidForLanguage(finalLanguagesEnum, fv)).collect(Collectors.toList());
+        LanguagesEnum languagesEnum = getLanguage(languageCode);
 
-        BooleanAgentQueryResult booleanAgentQueryResult;
-        if(languagesEnum == null){
-            booleanAgentQueryResult = document.getBooleanAgentQueryResult(fieldName);
-        } else {
-            booleanAgentQueryResult = document.getBooleanAgentQueryResult(fieldName, languagesEnum);
-        }
+        BooleanAgentQueryResult booleanAgentQueryResult = getBooleanAgentQueryResult(document, fieldName, languagesEnum);
 
         if(booleanAgentQueryResult == null){
+            final Collection<MetadataValue> returnedFieldValues = filterForLanguage(getFieldValues(document, fieldName), languagesEnum);
             try {
                 booleanAgentQueryResult = booleanAgentServices.query(instanceId, returnedFieldValues);
             }
             catch (Exception e) {
                 throw new BackEndRequestFailedCpeException(e);
             }
-            if(languagesEnum == null){
-                document.addBooleanAgentQueryResult(fieldName, booleanAgentQueryResult);
-            } else {
-                document.addBooleanAgentQueryResult(fieldName, languagesEnum, booleanAgentQueryResult);
-            }
+            addBooleanAgentQueryResult(document, fieldName, languagesEnum, booleanAgentQueryResult);
         }
 
         return booleanAgentQueryResult;
     }
 
+    /**
+     * Queries the boolean agent services once for every field and language referenced by the text and lexicon
+     * conditions of the snapshot, across all of the supplied document trees. The results are stored on each document
+     * so that later calls to handleBooleanAgentExpression for those fields do not issue any further requests.
+     */
+    public void prefetchBooleanAgentExpressions(EnvironmentSnapshot environmentSnapshot, BooleanAgentServices booleanAgentServices,
+                                                Collection<DocumentUnderEvaluation> documents) throws CpeException {
+        if(!booleanAgentServices.getAvailable()){
+            return;
+        }
+
+        // only the fields some document in the trees carries are considered, rather than every boolean agent field in
+        // the snapshot, and each document only for the fields it carries itself.
+        List<DocumentUnderEvaluation> allDocuments = new ArrayList<>();
+        Set<String> carriedFields = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        Deque<DocumentUnderEvaluation> documentsToVisit = new ArrayDeque<>(documents);
+        while(!documentsToVisit.isEmpty()){
+            DocumentUnderEvaluation document = documentsToVisit.pop();
+            documentsToVisit.addAll(document.getDocuments());
+            allDocuments.add(document);
+            carriedFields.addAll(document.getMetadata().keySet());
+            carriedFields.addAll(document.getStreams().keySet());
+        }
+
+        Set<FieldLanguage> fieldLanguages = getBooleanAgentFieldLanguages(environmentSnapshot);
+        fieldLanguages.removeIf(fl -> !isCarried(environmentSnapshot, fl.fieldName, carriedFields::contains));
+        if(fieldLanguages.isEmpty()){
+            return;
+        }
+
+        List<PendingBooleanAgentQuery> pendingQueries = new ArrayList<>();
+        for(DocumentUnderEvaluation document : allDocuments){
+            Predicate<String> carriedByDocument = field -> document.getMetadata().containsKey(field)
+                    || document.getStreams().containsKey(field);
+
+            for(FieldLanguage fieldLanguage : fieldLanguages){
+                if(!document.hasLabelValues(fieldLanguage.fieldName)
+                        && !isCarried(environmentSnapshot, fieldLanguage.fieldName, carriedByDocument)){
+                    continue;
+                }
+                if(getBooleanAgentQueryResult(document, fieldLanguage.fieldName, fieldLanguage.language) != null){
+                    continue;
+                }
+                Collection<MetadataValue> fieldValues = filterForLanguage(
+                        getResolvedFieldValues(environmentSnapshot, document, fieldLanguage.fieldName), fieldLanguage.language);
+                if(!fieldValues.isEmpty()){
+                    pendingQueries.add(new PendingBooleanAgentQuery(document, fieldLanguage, fieldValues));
+                }
+            }
+        }
+
+        if(pendingQueries.isEmpty()){
+            return;
+        }
+
+        List<BooleanAgentQueryResult> results;
+        try {
+            results = booleanAgentServices.queryBatch(environmentSnapshot.getInstanceId(),
+                    pendingQueries.stream().map(q -> q.fieldValues).collect(Collectors.toList()));
+        }
+        catch (Exception e) {
+            throw new BackEndRequestFailedCpeException(e);
+        }
+
+        for(int i = 0; i < pendingQueries.size(); i++){
+            PendingBooleanAgentQuery pendingQuery = pendingQueries.get(i);
+            addBooleanAgentQueryResult(pendingQuery.document, pendingQuery.fieldLanguage.fieldName,
+                    pendingQuery.fieldLanguage.language, results.get(i));
+        }
+    }
+
     public Collection<String> handleRegexExpression(DocumentUnderEvaluation document, String fieldName, String expression)
             throws CpeException {
-        Pattern pattern = matcherFactory.getPattern(expression);
-        HashSet<String> matchedStrings = new HashSet<>();
+        return handleRegexExpression(document, fieldName, matcherFactory.getRegex(expression));
+    }
 
+    public Collection<String> handleRegexExpression(DocumentUnderEvaluation document, String fieldName, CompiledRegex regex)
+            throws CpeException {
         final Collection<MetadataValue> returnedfieldValues = getFieldValues(document, fieldName);
 
-        getMatches(pattern, returnedfieldValues, matchedStrings);
-
-        return matchedStrings;
+        return regexExecutionService.findAll(regex, returnedfieldValues);
     }
 
     private Collection<MetadataValue> getFieldValues(DocumentUnderEvaluation document, String fieldName) {
@@ -105,15 +173,81 @@ public class ContentExpressionHelper {
         return fieldValues;
     }
 
-    private void getMatches(Pattern pattern, Collection<MetadataValue> fieldValues, HashSet<String> matchedStrings) {
+    /**
+     * Returns the values the field condition evaluators would resolve for the field, including field labels which
+     * have not yet been added to the document, when they take the values of the first field present.
+     */
+    private Collection<MetadataValue> getResolvedFieldValues(EnvironmentSnapshot environmentSnapshot,
+                                                             DocumentUnderEvaluation document, String fieldName) {
+        FieldLabel fieldLabel = environmentSnapshot.getFieldLabel(fieldName);
+        if(fieldLabel == null || document.hasLabelValues(fieldLabel.name)){
+            return getFieldValues(document, fieldName);
+        }
+        for(String field : fieldLabel.fields){
+            if(document.getMetadata().containsKey(field) || document.getStreams().containsKey(field)){
+                return getFieldValues(document, field);
+            }
+        }
+        return new ArrayList<>();
+    }
 
-        for(MetadataValue fieldValue: fieldValues){
-            MatcherWithTimeout matcher = new MatcherWithTimeout(pattern.matcher(fieldValue.getStringValue()),
-                    engineProperties.getRegexTimeout()) ;
-            while(matcher.find()){
-                matchedStrings.add(matcher.group());
+    /**
+     * Whether the field, or any of the fields of the field label of that name, is carried.
+     */
+    private static boolean isCarried(EnvironmentSnapshot environmentSnapshot, String fieldName, Predicate<String> carried) {
+        if(carried.test(fieldName)){
+            return true;
+        }
+        FieldLabel fieldLabel = environmentSnapshot.getFieldLabel(fieldName);
+        return fieldLabel != null && fieldLabel.fields != null && fieldLabel.fields.stream().anyMatch(carried);
+    }
+
+    private Set<FieldLanguage> getBooleanAgentFieldLanguages(EnvironmentSnapshot environmentSnapshot) {
+        Set<FieldLanguage> fieldLanguages = new HashSet<>();
+        for(Condition condition : environmentSnapshot.getConditions().values()){
+            if(condition instanceof TextCondition){
+                TextCondition textCondition = (TextCondition)condition;
+                if(!StringUtils.isEmpty(textCondition.field)){
+                    fieldLanguages.add(new FieldLanguage(textCondition.field, getLanguage(textCondition.language)));
+                }
+            }
+            else if(condition instanceof LexiconCondition){
+                LexiconCondition lexiconCondition = (LexiconCondition)condition;
+                if(StringUtils.isEmpty(lexiconCondition.field) || lexiconCondition.value == null){
+                    continue;
+                }
+                Lexicon lexicon = environmentSnapshot.getLexicon(lexiconCondition.value);
+                if(lexicon != null && lexicon.lexiconExpressions != null && lexicon.lexiconExpressions.stream()
+                        .anyMatch(le -> le.type != LexiconExpressionType.REGEX)){
+                    fieldLanguages.add(new FieldLanguage(lexiconCondition.field, getLanguage(lexiconCondition.language)));
+                }
             }
         }
+        return fieldLanguages;
+    }
+
+    private static LanguagesEnum getLanguage(String languageCode) {
+        return languageCode == null ? null : IsoToLanguageEnumConverter.convert(languageCode.toLowerCase());
+    }
+
+    private Collection<MetadataValue> filterForLanguage(Collection<MetadataValue> fieldValues, LanguagesEnum language) {
+        return fieldValues.stream().filter(fv -> isValidForLanguage(language, fv)).collect(Collectors.toList());
+    }
+
+    private static BooleanAgentQueryResult getBooleanAgentQueryResult(DocumentUnderEvaluation document, String fieldName,
+                                                                      LanguagesEnum language) {
+        return language == null
+                ? document.getBooleanAgentQueryResult(fieldName)
+                : document.getBooleanAgentQueryResult(fieldName, language);
+    }
+
+    private static void addBooleanAgentQueryResult(DocumentUnderEvaluation document, String fieldName, LanguagesEnum language,
+                                                   BooleanAgentQueryResult booleanAgentQueryResult) {
+        if(language == null){
+            document.addBooleanAgentQueryResult(fieldName, booleanAgentQueryResult);
+        } else {
+            document.addBooleanAgentQueryResult(fieldName, language, booleanAgentQueryResult);
+        }
     }
 
     //https://docs.oracle.com/javase/8/docs/api/java/lang/Character.UnicodeScript.html
@@ -125,7 +259,7 @@ public class ContentExpressionHelper {
     private static Pattern japanesePattern = Pattern.compile("\\p{IsHan}|\\p{IsHiragana}|\\p{IsKatakana}");
 
     private boolean isValidForLanguage(LanguagesEnum language, MetadataValue metadataValue){
-        String value = metadataValue.getAsString();
+        CharSequence value = metadataValue.getAsCharSequence();
 
         if(StringUtils.isEmpty(value)){return false;}
 
@@ -151,4 +285,40 @@ public class ContentExpressionHelper {
             }
         }
     }
+
+    private static final class FieldLanguage {
+        private final String fieldName;
+        private final LanguagesEnum language;
+
+        FieldLanguage(String fieldName, LanguagesEnum language) {
+            this.fieldName = fieldName;
+            this.language = language;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FieldLanguage that = (FieldLanguage) o;
+            return fieldName.equals(that.fieldName) && language == that.language;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fieldName, language);
+        }
+    }
+
+    private static final class PendingBooleanAgentQuery {
+        private final DocumentUnderEvaluation document;
+        private final FieldLanguage fieldLanguage;
+        private final Collection<MetadataValue> fieldValues;
+
+        PendingBooleanAgentQuery(DocumentUnderEvaluation document, FieldLanguage fieldLanguage,
+                                 Collection<MetadataValue> fieldValues) {
+            this.document = document;
+            this.fieldLanguage = fieldLanguage;
+            this.fieldValues = fieldValues;
+        }
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.DateOperator;
+import com.github.cafdataprocessing.corepolicy.common.fields.DateFieldParser;
+import com.github.cafdataprocessing.corepolicy.common.fields.DateParsingException;
+import com.github.cafdataprocessing.corepolicy.common.shared.DateHelper;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalTime;
+import org.joda.time.Period;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.util.function.BiFunction;
+
+/**
+ * The parsed value of a DateCondition, which is either a period before now, a time of day, a day of the week or an
+ * absolute date.
+ */
+final class DateConditionTarget {
+    private final Period period;
+    private final LocalTime time;
+    private final Integer dayOfWeek;
+    private final DateTime date;
+
+    private DateConditionTarget(Period period, LocalTime time, Integer dayOfWeek, DateTime date) {
+        this.period = period;
+        this.time = time;
+        this.dayOfWeek = dayOfWeek;
+        this.date = date;
+    }
+
+    static DateConditionTarget parse(String value) {
+        if(DateHelper.isPeriod(value)){
+            return new DateConditionTarget(Period.parse(value), null, null, null);
+        }
+        if(DateHelper.isTime(value)){
+            return new DateConditionTarget(null,
+                    LocalTime.parse(value, ISODateTimeFormat.localTimeParser().withZoneUTC()), null, null);
+        }
+        if(DateHelper.isDay(value)){
+            return new DateConditionTarget(null, null, DateHelper.getNumberedDay(value), null);
+        }
+        DateTime targetDate;
+        try {
+            targetDate = DateFieldParser.parse(value);
+        } catch (DateParsingException e) {
+            targetDate = null;
+        }
+        return new DateConditionTarget(null, null, null, targetDate);
+    }
+
+    /**
+     * Whether the target is a period before the current time.
+     */
+    boolean isRelativeToNow() {
+        return period != null;
+    }
+
+    /**
+     * Creates the comparer for the target. Periods are resolved relative to the current time on each call.
+     */
+    BiFunction<DateTime, DateOperator, Boolean> getComparer() {
+        if(period != null){
+            return getTwoDatesComparer(new DateTime(DateTimeZone.UTC).minus(period));
+        }
+        if(time != null){
+            return getTwoTimesComparer(time);
+        }
+        if(dayOfWeek != null){
+            return getDayComparer(dayOfWeek);
+        }
+        return getTwoDatesComparer(date);
+    }
+
+    private static BiFunction<DateTime, DateOperator, Boolean> getDayComparer(int numberedDay) {
+        return (DateTime date, DateOperator dateOperator) -> {
+            if(date == null || numberedDay == -1){
+                return false;
+            }
+            int result = Integer.compare(date.getDayOfWeek(), numberedDay);
+            return resultMatchesOperator(result, dateOperator);
+        };
+    }
+
+    private static BiFunction<DateTime, DateOperator, Boolean> getTwoDatesComparer(DateTime targetDate) {
+        return (DateTime date, DateOperator dateOperator) -> {
+            if(targetDate == null || date == null){
+                return false;
+            }
+            int result = date.getMillis()==targetDate.getMillis() ? 0 : date.getMillis() <  targetDate.getMillis() ? -1 : 1;
+            return resultMatchesOperator(result, dateOperator);
+        };
+    }
+
+    private static BiFunction<DateTime, DateOperator, Boolean> getTwoTimesComparer(LocalTime targetDate) {
+        return (DateTime date, DateOperator dateOperator) -> {
+            if (targetDate == null || date == null) {
+                return false;
+            }
+
+            int result = date.toLocalTime().compareTo(targetDate);
+            return resultMatchesOperator(result, dateOperator);
+        };
+    }
+
+    private static Boolean resultMatchesOperator(int result, DateOperator dateOperator){
+        switch (dateOperator) {
+            case ON: {
+                return result == 0;
+            }
+            case BEFORE: {
+                return result == -1;
+            }
+            case AFTER: {
+                return result == 1;
+            }
+            default:{
+                return false;
+            }
+        }
+    }
+}
@@ -30,16 +30,20 @@ import org.springframework.stereotype.Component;
 @Component
 public class EvaluateCondition implements ConditionEvaluator {
     private ApplicationContext applicationContext;
+    private EvaluationPlanCompiler evaluationPlanCompiler;
 
     @Autowired
-    public EvaluateCondition(ApplicationContext applicationContext){
+    public EvaluateCondition(ApplicationContext applicationContext, EvaluationPlanCompiler evaluationPlanCompiler){
         this.applicationContext = applicationContext;
+        this.evaluationPlanCompiler = evaluationPlanCompiler;
     }
 
     public ConditionEvaluationResult evaluate(CollectionSequence collectionSequence, DocumentUnderEvaluation document, Condition condition,
                                               EnvironmentSnapshot environmentSnapshot) throws CpeException {
-        final ConditionEvaluator conditionEvaluator =
-                applicationContext.getBean(condition.getClass().getSimpleName(), ConditionEvaluator.class);
+        ConditionEvaluator conditionEvaluator = evaluationPlanCompiler.getPlan(environmentSnapshot).getEvaluator(condition.getClass());
+        if(conditionEvaluator == null) {
+            conditionEvaluator = applicationContext.getBean(condition.getClass().getSimpleName(), ConditionEvaluator.class);
+        }
 
         return conditionEvaluator.evaluate(collectionSequence, document, condition, environmentSnapshot);
     }
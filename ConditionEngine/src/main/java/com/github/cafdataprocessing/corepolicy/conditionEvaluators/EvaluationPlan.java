@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, pre-compiled view of the conditions held by an environment snapshot. Holds the resolved evaluator for
+ * each condition type and the values the evaluators would otherwise parse on every call. Lookups return null when the
+ * plan has no entry, in which case callers should fall back to resolving the value themselves.
+ */
+public final class EvaluationPlan {
+    private final Map<Class<?>, ConditionEvaluator> evaluators;
+    private final Map<Long, Condition> fragmentTargets;
+    private final Map<Long, CompiledRegex> regexes;
+    private final Map<Long, DateConditionTarget> dateTargets;
+    private final Map<Long, String> upperCaseStringValues;
+    private final Map<String, FieldLiteralMatcher> stringConditionMatchers;
+    private final Map<String, FieldLiteralMatcher> lexiconLiteralMatchers;
+    private final Map<String, FieldRegexMatcher> lexiconRegexMatchers;
+    private final Map<Long, List<Set<String>>> collectionRequiredFields;
+    private final Map<Long, Set<Long>> collectionConditionIds;
+
+    EvaluationPlan(Map<Class<?>, ConditionEvaluator> evaluators,
+                   Map<Long, Condition> fragmentTargets,
+                   Map<Long, CompiledRegex> regexes,
+                   Map<Long, DateConditionTarget> dateTargets,
+                   Map<Long, String> upperCaseStringValues,
+                   Map<String, FieldLiteralMatcher> stringConditionMatchers,
+                   Map<String, FieldLiteralMatcher> lexiconLiteralMatchers,
+                   Map<String, FieldRegexMatcher> lexiconRegexMatchers,
+                   Map<Long, List<Set<String>>> collectionRequiredFields,
+                   Map<Long, Set<Long>> collectionConditionIds) {
+        this.evaluators = ImmutableMap.copyOf(evaluators);
+        this.fragmentTargets = ImmutableMap.copyOf(fragmentTargets);
+        this.regexes = ImmutableMap.copyOf(regexes);
+        this.dateTargets = ImmutableMap.copyOf(dateTargets);
+        this.upperCaseStringValues = ImmutableMap.copyOf(upperCaseStringValues);
+        this.stringConditionMatchers = ImmutableMap.copyOf(stringConditionMatchers);
+        this.lexiconLiteralMatchers = ImmutableMap.copyOf(lexiconLiteralMatchers);
+        this.lexiconRegexMatchers = ImmutableMap.copyOf(lexiconRegexMatchers);
+        this.collectionRequiredFields = ImmutableMap.copyOf(collectionRequiredFields);
+        this.collectionConditionIds = ImmutableMap.copyOf(collectionConditionIds);
+    }
+
+    /**
+     * Get the evaluator registered for a condition type
+     * @param conditionType the condition class
+     * @return the evaluator, or null if it was not resolved when the plan was compiled
+     */
+    public ConditionEvaluator getEvaluator(Class<?> conditionType) {
+        return evaluators.get(conditionType);
+    }
+
+    /**
+     * Get the condition a fragment condition points at
+     * @param fragmentConditionId the id of the fragment condition
+     * @return the target condition, or null if it could not be resolved
+     */
+    public Condition getFragmentTarget(Long fragmentConditionId) {
+        return fragmentConditionId == null ? null : fragmentTargets.get(fragmentConditionId);
+    }
+
+    /**
+     * Get the compiled expression of a regex condition
+     * @param conditionId the id of the regex condition
+     * @return the compiled expression, or null if it was not compiled
+     */
+    public CompiledRegex getRegex(Long conditionId) {
+        return conditionId == null ? null : regexes.get(conditionId);
+    }
+
+    DateConditionTarget getDateTarget(Long conditionId) {
+        return conditionId == null ? null : dateTargets.get(conditionId);
+    }
+
+    /**
+     * Get the upper cased value of a string condition
+     * @param conditionId the id of the string condition
+     * @return the upper cased value, or null if it was not computed
+     */
+    public String getUpperCaseStringValue(Long conditionId) {
+        return conditionId == null ? null : upperCaseStringValues.get(conditionId);
+    }
+
+    /**
+     * Get the matcher answering the contains, starts with and ends with string conditions on a field
+     * @param field the field of the string conditions
+     * @return the matcher, or null if there are no such conditions on the field
+     */
+    public FieldLiteralMatcher getStringConditionMatcher(String field) {
+        return field == null ? null : stringConditionMatchers.get(field);
+    }
+
+    /**
+     * Get the matcher answering the literal regex expressions of the lexicons used by lexicon conditions on a field
+     * @param field the field of the lexicon conditions
+     * @return the matcher, or null if there are no such expressions for the field
+     */
+    public FieldLiteralMatcher getLexiconLiteralMatcher(String field) {
+        return field == null ? null : lexiconLiteralMatchers.get(field);
+    }
+
+    /**
+     * Get the matcher finding which of the other regex expressions, of the lexicons used by lexicon conditions on a
+     * field, occur in the field
+     * @param field the field of the lexicon conditions
+     * @return the matcher, or null if there are no such expressions for the field
+     */
+    public FieldRegexMatcher getLexiconRegexMatcher(String field) {
+        return field == null ? null : lexiconRegexMatchers.get(field);
+    }
+
+    /**
+     * Whether a document has the fields the condition of a collection needs before it can match. A document with all
+     * of its metadata which lacks them cannot match the collection.
+     * @param collectionId the id of the collection
+     * @param document the document
+     * @return false if a required field is missing from the document, otherwise true
+     */
+    public boolean hasRequiredFields(Long collectionId, DocumentUnderEvaluation document) {
+        List<Set<String>> requiredFields = collectionId == null ? null : collectionRequiredFields.get(collectionId);
+        return requiredFields == null || RequiredFields.isPresent(requiredFields, document);
+    }
+
+    /**
+     * Gets the result of a condition which fails because a field it needs is missing from a document with all of its
+     * metadata, without evaluating it. The result, and what it records on the document, are those evaluating the
+     * condition would give.
+     * @param condition the condition of a collection lacking required fields
+     * @param document the document
+     * @param environmentSnapshot the snapshot the plan was compiled from
+     * @return the result, or null if the condition has to be evaluated
+     */
+    public ConditionEvaluationResult getMissingFieldsResult(Condition condition, DocumentUnderEvaluation document,
+                                                            EnvironmentSnapshot environmentSnapshot) {
+        return RequiredFields.unmatchedOnMissingFields(condition, document, environmentSnapshot);
+    }
+
+    /**
+     * Whether a document holds results, restored from an earlier evaluation or from this run, for any of the
+     * conditions of a collection needing fields. The collection is evaluated from those results even when the fields
+     * are missing.
+     * @param collectionId the id of the collection
+     * @param document the document
+     * @return true if the collection has to be evaluated to know whether it matches
+     */
+    public boolean hasCachedResults(Long collectionId, DocumentUnderEvaluation document) {
+        Set<Long> conditionIds = collectionId == null ? null : collectionConditionIds.get(collectionId);
+        return conditionIds != null && RequiredFields.hasCachedResults(conditionIds, document);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.DocumentCollection;
+import com.github.cafdataprocessing.corepolicy.common.dto.Lexicon;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionType;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.*;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles and caches the evaluation plan of each environment snapshot. Plans are held against the snapshot instance
+ * and released along with it.
+ */
+@Component
+public class EvaluationPlanCompiler {
+    private final static Logger logger = LoggerFactory.getLogger(EvaluationPlanCompiler.class);
+    private final static Pattern regexMetacharacters = Pattern.compile("[\\\\^$.|?*+()\\[\\]{}]");
+
+    private final ApplicationContext applicationContext;
+    private final RegexMatcherFactory regexMatcherFactory;
+    private final Map<Class<?>, ConditionEvaluator> evaluatorsByConditionType = new ConcurrentHashMap<>();
+    private final Cache<EnvironmentSnapshot, EvaluationPlan> plans = CacheBuilder.newBuilder().weakKeys().build();
+
+    @Autowired
+    public EvaluationPlanCompiler(ApplicationContext applicationContext, RegexMatcherFactory regexMatcherFactory){
+        this.applicationContext = applicationContext;
+        this.regexMatcherFactory = regexMatcherFactory;
+    }
+
+    /**
+     * Get the evaluation plan for a snapshot, compiling it if this is the first request for the snapshot.
+     * @param environmentSnapshot the snapshot
+     * @return the evaluation plan of the snapshot
+     */
+    public EvaluationPlan getPlan(EnvironmentSnapshot environmentSnapshot) throws CpeException {
+        try {
+            return plans.get(environmentSnapshot, () -> compile(environmentSnapshot));
+        } catch (ExecutionException e) {
+            throw new BackEndRequestFailedCpeException(e.getCause());
+        }
+    }
+
+    /**
+     * Discards the evaluation plan held for a snapshot.
+     * @param environmentSnapshot the snapshot
+     */
+    public void remove(EnvironmentSnapshot environmentSnapshot) {
+        plans.invalidate(environmentSnapshot);
+    }
+
+    private EvaluationPlan compile(EnvironmentSnapshot environmentSnapshot) {
+        Map<Class<?>, ConditionEvaluator> evaluators = new HashMap<>();
+        Map<Long, Condition> fragmentTargets = new HashMap<>();
+        Map<Long, CompiledRegex> regexes = new HashMap<>();
+        Map<Long, DateConditionTarget> dateTargets = new HashMap<>();
+        Map<Long, String> upperCaseStringValues = new HashMap<>();
+        Map<String, FieldLiteralMatcher.Builder> stringConditionMatchers = new HashMap<>();
+        Map<String, FieldLiteralMatcher.Builder> lexiconLiteralMatchers = new HashMap<>();
+        Map<String, FieldRegexMatcher.Builder> lexiconRegexMatchers = new HashMap<>();
+        Map<String, Set<Long>> lexiconExpressionIds = new HashMap<>();
+        Map<Long, List<Set<String>>> collectionRequiredFields = new HashMap<>();
+        Map<Long, Set<Long>> collectionConditionIds = new HashMap<>();
+
+        for(Condition condition : getConditions(environmentSnapshot)){
+            ConditionEvaluator evaluator = getEvaluator(condition.getClass());
+            if(evaluator != null){
+                evaluators.put(condition.getClass(), evaluator);
+            }
+            if(condition.id == null){
+                continue;
+            }
+            try {
+                if (condition instanceof FragmentCondition) {
+                    FragmentCondition fragmentCondition = (FragmentCondition) condition;
+                    Condition target = fragmentCondition.value == null ? null : environmentSnapshot.getCondition(fragmentCondition.value);
+                    if (target != null) {
+                        fragmentTargets.put(condition.id, target);
+                    }
+                } else if (condition instanceof RegexCondition) {
+                    RegexCondition regexCondition = (RegexCondition) condition;
+                    if (regexCondition.value != null) {
+                        regexes.put(condition.id, regexMatcherFactory.getRegex(regexCondition.value));
+                    }
+                } else if (condition instanceof DateCondition) {
+                    DateCondition dateCondition = (DateCondition) condition;
+                    if (dateCondition.value != null) {
+                        dateTargets.put(condition.id, DateConditionTarget.parse(dateCondition.value));
+                    }
+                } else if (condition instanceof StringCondition) {
+                    StringCondition stringCondition = (StringCondition) condition;
+                    if (stringCondition.value != null) {
+                        upperCaseStringValues.put(condition.id, stringCondition.value.toUpperCase(Locale.getDefault()));
+                        FieldLiteralMatcher.Position position = getPosition(stringCondition.operator);
+                        if (stringCondition.field != null && position != null) {
+                            stringConditionMatchers.computeIfAbsent(stringCondition.field, f -> new FieldLiteralMatcher.Builder(true))
+                                    .add(stringCondition.value, position, condition.id);
+                        }
+                    }
+                } else if (condition instanceof LexiconCondition) {
+                    LexiconCondition lexiconCondition = (LexiconCondition) condition;
+                    Lexicon lexicon = lexiconCondition.value == null ? null : environmentSnapshot.getLexicon(lexiconCondition.value);
+                    if (lexiconCondition.field != null && lexicon != null && lexicon.lexiconExpressions != null) {
+                        Set<Long> expressionIds = lexiconExpressionIds.computeIfAbsent(lexiconCondition.field, f -> new HashSet<>());
+                        for (LexiconExpression lexiconExpression : lexicon.lexiconExpressions) {
+                            if (lexiconExpression.type != LexiconExpressionType.REGEX || lexiconExpression.id == null
+                                    || lexiconExpression.expression == null || !expressionIds.add(lexiconExpression.id)) {
+                                continue;
+                            }
+                            if (isLiteral(lexiconExpression.expression)) {
+                                lexiconLiteralMatchers.computeIfAbsent(lexiconCondition.field, f -> new FieldLiteralMatcher.Builder(false))
+                                        .add(lexiconExpression.expression, FieldLiteralMatcher.Position.ANYWHERE, lexiconExpression.id);
+                            } else {
+                                // Expressions outside the syntax the automaton supports are left to be searched for individually.
+                                lexiconRegexMatchers.computeIfAbsent(lexiconCondition.field, f -> new FieldRegexMatcher.Builder())
+                                        .add(lexiconExpression.expression, lexiconExpression.id);
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // The evaluator resolves the value itself and reports the failure if the condition is evaluated.
+                logger.debug("Could not compile condition " + condition.id + " into the evaluation plan.", e);
+            }
+        }
+
+        Map<Long, DocumentCollection> collections = environmentSnapshot.getCollections();
+        if(collections != null){
+            for(DocumentCollection collection : collections.values()){
+                if(collection == null || collection.id == null || collection.condition == null){
+                    continue;
+                }
+                try {
+                    List<Set<String>> requiredFields = RequiredFields.of(collection.condition, environmentSnapshot);
+                    if (!requiredFields.isEmpty()) {
+                        collectionRequiredFields.put(collection.id, requiredFields);
+                        collectionConditionIds.put(collection.id, RequiredFields.conditionIds(collection.condition, environmentSnapshot));
+                    }
+                } catch (Exception e) {
+                    logger.debug("Could not find the fields required by collection " + collection.id + ".", e);
+                }
+            }
+        }
+
+        return new EvaluationPlan(evaluators, fragmentTargets, regexes, dateTargets, upperCaseStringValues,
+                build(stringConditionMatchers, FieldLiteralMatcher.Builder::build),
+                build(lexiconLiteralMatchers, FieldLiteralMatcher.Builder::build),
+                build(lexiconRegexMatchers, FieldRegexMatcher.Builder::build),
+                collectionRequiredFields, collectionConditionIds);
+    }
+
+    private static <B, M> Map<String, M> build(Map<String, B> builders, Function<B, M> build) {
+        Map<String, M> matchers = new HashMap<>();
+        builders.forEach((field, builder) -> matchers.put(field, build.apply(builder)));
+        return matchers;
+    }
+
+    private static FieldLiteralMatcher.Position getPosition(StringOperatorType operator) {
+        if (operator == null) {
+            return null;
+        }
+        switch (operator) {
+            case CONTAINS:
+                return FieldLiteralMatcher.Position.ANYWHERE;
+            case STARTS_WITH:
+                return FieldLiteralMatcher.Position.START;
+            case ENDS_WITH:
+                return FieldLiteralMatcher.Position.END;
+            default:
+                // IS compares whole values, which needs no scan.
+                return null;
+        }
+    }
+
+    /**
+     * Whether a regular expression only matches its own text, in which case it can be matched as a literal.
+     */
+    static boolean isLiteral(String expression) {
+        return expression != null && !regexMetacharacters.matcher(expression).find();
+    }
+
+    private ConditionEvaluator getEvaluator(Class<?> conditionType) {
+        ConditionEvaluator evaluator = evaluatorsByConditionType.get(conditionType);
+        if(evaluator == null){
+            try {
+                evaluator = applicationContext.getBean(conditionType.getSimpleName(), ConditionEvaluator.class);
+            } catch (BeansException e) {
+                logger.debug("No evaluator registered for " + conditionType.getSimpleName(), e);
+            }
+            if(evaluator != null){
+                evaluatorsByConditionType.put(conditionType, evaluator);
+            }
+        }
+        return evaluator;
+    }
+
+    /**
+     * Returns every condition of the snapshot, including the children of boolean and not conditions and the conditions
+     * of the collections, in case they are not all held in the snapshot's condition map.
+     */
+    private static Collection<Condition> getConditions(EnvironmentSnapshot environmentSnapshot) {
+        Deque<Condition> pending = new LinkedList<>();
+        Map<Long, Condition> conditionMap = environmentSnapshot.getConditions();
+        if(conditionMap != null){
+            pending.addAll(conditionMap.values());
+        }
+        Map<Long, DocumentCollection> collections = environmentSnapshot.getCollections();
+        if(collections != null){
+            for(DocumentCollection collection : collections.values()){
+                if(collection != null && collection.condition != null){
+                    pending.add(collection.condition);
+                }
+            }
+        }
+
+        Set<Condition> conditions = Collections.newSetFromMap(new IdentityHashMap<>());
+        while(!pending.isEmpty()){
+            Condition condition = pending.pop();
+            if(condition == null || !conditions.add(condition)){
+                continue;
+            }
+            if(condition instanceof BooleanCondition && ((BooleanCondition) condition).children != null){
+                pending.addAll(((BooleanCondition) condition).children);
+            } else if(condition instanceof NotCondition){
+                pending.add(((NotCondition) condition).condition);
+            }
+        }
+        return conditions;
+    }
+}
@@ -26,14 +26,22 @@ import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.FieldCondition;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 
+import java.util.stream.Collectors;
+
 /**
  *
  */
 abstract class FieldConditionEvaluator<T extends FieldCondition> extends ConditionEvaluatorBase<T> {
     protected final ApiProperties apiProperties;
+    private final ConditionResultCache conditionResultCache;
 
     public FieldConditionEvaluator(ApiProperties apiProperties) {
+        this(apiProperties, null);
+    }
+
+    public FieldConditionEvaluator(ApiProperties apiProperties, ConditionResultCache conditionResultCache) {
         this.apiProperties = apiProperties;
+        this.conditionResultCache = conditionResultCache;
     }
 
     protected FieldStatus fieldMissing(DocumentUnderEvaluation document, T condition, EnvironmentSnapshot environmentSnapshot) throws CpeException {
@@ -79,11 +87,42 @@ abstract class FieldConditionEvaluator<T extends FieldCondition> extends Conditi
 
         if (checkForUnevaluatedCondition(result, document, condition, environmentSnapshot)) return;
 
-        evaluateFieldValues(result, condition, document, environmentSnapshot);
+        ConditionResultCache.Key key = conditionResultCache == null || !isResultCacheable(condition, environmentSnapshot)
+                ? null
+                : conditionResultCache.getKey(environmentSnapshot, condition, document.getValues(condition.field));
+        if (key == null) {
+            evaluateFieldValues(result, condition, document, environmentSnapshot);
+            return;
+        }
+
+        // The same field values give the same result, so a result found for another document is used as is.
+        ConditionResultCache.Result cachedResult = conditionResultCache.get(key);
+        if (cachedResult != null) {
+            result.populateEvaluationResult(cachedResult.isMatch(), condition, document, cachedResult.getTerms(), true);
+            return;
+        }
+
+        ConditionEvaluationResult fieldResult = new ConditionEvaluationResult();
+        evaluateFieldValues(fieldResult, condition, document, environmentSnapshot);
+        if (fieldResult.getUnevaluatedConditions().isEmpty()) {
+            conditionResultCache.put(key, new ConditionResultCache.Result(fieldResult.isMatch(),
+                    fieldResult.getMatchedConditions().stream()
+                            .flatMap(matchedCondition -> matchedCondition.getTerms().stream())
+                            .collect(Collectors.toList())));
+        }
+        result.populateEvaluationResult(fieldResult, true);
     }
 
     protected abstract void evaluateFieldValues(ConditionEvaluationResult result, T condition, DocumentUnderEvaluation document, EnvironmentSnapshot environmentSnapshot);
 
+    /**
+     * Whether the result of the condition only depends on the condition and the values of its field, so it may be
+     * held in the condition result cache and used for other documents with the same values.
+     */
+    protected boolean isResultCacheable(T condition, EnvironmentSnapshot environmentSnapshot) {
+        return false;
+    }
+
     private FieldStatus checkField(DocumentUnderEvaluation document, String fieldName, EnvironmentSnapshot environmentSnapshot) {
         FieldStatus fieldStatus = new FieldStatus();
 
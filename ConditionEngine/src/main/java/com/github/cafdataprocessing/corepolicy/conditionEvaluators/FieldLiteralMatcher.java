@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matches every literal held for a field in a single pass over each of the field's values, rather than scanning the
+ * values once per literal. Each literal is registered with the id of the condition or lexicon expression it answers
+ * and where in the value it has to occur.
+ */
+public final class FieldLiteralMatcher implements FieldMatcher {
+
+    /**
+     * Where in a field value a literal has to occur.
+     */
+    enum Position {
+        ANYWHERE,
+        START,
+        END
+    }
+
+    private final boolean upperCase;
+    private final AhoCorasickAutomaton automaton;
+    private final int[] literalLengths;
+    private final int maximumLiteralLength;
+    private final long[][] literalIds;
+    private final Position[][] literalPositions;
+    private final Set<Long> emptyLiteralIds;
+    private final Set<Long> ids;
+
+    private FieldLiteralMatcher(boolean upperCase, Map<String, List<Registration>> registrations) {
+        this.upperCase = upperCase;
+        List<String> literals = new ArrayList<>();
+        List<List<Registration>> literalRegistrations = new ArrayList<>();
+        Set<Long> emptyLiteralIds = new HashSet<>();
+        Set<Long> ids = new HashSet<>();
+        for (Map.Entry<String, List<Registration>> entry : registrations.entrySet()) {
+            for (Registration registration : entry.getValue()) {
+                ids.add(registration.id);
+            }
+            if (entry.getKey().isEmpty()) {
+                entry.getValue().forEach(registration -> emptyLiteralIds.add(registration.id));
+            } else {
+                literals.add(entry.getKey());
+                literalRegistrations.add(entry.getValue());
+            }
+        }
+
+        automaton = new AhoCorasickAutomaton(literals);
+        literalLengths = new int[literals.size()];
+        int maximumLiteralLength = 0;
+        literalIds = new long[literals.size()][];
+        literalPositions = new Position[literals.size()][];
+        for (int i = 0; i < literals.size(); i++) {
+            literalLengths[i] = literals.get(i).length();
+            maximumLiteralLength = Math.max(maximumLiteralLength, literalLengths[i]);
+            List<Registration> registered = literalRegistrations.get(i);
+            literalIds[i] = new long[registered.size()];
+            literalPositions[i] = new Position[registered.size()];
+            for (int j = 0; j < registered.size(); j++) {
+                literalIds[i][j] = registered.get(j).id;
+                literalPositions[i][j] = registered.get(j).position;
+            }
+        }
+        this.maximumLiteralLength = maximumLiteralLength;
+        this.emptyLiteralIds = emptyLiteralIds;
+        this.ids = ids;
+    }
+
+    @Override
+    public boolean handles(Long id) {
+        return id != null && ids.contains(id);
+    }
+
+    @Override
+    public Set<Long> match(Collection<? extends CharSequence> values) {
+        Set<Long> matchedIds = new HashSet<>();
+        for (CharSequence value : values) {
+            if (value == null) {
+                continue;
+            }
+            matchedIds.addAll(emptyLiteralIds);
+            if (upperCase) {
+                // A long value is upper cased a window at a time, rather than copied as a whole.
+                UpperCaseWindows.anyMatch(value, maximumLiteralLength, (window, first, last) -> {
+                    scan(window, first, last, matchedIds);
+                    return matchedIds.size() == ids.size();
+                });
+            } else {
+                scan(value, true, true, matchedIds);
+            }
+            if (matchedIds.size() == ids.size()) {
+                break;
+            }
+        }
+        return matchedIds;
+    }
+
+    private void scan(CharSequence text, boolean atStart, boolean atEnd, Set<Long> matchedIds) {
+        automaton.scan(text, (literalIndex, endIndex) -> {
+            for (int i = 0; i < literalIds[literalIndex].length; i++) {
+                if (isAtPosition(literalPositions[literalIndex][i], literalLengths[literalIndex], endIndex, text.length(), atStart, atEnd)) {
+                    matchedIds.add(literalIds[literalIndex][i]);
+                }
+            }
+        });
+    }
+
+    private static boolean isAtPosition(Position position, int literalLength, int endIndex, int textLength,
+                                        boolean atStart, boolean atEnd) {
+        switch (position) {
+            case START:
+                return atStart && endIndex + 1 == literalLength;
+            case END:
+                return atEnd && endIndex + 1 == textLength;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Collects the literals of a field.
+     */
+    static final class Builder {
+        private final boolean upperCase;
+        private final Map<String, List<Registration>> registrations = new LinkedHashMap<>();
+
+        /**
+         * @param upperCase whether literals and values are compared after upper casing them in the default locale.
+         */
+        Builder(boolean upperCase) {
+            this.upperCase = upperCase;
+        }
+
+        Builder add(String literal, Position position, Long id) {
+            String key = upperCase ? literal.toUpperCase(Locale.getDefault()) : literal;
+            registrations.computeIfAbsent(key, k -> new ArrayList<>()).add(new Registration(id, position));
+            return this;
+        }
+
+        FieldLiteralMatcher build() {
+            return new FieldLiteralMatcher(upperCase, registrations);
+        }
+    }
+
+    private static final class Registration {
+        private final long id;
+        private final Position position;
+
+        Registration(long id, Position position) {
+            this.id = id;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Answers a set of conditions or lexicon expressions on a field, identified by their ids, with a single pass over
+ * the field's values.
+ */
+public interface FieldMatcher {
+    /**
+     * @return whether the id is answered by the matcher.
+     */
+    boolean handles(Long id);
+
+    /**
+     * @return the ids matching any of the values.
+     */
+    Set<Long> match(Collection<? extends CharSequence> values);
+}
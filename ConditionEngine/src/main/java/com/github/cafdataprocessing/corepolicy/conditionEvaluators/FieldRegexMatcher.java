@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds which of the regular expressions held for a field occur in the field's values with a single pass over each
+ * value, rather than searching the values once per expression. Only expressions which {@link RegexSetAutomaton}
+ * supports are held, and the ids returned are those whose expression occurs in the values; the matched text is
+ * still found with java.util.regex, for those expressions only.
+ */
+public final class FieldRegexMatcher implements FieldMatcher {
+
+    private final RegexSetAutomaton automaton;
+    private final long[][] patternIds;
+    private final Set<Long> ids;
+
+    private FieldRegexMatcher(Map<String, List<Long>> registrations) {
+        List<String> patterns = new ArrayList<>(registrations.keySet());
+        automaton = new RegexSetAutomaton(patterns);
+        patternIds = new long[patterns.size()][];
+        ids = new HashSet<>();
+        for (int i = 0; i < patterns.size(); i++) {
+            List<Long> registered = registrations.get(patterns.get(i));
+            patternIds[i] = registered.stream().mapToLong(Long::longValue).toArray();
+            ids.addAll(registered);
+        }
+    }
+
+    @Override
+    public boolean handles(Long id) {
+        return id != null && ids.contains(id);
+    }
+
+    @Override
+    public Set<Long> match(Collection<? extends CharSequence> values) {
+        BitSet found = new BitSet(patternIds.length);
+        for (CharSequence value : values) {
+            if (value == null) {
+                continue;
+            }
+            automaton.scan(value, found);
+            if (found.cardinality() == patternIds.length) {
+                break;
+            }
+        }
+        Set<Long> matchedIds = new HashSet<>();
+        found.stream().forEach(pattern -> {
+            for (long id : patternIds[pattern]) {
+                matchedIds.add(id);
+            }
+        });
+        return matchedIds;
+    }
+
+    /**
+     * Collects the regular expressions of a field.
+     */
+    static final class Builder {
+        private final Map<String, List<Long>> registrations = new LinkedHashMap<>();
+
+        /**
+         * Adds the expression if it is within the syntax the automaton supports.
+         * @return whether the expression was added.
+         */
+        boolean add(String regex, Long id) {
+            List<Long> registered = registrations.get(regex);
+            if (registered == null) {
+                if (!RegexSetAutomaton.isSupported(regex)) {
+                    return false;
+                }
+                registered = new ArrayList<>();
+                registrations.put(regex, registered);
+            }
+            registered.add(id);
+            return true;
+        }
+
+        FieldRegexMatcher build() {
+            return new FieldRegexMatcher(registrations);
+        }
+    }
+}
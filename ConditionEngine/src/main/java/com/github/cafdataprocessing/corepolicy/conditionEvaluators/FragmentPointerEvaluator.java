@@ -32,10 +32,12 @@ import org.springframework.stereotype.Component;
 @Component("FragmentCondition")
 class FragmentPointerEvaluator extends ConditionEvaluatorBase<FragmentCondition> {
     private EvaluateCondition evaluateCondition;
+    private EvaluationPlanCompiler evaluationPlanCompiler;
 
     @Autowired
-    public FragmentPointerEvaluator(EvaluateCondition evaluateCondition){
+    public FragmentPointerEvaluator(EvaluateCondition evaluateCondition, EvaluationPlanCompiler evaluationPlanCompiler){
         this.evaluateCondition = evaluateCondition;
+        this.evaluationPlanCompiler = evaluationPlanCompiler;
     }
 
     @Override
@@ -44,7 +46,10 @@ class FragmentPointerEvaluator extends ConditionEvaluatorBase<FragmentCondition>
             throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.InvalidDataDetected, new Exception("Condition Fragment id " + condition.id + " has no target condition."));
         }
 
-        final Condition subCondition = environmentSnapshot.getCondition(condition.value);
+        Condition subCondition = evaluationPlanCompiler.getPlan(environmentSnapshot).getFragmentTarget(condition.id);
+        if(subCondition == null) {
+            subCondition = environmentSnapshot.getCondition(condition.value);
+        }
         ConditionEvaluationResult subConditionResult = evaluateCondition.evaluate(collectionSequence, document, subCondition, environmentSnapshot);
 
         if(subConditionResult.isMatch()) {
@@ -25,13 +25,18 @@ import com.github.cafdataprocessing.corepolicy.common.dto.conditions.LexiconCond
 import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.excpetionErrors.BackEndRequestFailedErrors;
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 /**
@@ -41,14 +46,20 @@ import java.util.stream.Collectors;
 class LexiconEvaluator extends FieldConditionEvaluator<LexiconCondition>{
     private final BooleanAgentServices booleanAgentServices;
     private ContentExpressionHelper contentExpressionHelper;
+    private final RegexExecutionService regexExecutionService;
+    private final EvaluationPlanCompiler evaluationPlanCompiler;
 
     @Autowired
     public LexiconEvaluator(BooleanAgentServices booleanAgentServices,
                             ContentExpressionHelper contentExpressionHelper,
+                            RegexExecutionService regexExecutionService,
+                            EvaluationPlanCompiler evaluationPlanCompiler,
                             ApiProperties apiProperties){
         super(apiProperties);
         this.booleanAgentServices = booleanAgentServices;
         this.contentExpressionHelper = contentExpressionHelper;
+        this.regexExecutionService = regexExecutionService;
+        this.evaluationPlanCompiler = evaluationPlanCompiler;
     }
 
     @Override
@@ -76,13 +87,51 @@ class LexiconEvaluator extends FieldConditionEvaluator<LexiconCondition>{
         }
 
         if(!regexLexiconExpressions.isEmpty()){
-            regexLexiconExpressions.parallelStream().forEach(le -> {
-                try {
-                    evaluateRegex(document, condition, matchedCondition, le);
-                } catch (Exception e) {
-                    throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e);
+            // Expressions without any regular expression syntax only match their own text, so they are all found
+            // with a single scan of the field rather than one regular expression search each. A single scan for the
+            // other expressions rules out those which do not occur, so only the rest are searched for their terms.
+            EvaluationPlan evaluationPlan = evaluationPlanCompiler.getPlan(environmentSnapshot);
+            FieldLiteralMatcher literalMatcher = evaluationPlan.getLexiconLiteralMatcher(condition.field);
+            FieldRegexMatcher regexMatcher = evaluationPlan.getLexiconRegexMatcher(condition.field);
+            Set<Long> literalMatches = getFieldMatches(document, condition, literalMatcher, regexLexiconExpressions);
+            Set<Long> regexMatches = getFieldMatches(document, condition, regexMatcher, regexLexiconExpressions);
+
+            List<LexiconExpression> searchedLexiconExpressions = new ArrayList<>();
+            int skipped = 0;
+            for(LexiconExpression lexiconExpression:regexLexiconExpressions){
+                if(literalMatches != null && literalMatcher.handles(lexiconExpression.id)){
+                    continue;
+                }
+                if(regexMatches != null && regexMatcher.handles(lexiconExpression.id) && !regexMatches.contains(lexiconExpression.id)){
+                    skipped++;
+                    continue;
+                }
+                searchedLexiconExpressions.add(lexiconExpression);
+            }
+            if(skipped > 0){
+                regexExecutionService.recordSkipped(skipped);
+            }
+
+            List<Callable<MatchedLexiconExpression>> regexEvaluations = searchedLexiconExpressions.stream()
+                    .map(le -> (Callable<MatchedLexiconExpression>) () -> evaluateRegex(document, condition, le))
+                    .collect(Collectors.toList());
+            Map<LexiconExpression, MatchedLexiconExpression> regexResults = new IdentityHashMap<>();
+            try {
+                List<MatchedLexiconExpression> results = regexExecutionService.invokeAll(regexEvaluations);
+                for(int i = 0; i < results.size(); i++){
+                    regexResults.put(searchedLexiconExpressions.get(i), results.get(i));
+                }
+            } catch (Exception e) {
+                throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e);
+            }
+            for(LexiconExpression lexiconExpression:regexLexiconExpressions){
+                MatchedLexiconExpression matchedLexiconExpression = literalMatches != null && literalMatcher.handles(lexiconExpression.id)
+                        ? evaluateLiteral(literalMatches, lexiconExpression)
+                        : regexResults.get(lexiconExpression);
+                if(matchedLexiconExpression != null){
+                    matchedCondition.getMatchedLexiconExpressions().add(matchedLexiconExpression);
                 }
-            });
+            }
         }
         if(containsBooleanAgentExpressions){
             evaluateBooleanAgent(environmentSnapshot, document, condition, matchedCondition);
@@ -125,7 +174,37 @@ class LexiconEvaluator extends FieldConditionEvaluator<LexiconCondition>{
         }
     }
 
-    private void evaluateRegex(DocumentUnderEvaluation document, LexiconCondition condition, MatchedCondition matchedCondition, LexiconExpression lexiconExpression) throws CpeException {
+    /**
+     * Returns the ids found by the matcher in the field, scanning the field the first time it is needed for the
+     * document, or null if the matcher does not answer any of the expressions.
+     */
+    private static Set<Long> getFieldMatches(DocumentUnderEvaluation document, LexiconCondition condition, FieldMatcher matcher,
+                                             Collection<LexiconExpression> lexiconExpressions) {
+        if(matcher == null || lexiconExpressions.stream().noneMatch(le -> matcher.handles(le.id))){
+            return null;
+        }
+        Set<Long> matchedIds = document.getFieldMatches(matcher, condition.field);
+        if(matchedIds == null){
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            matchedIds = matcher.match(document.getValues(condition.field).stream()
+                    .map(MetadataValue::getAsCharSequence).collect(Collectors.toList()));
+            document.addFieldMatches(matcher, condition.field, matchedIds);
+            document.logTime("Evaluate-LexiconCondition-Scan", stopwatch);
+        }
+        return matchedIds;
+    }
+
+    private static MatchedLexiconExpression evaluateLiteral(Set<Long> literalMatches, LexiconExpression lexiconExpression) {
+        if(!literalMatches.contains(lexiconExpression.id)){
+            return null;
+        }
+        MatchedLexiconExpression matchedLexiconExpression = new MatchedLexiconExpression();
+        matchedLexiconExpression.setLexiconExpressionId(lexiconExpression.id);
+        matchedLexiconExpression.getTerms().add(lexiconExpression.expression);
+        return matchedLexiconExpression;
+    }
+
+    private MatchedLexiconExpression evaluateRegex(DocumentUnderEvaluation document, LexiconCondition condition, LexiconExpression lexiconExpression) throws CpeException {
         Stopwatch stopwatch = Stopwatch.createStarted();
         Collection<String> matches = contentExpressionHelper
                 .handleRegexExpression(document, condition.field, lexiconExpression.expression);
@@ -137,7 +216,8 @@ class LexiconEvaluator extends FieldConditionEvaluator<LexiconCondition>{
             for(String match:matches){
                 matchedLexiconExpression.getTerms().add(match);
             }
-            matchedCondition.getMatchedLexiconExpressions().add(matchedLexiconExpression);
+            return matchedLexiconExpression;
         }
+        return null;
     }
 }
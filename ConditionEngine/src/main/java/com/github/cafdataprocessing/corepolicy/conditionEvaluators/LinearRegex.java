@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.TimeLimitedCharSequence;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Regular expression run by simulating its NFA over the input, one position at a time with every live thread of the
+ * NFA in step, so matching takes time linear in the length of the input whatever the expression. Threads are kept in
+ * the order a backtracking engine would try them, so the matches found are those java.util.regex finds.
+ * <p>
+ * Inputs containing surrogate characters, which java.util.regex matches as code points, are matched with
+ * java.util.regex.
+ */
+final class LinearRegex implements CompiledRegex {
+    private final Pattern pattern;
+    private final RegexProgram program;
+
+    /**
+     * @param pattern the expression compiled by java.util.regex, which has to be within the subset RegexProgram
+     *                supports.
+     */
+    LinearRegex(Pattern pattern) {
+        this.pattern = pattern;
+        this.program = new RegexProgram(Collections.singletonList(pattern.pattern()), false);
+    }
+
+    @Override
+    public String getExpression() {
+        return pattern.pattern();
+    }
+
+    @Override
+    public RegexEngine getEngine() {
+        return RegexEngine.LINEAR;
+    }
+
+    @Override
+    public RegexMatcher matcher(CharSequence input, int timeoutSeconds) {
+        for (int i = 0; i < input.length(); i++) {
+            if (Character.isSurrogate(input.charAt(i))) {
+                return new BacktrackingRegex(pattern).matcher(input, timeoutSeconds);
+            }
+        }
+        return new LinearMatcher(input, timeoutSeconds);
+    }
+
+    private final class LinearMatcher implements RegexMatcher {
+        private final TimeLimitedCharSequence input;
+        private final long timeoutNanos;
+        private ThreadList current = new ThreadList(program.size());
+        private ThreadList next = new ThreadList(program.size());
+        private int[] stack = new int[16];
+        private int matchStart = -1;
+        private int matchEnd = -1;
+
+        LinearMatcher(CharSequence input, int timeoutSeconds) {
+            this.input = new TimeLimitedCharSequence(input);
+            this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        }
+
+        @Override
+        public boolean find() {
+            // As with java.util.regex, the search resumes where the last match ended, or one character further on
+            // after an empty match.
+            int from = matchEnd < 0 ? 0 : matchEnd == matchStart ? matchEnd + 1 : matchEnd;
+            if (from > input.length()) {
+                return false;
+            }
+            input.startDeadline(timeoutNanos);
+            try {
+                return search(from);
+            } finally {
+                input.clearDeadline();
+            }
+        }
+
+        @Override
+        public String group() {
+            if (matchStart < 0) {
+                throw new IllegalStateException("No match found");
+            }
+            return input.subSequence(matchStart, matchEnd).toString();
+        }
+
+        @Override
+        public int start() {
+            if (matchStart < 0) {
+                throw new IllegalStateException("No match found");
+            }
+            return matchStart;
+        }
+
+        private boolean search(int from) {
+            int length = input.length();
+            int foundStart = -1;
+            int foundEnd = -1;
+            current.clear();
+            for (int position = from; position <= length; position++) {
+                // Until a match is found a new thread starts at each position, behind every thread started earlier.
+                if (foundStart < 0) {
+                    addThread(current, program.startStates[0], position);
+                }
+                if (current.size == 0) {
+                    break;
+                }
+                boolean atEnd = position == length;
+                char c = atEnd ? 0 : input.charAt(position);
+                next.clear();
+                for (int i = 0; i < current.size; i++) {
+                    int state = current.states[i];
+                    if (program.kinds[state] == RegexProgram.ACCEPT) {
+                        // Threads behind this one would only be tried by a backtracking engine if it failed.
+                        foundStart = current.starts[i];
+                        foundEnd = position;
+                        break;
+                    }
+                    if (!atEnd && RegexProgram.contains(program.ranges[state], c)) {
+                        addThread(next, program.outs[state], current.starts[i]);
+                    }
+                }
+                ThreadList swap = current;
+                current = next;
+                next = swap;
+            }
+            if (foundStart < 0) {
+                return false;
+            }
+            matchStart = foundStart;
+            matchEnd = foundEnd;
+            return true;
+        }
+
+        /**
+         * Adds the states reachable from the state without consuming a character, in the order a backtracking engine
+         * would reach them, skipping those already reached by a thread ahead in the list.
+         */
+        private void addThread(ThreadList list, int state, int start) {
+            int size = 0;
+            stack[size++] = state;
+            while (size > 0) {
+                int s = stack[--size];
+                if (!list.visit(s)) {
+                    continue;
+                }
+                if (program.kinds[s] == RegexProgram.SPLIT) {
+                    if (size + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[size++] = program.alternativeOuts[s];
+                    stack[size++] = program.outs[s];
+                } else {
+                    list.add(s, start);
+                }
+            }
+        }
+    }
+
+    /**
+     * The threads at one position: the NFA state of each thread, in priority order, with the position the thread
+     * started at, and a sparse set of the states visited while adding them.
+     */
+    private static final class ThreadList {
+        private final int[] states;
+        private final int[] starts;
+        private final int[] dense;
+        private final int[] sparse;
+        private int size;
+        private int visited;
+
+        ThreadList(int stateCount) {
+            states = new int[stateCount];
+            starts = new int[stateCount];
+            dense = new int[stateCount];
+            sparse = new int[stateCount];
+        }
+
+        void clear() {
+            size = 0;
+            visited = 0;
+        }
+
+        /**
+         * @return false if the state had already been visited.
+         */
+        boolean visit(int state) {
+            int index = sparse[state];
+            if (index < visited && dense[index] == state) {
+                return false;
+            }
+            sparse[state] = visited;
+            dense[visited++] = state;
+            return true;
+        }
+
+        void add(int state, int start) {
+            states[size] = state;
+            starts[size] = start;
+            size++;
+        }
+    }
+}
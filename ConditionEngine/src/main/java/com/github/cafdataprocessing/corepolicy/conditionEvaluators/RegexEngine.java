@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+/**
+ * The engines regular expressions can be run with.
+ */
+public enum RegexEngine {
+    /**
+     * Simulates the expression's NFA, taking time linear in the length of the input whatever the expression. Used for
+     * expressions without constructs which need backtracking.
+     */
+    LINEAR,
+    /**
+     * java.util.regex, which can take exponential time on some expressions.
+     */
+    BACKTRACKING;
+
+    /**
+     * @param configuredEngine the engine.regexengine setting.
+     * @return false if every expression is configured to run with the backtracking engine, true if the engine is
+     * chosen per expression.
+     */
+    public static boolean isChosenPerExpression(String configuredEngine) {
+        return !BACKTRACKING.name().equalsIgnoreCase(configuredEngine);
+    }
+
+    /**
+     * @return the engine an expression is run with when the engine is chosen per expression.
+     */
+    public static RegexEngine forExpression(String expression) {
+        return RegexProgram.isSupported(expression) ? LINEAR : BACKTRACKING;
+    }
+
+    /**
+     * @return the construct which prevents an expression being run with the linear engine, or null if there is none.
+     */
+    public static String getBacktrackingReason(String expression) {
+        return RegexProgram.getUnsupportedReason(expression);
+    }
+}
@@ -31,23 +31,33 @@ import java.util.Collection;
 @Component("RegexCondition")
 public class RegexEvaluator extends FieldConditionEvaluator<RegexCondition> {
     private ContentExpressionHelper contentExpressionHelper;
+    private EvaluationPlanCompiler evaluationPlanCompiler;
 
     @Autowired
-    public RegexEvaluator(ContentExpressionHelper contentExpressionHelper, ApiProperties apiProperties){
-        super(apiProperties);
+    public RegexEvaluator(ContentExpressionHelper contentExpressionHelper, ApiProperties apiProperties,
+                          EvaluationPlanCompiler evaluationPlanCompiler, ConditionResultCache conditionResultCache){
+        super(apiProperties, conditionResultCache);
         this.contentExpressionHelper = contentExpressionHelper;
+        this.evaluationPlanCompiler = evaluationPlanCompiler;
     }
 
     @Override
     protected void evaluateFieldValues(ConditionEvaluationResult result, RegexCondition condition, DocumentUnderEvaluation document, EnvironmentSnapshot environmentSnapshot) {
         String expression = condition.value;
+        CompiledRegex regex = evaluationPlanCompiler.getPlan(environmentSnapshot).getRegex(condition.id);
 
         Stopwatch stopwatch = Stopwatch.createStarted();
         //todo check this still works with labels
-        Collection<String> matches = contentExpressionHelper
-                .handleRegexExpression(document, condition.field, expression);
+        Collection<String> matches = regex != null
+                ? contentExpressionHelper.handleRegexExpression(document, condition.field, regex)
+                : contentExpressionHelper.handleRegexExpression(document, condition.field, expression);
         document.logTime("Evaluate-RegexCondition-Regex", stopwatch);
 
         result.populateEvaluationResult(!matches.isEmpty(), condition, document, matches, true);
     }
+
+    @Override
+    protected boolean isResultCacheable(RegexCondition condition, EnvironmentSnapshot environmentSnapshot) {
+        return true;
+    }
 }
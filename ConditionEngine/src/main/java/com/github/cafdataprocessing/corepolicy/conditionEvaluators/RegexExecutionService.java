@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Engine wide service for running regular expressions against field values within the configured timeout.
+ */
+public interface RegexExecutionService {
+    /**
+     * Returns every match of the pattern across the field values, the timeout is enforced on the calling thread.
+     */
+    Collection<String> findAll(CompiledRegex regex, Collection<MetadataValue> fieldValues);
+
+    /**
+     * Runs the tasks on the bounded regex worker pool, returning their results in the order they were supplied.
+     */
+    <T> List<T> invokeAll(Collection<? extends Callable<T>> tasks);
+
+    long getTimedOutCount();
+
+    long getMatchedCount();
+
+    long getUnmatchedCount();
+
+    /**
+     * Counts expressions which were known not to match without being run, such as those ruled out by a single scan
+     * of the field for all of a lexicon's expressions.
+     */
+    void recordSkipped(int count);
+
+    long getSkippedCount();
+}
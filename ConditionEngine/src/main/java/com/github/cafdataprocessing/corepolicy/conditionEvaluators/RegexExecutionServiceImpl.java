@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.RegexTimeoutException;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.excpetionErrors.BackEndRequestFailedErrors;
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs regular expressions with a cooperative timeout on the calling thread, and fans out independent regex work onto
+ * a single bounded worker pool shared by the whole engine.
+ */
+@Component
+@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+public class RegexExecutionServiceImpl implements RegexExecutionService, DisposableBean {
+    private final static Logger logger = LoggerFactory.getLogger(RegexExecutionServiceImpl.class);
+
+    private final int timeoutSeconds;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong timedOutCount = new AtomicLong();
+    private final AtomicLong matchedCount = new AtomicLong();
+    private final AtomicLong unmatchedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    @Autowired
+    public RegexExecutionServiceImpl(EngineProperties engineProperties){
+
+        Integer regexTimeout = 2;
+        Integer threads = Runtime.getRuntime().availableProcessors();
+
+        try {
+            regexTimeout = engineProperties.getRegexTimeout();
+            threads = engineProperties.getRegexExecutorThreads();
+        } catch (Exception e) {
+            logger.warn("Problem loading regex executor settings from config, using default.", e);
+        }
+
+        this.timeoutSeconds = regexTimeout == null ? 2 : regexTimeout;
+        int poolSize = threads == null || threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+
+        // When the queue is full the submitting thread runs the task itself, so callers are throttled rather than
+        // rejected and the number of regex threads never grows past the configured size.
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(poolSize * 4),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("corepolicy-regex-%d").build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public Collection<String> findAll(CompiledRegex regex, Collection<MetadataValue> fieldValues) {
+        HashSet<String> matchedStrings = new HashSet<>();
+        try {
+            for (MetadataValue fieldValue : fieldValues) {
+                RegexMatcher matcher = regex.matcher(fieldValue.getAsCharSequence(), timeoutSeconds);
+                while (matcher.find()) {
+                    matchedStrings.add(matcher.group());
+                }
+            }
+        } catch (RegexTimeoutException e) {
+            timedOutCount.incrementAndGet();
+            throw e;
+        }
+
+        if (matchedStrings.isEmpty()) {
+            unmatchedCount.incrementAndGet();
+        } else {
+            matchedCount.incrementAndGet();
+        }
+        return matchedStrings;
+    }
+
+    @Override
+    public <T> List<T> invokeAll(Collection<? extends Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() == 1) {
+            results.add(call(tasks.iterator().next()));
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(false));
+        }
+        return results;
+    }
+
+    private static <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.GeneralFailure, e);
+        }
+    }
+
+    @Override
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    @Override
+    public long getMatchedCount() {
+        return matchedCount.get();
+    }
+
+    @Override
+    public long getUnmatchedCount() {
+        return unmatchedCount.get();
+    }
+
+    @Override
+    public void recordSkipped(int count) {
+        skippedCount.addAndGet(count);
+    }
+
+    @Override
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+/**
+ * Finds successive matches of a compiled regular expression in an input.
+ */
+public interface RegexMatcher {
+    /**
+     * Finds the next match, starting where the previous match ended.
+     * @return whether there was a match
+     */
+    boolean find();
+
+    /**
+     * @return the text of the last match found.
+     */
+    String group();
+
+    /**
+     * @return the index in the input of the start of the last match found.
+     */
+    int start();
+}
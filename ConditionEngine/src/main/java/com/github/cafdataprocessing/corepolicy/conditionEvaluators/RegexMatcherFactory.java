@@ -25,4 +25,9 @@ import java.util.regex.Pattern;
  */
 public interface RegexMatcherFactory {
     public Pattern getPattern(String regexString) throws CpeException;
+
+    /**
+     * Get the regex string compiled for the engine it is to be run with.
+     */
+    public CompiledRegex getRegex(String regexString) throws CpeException;
 }
@@ -40,20 +40,29 @@ public class RegexMatcherFactoryImpl implements RegexMatcherFactory {
     private final static Logger logger = LoggerFactory.getLogger(RegexMatcherFactoryImpl.class);
 
     private LoadingCache<String, Pattern> patternCache;
+    private LoadingCache<String, CompiledRegex> regexCache;
 
     @Autowired
     public RegexMatcherFactoryImpl(EngineProperties engineProperties){
 
         Integer maxPatternCacheSize = 100000;
         Integer patternCacheExpiryHours = 24;
+        String regexEngine = null;
 
         try {
             maxPatternCacheSize = engineProperties.getRegexCacheMaxsize();
             patternCacheExpiryHours = engineProperties.getRegexCacheExpiryHours();
+            regexEngine = engineProperties.getRegexEngine();
         } catch (Exception e) {
             logger.warn("Problem loading pattern cache settings from config, using default.", e);
         }
 
+        // Expressions are run with the linear engine where their syntax allows, unless backtracking is configured.
+        final boolean linearEngineEnabled = RegexEngine.isChosenPerExpression(regexEngine);
+        if (regexEngine != null && linearEngineEnabled && !"auto".equalsIgnoreCase(regexEngine)) {
+            logger.warn("Unknown regex engine " + regexEngine + ", choosing the engine per expression.");
+        }
+
         patternCache = CacheBuilder
                 .newBuilder()
                 .maximumSize(maxPatternCacheSize)
@@ -65,6 +74,18 @@ public class RegexMatcherFactoryImpl implements RegexMatcherFactory {
                        }
                     }
                 );
+
+        regexCache = CacheBuilder
+                .newBuilder()
+                .maximumSize(maxPatternCacheSize)
+                .expireAfterAccess(patternCacheExpiryHours, TimeUnit.HOURS)
+                .build(
+                    new CacheLoader<String, CompiledRegex>() {
+                       public CompiledRegex load(String regexString) throws Exception{
+                           return compile(patternCache.get(regexString), linearEngineEnabled);
+                       }
+                    }
+                );
     }
 
     public Pattern getPattern(String regexString) throws CpeException {
@@ -75,4 +96,23 @@ public class RegexMatcherFactoryImpl implements RegexMatcherFactory {
             throw new BackEndRequestFailedCpeException(ex);
         }
     }
+
+    public CompiledRegex getRegex(String regexString) throws CpeException {
+        try {
+            return regexCache.get(regexString);
+        }
+        catch (Exception ex){
+            throw new BackEndRequestFailedCpeException(ex);
+        }
+    }
+
+    /**
+     * Wraps a compiled pattern for the linear engine if enabled and its syntax allows, otherwise for java.util.regex.
+     */
+    static CompiledRegex compile(Pattern pattern, boolean linearEngineEnabled) {
+        if (linearEngineEnabled && RegexEngine.forExpression(pattern.pattern()) == RegexEngine.LINEAR) {
+            return new LinearRegex(pattern);
+        }
+        return new BacktrackingRegex(pattern);
+    }
 }
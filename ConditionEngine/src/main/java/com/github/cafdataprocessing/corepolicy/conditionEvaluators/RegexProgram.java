@@ -0,0 +1,587 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of regular expressions parsed and compiled into a single Thompson NFA. Only the subset of the java.util.regex
+ * syntax which needs no backtracking is accepted: characters, escapes, character classes, the dot, groups,
+ * alternation and greedy or reluctant quantifiers. Anchors, boundaries, back references, look arounds, inline flags,
+ * possessive quantifiers and supplementary characters are rejected with an UnsupportedPatternException, as is any
+ * syntax java.util.regex would not accept. Unless only whether an expression matches is needed, so is a quantifier
+ * over an expression which can match the empty string: java.util.regex stops repeating such an expression once an
+ * iteration matches nothing, which an NFA cannot follow, so the matches found could differ.
+ */
+final class RegexProgram {
+
+    static final int MAX_CHAR = Character.MAX_VALUE;
+
+    // Expressions that would compile to more NFA states than this, through counted repetition, are not supported.
+    private static final int MAX_PATTERN_STATES = 2000;
+
+    // Step states consume a character in their ranges, split states have two epsilon transitions and accept states
+    // report a pattern.
+    static final int STEP = 0;
+    static final int SPLIT = 1;
+    static final int ACCEPT = 2;
+
+    final int[] kinds;
+    final int[][] ranges;
+    final int[] outs;
+    final int[] alternativeOuts;
+    final int[] acceptedPatterns;
+    final int[] startStates;
+
+    /**
+     * @param matchesOnly whether only the presence of a match is needed, rather than the matches java.util.regex finds.
+     */
+    RegexProgram(List<String> patterns, boolean matchesOnly) {
+        NfaBuilder nfa = new NfaBuilder();
+        startStates = new int[patterns.size()];
+        for (int i = 0; i < patterns.size(); i++) {
+            startStates[i] = nfa.compile(new Parser(patterns.get(i), matchesOnly).parse(), i);
+        }
+        kinds = nfa.kinds.stream().mapToInt(Integer::intValue).toArray();
+        ranges = nfa.ranges.toArray(new int[0][]);
+        outs = nfa.outs.stream().mapToInt(Integer::intValue).toArray();
+        alternativeOuts = nfa.alternativeOuts.stream().mapToInt(Integer::intValue).toArray();
+        acceptedPatterns = nfa.acceptedPatterns.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return null if the expression is within the supported subset, otherwise the construct which is not.
+     */
+    static String getUnsupportedReason(String pattern) {
+        return getUnsupportedReason(pattern, false);
+    }
+
+    static String getUnsupportedReason(String pattern, boolean matchesOnly) {
+        if (pattern == null) {
+            return "No expression";
+        }
+        try {
+            NfaBuilder nfa = new NfaBuilder();
+            nfa.compile(new Parser(pattern, matchesOnly).parse(), 0);
+            return null;
+        } catch (UnsupportedPatternException e) {
+            return e.getMessage();
+        }
+    }
+
+    static boolean isSupported(String pattern) {
+        return getUnsupportedReason(pattern) == null;
+    }
+
+    static boolean isSupported(String pattern, boolean matchesOnly) {
+        return getUnsupportedReason(pattern, matchesOnly) == null;
+    }
+
+    int size() {
+        return kinds.length;
+    }
+
+    /**
+     * @return whether the sorted ranges of a step state include the character.
+     */
+    static boolean contains(int[] stateRanges, int c) {
+        for (int i = 0; i < stateRanges.length; i += 2) {
+            if (c < stateRanges[i]) {
+                return false;
+            }
+            if (c <= stateRanges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Thrown for an expression outside the supported subset, the message naming the construct.
+     */
+    static final class UnsupportedPatternException extends RuntimeException {
+        UnsupportedPatternException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Syntax tree of a parsed expression.
+     */
+    private interface Node {
+    }
+
+    private static final class CharacterSet implements Node {
+        // Sorted, non overlapping, inclusive ranges as start and end pairs.
+        private final int[] ranges;
+
+        CharacterSet(int[] ranges) {
+            this.ranges = ranges;
+        }
+    }
+
+    private static final class Sequence implements Node {
+        private final List<Node> items;
+
+        Sequence(List<Node> items) {
+            this.items = items;
+        }
+    }
+
+    private static final class Alternation implements Node {
+        private final List<Node> alternatives;
+
+        Alternation(List<Node> alternatives) {
+            this.alternatives = alternatives;
+        }
+    }
+
+    private static final class Repetition implements Node {
+        private final Node node;
+        private final int min;
+        // -1 when unbounded.
+        private final int max;
+        private final boolean greedy;
+
+        Repetition(Node node, int min, int max, boolean greedy) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+            this.greedy = greedy;
+        }
+    }
+
+    /**
+     * Recursive descent parser for the supported subset of the java.util.regex syntax, throwing
+     * UnsupportedPatternException for anything else, including syntax java.util.regex would reject.
+     */
+    private static final class Parser {
+        private static final int[] DIGITS = {'0', '9'};
+        private static final int[] WORD_CHARACTERS = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+        private static final int[] WHITESPACE = {'\t', '\r', ' ', ' '};
+        private static final int[] LINE_TERMINATORS = {'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'};
+
+        private final String pattern;
+        private final boolean matchesOnly;
+        private int position;
+
+        Parser(String pattern, boolean matchesOnly) {
+            this.pattern = pattern;
+            this.matchesOnly = matchesOnly;
+        }
+
+        Node parse() {
+            Node node = parseAlternation();
+            if (position != pattern.length()) {
+                throw new UnsupportedPatternException("Unexpected " + pattern.charAt(position));
+            }
+            return node;
+        }
+
+        private Node parseAlternation() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(parseSequence());
+            while (peek() == '|') {
+                position++;
+                alternatives.add(parseSequence());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Alternation(alternatives);
+        }
+
+        private Node parseSequence() {
+            List<Node> items = new ArrayList<>();
+            while (position < pattern.length() && peek() != '|' && peek() != ')') {
+                items.add(parseQuantified(parseAtom()));
+            }
+            return items.size() == 1 ? items.get(0) : new Sequence(items);
+        }
+
+        private Node parseQuantified(Node atom) {
+            int min;
+            int max;
+            switch (peek()) {
+                case '*':
+                    min = 0;
+                    max = -1;
+                    position++;
+                    break;
+                case '+':
+                    min = 1;
+                    max = -1;
+                    position++;
+                    break;
+                case '?':
+                    min = 0;
+                    max = 1;
+                    position++;
+                    break;
+                case '{':
+                    position++;
+                    min = parseNumber();
+                    max = min;
+                    if (peek() == ',') {
+                        position++;
+                        max = peek() == '}' ? -1 : parseNumber();
+                    }
+                    expect('}');
+                    if (max != -1 && max < min) {
+                        throw new UnsupportedPatternException("Invalid repetition range");
+                    }
+                    break;
+                default:
+                    return atom;
+            }
+            // Possessive quantifiers give up matches a backtracking engine would otherwise find.
+            boolean greedy = true;
+            if (peek() == '?') {
+                greedy = false;
+                position++;
+            } else if (peek() == '+') {
+                throw new UnsupportedPatternException("Possessive quantifier");
+            }
+            if (!matchesOnly && isNullable(atom)) {
+                throw new UnsupportedPatternException("Quantifier over an expression which can match the empty string");
+            }
+            return new Repetition(atom, min, max, greedy);
+        }
+
+        private static boolean isNullable(Node node) {
+            if (node instanceof CharacterSet) {
+                return false;
+            }
+            if (node instanceof Sequence) {
+                return ((Sequence) node).items.stream().allMatch(Parser::isNullable);
+            }
+            if (node instanceof Alternation) {
+                return ((Alternation) node).alternatives.stream().anyMatch(Parser::isNullable);
+            }
+            Repetition repetition = (Repetition) node;
+            return repetition.min == 0 || isNullable(repetition.node);
+        }
+
+        private int parseNumber() {
+            int start = position;
+            while (isDigit(peek()) && position - start < 5) {
+                position++;
+            }
+            if (start == position || isDigit(peek())) {
+                throw new UnsupportedPatternException("Invalid repetition count");
+            }
+            return Integer.parseInt(pattern.substring(start, position));
+        }
+
+        private Node parseAtom() {
+            char c = pattern.charAt(position++);
+            switch (c) {
+                case '(':
+                    if (peek() == '?') {
+                        skipNonCapturingGroupPrefix();
+                    }
+                    Node group = parseAlternation();
+                    expect(')');
+                    return group;
+                case '[':
+                    return new CharacterSet(parseClass());
+                case '.':
+                    return new CharacterSet(complement(LINE_TERMINATORS));
+                case '\\':
+                    return new CharacterSet(parseEscape(false));
+                case '^':
+                case '$':
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw new UnsupportedPatternException("Unsupported " + c);
+                default:
+                    if (Character.isSurrogate(c)) {
+                        throw new UnsupportedPatternException("Supplementary character");
+                    }
+                    return new CharacterSet(new int[]{c, c});
+            }
+        }
+
+        private void skipNonCapturingGroupPrefix() {
+            position++;
+            if (peek() == ':') {
+                position++;
+                return;
+            }
+            // Named capturing groups behave as plain groups, other constructs such as look arounds and flags do not.
+            if (peek() == '<' && position + 1 < pattern.length() && isAsciiLetter(pattern.charAt(position + 1))) {
+                position++;
+                while (isAsciiLetter(peek()) || isDigit(peek())) {
+                    position++;
+                }
+                expect('>');
+                return;
+            }
+            throw new UnsupportedPatternException("Unsupported group construct");
+        }
+
+        private int[] parseClass() {
+            boolean negated = false;
+            if (peek() == '^') {
+                negated = true;
+                position++;
+            }
+            if (peek() == ']') {
+                throw new UnsupportedPatternException("Empty character class");
+            }
+            List<int[]> items = new ArrayList<>();
+            while (true) {
+                if (position >= pattern.length()) {
+                    throw new UnsupportedPatternException("Unclosed character class");
+                }
+                char c = pattern.charAt(position++);
+                if (c == ']') {
+                    break;
+                }
+                if (c == '[' || (c == '&' && peek() == '&')) {
+                    throw new UnsupportedPatternException("Nested character class");
+                }
+                int[] item;
+                if (c == '\\') {
+                    item = parseEscape(true);
+                } else if (Character.isSurrogate(c)) {
+                    throw new UnsupportedPatternException("Supplementary character");
+                } else {
+                    item = new int[]{c, c};
+                }
+                if (peek() == '-' && position + 1 < pattern.length() && pattern.charAt(position + 1) != ']') {
+                    if (item.length != 2 || item[0] != item[1]) {
+                        throw new UnsupportedPatternException("Invalid range");
+                    }
+                    position++;
+                    char end = pattern.charAt(position++);
+                    int[] endItem;
+                    if (end == '\\') {
+                        endItem = parseEscape(true);
+                    } else if (end == '[' || Character.isSurrogate(end)) {
+                        throw new UnsupportedPatternException("Invalid range");
+                    } else {
+                        endItem = new int[]{end, end};
+                    }
+                    if (endItem.length != 2 || endItem[0] != endItem[1] || endItem[0] < item[0]) {
+                        throw new UnsupportedPatternException("Invalid range");
+                    }
+                    item = new int[]{item[0], endItem[0]};
+                }
+                items.add(item);
+            }
+            int[] union = union(items);
+            return negated ? complement(union) : union;
+        }
+
+        private int[] parseEscape(boolean inClass) {
+            if (position >= pattern.length()) {
+                throw new UnsupportedPatternException("Trailing backslash");
+            }
+            char c = pattern.charAt(position++);
+            switch (c) {
+                case 'd':
+                    return DIGITS;
+                case 'D':
+                    return complement(DIGITS);
+                case 'w':
+                    return WORD_CHARACTERS;
+                case 'W':
+                    return complement(WORD_CHARACTERS);
+                case 's':
+                    return WHITESPACE;
+                case 'S':
+                    return complement(WHITESPACE);
+                case 't':
+                    return single('\t');
+                case 'n':
+                    return single('\n');
+                case 'r':
+                    return single('\r');
+                case 'f':
+                    return single('\f');
+                case 'a':
+                    return single('\u0007');
+                case 'e':
+                    return single('\u001B');
+                case 'x':
+                    return single(parseHex(2));
+                case 'u':
+                    return single(parseHex(4));
+                default:
+                    // Any other letter or digit is an escape construct outside the subset, such as a boundary, a
+                    // back reference or a property class; any other character stands for itself.
+                    if (Character.isLetterOrDigit(c) || Character.isSurrogate(c)) {
+                        throw new UnsupportedPatternException("Unsupported escape \\" + c);
+                    }
+                    return single(c);
+            }
+        }
+
+        private int parseHex(int digits) {
+            if (position + digits > pattern.length()) {
+                throw new UnsupportedPatternException("Invalid hexadecimal escape");
+            }
+            int value = 0;
+            for (int i = 0; i < digits; i++) {
+                int digit = Character.digit(pattern.charAt(position++), 16);
+                if (digit < 0) {
+                    throw new UnsupportedPatternException("Invalid hexadecimal escape");
+                }
+                value = value * 16 + digit;
+            }
+            if (Character.isSurrogate((char) value)) {
+                throw new UnsupportedPatternException("Supplementary character");
+            }
+            return value;
+        }
+
+        private char peek() {
+            return position < pattern.length() ? pattern.charAt(position) : '\0';
+        }
+
+        private void expect(char c) {
+            if (position >= pattern.length() || pattern.charAt(position) != c) {
+                throw new UnsupportedPatternException("Expected " + c);
+            }
+            position++;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isAsciiLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static int[] single(int c) {
+            return new int[]{c, c};
+        }
+
+        private static int[] union(List<int[]> items) {
+            List<int[]> pairs = new ArrayList<>();
+            for (int[] item : items) {
+                for (int i = 0; i < item.length; i += 2) {
+                    pairs.add(new int[]{item[i], item[i + 1]});
+                }
+            }
+            pairs.sort((a, b) -> Integer.compare(a[0], b[0]));
+            List<Integer> merged = new ArrayList<>();
+            for (int[] pair : pairs) {
+                int last = merged.size() - 1;
+                if (last > 0 && pair[0] <= merged.get(last) + 1) {
+                    merged.set(last, Math.max(merged.get(last), pair[1]));
+                } else {
+                    merged.add(pair[0]);
+                    merged.add(pair[1]);
+                }
+            }
+            return merged.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private static int[] complement(int[] ranges) {
+            List<Integer> result = new ArrayList<>();
+            int next = 0;
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ranges[i] > next) {
+                    result.add(next);
+                    result.add(ranges[i] - 1);
+                }
+                next = ranges[i + 1] + 1;
+            }
+            if (next <= MAX_CHAR) {
+                result.add(next);
+                result.add(MAX_CHAR);
+            }
+            return result.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Thompson construction of the NFA, each fragment being compiled in front of the state it continues to. The out
+     * transition of a split state is the one a backtracking engine would try first.
+     */
+    private static final class NfaBuilder {
+        private final List<Integer> kinds = new ArrayList<>();
+        private final List<int[]> ranges = new ArrayList<>();
+        private final List<Integer> outs = new ArrayList<>();
+        private final List<Integer> alternativeOuts = new ArrayList<>();
+        private final List<Integer> acceptedPatterns = new ArrayList<>();
+        private int patternStart;
+
+        private int add(int kind, int[] stateRanges, int out, int alternativeOut, int pattern) {
+            kinds.add(kind);
+            ranges.add(stateRanges);
+            outs.add(out);
+            alternativeOuts.add(alternativeOut);
+            acceptedPatterns.add(pattern);
+            if (kinds.size() - patternStart > MAX_PATTERN_STATES) {
+                throw new UnsupportedPatternException("Expression too large");
+            }
+            return kinds.size() - 1;
+        }
+
+        /**
+         * Compiles a pattern ending in its accept state, returning the pattern's start state.
+         */
+        int compile(Node node, int pattern) {
+            patternStart = kinds.size();
+            return compileNode(node, add(ACCEPT, null, -1, -1, pattern));
+        }
+
+        private int compileNode(Node node, int next) {
+            if (node instanceof CharacterSet) {
+                return add(STEP, ((CharacterSet) node).ranges, next, -1, -1);
+            }
+            if (node instanceof Sequence) {
+                List<Node> items = ((Sequence) node).items;
+                int start = next;
+                for (int i = items.size() - 1; i >= 0; i--) {
+                    start = compileNode(items.get(i), start);
+                }
+                return start;
+            }
+            if (node instanceof Alternation) {
+                List<Node> alternatives = ((Alternation) node).alternatives;
+                int start = compileNode(alternatives.get(alternatives.size() - 1), next);
+                for (int i = alternatives.size() - 2; i >= 0; i--) {
+                    start = add(SPLIT, null, compileNode(alternatives.get(i), next), start, -1);
+                }
+                return start;
+            }
+            Repetition repetition = (Repetition) node;
+            int start = next;
+            if (repetition.max == -1) {
+                // A loop state that either runs the node again or continues.
+                int loop = add(SPLIT, null, -1, -1, -1);
+                int body = compileNode(repetition.node, loop);
+                outs.set(loop, repetition.greedy ? body : next);
+                alternativeOuts.set(loop, repetition.greedy ? next : body);
+                start = loop;
+            } else {
+                for (int i = repetition.min; i < repetition.max; i++) {
+                    int body = compileNode(repetition.node, start);
+                    start = repetition.greedy ? add(SPLIT, null, body, next, -1) : add(SPLIT, null, next, body, -1);
+                }
+            }
+            for (int i = 0; i < repetition.min; i++) {
+                start = compileNode(repetition.node, start);
+            }
+            return start;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds which of a set of regular expressions occur in a text with a single pass over the text. The expressions are
+ * compiled together into one {@link RegexProgram}, whose NFA is turned into a DFA lazily as texts are scanned.
+ * Expressions outside the subset the program supports are rejected by {@link #isSupported(String)} and have to be
+ * run with java.util.regex.
+ * <p>
+ * A scan only tells whether an expression occurs, the matched text has to be found with java.util.regex. Texts
+ * containing surrogate characters, which java.util.regex treats as code points, report every expression as occurring.
+ */
+final class RegexSetAutomaton {
+
+    // Once the DFA holds this many transition cells, further states are computed for each use rather than kept.
+    private static final int MAX_CACHED_CELLS = 1 << 20;
+
+    private final int patternCount;
+    private final int[] kinds;
+    private final int[][] ranges;
+    private final int[] outs;
+    private final int[] alternativeOuts;
+    private final int[] acceptedPatterns;
+    private final int[] startStates;
+
+    // Characters are mapped to classes which every step state treats alike.
+    private final int[] classBoundaries;
+    private final int[] asciiClasses;
+    private final int classCount;
+
+    private final Map<StateKey, DfaState> dfaStates = new ConcurrentHashMap<>();
+    private final DfaState startState;
+
+    RegexSetAutomaton(List<String> patterns) {
+        RegexProgram program = new RegexProgram(patterns, true);
+        patternCount = patterns.size();
+        kinds = program.kinds;
+        ranges = program.ranges;
+        outs = program.outs;
+        alternativeOuts = program.alternativeOuts;
+        acceptedPatterns = program.acceptedPatterns;
+        startStates = program.startStates;
+
+        BitSet boundaries = new BitSet(RegexProgram.MAX_CHAR + 2);
+        boundaries.set(0);
+        for (int[] stateRanges : ranges) {
+            if (stateRanges == null) {
+                continue;
+            }
+            for (int i = 0; i < stateRanges.length; i += 2) {
+                boundaries.set(stateRanges[i]);
+                if (stateRanges[i + 1] < RegexProgram.MAX_CHAR) {
+                    boundaries.set(stateRanges[i + 1] + 1);
+                }
+            }
+        }
+        classBoundaries = boundaries.stream().toArray();
+        classCount = classBoundaries.length;
+        asciiClasses = new int[128];
+        for (int c = 0; c < asciiClasses.length; c++) {
+            asciiClasses[c] = findClass(c);
+        }
+
+        startState = getState(closure(new BitSet(kinds.length), startStates));
+    }
+
+    /**
+     * @return whether the expression is within the syntax the automaton accepts.
+     */
+    static boolean isSupported(String pattern) {
+        return RegexProgram.isSupported(pattern, true);
+    }
+
+    /**
+     * Scans a text, setting the index of every pattern which occurs in it.
+     * @param text the text to scan
+     * @param found the indexes of the patterns found so far, updated with those found in the text
+     */
+    void scan(CharSequence text, BitSet found) {
+        DfaState state = startState;
+        int remaining = patternCount - found.cardinality() - state.report(found);
+        for (int i = 0; i < text.length() && remaining > 0; i++) {
+            char c = text.charAt(i);
+            if (Character.isSurrogate(c)) {
+                found.set(0, patternCount);
+                return;
+            }
+            int characterClass = c < 128 ? asciiClasses[c] : findClass(c);
+            DfaState next = state.next[characterClass];
+            if (next == null) {
+                next = computeNext(state, characterClass);
+            }
+            state = next;
+            if (state.patterns.length > 0) {
+                remaining -= state.report(found);
+            }
+        }
+    }
+
+    int getPatternCount() {
+        return patternCount;
+    }
+
+    private int findClass(int c) {
+        int index = Arrays.binarySearch(classBoundaries, c);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private DfaState computeNext(DfaState state, int characterClass) {
+        int c = classBoundaries[characterClass];
+        BitSet nextStates = new BitSet(kinds.length);
+        for (int nfaState : state.nfaStates) {
+            if (kinds[nfaState] == RegexProgram.STEP && RegexProgram.contains(ranges[nfaState], c)) {
+                closure(nextStates, outs[nfaState]);
+            }
+        }
+        // The search is unanchored, so every pattern may start again after each character.
+        closure(nextStates, startStates);
+        DfaState next = getState(nextStates);
+        if (dfaStates.get(next.key) == next) {
+            state.next[characterClass] = next;
+        }
+        return next;
+    }
+
+    private DfaState getState(BitSet nfaStates) {
+        // Split states only lead to the other states, so they are left out to find equivalent sets.
+        StateKey key = new StateKey(nfaStates.stream().filter(s -> kinds[s] != RegexProgram.SPLIT).toArray());
+        DfaState state = dfaStates.get(key);
+        if (state != null) {
+            return state;
+        }
+        state = new DfaState(key);
+        if ((long) dfaStates.size() * classCount >= MAX_CACHED_CELLS) {
+            return state;
+        }
+        DfaState existing = dfaStates.putIfAbsent(key, state);
+        return existing != null ? existing : state;
+    }
+
+    private BitSet closure(BitSet states, int... roots) {
+        int[] pending = new int[16];
+        for (int root : roots) {
+            int size = 0;
+            pending[size++] = root;
+            while (size > 0) {
+                int state = pending[--size];
+                if (states.get(state)) {
+                    continue;
+                }
+                states.set(state);
+                if (kinds[state] == RegexProgram.SPLIT) {
+                    if (size + 2 > pending.length) {
+                        pending = Arrays.copyOf(pending, pending.length * 2);
+                    }
+                    pending[size++] = alternativeOuts[state];
+                    pending[size++] = outs[state];
+                }
+            }
+        }
+        return states;
+    }
+
+    /**
+     * A DFA state: the set of NFA states the automaton can be in, the patterns accepted in it and the states reached
+     * from it for each character class, filled in as they are computed.
+     */
+    private final class DfaState {
+        private final StateKey key;
+        private final int[] nfaStates;
+        private final int[] patterns;
+        private final DfaState[] next;
+
+        DfaState(StateKey key) {
+            this.key = key;
+            this.nfaStates = key.states;
+            this.patterns = Arrays.stream(nfaStates).filter(s -> kinds[s] == RegexProgram.ACCEPT).map(s -> acceptedPatterns[s]).toArray();
+            this.next = new DfaState[classCount];
+        }
+
+        /**
+         * @return the number of patterns found which had not been found before.
+         */
+        int report(BitSet found) {
+            int reported = 0;
+            for (int pattern : patterns) {
+                if (!found.get(pattern)) {
+                    found.set(pattern);
+                    reported++;
+                }
+            }
+            return reported;
+        }
+    }
+
+    private static final class StateKey {
+        private final int[] states;
+        private final int hashCode;
+
+        StateKey(int[] states) {
+            this.states = states;
+            this.hashCode = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateKey && Arrays.equals(states, ((StateKey) o).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
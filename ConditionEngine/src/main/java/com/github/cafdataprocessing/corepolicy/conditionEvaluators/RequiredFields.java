@@ -0,0 +1,291 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.FieldLabel;
+import com.github.cafdataprocessing.corepolicy.common.dto.Lexicon;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionType;
+import com.github.cafdataprocessing.corepolicy.common.dto.UnmatchedCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.*;
+import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
+
+import java.util.*;
+
+/**
+ * Derives the fields a condition needs on a document before it can match. The requirement is a list of sets of
+ * fields, of which at least one field in every set has to be present.
+ */
+final class RequiredFields {
+    private final static int maximumDepth = 16;
+
+    private RequiredFields() {
+    }
+
+    /**
+     * Gets the fields the condition needs before it can match, an empty list if it could match without any.
+     */
+    static List<Set<String>> of(Condition condition, EnvironmentSnapshot environmentSnapshot) {
+        return of(condition, environmentSnapshot, 0);
+    }
+
+    /**
+     * Whether the document has at least one field of every set.
+     */
+    static boolean isPresent(List<Set<String>> requiredFields, DocumentUnderEvaluation document) {
+        for (Set<String> fields : requiredFields) {
+            boolean present = false;
+            for (String field : fields) {
+                if (document.getMetadata().containsKey(field) || document.getStreams().containsKey(field)) {
+                    present = true;
+                    break;
+                }
+            }
+            if (!present) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the ids of the conditions evaluated against the document itself, rather than its children, when evaluating
+     * the condition.
+     */
+    static Set<Long> conditionIds(Condition condition, EnvironmentSnapshot environmentSnapshot) {
+        Set<Long> conditionIds = new HashSet<>();
+        addConditionIds(condition, environmentSnapshot, conditionIds, 0);
+        return conditionIds;
+    }
+
+    /**
+     * Whether the document holds a result, restored from an earlier evaluation or from this run, for any of the
+     * conditions. Such a result is used in place of evaluating the condition, so it may match without the fields.
+     */
+    static boolean hasCachedResults(Set<Long> conditionIds, DocumentUnderEvaluation document) {
+        for (Long conditionId : conditionIds) {
+            if (document.getConditionEvaluationResult(conditionId) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Works out the result evaluating the condition would give, without evaluating it, when it fails because a field it
+     * needs is missing from a document with all of its metadata. Like an evaluation, the result is recorded on the
+     * document. Children are considered in the order they would be evaluated, so the conditions reported unmatched are
+     * the failing field conditions and their ancestors, as evaluation would report.
+     * @return the result, or null if part of the condition would have to be evaluated to know its result
+     */
+    static ConditionEvaluationResult unmatchedOnMissingFields(Condition condition, DocumentUnderEvaluation document,
+                                                              EnvironmentSnapshot environmentSnapshot) {
+        List<Condition> unmatchedConditions = new ArrayList<>();
+        if (!addUnmatchedConditions(condition, document, environmentSnapshot, unmatchedConditions, 0)) {
+            return null;
+        }
+
+        ConditionEvaluationResult result = new ConditionEvaluationResult();
+        for (Condition unmatchedCondition : unmatchedConditions) {
+            // fragments are not reported, only the conditions they point at.
+            if (!(unmatchedCondition instanceof FragmentCondition)) {
+                UnmatchedCondition unmatched = new UnmatchedCondition(document.getReference(), unmatchedCondition);
+                result.getUnmatchedConditions().add(unmatched);
+                document.addConditionEvaluationResult(unmatched);
+            }
+            document.setConditionHasBeenEvaluatedThisRun(unmatchedCondition.id);
+        }
+        return result;
+    }
+
+    /**
+     * Adds the conditions which evaluating the condition would report unmatched, children before their parents.
+     * @return false if the condition might match, or something would have to be evaluated to know that it does not
+     */
+    private static boolean addUnmatchedConditions(Condition condition, DocumentUnderEvaluation document,
+                                                  EnvironmentSnapshot environmentSnapshot, List<Condition> unmatchedConditions,
+                                                  int depth) {
+        if (condition == null || depth > maximumDepth || condition.target == ConditionTarget.ALL
+                || condition.target == ConditionTarget.CHILDREN
+                || (condition.target == ConditionTarget.CONTAINER && document.getIsExcluded())
+                || document.hasConditionBeenEvaluatedThisRun(condition.id)
+                || document.getConditionEvaluationResult(condition.id) != null) {
+            return false;
+        }
+
+        if (condition instanceof FieldCondition) {
+            FieldCondition fieldCondition = (FieldCondition) condition;
+            if (!needsField(fieldCondition, environmentSnapshot) || !isFieldMissing(fieldCondition.field, document, environmentSnapshot)) {
+                return false;
+            }
+            unmatchedConditions.add(condition);
+            return true;
+        }
+        if (condition instanceof FragmentCondition) {
+            Long target = ((FragmentCondition) condition).value;
+            if (target == null || !addUnmatchedConditions(environmentSnapshot.getCondition(target), document,
+                    environmentSnapshot, unmatchedConditions, depth + 1)) {
+                return false;
+            }
+            unmatchedConditions.add(condition);
+            return true;
+        }
+        if (condition instanceof BooleanCondition) {
+            BooleanCondition booleanCondition = (BooleanCondition) condition;
+            if (booleanCondition.children == null || booleanCondition.children.isEmpty()) {
+                return false;
+            }
+            if (booleanCondition.operator == BooleanOperator.AND) {
+                // evaluation stops at the first child which fails, which has to be the first child.
+                if (!addUnmatchedConditions(booleanCondition.children.iterator().next(), document, environmentSnapshot,
+                        unmatchedConditions, depth + 1)) {
+                    return false;
+                }
+            } else if (booleanCondition.operator == BooleanOperator.OR) {
+                for (Condition child : booleanCondition.children) {
+                    if (!addUnmatchedConditions(child, document, environmentSnapshot, unmatchedConditions, depth + 1)) {
+                        return false;
+                    }
+                }
+            } else {
+                return false;
+            }
+            unmatchedConditions.add(condition);
+            return true;
+        }
+        // A not condition matches when its condition does not.
+        return false;
+    }
+
+    /**
+     * Whether the field, or all of the fields of the field label of that name, are missing from the document.
+     */
+    private static boolean isFieldMissing(String field, DocumentUnderEvaluation document, EnvironmentSnapshot environmentSnapshot) {
+        FieldLabel fieldLabel = environmentSnapshot.getFieldLabel(field);
+        if (fieldLabel == null) {
+            return !document.getMetadata().containsKey(field) && !document.getStreams().containsKey(field);
+        }
+        if (fieldLabel.fields == null || document.hasLabelValues(fieldLabel.name)) {
+            return false;
+        }
+        for (String labelField : fieldLabel.fields) {
+            if (document.getMetadata().containsKey(labelField) || document.getStreams().containsKey(labelField)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addConditionIds(Condition condition, EnvironmentSnapshot environmentSnapshot, Set<Long> conditionIds, int depth) {
+        if (condition == null || depth > maximumDepth
+                || (condition.target != null && condition.target != ConditionTarget.CONTAINER)) {
+            return;
+        }
+        if (condition.id != null) {
+            conditionIds.add(condition.id);
+        }
+        if (condition instanceof BooleanCondition && ((BooleanCondition) condition).children != null) {
+            for (Condition child : ((BooleanCondition) condition).children) {
+                addConditionIds(child, environmentSnapshot, conditionIds, depth + 1);
+            }
+        } else if (condition instanceof NotCondition) {
+            addConditionIds(((NotCondition) condition).condition, environmentSnapshot, conditionIds, depth + 1);
+        } else if (condition instanceof FragmentCondition && ((FragmentCondition) condition).value != null) {
+            addConditionIds(environmentSnapshot.getCondition(((FragmentCondition) condition).value), environmentSnapshot,
+                    conditionIds, depth + 1);
+        }
+    }
+
+    private static List<Set<String>> of(Condition condition, EnvironmentSnapshot environmentSnapshot, int depth) {
+        // Conditions on child documents look for the fields on those documents instead.
+        if (condition == null || depth > maximumDepth
+                || (condition.target != null && condition.target != ConditionTarget.CONTAINER)) {
+            return Collections.emptyList();
+        }
+
+        if (condition instanceof BooleanCondition) {
+            return ofBoolean((BooleanCondition) condition, environmentSnapshot, depth);
+        }
+        if (condition instanceof FragmentCondition) {
+            Long target = ((FragmentCondition) condition).value;
+            return target == null ? Collections.emptyList() : of(environmentSnapshot.getCondition(target), environmentSnapshot, depth + 1);
+        }
+        if (condition instanceof FieldCondition && needsField((FieldCondition) condition, environmentSnapshot)) {
+            String field = ((FieldCondition) condition).field;
+            FieldLabel fieldLabel = environmentSnapshot.getFieldLabel(field);
+            Set<String> fields = new HashSet<>();
+            if (fieldLabel == null) {
+                fields.add(field);
+            } else if (fieldLabel.fields != null) {
+                fields.addAll(fieldLabel.fields);
+            }
+            return Collections.singletonList(fields);
+        }
+        // A not condition matches when its condition does not, which it may well do without the fields.
+        return Collections.emptyList();
+    }
+
+    private static List<Set<String>> ofBoolean(BooleanCondition condition, EnvironmentSnapshot environmentSnapshot, int depth) {
+        if (condition.children == null || condition.children.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        if (condition.operator == BooleanOperator.AND) {
+            List<Set<String>> requiredFields = new ArrayList<>();
+            for (Condition child : condition.children) {
+                requiredFields.addAll(of(child, environmentSnapshot, depth + 1));
+            }
+            return requiredFields;
+        }
+
+        if (condition.operator == BooleanOperator.OR) {
+            // The child which matches has all of its required fields, so one field from the smallest set of each
+            // child has to be present.
+            Set<String> anyOfFields = new HashSet<>();
+            for (Condition child : condition.children) {
+                List<Set<String>> childRequiredFields = of(child, environmentSnapshot, depth + 1);
+                if (childRequiredFields.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                anyOfFields.addAll(Collections.min(childRequiredFields, Comparator.comparing(Set::size)));
+            }
+            return Collections.singletonList(anyOfFields);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Whether the condition cannot match when its field is missing from a document with all of its metadata. Text
+     * conditions, and lexicons with boolean agent expressions, are queried against the boolean agent, whose
+     * expressions may match on a missing field.
+     */
+    private static boolean needsField(FieldCondition condition, EnvironmentSnapshot environmentSnapshot) {
+        if (condition.field == null) {
+            return false;
+        }
+        if (condition instanceof ExistsCondition || condition instanceof NumberCondition || condition instanceof StringCondition
+                || condition instanceof DateCondition || condition instanceof RegexCondition) {
+            return true;
+        }
+        if (condition instanceof LexiconCondition) {
+            Long lexiconId = ((LexiconCondition) condition).value;
+            Lexicon lexicon = lexiconId == null ? null : environmentSnapshot.getLexicon(lexiconId);
+            return lexicon != null && lexicon.lexiconExpressions != null
+                    && lexicon.lexiconExpressions.stream().allMatch(le -> le.type == LexiconExpressionType.REGEX);
+        }
+        return false;
+    }
+}
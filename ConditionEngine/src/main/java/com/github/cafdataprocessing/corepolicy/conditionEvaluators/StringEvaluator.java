@@ -28,6 +28,8 @@ import org.springframework.stereotype.Component;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Evaluator for String Condition
@@ -35,9 +37,13 @@ import java.util.Locale;
 @Component("StringCondition")
 class StringEvaluator extends FieldConditionEvaluator<StringCondition> {
 
+    private EvaluationPlanCompiler evaluationPlanCompiler;
+
     @Autowired
-    public StringEvaluator(ApiProperties apiProperties) {
-        super(apiProperties);
+    public StringEvaluator(ApiProperties apiProperties, EvaluationPlanCompiler evaluationPlanCompiler,
+                           ConditionResultCache conditionResultCache) {
+        super(apiProperties, conditionResultCache);
+        this.evaluationPlanCompiler = evaluationPlanCompiler;
     }
 
     @Override
@@ -46,45 +52,67 @@ class StringEvaluator extends FieldConditionEvaluator<StringCondition> {
         if(condition.field == null){
             throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.InvalidDataDetected, new IllegalArgumentException("A value is required for condition " + condition.id));
         }
-        final String fieldValue = condition.value.toUpperCase(Locale.getDefault());
-
+        EvaluationPlan evaluationPlan = evaluationPlanCompiler.getPlan(environmentSnapshot);
         final Collection<MetadataValue> fieldValues = document.getValues(condition.field);
-        result.setMatch(isMatch(condition, fieldValue, fieldValues));
+
+        // Contains, starts with and ends with conditions are answered by one scan of the field for all of them.
+        FieldLiteralMatcher matcher = evaluationPlan.getStringConditionMatcher(condition.field);
+        if (matcher != null && matcher.handles(condition.id)) {
+            Set<Long> matchedIds = document.getFieldMatches(matcher, condition.field);
+            if (matchedIds == null) {
+                matchedIds = matcher.match(getTextValues(fieldValues));
+                document.addFieldMatches(matcher, condition.field, matchedIds);
+            }
+            result.setMatch(matchedIds.contains(condition.id));
+        } else {
+            String upperCaseValue = evaluationPlan.getUpperCaseStringValue(condition.id);
+            final String fieldValue = upperCaseValue != null ? upperCaseValue : condition.value.toUpperCase(Locale.getDefault());
+            result.setMatch(isMatch(condition, fieldValue, fieldValues));
+        }
 
         result.populateEvaluationResult( result.isMatch(), condition, document, Collections.singletonList(condition.value), false );
     }
 
+    @Override
+    protected boolean isResultCacheable(StringCondition condition, EnvironmentSnapshot environmentSnapshot) {
+        return true;
+    }
+
     private boolean isMatch(StringCondition condition, String fieldValue, Collection<MetadataValue> metadataValues ) {
         boolean match = false;
 
-        // TODO - make stream aware.
-        Collection<String> fieldValues = MetadataValue.getStringValues(metadataValues);
+        // Values are upper cased a window at a time, or only as far as needed, so long stream values are not copied.
+        Collection<CharSequence> fieldValues = getTextValues(metadataValues);
 
         switch(condition.operator){
             case CONTAINS:
             {
                 match = fieldValues.stream()
-                        .anyMatch(value -> value.toUpperCase(Locale.getDefault()).contains(fieldValue));
+                        .anyMatch(value -> UpperCaseWindows.anyMatch(value, fieldValue.length(), (window, first, last) -> window.contains(fieldValue)));
                 break;
             }
             case ENDS_WITH:
             {
                 match = fieldValues.stream()
-                        .anyMatch(value -> value.toUpperCase(Locale.getDefault()).endsWith(fieldValue));
+                        .anyMatch(value -> UpperCaseWindows.upperCaseSuffix(value, fieldValue.length()).endsWith(fieldValue));
                 break;
             }
             case IS:
             {
                 match = fieldValues.stream()
-                        .anyMatch(value -> value.equalsIgnoreCase(fieldValue));
+                        .anyMatch(value -> value.length() == fieldValue.length() && value.toString().equalsIgnoreCase(fieldValue));
                 break;
             }
             case STARTS_WITH:{
                 match = fieldValues.stream()
-                        .anyMatch(value -> value.toUpperCase(Locale.getDefault()).startsWith(fieldValue));
+                        .anyMatch(value -> UpperCaseWindows.upperCasePrefix(value, fieldValue.length()).startsWith(fieldValue));
                 break;
             }
         }
         return match;
     }
+
+    private static Collection<CharSequence> getTextValues(Collection<MetadataValue> metadataValues) {
+        return metadataValues.stream().map(MetadataValue::getAsCharSequence).collect(Collectors.toList());
+    }
 }
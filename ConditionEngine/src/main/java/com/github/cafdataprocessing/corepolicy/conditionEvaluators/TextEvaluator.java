@@ -37,8 +37,8 @@ class TextEvaluator extends FieldConditionEvaluator<TextCondition> {
 
     @Autowired
     public TextEvaluator(BooleanAgentServices booleanAgentServices,ContentExpressionHelper contentExpressionHelper,
-                         ApiProperties apiProperties) {
-        super(apiProperties);
+                         ApiProperties apiProperties, ConditionResultCache conditionResultCache) {
+        super(apiProperties, conditionResultCache);
         this.booleanAgentServices = booleanAgentServices;
         this.contentExpressionHelper = contentExpressionHelper;
     }
@@ -61,4 +61,9 @@ class TextEvaluator extends FieldConditionEvaluator<TextCondition> {
         result.populateEvaluationResult(isMatch, condition, document, isMatch ? booleanAgentQueryResult.getConditionIdTerms().get(condition.id) : null, true );
     }
 
+    @Override
+    protected boolean isResultCacheable(TextCondition condition, EnvironmentSnapshot environmentSnapshot) {
+        return true;
+    }
+
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import java.util.Locale;
+
+/**
+ * Upper cases a field value a window at a time, so that a long value, such as the text of a stream, is never copied
+ * as a whole. Each window after the first starts the overlap before the end of the one before it, so any text of up
+ * to the overlap in length lies wholly within at least one window. Upper casing never shortens text, so an upper case
+ * literal found in the upper cased value is found in one of the windows when the overlap is at least its length.
+ */
+final class UpperCaseWindows {
+    static final int WINDOW_LENGTH = 1 << 16;
+
+    /**
+     * Tests a window of a value.
+     */
+    interface WindowPredicate {
+        /**
+         * @param window the window, upper cased in the default locale.
+         * @param first whether the window starts at the start of the value.
+         * @param last whether the window ends at the end of the value.
+         */
+        boolean test(String window, boolean first, boolean last);
+    }
+
+    private UpperCaseWindows() {
+    }
+
+    /**
+     * @return whether the predicate holds for any of the windows of the value, stopping at the first that it does.
+     */
+    static boolean anyMatch(CharSequence value, int overlap, WindowPredicate predicate) {
+        int length = value.length();
+        int start = 0;
+        while (true) {
+            int end = extend(value, (int) Math.min((long) start + WINDOW_LENGTH + overlap, length));
+            boolean last = end == length;
+            if (predicate.test(upperCase(value, start, end), start == 0, last)) {
+                return true;
+            }
+            if (last) {
+                return false;
+            }
+            start = Math.max(start + 1, retract(value, end - overlap));
+        }
+    }
+
+    /**
+     * @return the start of the value, long enough that its upper case has the length given, upper cased.
+     */
+    static String upperCasePrefix(CharSequence value, int length) {
+        return upperCase(value, 0, extend(value, Math.min(length, value.length())));
+    }
+
+    /**
+     * @return the end of the value, long enough that its upper case has the length given, upper cased.
+     */
+    static String upperCaseSuffix(CharSequence value, int length) {
+        return upperCase(value, retract(value, Math.max(0, value.length() - length)), value.length());
+    }
+
+    private static String upperCase(CharSequence value, int start, int end) {
+        return value.subSequence(start, end).toString().toUpperCase(Locale.getDefault());
+    }
+
+    /**
+     * Moves an end forward past the low surrogate of a pair it would split.
+     */
+    private static int extend(CharSequence value, int index) {
+        return isSplit(value, index) ? index + 1 : index;
+    }
+
+    /**
+     * Moves a start back to the high surrogate of a pair it would split.
+     */
+    private static int retract(CharSequence value, int index) {
+        return isSplit(value, index) ? index - 1 : index;
+    }
+
+    private static boolean isSplit(CharSequence value, int index) {
+        return index > 0 && index < value.length()
+                && Character.isHighSurrogate(value.charAt(index - 1)) && Character.isLowSurrogate(value.charAt(index));
+    }
+}
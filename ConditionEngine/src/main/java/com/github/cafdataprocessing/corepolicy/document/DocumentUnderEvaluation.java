@@ -17,6 +17,7 @@ package com.github.cafdataprocessing.corepolicy.document;
 
 import com.github.cafdataprocessing.corepolicy.conditionEvaluators.CachedConditionEvaluationResult;
 import com.github.cafdataprocessing.corepolicy.conditionEvaluators.ConditionEvaluationResult;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.FieldMatcher;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Multimap;
 import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentQueryResult;
@@ -28,6 +29,7 @@ import org.slf4j.Logger;
 
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.Set;
 
 /**
  *
@@ -55,6 +57,12 @@ public interface DocumentUnderEvaluation {
     BooleanAgentQueryResult getBooleanAgentQueryResult(String fieldName, LanguagesEnum language);
     BooleanAgentQueryResult getBooleanAgentQueryResult(String fieldName);
 
+    /**
+     * Holds the ids found by a field matcher in the values of a field, so that each matcher scans the field once.
+     */
+    void addFieldMatches(FieldMatcher matcher, String fieldName, Set<Long> matchedIds);
+    Set<Long> getFieldMatches(FieldMatcher matcher, String fieldName);
+
     Boolean getIsExcluded();
     void setIsExcluded(Boolean isExcluded);
     Integer getDepth();
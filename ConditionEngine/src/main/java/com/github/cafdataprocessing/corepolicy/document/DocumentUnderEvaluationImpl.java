@@ -27,7 +27,8 @@ import com.github.cafdataprocessing.corepolicy.common.dto.UnmatchedCondition;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
 import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
 import com.github.cafdataprocessing.corepolicy.conditionEvaluators.CachedConditionEvaluationResult;
-import com.github.cafdataprocessing.corepolicy.multimap.utils.CaseInsensitiveMultimap;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.FieldMatcher;
+import com.github.cafdataprocessing.corepolicy.multimap.utils.LinkedCaseInsensitiveMultimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,9 +47,10 @@ public class DocumentUnderEvaluationImpl implements DocumentUnderEvaluation {
 
     private final static Logger logger = LoggerFactory.getLogger(DocumentUnderEvaluationImpl.class);
 
-    private Multimap<String, MetadataValue> labelValues = new CaseInsensitiveMultimap<>();
-    private Multimap<String, MetadataValue> languageValues = new CaseInsensitiveMultimap<>();
+    private Multimap<String, MetadataValue> labelValues = new LinkedCaseInsensitiveMultimap<>();
+    private Multimap<String, MetadataValue> languageValues = new LinkedCaseInsensitiveMultimap<>();
     private Map<String, BooleanAgentQueryResult> fieldBooleanAgentQueryResults = new HashMap<>();
+    private Map<FieldMatcher, Map<String, Set<Long>>> fieldMatches = new HashMap<>();
     private Collection<DocumentUnderEvaluation> documents = new ArrayList<>();
     private Boolean isExcluded = false;
     private Map<Long, MatchedCondition> matchedConditionEvaluationResults = new HashMap<>();
@@ -61,8 +63,8 @@ public class DocumentUnderEvaluationImpl implements DocumentUnderEvaluation {
      * N.B. We hold onto an object metadata which can represent a string or stream value.
      * This also allows for a hidden caching implementation if required between the 2.
      */
-    private Multimap<String, MetadataValue> metadata = CaseInsensitiveMultimap.create();
-    private Multimap<String, MetadataValue> streams = CaseInsensitiveKeyMultimap.create();
+    private Multimap<String, MetadataValue> metadata = LinkedCaseInsensitiveMultimap.create();
+    private Multimap<String, MetadataValue> streams = LinkedCaseInsensitiveMultimap.create();
 
     private ConditionEngineMetadata conditionEngineMetadata;
     private ApiProperties apiProperties;
@@ -75,6 +77,19 @@ public class DocumentUnderEvaluationImpl implements DocumentUnderEvaluation {
     public DocumentUnderEvaluationImpl(Document document, ConditionEngineMetadata conditionEngineMetadata, ApiProperties apiProperties){
         this(conditionEngineMetadata, apiProperties);
 
+        // build the whole tree first, then decode any previous evaluation information once and apply it in one pass.
+        List<Map.Entry<DocumentUnderEvaluation, Document>> preevaluatedDocuments = new ArrayList<>();
+        addDocument(document, preevaluatedDocuments);
+        setupPreevaluatedInformation(preevaluatedDocuments);
+    }
+
+    private DocumentUnderEvaluationImpl(Document document, ConditionEngineMetadata conditionEngineMetadata, ApiProperties apiProperties,
+                                        List<Map.Entry<DocumentUnderEvaluation, Document>> preevaluatedDocuments){
+        this(conditionEngineMetadata, apiProperties);
+        addDocument(document, preevaluatedDocuments);
+    }
+
+    private void addDocument(Document document, List<Map.Entry<DocumentUnderEvaluation, Document>> preevaluatedDocuments){
         // we hold onto a list of  MetadataValues internally, so convert at this point so we do it only once.
         for( Map.Entry<String, String> entry : document.getMetadata().entries())
         {
@@ -92,12 +107,15 @@ public class DocumentUnderEvaluationImpl implements DocumentUnderEvaluation {
         final int depth = getDepth();
         this.documents = document.getDocuments().stream().
                 map(d -> {
-                    DocumentUnderEvaluation documentUnderEvaluation = new DocumentUnderEvaluationImpl(d, conditionEngineMetadata, apiProperties);
+                    DocumentUnderEvaluation documentUnderEvaluation = new DocumentUnderEvaluationImpl(d, conditionEngineMetadata, apiProperties, preevaluatedDocuments);
                     documentUnderEvaluation.addMetadataString( DocumentFields.ChildDocumentDepth, String.valueOf(depth+1));
                     return documentUnderEvaluation;
                 }).collect(Collectors.toList());
 
-        setupPreevaluatedInformation(document);
+        // children are added first, so their information is applied before that of their parents as it always has been.
+        if(document.getMetadata().containsKey(DocumentFields.EvaluationInformationBlob)){
+            preevaluatedDocuments.add(new AbstractMap.SimpleImmutableEntry<>(this, document));
+        }
     }
 
     public void addConditionEvaluationResult(ConditionEvaluationResult conditionEvaluationResult, Long conditionID ){
@@ -232,6 +250,17 @@ public class DocumentUnderEvaluationImpl implements DocumentUnderEvaluation {
         return fieldBooleanAgentQueryResults.get(fieldName);
     }
 
+    @Override
+    public void addFieldMatches(FieldMatcher matcher, String fieldName, Set<Long> matchedIds) {
+        fieldMatches.computeIfAbsent(matcher, m -> new HashMap<>()).put(fieldName, matchedIds);
+    }
+
+    @Override
+    public Set<Long> getFieldMatches(FieldMatcher matcher, String fieldName) {
+        Map<String, Set<Long>> matches = fieldMatches.get(matcher);
+        return matches == null ? null : matches.get(fieldName);
+    }
+
     @Override
     public void addMetadataString(String key, String value){
         metadata.put(key, new MetadataValue(apiProperties, value));
@@ -348,62 +377,50 @@ public class DocumentUnderEvaluationImpl implements DocumentUnderEvaluation {
         return languageValues.get(getFieldLanguageString(fieldName, language));
     }
 
-    private void setupPreevaluatedInformation(Document document) {
+    private void setupPreevaluatedInformation(List<Map.Entry<DocumentUnderEvaluation, Document>> preevaluatedDocuments) {
 
-        // Check if we have any supplied metadata which has been evaluated before.
-        ConditionEngineResult result = conditionEngineMetadata.createResult(document.getMetadata());
-        applyEvaluationInfo(result, this);
+        // Check if we have any supplied metadata which has been evaluated before, usually only on the root document.
+        for (Map.Entry<DocumentUnderEvaluation, Document> preevaluatedDocument : preevaluatedDocuments) {
+            ConditionEngineResult result = conditionEngineMetadata.createResult(preevaluatedDocument.getValue().getMetadata());
+            applyEvaluationInfo(result, preevaluatedDocument.getKey());
+        }
     }
 
     private static void applyEvaluationInfo(ConditionEngineResult previousResult, DocumentUnderEvaluation documentUnderEvaluation) {
 
-        // recurse down the children applying to each one.
-        Collection<DocumentUnderEvaluation> documents = documentUnderEvaluation.getDocuments();
-
-        for (DocumentUnderEvaluation childDocument : documents) {
-
-            applyEvaluationInfo(previousResult, childDocument);
+        if (previousResult == null
+                || (previousResult.matchedConditions.isEmpty() && previousResult.unmatchedConditions.isEmpty())) {
+            return;
         }
 
-        // Now apply the information to this document itself.
-        setupEvaluationInfoOnThisDocument(previousResult, documentUnderEvaluation);
-    }
-
-    private static void setupEvaluationInfoOnThisDocument(ConditionEngineResult previousResult, DocumentUnderEvaluation documentUnderEvaluation) {
-
-        // Now apply the information to this document itself, ensure the matches are specific to our current document reference.
-        String docRef = documentUnderEvaluation.getReference();
+        // index the documents in the tree by reference, so each condition goes straight to the documents it was
+        // evaluated on. A missing reference and an empty one are treated alike.
+        Map<String, List<DocumentUnderEvaluation>> documentsByReference = new HashMap<>();
+        indexByReference(documentUnderEvaluation, documentsByReference);
 
         // Add all matched conditions
-        if(previousResult != null) {
-            if (previousResult.matchedConditions.size() > 0) {
-
-                for (MatchedCondition mc : previousResult.matchedConditions) {
-
-                    // add on if our docRef isn't empty, but the condition reference is.
-                    // or both are not empty and match.
-                    if ((Strings.isNullOrEmpty(docRef) && Strings.isNullOrEmpty(mc.getReference())) ||
-                            (!Strings.isNullOrEmpty(docRef) && !Strings.isNullOrEmpty(mc.getReference()) && mc.getReference().equals(docRef))) {
-
-                        // ok so both are null, or both have same name.
-                        documentUnderEvaluation.addConditionEvaluationResult(mc);
-                    }
-                }
+        for (MatchedCondition mc : previousResult.matchedConditions) {
+            for (DocumentUnderEvaluation document : documentsByReference.getOrDefault(Strings.nullToEmpty(mc.getReference()), Collections.emptyList())) {
+                document.addConditionEvaluationResult(mc);
             }
+        }
 
-            // Add all unmatched conditions
-            if (previousResult.unmatchedConditions.size() > 0) {
-
-                for (UnmatchedCondition umc : previousResult.unmatchedConditions) {
+        // Add all unmatched conditions
+        for (UnmatchedCondition umc : previousResult.unmatchedConditions) {
+            for (DocumentUnderEvaluation document : documentsByReference.getOrDefault(Strings.nullToEmpty(umc.getReference()), Collections.emptyList())) {
+                document.addConditionEvaluationResult(umc);
+            }
+        }
+    }
 
-                    if ((Strings.isNullOrEmpty(docRef) && Strings.isNullOrEmpty(umc.getReference())) ||
-                            (!Strings.isNullOrEmpty(docRef) && !Strings.isNullOrEmpty(umc.getReference()) && !umc.getReference().equals(docRef))) {
+    private static void indexByReference(DocumentUnderEvaluation documentUnderEvaluation, Map<String, List<DocumentUnderEvaluation>> documentsByReference) {
 
-                        documentUnderEvaluation.addConditionEvaluationResult(umc);
-                    }
-                }
-            }
+        // children first, so documents sharing a reference receive conditions in the order they always have.
+        for (DocumentUnderEvaluation childDocument : documentUnderEvaluation.getDocuments()) {
+            indexByReference(childDocument, documentsByReference);
         }
+        documentsByReference.computeIfAbsent(Strings.nullToEmpty(documentUnderEvaluation.getReference()), r -> new ArrayList<>())
+                .add(documentUnderEvaluation);
     }
 
     public void setConditionHasBeenEvaluatedThisRun( Long conditionId  )
@@ -52,6 +52,9 @@ public class BooleanAgentDocument {
     @JsonProperty("links")
     private Collection<String> links;
 
+    @JsonProperty("fingerprint")
+    private String fingerprint;
+
     public String getReference(){
         return reference;
     }
@@ -119,4 +122,16 @@ public class BooleanAgentDocument {
     public void setLinks(Collection<String> links) {
         this.links = links;
     }
+
+    /**
+     * A fingerprint of the reference and boolean restriction of the agent, which changes whenever the agent would
+     * have to be registered again.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
 }
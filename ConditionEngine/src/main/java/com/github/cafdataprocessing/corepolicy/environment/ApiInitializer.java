@@ -15,6 +15,7 @@
  */
 package com.github.cafdataprocessing.corepolicy.environment;
 
+import com.github.cafdataprocessing.corepolicy.common.ElasticsearchProperties;
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
 import org.joda.time.DateTime;
@@ -26,10 +27,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 public class ApiInitializer implements EnvironmentInitializer {
 
     private final EnvironmentSnapshotApi environmentSnapshotApi;
+    private final ElasticsearchProperties elasticsearchProperties;
 
     @Autowired
-    public ApiInitializer(EnvironmentSnapshotApi environmentSnapshotApi){
+    public ApiInitializer(EnvironmentSnapshotApi environmentSnapshotApi, ElasticsearchProperties elasticsearchProperties){
         this.environmentSnapshotApi = environmentSnapshotApi;
+        this.elasticsearchProperties = elasticsearchProperties;
     }
 
     @Override
@@ -63,6 +66,16 @@ public class ApiInitializer implements EnvironmentInitializer {
         newEnvironmentSnapshot.getPolicies().putAll(retrievedEnvironmentSnapshot.getPolicies());
         newEnvironmentSnapshot.getPolicyTypes().putAll(retrievedEnvironmentSnapshot.getPolicyTypes());
 
+        // When refreshing an existing snapshot, keep its instance id and creation date so BooleanAgentInitializer
+        // registers only the boolean agents that changed, rather than a complete new set under a new instance id.
+        // The creation date still reflects the age of the oldest agents, which BooleanAgentInitializer uses for expiry,
+        // so once they are near expiry the refreshed snapshot keeps its own instance and all agents are registered.
+        if(csLastModifiedTime!=null && snapshotTime!=null && environmentSnapshot.getInstanceId()!=null
+                && !BooleanAgentInitializer.agentsMightHaveExpired(environmentSnapshot, elasticsearchProperties.getAgentExpiry())){
+            newEnvironmentSnapshot.setInstanceId(environmentSnapshot.getInstanceId());
+            newEnvironmentSnapshot.setCreateDate(environmentSnapshot.getCreateDate());
+        }
+
         return newEnvironmentSnapshot;
     }
 
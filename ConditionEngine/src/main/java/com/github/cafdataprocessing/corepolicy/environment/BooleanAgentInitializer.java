@@ -18,19 +18,26 @@ package com.github.cafdataprocessing.corepolicy.environment;
 import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
 import com.github.cafdataprocessing.corepolicy.booleanagent.ConditionToBooleanAgentConverter;
 import com.github.cafdataprocessing.corepolicy.common.ElasticsearchProperties;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
 import com.github.cafdataprocessing.corepolicy.common.dto.Lexicon;
 import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
 import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionType;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TextCondition;
+import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocument;
 import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocuments;
 import org.joda.time.DateTime;
+import org.joda.time.Period;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -59,37 +66,68 @@ public class BooleanAgentInitializer implements EnvironmentInitializer {
 
         //Check the age of the snapshot and if it close to the time the agents would have expired.
         //If the agents are close to expiry then recreate them.
-        boolean agentsMightHaveExpired = environmentSnapshot.getCreateDate().toDateTime().minusHours(1).getMillis()
-                < DateTime.now().getMillis() - elasticsearchProperties.getAgentExpiry().toStandardDuration().getMillis();
+        boolean agentsMightHaveExpired = agentsMightHaveExpired(environmentSnapshot, elasticsearchProperties.getAgentExpiry());
 
-        if(booleanAgentServices.existForInstanceId(environmentSnapshot.getInstanceId()) && !(agentsMightHaveExpired)){
+        BooleanAgentDocuments booleanAgentDocuments = conditionToBooleanAgentConverter.convert(getTextConditions(environmentSnapshot),
+                getTextLexiconExpressions(environmentSnapshot));
+
+        if(!booleanAgentServices.existForInstanceId(environmentSnapshot.getInstanceId())){
+            booleanAgentServices.create(environmentSnapshot.getInstanceId(), booleanAgentDocuments);
             return environmentSnapshot;
         }
 
-        Collection<TextCondition> contentExpressionConditions = new ArrayList<>();
-        Collection<LexiconExpression> lexiconExpressions = new ArrayList<>();
+        //A refreshed snapshot keeps the instance of the snapshot it replaces, so only the agents whose fingerprints
+        //differ from those registered are registered again, and those no longer in the snapshot are deleted.
+        Map<String, String> registeredFingerprints = booleanAgentServices.getAgentFingerprints(environmentSnapshot.getInstanceId());
+        Collection<BooleanAgentDocument> changedAgents = new ArrayList<>();
+        Set<String> removedReferences = new HashSet<>(registeredFingerprints.keySet());
+        for (BooleanAgentDocument booleanAgentDocument : booleanAgentDocuments.getDocuments()) {
+            removedReferences.remove(booleanAgentDocument.getReference());
+            if (agentsMightHaveExpired
+                    || !Objects.equals(booleanAgentDocument.getFingerprint(), registeredFingerprints.get(booleanAgentDocument.getReference()))) {
+                changedAgents.add(booleanAgentDocument);
+            }
+        }
 
-        Collection<Condition> conditions = new LinkedList<>(environmentSnapshot.getConditions().values());
+        if(!changedAgents.isEmpty() || !removedReferences.isEmpty()){
+            BooleanAgentDocuments changedAgentDocuments = new BooleanAgentDocuments();
+            changedAgentDocuments.setDocuments(changedAgents);
+            booleanAgentServices.update(environmentSnapshot.getInstanceId(), changedAgentDocuments, removedReferences);
+        }
 
-        for(Condition condition: conditions){
+        return environmentSnapshot;
+    }
+
+    /**
+     * Whether the agents of a snapshot are close to the time they would expire, judged by the creation date of the
+     * snapshot.
+     */
+    static boolean agentsMightHaveExpired(EnvironmentSnapshot environmentSnapshot, Period agentExpiry) {
+        return environmentSnapshot.getCreateDate().toDateTime().minusHours(1).getMillis()
+                < DateTime.now().getMillis() - agentExpiry.toStandardDuration().getMillis();
+    }
+
+    private static Collection<TextCondition> getTextConditions(EnvironmentSnapshot environmentSnapshot) {
+        Collection<TextCondition> contentExpressionConditions = new ArrayList<>();
+        for (Condition condition : new LinkedList<>(environmentSnapshot.getConditions().values())) {
             if (condition instanceof TextCondition) {
-                TextCondition contentExpressionCondition = (TextCondition) condition;
-                contentExpressionConditions.add(contentExpressionCondition);
+                contentExpressionConditions.add((TextCondition) condition);
             }
         }
+        return contentExpressionConditions;
+    }
 
-        for(Lexicon lexiconToConvert: environmentSnapshot.getLexicons().values()){
+    private static Collection<LexiconExpression> getTextLexiconExpressions(EnvironmentSnapshot environmentSnapshot) {
+        Collection<LexiconExpression> lexiconExpressions = new ArrayList<>();
+        for (Lexicon lexiconToConvert : environmentSnapshot.getLexicons().values()) {
+            if (lexiconToConvert.lexiconExpressions == null) {
+                continue;
+            }
             lexiconExpressions.addAll(lexiconToConvert.lexiconExpressions.stream().
                     filter(lexiconExpression -> lexiconExpression.type == LexiconExpressionType.TEXT).
                     collect(Collectors.toList()));
         }
-
-        BooleanAgentDocuments booleanAgentDocuments = conditionToBooleanAgentConverter.convert(contentExpressionConditions,
-                lexiconExpressions);
-
-        booleanAgentServices.create(environmentSnapshot.getInstanceId(), booleanAgentDocuments);
-
-        return environmentSnapshot;
+        return lexiconExpressions;
     }
 
     @Override
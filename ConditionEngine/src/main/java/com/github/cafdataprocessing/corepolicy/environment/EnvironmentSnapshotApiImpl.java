@@ -85,6 +85,18 @@ public class EnvironmentSnapshotApiImpl implements EnvironmentSnapshotApi {
                 return null;
             }
 
+            // Another worker may already have built and recorded the snapshot for this version of the sequence.
+            EnvironmentSnapshotImpl recordedSnapshot = archiveApi.retrieveSnapshot(collectionSequenceId, collectionSequence.lastModified);
+            if (recordedSnapshot != null) {
+                logger.debug("initialize - Using recorded snapshot with fingerprint: " + recordedSnapshot.getFingerprint());
+                // Boolean agents are registered per instance, so the recorded copy gets its own instance and age.
+                recordedSnapshot.setInstanceId(UUID.randomUUID().toString());
+                recordedSnapshot.setCreateDate(DateTime.now(DateTimeZone.UTC));
+                recordedSnapshot.setPersistedDate(null);
+                recordedSnapshot.setInvalidatedCache(false);
+                return recordedSnapshot;
+            }
+
             EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
 
             environmentSnapshot.setCreateDate(DateTime.now(DateTimeZone.UTC));
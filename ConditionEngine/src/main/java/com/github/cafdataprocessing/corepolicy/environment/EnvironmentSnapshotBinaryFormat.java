@@ -0,0 +1,346 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.environment;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshotDeserializer;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.common.dto.*;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.common.shared.CorePolicyObjectMapper;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary on-disk representation of an EnvironmentSnapshotImpl, read back through a memory-mapped file.
+ *
+ * Layout: a magic number and format version, followed by typed sections each written as
+ * [section id (byte)][payload length (int)][payload][CRC32 of payload (int)], terminated by an end section.
+ * The header section refers to its strings through a string table section, and each entity section holds a
+ * Smile encoded array of the dtos, whose shared name/value back references act as that section's string table.
+ * Any bad magic, unsupported version, truncation or checksum mismatch is reported as an IOException so
+ * callers can fall back to the JSON copy of the snapshot.
+ */
+public class EnvironmentSnapshotBinaryFormat {
+    public static final String FILE_EXTENSION = ".snapshot";
+
+    static final int MAGIC = 0x4350534E; // "CPSN"
+    static final short VERSION = 1;
+
+    private static final byte SECTION_END = 0;
+    private static final byte SECTION_STRING_TABLE = 1;
+    private static final byte SECTION_HEADER = 2;
+    private static final byte SECTION_COLLECTION_SEQUENCES = 3;
+    private static final byte SECTION_COLLECTIONS = 4;
+    private static final byte SECTION_CONDITION_FRAGMENTS = 5;
+    private static final byte SECTION_FIELD_LABELS = 6;
+    private static final byte SECTION_LEXICONS = 7;
+    private static final byte SECTION_POLICIES = 8;
+    private static final byte SECTION_POLICY_TYPES = 9;
+
+    private static final int NO_STRING = -1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final CorePolicyObjectMapper smileMapper;
+
+    public EnvironmentSnapshotBinaryFormat() {
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        smileMapper = new CorePolicyObjectMapper(smileFactory);
+    }
+
+    /**
+     * The binary file kept alongside the JSON file of the same snapshot.
+     */
+    public static File getBinaryFile(File jsonFile) {
+        String name = jsonFile.getName();
+        int extension = name.lastIndexOf('.');
+        return new File(jsonFile.getParentFile(), (extension < 0 ? name : name.substring(0, extension)) + FILE_EXTENSION);
+    }
+
+    /**
+     * Writes the snapshot to a temporary file which is then moved over the target, so readers never map a
+     * partially written file.
+     */
+    public void write(EnvironmentSnapshotImpl environmentSnapshot, Path target) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(temporary))) {
+            write(environmentSnapshot, output);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    public void write(EnvironmentSnapshotImpl environmentSnapshot, OutputStream outputStream) throws IOException {
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndexes = new HashMap<>();
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        Long collectionSequenceId = environmentSnapshot.getCollectionSequenceId();
+        header.writeBoolean(collectionSequenceId != null);
+        header.writeLong(collectionSequenceId == null ? 0L : collectionSequenceId);
+        header.writeInt(addString(environmentSnapshot.getInstanceId(), strings, stringIndexes));
+        header.writeInt(addString(environmentSnapshot.getFingerprint(), strings, stringIndexes));
+        header.writeLong(toMillis(environmentSnapshot.getCreateDate()));
+        header.writeLong(toMillis(environmentSnapshot.getCollectionSequenceLastModifiedDate()));
+        header.writeLong(toMillis(environmentSnapshot.getPersistedDate()));
+        header.writeBoolean(environmentSnapshot.getInvalidatedCache());
+        header.flush();
+
+        ByteArrayOutputStream stringTableBytes = new ByteArrayOutputStream();
+        DataOutputStream stringTable = new DataOutputStream(stringTableBytes);
+        stringTable.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            stringTable.writeInt(bytes.length);
+            stringTable.write(bytes);
+        }
+        stringTable.flush();
+
+        writeSection(output, SECTION_STRING_TABLE, stringTableBytes.toByteArray());
+        writeSection(output, SECTION_HEADER, headerBytes.toByteArray());
+        writeEntities(output, SECTION_COLLECTION_SEQUENCES, values(environmentSnapshot.getCollectionSequences()));
+        writeEntities(output, SECTION_COLLECTIONS, values(environmentSnapshot.getCollections()));
+        writeEntities(output, SECTION_CONDITION_FRAGMENTS, values(environmentSnapshot.getConditions()).stream()
+                .filter(condition -> condition.isFragment).collect(Collectors.toList()));
+        writeEntities(output, SECTION_FIELD_LABELS, values(environmentSnapshot.getFieldLabels()));
+        writeEntities(output, SECTION_LEXICONS, values(environmentSnapshot.getLexicons()));
+        writeEntities(output, SECTION_POLICIES, values(environmentSnapshot.getPolicies()));
+        writeEntities(output, SECTION_POLICY_TYPES, values(environmentSnapshot.getPolicyTypes()));
+        writeSection(output, SECTION_END, new byte[0]);
+        output.flush();
+    }
+
+    /**
+     * Maps the file and decodes the snapshot from it.
+     * @throws IOException if the file cannot be read or is not a valid snapshot of this format.
+     */
+    public EnvironmentSnapshotImpl read(Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    public EnvironmentSnapshotImpl read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.remaining() < 6 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not an environment snapshot file.");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported environment snapshot format version: " + version);
+            }
+
+            EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
+            List<String> strings = Collections.emptyList();
+            boolean headerRead = false;
+            while (true) {
+                byte sectionId = buffer.get();
+                ByteBuffer payload = readSection(buffer);
+                switch (sectionId) {
+                    case SECTION_END:
+                        if (!headerRead) {
+                            throw new IOException("Environment snapshot file has no header section.");
+                        }
+                        return environmentSnapshot;
+                    case SECTION_STRING_TABLE:
+                        strings = readStringTable(payload);
+                        break;
+                    case SECTION_HEADER:
+                        readHeader(payload, strings, environmentSnapshot);
+                        headerRead = true;
+                        break;
+                    case SECTION_COLLECTION_SEQUENCES:
+                        for (DtoBase entity : readEntities(payload)) {
+                            CollectionSequence collectionSequence = (CollectionSequence) entity;
+                            environmentSnapshot.collectionSequences.put(collectionSequence.id, collectionSequence);
+                        }
+                        break;
+                    case SECTION_COLLECTIONS:
+                        for (DtoBase entity : readEntities(payload)) {
+                            DocumentCollection collection = (DocumentCollection) entity;
+                            environmentSnapshot.collections.put(collection.id, collection);
+                            if (collection.condition != null) {
+                                EnvironmentSnapshotDeserializer.addConditions(collection.condition, environmentSnapshot);
+                            }
+                        }
+                        break;
+                    case SECTION_CONDITION_FRAGMENTS:
+                        for (DtoBase entity : readEntities(payload)) {
+                            Condition condition = (Condition) entity;
+                            EnvironmentSnapshotDeserializer.addConditions(condition, environmentSnapshot);
+                        }
+                        break;
+                    case SECTION_FIELD_LABELS:
+                        for (DtoBase entity : readEntities(payload)) {
+                            FieldLabel fieldLabel = (FieldLabel) entity;
+                            environmentSnapshot.fieldLabels.put(fieldLabel.name, fieldLabel);
+                        }
+                        break;
+                    case SECTION_LEXICONS:
+                        for (DtoBase entity : readEntities(payload)) {
+                            Lexicon lexicon = (Lexicon) entity;
+                            environmentSnapshot.lexicons.put(lexicon.id, lexicon);
+                        }
+                        break;
+                    case SECTION_POLICIES:
+                        for (DtoBase entity : readEntities(payload)) {
+                            Policy policy = (Policy) entity;
+                            environmentSnapshot.policies.put(policy.id, policy);
+                        }
+                        break;
+                    case SECTION_POLICY_TYPES:
+                        for (DtoBase entity : readEntities(payload)) {
+                            PolicyType policyType = (PolicyType) entity;
+                            environmentSnapshot.policyTypes.put(policyType.id, policyType);
+                        }
+                        break;
+                    default:
+                        // Sections added by later revisions of this version are skipped.
+                        break;
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Environment snapshot file is truncated or corrupt.", e);
+        }
+    }
+
+    private static int addString(String value, List<String> strings, Map<String, Integer> stringIndexes) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        return stringIndexes.computeIfAbsent(value, v -> {
+            strings.add(v);
+            return strings.size() - 1;
+        });
+    }
+
+    private static long toMillis(DateTime dateTime) {
+        return dateTime == null ? NO_DATE : dateTime.getMillis();
+    }
+
+    private static DateTime fromMillis(long millis) {
+        return millis == NO_DATE ? null : new DateTime(millis, DateTimeZone.UTC);
+    }
+
+    private static <T> Collection<T> values(Map<?, T> map) {
+        return map == null ? Collections.emptyList() : map.values();
+    }
+
+    private void writeEntities(DataOutputStream output, byte sectionId, Collection<? extends DtoBase> entities) throws IOException {
+        writeSection(output, sectionId, smileMapper.writeValueAsBytes(entities.toArray(new DtoBase[entities.size()])));
+    }
+
+    private static void writeSection(DataOutputStream output, byte sectionId, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        output.writeByte(sectionId);
+        output.writeInt(payload.length);
+        output.write(payload);
+        output.writeInt((int) crc.getValue());
+    }
+
+    private static ByteBuffer readSection(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() - 4) {
+            throw new IOException("Environment snapshot section length " + length + " exceeds the file.");
+        }
+        ByteBuffer payload = buffer.slice();
+        payload.limit(length);
+        buffer.position(buffer.position() + length);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt()) {
+            throw new IOException("Environment snapshot section checksum mismatch.");
+        }
+        return payload;
+    }
+
+    private static List<String> readStringTable(ByteBuffer payload) throws IOException {
+        int count = payload.getInt();
+        if (count < 0 || count > payload.remaining() / 4) {
+            throw new IOException("Environment snapshot string table size " + count + " is invalid.");
+        }
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[payload.getInt()];
+            payload.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    private static void readHeader(ByteBuffer payload, List<String> strings, EnvironmentSnapshotImpl environmentSnapshot) throws IOException {
+        boolean hasCollectionSequenceId = payload.get() != 0;
+        long collectionSequenceId = payload.getLong();
+        environmentSnapshot.setCollectionSequenceId(hasCollectionSequenceId ? collectionSequenceId : null);
+        environmentSnapshot.setInstanceId(getString(strings, payload.getInt()));
+        environmentSnapshot.fingerprint = getString(strings, payload.getInt());
+        environmentSnapshot.setCreateDate(fromMillis(payload.getLong()));
+        environmentSnapshot.setCollectionSequenceLastModifiedDate(fromMillis(payload.getLong()));
+        environmentSnapshot.setPersistedDate(fromMillis(payload.getLong()));
+        environmentSnapshot.setInvalidatedCache(payload.get() != 0);
+    }
+
+    private static String getString(List<String> strings, int index) throws IOException {
+        if (index == NO_STRING) {
+            return null;
+        }
+        if (index < 0 || index >= strings.size()) {
+            throw new IOException("Environment snapshot string reference " + index + " is out of range.");
+        }
+        return strings.get(index);
+    }
+
+    private DtoBase[] readEntities(ByteBuffer payload) throws IOException {
+        return smileMapper.readValue(new ByteBufferBackedInputStream(payload), DtoBase[].class);
+    }
+}
@@ -19,9 +19,15 @@ import com.github.cafdataprocessing.corepolicy.EnvironmentSnapshotCache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.UserContext;
 import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.InvalidFieldValueCpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.TransitoryBackEndFailureCpeException;
@@ -29,48 +35,141 @@ import com.github.cafdataprocessing.corepolicy.common.exceptions.excpetionErrors
 import com.github.cafdataprocessing.corepolicy.common.exceptions.excpetionErrors.InvalidFieldValueErrors;
 import com.github.cafdataprocessing.corepolicy.common.shared.CorePolicyLogger;
 import org.joda.time.Period;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- *
+ * Caches an environment snapshot per collection sequence. Once an entry is older than the verify period the next
+ * request for it triggers a reload on a background thread, and the existing snapshot is returned until the reload
+ * completes. Only one reload runs per sequence at a time. The reload is made with the project id the snapshot was last
+ * loaded with, as the refresh threads have no project of their own.
  */
-public class EnvironmentSnapshotCacheImpl implements EnvironmentSnapshotCache {
-
-    private LoadingCache<Long, EnvironmentSnapshot> conditionEngineRepositoryCache;
-    private EnvironmentInitializer environmentInitializer;
+public class EnvironmentSnapshotCacheImpl implements EnvironmentSnapshotCache, DisposableBean {
+    private final static Logger logger = LoggerFactory.getLogger(EnvironmentSnapshotCacheImpl.class);
+
+    private final LoadingCache<Long, EnvironmentSnapshot> conditionEngineRepositoryCache;
+    private final EnvironmentInitializer environmentInitializer;
+    private final UserContext userContext;
+    private final ListeningExecutorService refreshExecutor;
+    private final long verifyPeriodMillis;
+    private final ConcurrentMap<Long, LoadedSnapshot> loadedTimes = new ConcurrentHashMap<>();
+    private final AtomicLong staleServedCount = new AtomicLong();
+    // loads are counted here rather than by the cache, as those made by invalidate are put into it directly.
+    private final AtomicLong loadSuccessCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong totalLoadNanos = new AtomicLong();
 
     @Autowired
-    public EnvironmentSnapshotCacheImpl(ApplicationContext applicationContext, EngineProperties engineProperties) {
+    public EnvironmentSnapshotCacheImpl(ApplicationContext applicationContext, EngineProperties engineProperties,
+                                        UserContext userContext) {
+        this.userContext = userContext;
         Integer maxSequenceCacheSize = engineProperties.getEnvironmentCacheMaxsize();
         Period period = new Period(engineProperties.getEnvironmentCacheVerifyPeriod());
         environmentInitializer = applicationContext.getBean("Pipeline", EnvironmentInitializer.class);
 
+        verifyPeriodMillis = period.toStandardDuration().getMillis();
+        Period maxStalePeriod = engineProperties.getEnvironmentCacheMaxStalePeriod();
+        long maxStaleMillis = maxStalePeriod == null ? verifyPeriodMillis : maxStalePeriod.toStandardDuration().getMillis();
+
+        Integer refreshThreads = engineProperties.getEnvironmentCacheRefreshThreads();
+        refreshExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+                refreshThreads == null || refreshThreads < 1 ? 1 : refreshThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("corepolicy-environmentcache-%d").build()));
+
         conditionEngineRepositoryCache = CacheBuilder.newBuilder()
                 .maximumSize(maxSequenceCacheSize)
-                .expireAfterWrite(period.toStandardDuration().getMillis(), TimeUnit.MILLISECONDS)
+                .refreshAfterWrite(verifyPeriodMillis, TimeUnit.MILLISECONDS)
+                // an entry that still cannot be reloaded after this long is discarded, so requests wait for a new one.
+                .expireAfterWrite(Math.max(verifyPeriodMillis, maxStaleMillis), TimeUnit.MILLISECONDS)
+                .recordStats()
+                // forget when a snapshot was loaded once it leaves the cache, unless it has already been replaced.
+                .removalListener((RemovalListener<Long, EnvironmentSnapshot>) notification ->
+                        loadedTimes.computeIfPresent(notification.getKey(),
+                                (sequenceId, loaded) -> loaded.snapshot == notification.getValue() ? null : loaded))
                 .build(
                         new CacheLoader<Long, EnvironmentSnapshot>() {
                             public EnvironmentSnapshot load(Long sequenceId) throws Exception {
-                                try(CorePolicyLogger traceInfo = new CorePolicyLogger("EnvironmentSnapshot:load")) {
-                                    EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
-                                    environmentSnapshot.setCollectionSequenceId(sequenceId);
-                                    environmentSnapshot = environmentInitializer.initialize(environmentSnapshot);
-                                    return environmentSnapshot;
-                                }
+                                return loadSnapshot(sequenceId, userContext.getProjectId());
+                            }
+
+                            @Override
+                            public ListenableFuture<EnvironmentSnapshot> reload(Long sequenceId, EnvironmentSnapshot oldValue) throws Exception {
+                                LoadedSnapshot loaded = loadedTimes.get(sequenceId);
+                                String projectId = loaded == null ? null : loaded.projectId;
+                                return refreshExecutor.submit(() -> reloadSnapshot(sequenceId, projectId));
                             }
                         }
                 );
     }
 
+    /**
+     * Loads the snapshot on a refresh thread, with the project id of the request that the existing snapshot was loaded
+     * for set on it for the duration of the load.
+     */
+    private EnvironmentSnapshot reloadSnapshot(Long sequenceId, String projectId) {
+        userContext.setProjectId(projectId);
+        try {
+            return loadSnapshot(sequenceId, projectId);
+        } finally {
+            userContext.setProjectId(null);
+        }
+    }
+
+    private EnvironmentSnapshot loadSnapshot(Long sequenceId, String projectId) {
+        long started = System.nanoTime();
+        try(CorePolicyLogger traceInfo = new CorePolicyLogger("EnvironmentSnapshot:load")) {
+            EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
+            environmentSnapshot.setCollectionSequenceId(sequenceId);
+            environmentSnapshot = environmentInitializer.initialize(environmentSnapshot);
+            loadedTimes.put(sequenceId, new LoadedSnapshot(environmentSnapshot, projectId, System.currentTimeMillis()));
+            loadSuccessCount.incrementAndGet();
+            return environmentSnapshot;
+        } catch (RuntimeException e) {
+            loadFailureCount.incrementAndGet();
+            throw e;
+        } finally {
+            totalLoadNanos.addAndGet(System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * The number of sequences whose load time is held, which is at most the number of cached snapshots.
+     */
+    int getLoadedTimeCount() {
+        return loadedTimes.size();
+    }
+
+    private static class LoadedSnapshot {
+        private final EnvironmentSnapshot snapshot;
+        private final String projectId;
+        private final long loadedTime;
+
+        LoadedSnapshot(EnvironmentSnapshot snapshot, String projectId, long loadedTime) {
+            this.snapshot = snapshot;
+            this.projectId = projectId;
+            this.loadedTime = loadedTime;
+        }
+    }
+
 
     @Override
     public EnvironmentSnapshot get(Long sequenceId) throws Exception {
 
         try(CorePolicyLogger traceInfo = new CorePolicyLogger("EnvironmentSnapshot:get")) {
             EnvironmentSnapshot cachedEntry = conditionEngineRepositoryCache.get(sequenceId);
+            LoadedSnapshot loaded = loadedTimes.get(sequenceId);
+            if (loaded != null && System.currentTimeMillis() - loaded.loadedTime > verifyPeriodMillis) {
+                staleServedCount.incrementAndGet();
+            }
             return cachedEntry;
         } catch (UncheckedExecutionException e) {
             if(e.getCause() instanceof TransitoryBackEndFailureCpeException) {
@@ -102,8 +201,49 @@ public class EnvironmentSnapshotCacheImpl implements EnvironmentSnapshotCache {
                 environmentInitializer.remove((EnvironmentSnapshotImpl) cachedEntry);
             }
 
-            // Take the current cache, and reload whatever it currently holds.
-            conditionEngineRepositoryCache.refresh(sequenceId);
+            // Reload on this thread rather than in the background, so callers see the new snapshot once we return.
+            // If the reload fails whatever is currently held is kept, as a refresh would.
+            try {
+                conditionEngineRepositoryCache.put(sequenceId, loadSnapshot(sequenceId, userContext.getProjectId()));
+            } catch (RuntimeException e) {
+                logger.warn("Exception thrown during reload of environment snapshot for sequence " + sequenceId, e);
+            }
         }
     }
+
+    @Override
+    public long getHitCount() {
+        return conditionEngineRepositoryCache.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return conditionEngineRepositoryCache.stats().missCount();
+    }
+
+    @Override
+    public long getLoadCount() {
+        return loadSuccessCount.get();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return loadFailureCount.get();
+    }
+
+    @Override
+    public double getAverageLoadMillis() {
+        long loads = loadSuccessCount.get() + loadFailureCount.get();
+        return loads == 0 ? 0.0 : (double) totalLoadNanos.get() / loads / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public long getStaleServedCount() {
+        return staleServedCount.get();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        refreshExecutor.shutdownNow();
+    }
 }
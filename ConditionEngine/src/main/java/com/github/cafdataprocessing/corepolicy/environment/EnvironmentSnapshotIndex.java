@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.environment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * On-disk index from a collection sequence id to the most recently persisted snapshot file for that sequence, so a
+ * snapshot can be located without scanning the cache directory. Each sequence has its own small entry file under
+ * the index folder of the cache location; entries are replaced by writing a temporary file and moving it over the
+ * previous one, so readers on other nodes sharing the volume only ever see a complete entry.
+ */
+public class EnvironmentSnapshotIndex {
+    private final static Logger logger = LoggerFactory.getLogger(EnvironmentSnapshotIndex.class);
+
+    static final String INDEX_FOLDER = "index";
+
+    private static final String FILE_NAME = "file";
+    private static final String INSTANCE_ID = "instance_id";
+    private static final String PERSISTED = "persisted";
+    private static final String INVALIDATED = "invalidated";
+
+    private final Path indexLocation;
+
+    public EnvironmentSnapshotIndex(Path environmentSnapshotCacheLocation) {
+        this.indexLocation = environmentSnapshotCacheLocation.resolve(INDEX_FOLDER);
+    }
+
+    /**
+     * @return the entry for the sequence, or null if there is none or it cannot be read.
+     */
+    public Entry get(Long collectionSequenceId) {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(getEntryPath(collectionSequenceId))) {
+            properties.load(inputStream);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Could not read snapshot index entry for sequence " + collectionSequenceId, e);
+            return null;
+        }
+        String fileName = properties.getProperty(FILE_NAME);
+        String persisted = properties.getProperty(PERSISTED);
+        if (fileName == null || persisted == null) {
+            return null;
+        }
+        try {
+            return new Entry(fileName, properties.getProperty(INSTANCE_ID), Long.parseLong(persisted),
+                    Boolean.parseBoolean(properties.getProperty(INVALIDATED)));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed snapshot index entry for sequence " + collectionSequenceId);
+            return null;
+        }
+    }
+
+    /**
+     * Points the sequence at the supplied entry, replacing any previous entry.
+     */
+    public void put(Long collectionSequenceId, Entry entry) {
+        Properties properties = new Properties();
+        properties.setProperty(FILE_NAME, entry.getFileName());
+        if (entry.getInstanceId() != null) {
+            properties.setProperty(INSTANCE_ID, entry.getInstanceId());
+        }
+        properties.setProperty(PERSISTED, String.valueOf(entry.getPersistedMillis()));
+        properties.setProperty(INVALIDATED, String.valueOf(entry.isInvalidated()));
+
+        Path entryPath = getEntryPath(collectionSequenceId);
+        Path temporary = entryPath.resolveSibling(entryPath.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectories(indexLocation);
+            try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+                properties.store(outputStream, null);
+            }
+            Files.move(temporary, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The index is only an accelerator, loads fall back to scanning for the sequence's files.
+            logger.warn("Could not update snapshot index entry for sequence " + collectionSequenceId, e);
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Marks the entry as invalidated if it still refers to the supplied snapshot instance.
+     */
+    public void markInvalidated(Long collectionSequenceId, String instanceId) {
+        Entry entry = get(collectionSequenceId);
+        if (entry != null && instanceId != null && instanceId.equals(entry.getInstanceId()) && !entry.isInvalidated()) {
+            put(collectionSequenceId, new Entry(entry.getFileName(), entry.getInstanceId(), entry.getPersistedMillis(), true));
+        }
+    }
+
+    /**
+     * Removes the entry if it still refers to the supplied snapshot file.
+     */
+    public void removeIfPointsTo(Long collectionSequenceId, String fileName) {
+        Entry entry = get(collectionSequenceId);
+        if (entry == null || !entry.getFileName().equals(fileName)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(getEntryPath(collectionSequenceId));
+        } catch (IOException e) {
+            logger.warn("Could not remove snapshot index entry for sequence " + collectionSequenceId, e);
+        }
+    }
+
+    /**
+     * @return up to limit sequence ids, most recently persisted first, whose entries have not been invalidated.
+     */
+    public List<Long> getRecentSequenceIds(int limit) {
+        List<Long> collectionSequenceIds = new ArrayList<>();
+        if (limit < 1 || !Files.isDirectory(indexLocation)) {
+            return collectionSequenceIds;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexLocation, "*.properties")) {
+            for (Path entryPath : stream) {
+                String name = entryPath.getFileName().toString();
+                try {
+                    collectionSequenceIds.add(Long.parseLong(name.substring(0, name.length() - ".properties".length())));
+                } catch (NumberFormatException e) {
+                    logger.debug("Ignoring unexpected file in snapshot index: " + name);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list snapshot index entries", e);
+            return collectionSequenceIds;
+        }
+        Map<Long, Long> persistedMillis = new HashMap<>();
+        for (Long collectionSequenceId : collectionSequenceIds) {
+            Entry entry = get(collectionSequenceId);
+            if (entry != null && !entry.isInvalidated()) {
+                persistedMillis.put(collectionSequenceId, entry.getPersistedMillis());
+            }
+        }
+        return persistedMillis.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    Path getIndexLocation() {
+        return indexLocation;
+    }
+
+    private Path getEntryPath(Long collectionSequenceId) {
+        return indexLocation.resolve(collectionSequenceId + ".properties");
+    }
+
+    /**
+     * The snapshot file most recently persisted for a sequence.
+     */
+    public static class Entry {
+        private final String fileName;
+        private final String instanceId;
+        private final long persistedMillis;
+        private final boolean invalidated;
+
+        public Entry(String fileName, String instanceId, long persistedMillis, boolean invalidated) {
+            this.fileName = fileName;
+            this.instanceId = instanceId;
+            this.persistedMillis = persistedMillis;
+            this.invalidated = invalidated;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        public long getPersistedMillis() {
+            return persistedMillis;
+        }
+
+        public boolean isInvalidated() {
+            return invalidated;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.environment;
+
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.joda.time.DateTime;
+import org.joda.time.Period;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically removes snapshot files which have not been persisted for longer than the environment cache expiry from
+ * the cache location, deleting the boolean agents created for them and any index entry which still points at them. Runs on its own thread so that
+ * snapshot loads never scan the directory or wait on boolean agent deletes.
+ */
+public class EnvironmentSnapshotJanitor implements DisposableBean {
+    private final static Logger logger = LoggerFactory.getLogger(EnvironmentSnapshotJanitor.class);
+
+    private final BooleanAgentServices booleanAgentServices;
+    private final Path environmentSnapshotCacheLocation;
+    private final Period environmentCacheExpiry;
+    private final EnvironmentSnapshotIndex index;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong filesExpiredCount = new AtomicLong();
+    private final AtomicLong agentDeleteFailureCount = new AtomicLong();
+    private final AtomicLong fileDeleteFailureCount = new AtomicLong();
+    private volatile long lastRunMillis;
+    private volatile long lastRunDurationMillis;
+    private volatile long lastFilesScanned;
+
+    @Autowired
+    public EnvironmentSnapshotJanitor(EngineProperties engineProperties, BooleanAgentServices booleanAgentServices) {
+        this.booleanAgentServices = booleanAgentServices;
+        this.environmentSnapshotCacheLocation = Paths.get(engineProperties.getEnvironmentCacheLocation());
+        this.environmentCacheExpiry = engineProperties.getEnvironmentCacheExpiry();
+        this.index = new EnvironmentSnapshotIndex(environmentSnapshotCacheLocation);
+
+        long periodMillis = engineProperties.getEnvironmentCacheJanitorPeriod().toStandardDuration().getMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("corepolicy-environmentcache-janitor-%d").build());
+        scheduler.scheduleWithFixedDelay(this::run, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes expired snapshot files now. Called on the janitor's schedule; failures are logged and retried on the
+     * next run.
+     */
+    public void run() {
+        long start = System.currentTimeMillis();
+        long expiredBefore = new DateTime(start).minus(environmentCacheExpiry).getMillis();
+        long scanned = 0;
+        Map<Long, EnvironmentSnapshotIndex.Entry> indexEntries = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(environmentSnapshotCacheLocation, "*-*.{json,snapshot,tmp}")) {
+            for (Path entry : stream) {
+                scanned++;
+                try {
+                    BasicFileAttributes basicAttr = Files.readAttributes(entry, BasicFileAttributes.class);
+                    if (getLastPersistedMillis(entry, basicAttr, indexEntries) < expiredBefore) {
+                        cleanupOldFile(entry.toFile());
+                    }
+                } catch (NoSuchFileException e) {
+                    // Already removed along with its JSON file, or by another node sharing the location.
+                } catch (IOException e) {
+                    logger.warn(String.format("Could not access %s to evaluate for expiry.", entry.toUri()));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing has been persisted yet.
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Environment snapshot janitor run failed.", e);
+        } finally {
+            lastFilesScanned = scanned;
+            lastRunMillis = start;
+            lastRunDurationMillis = System.currentTimeMillis() - start;
+            runCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * A refreshed snapshot keeps the instance id of the one it replaces while its boolean agents are updated in place,
+     * so its files are rewritten under the same name and keep their original creation time. The age of a file is
+     * therefore taken from the index entry when that still points at it, and otherwise from the file's last write.
+     */
+    private long getLastPersistedMillis(Path entry, BasicFileAttributes basicAttr,
+                                        Map<Long, EnvironmentSnapshotIndex.Entry> indexEntries) {
+        long lastModifiedMillis = basicAttr.lastModifiedTime().toMillis();
+        String filename = entry.getFileName().toString();
+        if (filename.endsWith(".tmp")) {
+            return lastModifiedMillis;
+        }
+        Long collectionSequenceId;
+        try {
+            collectionSequenceId = Long.parseLong(filename.substring(0, filename.indexOf("-")));
+        } catch (NumberFormatException e) {
+            return lastModifiedMillis;
+        }
+        if (!indexEntries.containsKey(collectionSequenceId)) {
+            indexEntries.put(collectionSequenceId, index.get(collectionSequenceId));
+        }
+        EnvironmentSnapshotIndex.Entry indexEntry = indexEntries.get(collectionSequenceId);
+        String jsonFilename = filename.substring(0, filename.lastIndexOf(".")) + ".json";
+        if (indexEntry != null && !indexEntry.isInvalidated() && indexEntry.getFileName().equals(jsonFilename)) {
+            return Math.max(indexEntry.getPersistedMillis(), lastModifiedMillis);
+        }
+        return lastModifiedMillis;
+    }
+
+    private void cleanupOldFile(File file) {
+        String filename = file.getName();
+        if (filename.endsWith(".json")) {
+            String instanceId = filename.substring(filename.indexOf("-") + 1, filename.indexOf("."));
+            if (booleanAgentServices.getAvailable()) {
+                try {
+                    booleanAgentServices.delete(instanceId);
+                } catch (CpeException e) {
+                    // just log this error, the agents expire themselves eventually.
+                    agentDeleteFailureCount.incrementAndGet();
+                    logger.warn("Unable to delete BooleanAgentServices for instance: " + instanceId);
+                }
+            }
+            try {
+                index.removeIfPointsTo(Long.parseLong(filename.substring(0, filename.indexOf("-"))), filename);
+            } catch (NumberFormatException e) {
+                logger.warn("Unexpected file name in environment snapshot cache location: " + filename);
+            }
+        }
+        if (file.delete()) {
+            filesExpiredCount.incrementAndGet();
+        } else if (file.exists()) {
+            fileDeleteFailureCount.incrementAndGet();
+            logger.warn("Could not expire " + file.getAbsolutePath());
+        }
+    }
+
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    public long getFilesExpiredCount() {
+        return filesExpiredCount.get();
+    }
+
+    public long getAgentDeleteFailureCount() {
+        return agentDeleteFailureCount.get();
+    }
+
+    public long getFileDeleteFailureCount() {
+        return fileDeleteFailureCount.get();
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    public long getLastRunDurationMillis() {
+        return lastRunDurationMillis;
+    }
+
+    public long getLastFilesScanned() {
+        return lastFilesScanned;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
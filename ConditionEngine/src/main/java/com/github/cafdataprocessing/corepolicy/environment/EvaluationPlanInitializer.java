@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.environment;
+
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.EvaluationPlanCompiler;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Compiles the evaluation plan of the snapshot as it is loaded, so documents do not pay for it on first evaluation.
+ */
+public class EvaluationPlanInitializer implements EnvironmentInitializer {
+    private final EvaluationPlanCompiler evaluationPlanCompiler;
+
+    @Autowired
+    public EvaluationPlanInitializer(EvaluationPlanCompiler evaluationPlanCompiler){
+        this.evaluationPlanCompiler = evaluationPlanCompiler;
+    }
+
+    @Override
+    public EnvironmentSnapshotImpl initialize(EnvironmentSnapshotImpl environmentSnapshot) {
+        evaluationPlanCompiler.getPlan(environmentSnapshot);
+        return environmentSnapshot;
+    }
+
+    @Override
+    public EnvironmentSnapshotImpl remove(EnvironmentSnapshotImpl environmentSnapshot) {
+        evaluationPlanCompiler.remove(environmentSnapshot);
+        return environmentSnapshot;
+    }
+}
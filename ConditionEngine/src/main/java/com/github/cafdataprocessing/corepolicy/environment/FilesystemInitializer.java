@@ -15,10 +15,8 @@
  */
 package com.github.cafdataprocessing.corepolicy.environment;
 
-import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
 import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
 import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
-import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import com.github.cafdataprocessing.corepolicy.common.shared.CorePolicyLogger;
 import com.github.cafdataprocessing.corepolicy.common.shared.CorePolicyObjectMapper;
 import com.github.cafdataprocessing.corepolicy.common.shared.Level;
@@ -36,59 +34,76 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- *
+ * Loads the most recently persisted snapshot for a sequence, located through the EnvironmentSnapshotIndex. Expired
+ * snapshot files and their boolean agents are removed by the EnvironmentSnapshotJanitor, not on the load path.
  */
 public class FilesystemInitializer implements EnvironmentInitializer {
     private final static Logger logger = LoggerFactory.getLogger(FilesystemInitializer.class);
 
-    private final BooleanAgentServices booleanAgentServices;
     private final CorePolicyObjectMapper objectMapper = new CorePolicyObjectMapper();
+    private final EnvironmentSnapshotBinaryFormat binaryFormat = new EnvironmentSnapshotBinaryFormat();
     private final Path environmentSnapshotCacheLocation;
     private final Period environmentCacheExpiry;
+    private final EnvironmentSnapshotIndex index;
 
     @Autowired
-    public FilesystemInitializer(EngineProperties engineProperties, BooleanAgentServices booleanAgentServices){
-        this.booleanAgentServices = booleanAgentServices;
+    public FilesystemInitializer(EngineProperties engineProperties){
         environmentSnapshotCacheLocation = Paths.get(engineProperties.getEnvironmentCacheLocation());
         environmentCacheExpiry = engineProperties.getEnvironmentCacheExpiry();
+        index = new EnvironmentSnapshotIndex(environmentSnapshotCacheLocation);
     }
 
     @Override
     public EnvironmentSnapshotImpl initialize(EnvironmentSnapshotImpl environmentSnapshot) {
 
         try(CorePolicyLogger traceInfo = new CorePolicyLogger("FilesystemInitializer:initialize", Level.DEBUG)) {
-            removeReallyOldFiles();
+            Long collectionSequenceId = environmentSnapshot.getCollectionSequenceId();
+            EnvironmentSnapshotIndex.Entry entry = index.get(collectionSequenceId);
+            if (entry != null) {
+                // it is invalid or expired, let the janitor clean it, and dont use it.
+                if (entry.isInvalidated()) {
+                    traceInfo.log("Using new snapshot as indexed snapshot has been invalidated.");
+                    return environmentSnapshot;
+                }
+                if (isExpired(entry.getPersistedMillis())) {
+                    traceInfo.log("Using new snapshot as indexed snapshot has expired.");
+                    return environmentSnapshot;
+                }
+                File file = environmentSnapshotCacheLocation.resolve(entry.getFileName()).toFile();
+                if (file.exists()) {
+                    EnvironmentSnapshotImpl tmpSnapshot = readFromFile(file);
+                    if (tmpSnapshot.getInvalidatedCache()) {
+                        traceInfo.log("Using new snapshot as tmpSnapshot has been invalidated.");
+                        return environmentSnapshot;
+                    }
+                    traceInfo.log("Using existing snapshot from disk: " + tmpSnapshot.getInstanceId() + " Persisted: " + tmpSnapshot.getPersistedDate());
+                    return tmpSnapshot;
+                }
+                traceInfo.log("Indexed snapshot file is missing: " + file);
+            }
 
-            List<File> files = getFiles(environmentSnapshot.getCollectionSequenceId() + "-*.json");
-            files = files.stream().sorted((p, o) -> ((Long) o.lastModified()).compareTo(((Long) p.lastModified()))).collect(Collectors.toList());
-            if (files.isEmpty()) {
+            // No usable index entry, e.g. files written before the index existed, so look for the sequence's files.
+            File mostRecentFile = getFiles(collectionSequenceId + "-*.json").stream()
+                    .max(Comparator.comparingLong(File::lastModified)).orElse(null);
+            if (mostRecentFile == null) {
                 traceInfo.log("No valid snapshot files left.");
                 return environmentSnapshot;
             }
-
-            EnvironmentSnapshotImpl tmpSnapshot = null;
-            File mostRecentFile = files.stream().findFirst().get();
-            for (File file : files) {
-                if (file.equals(mostRecentFile)) {
-                    // Get the snapshot, but check it hasn't been invalidated before we use it
-                    // as a return value. This is only validated internally by tests for now.
-                    tmpSnapshot = readFromFile(file);
-                    if (!tmpSnapshot.getInvalidatedCache()) {
-                        continue;
-                    }
-                    // it is in invalid let it be cleaned, and dont use it.
-                }
-                checkExpireFile(file);
+            if (isExpired(getCreationMillis(mostRecentFile))) {
+                traceInfo.log("Using new snapshot as most recent snapshot file has expired.");
+                return environmentSnapshot;
             }
 
-            // return the one from disk, only if it hasn't been invalidated.
-            if ( tmpSnapshot.getInvalidatedCache() )
-            {
-                traceInfo.log( "Using new snapshot as tmpSnapshot has been invalidated.");
+            // Get the snapshot, but check it hasn't been invalidated before we use it as a return value.
+            EnvironmentSnapshotImpl tmpSnapshot = readFromFile(mostRecentFile);
+            index.put(collectionSequenceId, new EnvironmentSnapshotIndex.Entry(mostRecentFile.getName(),
+                    tmpSnapshot.getInstanceId(), getCreationMillis(mostRecentFile), tmpSnapshot.getInvalidatedCache()));
+            if (tmpSnapshot.getInvalidatedCache()) {
+                traceInfo.log("Using new snapshot as tmpSnapshot has been invalidated.");
                 return environmentSnapshot;
             }
 
@@ -99,11 +114,24 @@ public class FilesystemInitializer implements EnvironmentInitializer {
 
     @Override
     public EnvironmentSnapshotImpl remove(EnvironmentSnapshotImpl environmentSnapshot){
-        // nothing to do here at present, FilesystemPersistance remove single file instance,
-        // this already removes old files in init method.
+        // nothing to do here at present, FilesystemPersistance marks the single file instance as invalidated,
+        // and the EnvironmentSnapshotJanitor removes old files.
         return environmentSnapshot;
     }
 
+    private boolean isExpired(long persistedMillis) {
+        return persistedMillis < new DateTime().minus(environmentCacheExpiry).getMillis();
+    }
+
+    private long getCreationMillis(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).creationTime().toMillis();
+        } catch (IOException e) {
+            logger.warn(String.format("Could not access %s to evaluate for expiry.", file.toURI()));
+            return file.lastModified();
+        }
+    }
+
     private List<File> getFiles(String pattern) {
         List<File> files = new ArrayList<>();
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(environmentSnapshotCacheLocation, pattern)) {
@@ -142,44 +170,22 @@ public class FilesystemInitializer implements EnvironmentInitializer {
         return files;
     }
 
-    private void removeReallyOldFiles(){
-        List<File> files = getFiles("*-*.json");
-        for (File file: files) {
-            checkExpireFile(file);
-        }
-    }
-
-    private void checkExpireFile(File file) {
-        try {
-            BasicFileAttributes basicAttr = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
-            if (basicAttr.creationTime().toMillis() < new DateTime().minus(environmentCacheExpiry).getMillis()) {
-                cleanupOldFile(file);
-            }
-        } catch (IOException e) {
-            logger.warn(String.format("Could not access %s to evaluate for expiry.", file.toURI()));
-        }
-    }
-
-    private void cleanupOldFile(File file) {
-        String filename = file.getName();
-        String instanceId = filename.substring(filename.indexOf("-") + 1, filename.indexOf("."));
-        if(booleanAgentServices.getAvailable()) {
-
+    /**
+     * Reads the snapshot from its binary copy when one exists, falling back to the JSON file if the binary copy
+     * is missing or fails validation.
+     */
+    EnvironmentSnapshotImpl readFromFile(File file){
+        File binaryFile = EnvironmentSnapshotBinaryFormat.getBinaryFile(file);
+        if (binaryFile.exists()) {
             try {
-                booleanAgentServices.delete(instanceId);
-            } catch (CpeException e) {
-                // just log this erorr, we dont want our ability not to delete
-                // to stop further evaluations
-                logger.warn("Unable to delete BooleanAgentServices for instance: " + instanceId);
+                return binaryFormat.read(binaryFile.toPath());
+            } catch (IOException e) {
+                logger.warn(String.format("Could not load %s, falling back to %s.", binaryFile.getAbsolutePath(), file.getName()), e);
+                if (!binaryFile.delete()) {
+                    logger.warn("Could not remove " + binaryFile.getAbsolutePath());
+                }
             }
         }
-        boolean deleted = file.delete();
-        if(!deleted){
-            logger.warn("Could not expire " + file.getAbsolutePath());
-        }
-    }
-
-    EnvironmentSnapshotImpl readFromFile(File file){
         try {
             EnvironmentSnapshotImpl environmentSnapshotFromDisk = objectMapper.readValue(file, EnvironmentSnapshotImpl.class);
             return environmentSnapshotFromDisk;
@@ -35,10 +35,13 @@ import java.nio.file.Paths;
 public class FilesystemPersistence implements EnvironmentInitializer {
     private final EngineProperties engineProperties;
     CorePolicyObjectMapper objectMapper = new CorePolicyObjectMapper();
+    private final EnvironmentSnapshotBinaryFormat binaryFormat = new EnvironmentSnapshotBinaryFormat();
+    private final EnvironmentSnapshotIndex index;
 
     @Autowired
     public FilesystemPersistence(EngineProperties engineProperties) {
         this.engineProperties = engineProperties;
+        this.index = new EnvironmentSnapshotIndex(Paths.get(engineProperties.getEnvironmentCacheLocation()));
     }
 
     @Override
@@ -56,11 +59,9 @@ public class FilesystemPersistence implements EnvironmentInitializer {
             File file = cacheFilePath.toFile();
             traceLogger.log("Persisting as: " + cacheFilePath);
 
-            try {
-                objectMapper.writeValue(file, environmentSnapshot);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            writeSnapshot(file, environmentSnapshot);
+            index.put(environmentSnapshot.getCollectionSequenceId(), new EnvironmentSnapshotIndex.Entry(filename,
+                    environmentSnapshot.getInstanceId(), environmentSnapshot.getPersistedDate().getMillis(), false));
 
             return environmentSnapshot;
         }
@@ -91,17 +92,29 @@ public class FilesystemPersistence implements EnvironmentInitializer {
 
             traceLogger.log("Updating persisted item with invalidated marker - location: " + cacheFilePath);
 
-            try {
-                // we could delete the file, but my issue with that is nothing would then tidy up the booleanagents
-                // until they finally expire themselves.  Better to mark something in the file
-                // and leave it there to be used by removeReallyOldFiles ( our expiry code ).
-                objectMapper.writeValue(file, environmentSnapshot);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            // we could delete the file, but my issue with that is nothing would then tidy up the booleanagents
+            // until they finally expire themselves.  Better to mark something in the file
+            // and leave it there to be used by removeReallyOldFiles ( our expiry code ).
+            writeSnapshot(file, environmentSnapshot);
+            index.markInvalidated(environmentSnapshot.getCollectionSequenceId(), environmentSnapshot.getInstanceId());
 
 
             return environmentSnapshot;
         }
     }
+
+    /**
+     * Writes the JSON file and, unless the json format has been configured, the binary copy preferred by
+     * FilesystemInitializer. The binary copy is written first so that it is in place whenever the JSON file is found.
+     */
+    private void writeSnapshot(File file, EnvironmentSnapshotImpl environmentSnapshot) {
+        try {
+            if (!"json".equalsIgnoreCase(engineProperties.getEnvironmentCacheFormat())) {
+                binaryFormat.write(environmentSnapshot, EnvironmentSnapshotBinaryFormat.getBinaryFile(file).toPath());
+            }
+            objectMapper.writeValue(file, environmentSnapshot);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
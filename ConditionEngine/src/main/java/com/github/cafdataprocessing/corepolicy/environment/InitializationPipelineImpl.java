@@ -33,8 +33,10 @@ public class InitializationPipelineImpl implements EnvironmentInitializer{
     public InitializationPipelineImpl(FilesystemInitializer filesystemInitializer,
                                       ApiInitializer apiInitializer,
                                       FilesystemPersistence filesystemPersistence,
-                                      BooleanAgentInitializer booleanAgentInitializer){
-        stages = Arrays.asList(filesystemInitializer, apiInitializer, filesystemPersistence, booleanAgentInitializer);
+                                      BooleanAgentInitializer booleanAgentInitializer,
+                                      EvaluationPlanInitializer evaluationPlanInitializer){
+        stages = Arrays.asList(filesystemInitializer, apiInitializer, filesystemPersistence, booleanAgentInitializer,
+                evaluationPlanInitializer);
     }
 
     @Override
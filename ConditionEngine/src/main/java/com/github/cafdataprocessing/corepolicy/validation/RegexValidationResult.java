@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.validation;
+
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.RegexEngine;
+
+/**
+ * Result of validating a regex, reporting the engine a valid regex will be run with.
+ */
+public class RegexValidationResult extends ValidationResult {
+    private final RegexEngine engine;
+    private final String warning;
+
+    /**
+     * Constructor that should be used if validation fails.
+     * @param reason    The reason that the regex is not valid.
+     */
+    public RegexValidationResult(String reason) {
+        super(reason);
+        this.engine = null;
+        this.warning = null;
+    }
+
+    /**
+     * Constructor for a successful validation.
+     * @param engine    The engine the regex will be run with.
+     * @param warning   Why the regex may be slow to run, or null.
+     */
+    public RegexValidationResult(RegexEngine engine, String warning) {
+        super();
+        this.engine = engine;
+        this.warning = warning;
+    }
+
+    public RegexEngine getEngine() {
+        return engine;
+    }
+
+    public String getWarning() {
+        return warning;
+    }
+}
@@ -15,31 +15,52 @@
  */
 package com.github.cafdataprocessing.corepolicy.validation;
 
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.RegexEngine;
 import com.google.common.base.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 /**
- * Tests if a string is a valid regex.
+ * Tests if a string is a valid regex, and reports which engine it will be run with.
  */
 @Component("RegexValidator")
 public class RegexValidator implements Validator<String> {
 
+    private final boolean engineChosenPerExpression;
+
+    @Autowired
+    public RegexValidator(EngineProperties engineProperties) {
+        this.engineChosenPerExpression = RegexEngine.isChosenPerExpression(engineProperties.getRegexEngine());
+    }
+
     @Override
-    public ValidationResult validate(String regexString) {
+    public RegexValidationResult validate(String regexString) {
         if(Strings.isNullOrEmpty(regexString))
-            return new ValidationResult("Regex must have a value.");
+            return new RegexValidationResult("Regex must have a value.");
 
         try{
             //noinspection ResultOfMethodCallIgnored
             Pattern.compile(regexString);
         }
         catch (PatternSyntaxException e){
-            return new ValidationResult("Regex was invalid. " + e.getMessage());
+            return new RegexValidationResult("Regex was invalid. " + e.getMessage());
         }
 
-        return new ValidationResult();
+        if(!engineChosenPerExpression){
+            return new RegexValidationResult(RegexEngine.BACKTRACKING,
+                    "Regex will be run with the backtracking engine, whose run time can grow exponentially with the input, as engine.regexengine is set to backtracking.");
+        }
+
+        String backtrackingReason = RegexEngine.getBacktrackingReason(regexString);
+        if(backtrackingReason != null){
+            return new RegexValidationResult(RegexEngine.BACKTRACKING,
+                    "Regex will be run with the backtracking engine, whose run time can grow exponentially with the input, as it uses a construct the linear engine does not support: "
+                            + backtrackingReason);
+        }
+        return new RegexValidationResult(RegexEngine.LINEAR, null);
     }
 }
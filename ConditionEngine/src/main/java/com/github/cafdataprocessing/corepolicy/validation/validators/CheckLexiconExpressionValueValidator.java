@@ -17,8 +17,11 @@ package com.github.cafdataprocessing.corepolicy.validation.validators;
 
 import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
 import com.github.cafdataprocessing.corepolicy.validation.AgentExpressionValidator;
+import com.github.cafdataprocessing.corepolicy.validation.RegexValidationResult;
 import com.github.cafdataprocessing.corepolicy.validation.RegexValidator;
 import com.github.cafdataprocessing.corepolicy.validation.ValidationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -30,6 +33,7 @@ import javax.validation.ConstraintValidatorContext;
  */
 @Component
 public class CheckLexiconExpressionValueValidator implements ConstraintValidator<CheckLexiconExpressionValue, LexiconExpression> {
+    private static final Logger logger = LoggerFactory.getLogger(CheckLexiconExpressionValueValidator.class);
 
     private AgentExpressionValidator agentExpressionValidator;
     private RegexValidator regexValidator;
@@ -54,7 +58,11 @@ public class CheckLexiconExpressionValueValidator implements ConstraintValidator
         ValidationResult validationResult = null;
         switch (value.type) {
             case REGEX:
-                validationResult = regexValidator.validate(value.expression);
+                RegexValidationResult regexValidationResult = regexValidator.validate(value.expression);
+                if(regexValidationResult.getWarning() != null){
+                    logger.warn("Lexicon expression " + value.id + ": " + regexValidationResult.getWarning());
+                }
+                validationResult = regexValidationResult;
                 break;
             case TEXT:
                 validationResult = agentExpressionValidator.validate(value.expression);
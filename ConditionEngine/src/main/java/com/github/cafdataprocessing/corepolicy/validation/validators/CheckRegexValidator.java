@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.validation.validators;
+
+import com.github.cafdataprocessing.corepolicy.validation.RegexValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+/**
+ * Used to validate the regular expression of a regex condition.
+ */
+@Component
+public class CheckRegexValidator implements ConstraintValidator<CheckRegex, String> {
+
+    private RegexValidator regexValidator;
+
+    @Autowired
+    public CheckRegexValidator(RegexValidator regexValidator) {
+        this.regexValidator = regexValidator;
+    }
+
+    @Override
+    public void initialize(CheckRegex constraintAnnotation) {
+    }
+
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        // A missing value is reported by the NotNull constraint.
+        return value == null || regexValidator.validate(value).isValid();
+    }
+}
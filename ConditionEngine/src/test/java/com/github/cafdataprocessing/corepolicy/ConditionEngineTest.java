@@ -15,16 +15,24 @@
  */
 package com.github.cafdataprocessing.corepolicy;
 
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
 import com.github.cafdataprocessing.corepolicy.common.dto.*;
 import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
 import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanOperator;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.ExistsCondition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TestCondition;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import com.github.cafdataprocessing.corepolicy.conditionEvaluators.ConditionEvaluationResult;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.ContentExpressionHelper;
 import com.github.cafdataprocessing.corepolicy.conditionEvaluators.ConditionKeyHelper;
 import com.github.cafdataprocessing.corepolicy.conditionEvaluators.EvaluateCondition;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.EvaluationPlanCompiler;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.RegexMatcherFactory;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluationImpl;
 import org.junit.After;
@@ -35,15 +43,17 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.stream.Collectors;
 
 import static org.mockito.Matchers.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ConditionEngineTest {
@@ -85,8 +95,18 @@ public class ConditionEngineTest {
     @Mock
     private ApiProperties apiProperties;
 
+    @Mock
+    private BooleanAgentServices booleanAgentServices;
+
+    @Mock
+    private ContentExpressionHelper contentExpressionHelper;
+
+    @Mock
+    private EvaluationPlanCompiler evaluationPlanCompiler;
+
     @InjectMocks
-    ConditionEngine evaluator = new ConditionEngineImpl(evaluateCondition, environmentSnapshotCache, conditionEngineMetadata);
+    ConditionEngine evaluator = new ConditionEngineImpl(evaluateCondition, environmentSnapshotCache, conditionEngineMetadata,
+            booleanAgentServices, contentExpressionHelper, evaluationPlanCompiler);
 
     @Before
     public void setup() throws Exception {
@@ -217,6 +237,26 @@ public class ConditionEngineTest {
                 .anyMatch(c -> c.getId() == collection.id));
     }
 
+    @Test
+    public void testEvaluationContinuesWhenPrefetchFails() throws CpeException {
+        CollectionSequence sequence = addCollectionSequence();
+        CollectionSequenceEntry entry = new CollectionSequenceEntry();
+
+        sequence.collectionSequenceEntries.add(entry);
+        sequence.evaluationEnabled = true;
+
+        DocumentCollection collection =
+                createDocumentCollection(matchingNumberCondition);
+        entry.collectionIds.add(collection.id);
+        doThrow(new BackEndRequestFailedCpeException(new Exception("agent unavailable")))
+                .when(contentExpressionHelper).prefetchBooleanAgentExpressions(eq(environmentSnapshot), eq(booleanAgentServices), anyCollection());
+
+        ConditionEngineResult result = this.evaluator.evaluate(this.document, sequence.id);
+
+        Assert.assertEquals(1, result.matchedCollections.size());
+        verify(evaluateCondition).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(matchingNumberCondition), eq(environmentSnapshot));
+    }
+
     @Test
     public void testDisabledCollectionSequenceReturnsBlankResult() {
         ConditionEngineResult blankConditionEngineResult = new ConditionEngineResult();
@@ -463,6 +503,128 @@ public class ConditionEngineTest {
     }
 
 
+    @Test
+    public void testCollectionLackingRequiredFieldNotEvaluated() throws CpeException {
+        CollectionSequence sequence = addCollectionSequence();
+        CollectionSequenceEntry entry = new CollectionSequenceEntry();
+        sequence.collectionSequenceEntries.add(entry);
+
+        ExistsCondition existsCondition = new ExistsCondition();
+        existsCondition.id = Helper.getId();
+        existsCondition.field = "TITLE";
+        DocumentCollection collection = createDocumentCollection(existsCondition);
+        entry.collectionIds.add(collection.id);
+        when(environmentSnapshot.getCollections()).thenReturn(Collections.singletonMap(collection.id, collection));
+        when(evaluateCondition.evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), eq(environmentSnapshot)))
+                .thenReturn(new ConditionEvaluationResult());
+
+        ConditionEngine conditionEngine = new ConditionEngineImpl(evaluateCondition, environmentSnapshotCache, conditionEngineMetadata,
+                booleanAgentServices, contentExpressionHelper, new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)));
+
+        // Before metadata extraction the field may still arrive, so the collection is evaluated.
+        this.document.setFullMetadata(false);
+        conditionEngine.evaluate(this.document, sequence.id);
+        verify(evaluateCondition, times(1)).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), eq(environmentSnapshot));
+
+        this.document.setFullMetadata(true);
+        ConditionEngineResult result = conditionEngine.evaluate(this.document, sequence.id);
+        verify(evaluateCondition, times(1)).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), eq(environmentSnapshot));
+        Assert.assertTrue(result.matchedCollections.isEmpty());
+        Assert.assertTrue(result.incompleteCollections.isEmpty());
+        Assert.assertEquals(existsCondition.id, result.unmatchedConditions.iterator().next().id);
+
+        this.document.addMetadataString("TITLE", "value");
+        conditionEngine.evaluate(this.document, sequence.id);
+        verify(evaluateCondition, times(2)).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), eq(environmentSnapshot));
+    }
+
+    @Test
+    public void testCollectionLackingRequiredFieldEvaluatedFromCachedResults() throws CpeException {
+        CollectionSequence sequence = addCollectionSequence();
+        CollectionSequenceEntry entry = new CollectionSequenceEntry();
+        sequence.collectionSequenceEntries.add(entry);
+
+        ExistsCondition existsCondition = new ExistsCondition();
+        existsCondition.id = Helper.getId();
+        existsCondition.field = "TITLE";
+        DocumentCollection collection = createDocumentCollection(existsCondition);
+        entry.collectionIds.add(collection.id);
+        when(environmentSnapshot.getCollections()).thenReturn(Collections.singletonMap(collection.id, collection));
+
+        ConditionEvaluationResult cachedResult = new ConditionEvaluationResult();
+        cachedResult.setMatch(true);
+        MatchedCondition matchedCondition = new MatchedCondition(this.document.getReference(), existsCondition);
+        cachedResult.getMatchedConditions().add(matchedCondition);
+        cachedResult.getAllConditionMatches().add(matchedCondition);
+        when(evaluateCondition.evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), eq(environmentSnapshot)))
+                .thenReturn(cachedResult);
+
+        ConditionEngine conditionEngine = new ConditionEngineImpl(evaluateCondition, environmentSnapshotCache, conditionEngineMetadata,
+                booleanAgentServices, contentExpressionHelper, new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)));
+
+        // The result restored from an earlier evaluation matched, so the collection is evaluated despite the missing field.
+        this.document.setFullMetadata(true);
+        this.document.addConditionEvaluationResult(matchedCondition);
+        ConditionEngineResult result = conditionEngine.evaluate(this.document, sequence.id);
+
+        verify(evaluateCondition, times(1)).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), eq(environmentSnapshot));
+        Assert.assertEquals(collection.id, result.matchedCollections.iterator().next().getId());
+    }
+
+    @Test
+    public void testCollectionLackingRequiredFieldEvaluatedWhenEarlierChildNeedsEvaluation() throws CpeException {
+        CollectionSequence sequence = addCollectionSequence();
+        CollectionSequenceEntry entry = new CollectionSequenceEntry();
+        sequence.collectionSequenceEntries.add(entry);
+
+        ExistsCondition existsCondition = new ExistsCondition();
+        existsCondition.id = Helper.getId();
+        existsCondition.field = "TITLE";
+        BooleanCondition booleanCondition = new BooleanCondition();
+        booleanCondition.id = Helper.getId();
+        booleanCondition.operator = BooleanOperator.AND;
+        booleanCondition.children = Arrays.asList(matchingExistsCondition, existsCondition);
+        DocumentCollection collection = createDocumentCollection(booleanCondition);
+        entry.collectionIds.add(collection.id);
+        when(environmentSnapshot.getCollections()).thenReturn(Collections.singletonMap(collection.id, collection));
+        when(evaluateCondition.evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(booleanCondition), eq(environmentSnapshot)))
+                .thenReturn(new ConditionEvaluationResult());
+
+        ConditionEngine conditionEngine = new ConditionEngineImpl(evaluateCondition, environmentSnapshotCache, conditionEngineMetadata,
+                booleanAgentServices, contentExpressionHelper, new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)));
+
+        // The first child would be evaluated, and reported, before the child on the missing field fails the condition.
+        this.document.setFullMetadata(true);
+        conditionEngine.evaluate(this.document, sequence.id);
+
+        verify(evaluateCondition, times(1)).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(booleanCondition), eq(environmentSnapshot));
+    }
+
+    @Test
+    public void testCollectionLackingRequiredFieldEvaluatedForFullConditionEvaluation() throws CpeException {
+        CollectionSequence sequence = addCollectionSequence();
+        sequence.fullConditionEvaluation = true;
+        CollectionSequenceEntry entry = new CollectionSequenceEntry();
+        sequence.collectionSequenceEntries.add(entry);
+
+        ExistsCondition existsCondition = new ExistsCondition();
+        existsCondition.id = Helper.getId();
+        existsCondition.field = "TITLE";
+        DocumentCollection collection = createDocumentCollection(existsCondition);
+        entry.collectionIds.add(collection.id);
+        when(environmentSnapshot.getCollections()).thenReturn(Collections.singletonMap(collection.id, collection));
+        when(evaluateCondition.evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), eq(environmentSnapshot)))
+                .thenReturn(new ConditionEvaluationResult());
+
+        ConditionEngine conditionEngine = new ConditionEngineImpl(evaluateCondition, environmentSnapshotCache, conditionEngineMetadata,
+                booleanAgentServices, contentExpressionHelper, new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)));
+
+        this.document.setFullMetadata(true);
+        conditionEngine.evaluate(this.document, sequence.id);
+
+        verify(evaluateCondition, times(1)).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), eq(environmentSnapshot));
+    }
+
     private CollectionSequence addCollectionSequence(){
         CollectionSequence sequence = new CollectionSequence();
         sequence.id = (Helper.getId());
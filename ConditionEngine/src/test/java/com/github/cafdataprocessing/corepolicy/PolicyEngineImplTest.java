@@ -28,11 +28,19 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -54,10 +62,33 @@ public class PolicyEngineImplTest {
     @Mock
     private ApiProperties apiProperties;
 
+    @Mock
+    private EngineProperties engineProperties;
+
+    private ClassifyExecutionService classifyExecutionService;
+
+    private final ThreadLocal<String> projectIds = new ThreadLocal<>();
+
+    private final UserContext userContext = new UserContext() {
+        @Override
+        public String getProjectId() {
+            return projectIds.get();
+        }
+
+        @Override
+        public void setProjectId(String projectId) {
+            projectIds.set(projectId);
+        }
+    };
+
     @Before
     public void before(){
+        when(engineProperties.getClassifyExecutorThreads()).thenReturn(4);
+        when(engineProperties.getClassifyExecutorMaxInFlight()).thenReturn(2);
+        classifyExecutionService = new ClassifyExecutionServiceImpl(engineProperties);
         when(conditionEngineMetadata.createResult(any(Multimap.class))).thenReturn(new ConditionEngineResult());
-        sut = new PolicyEngineImpl(policyApi, environmentSnapshotCache, conditionEngine, conditionEngineMetadata, apiProperties);
+        sut = new PolicyEngineImpl(policyApi, environmentSnapshotCache, conditionEngine, conditionEngineMetadata, apiProperties,
+                classifyExecutionService, userContext);
     }
 
     @Test
@@ -207,4 +238,159 @@ public class PolicyEngineImplTest {
         Long firstPolicyId = classifyResult.resolvedPolicies.stream().findFirst().get();
         assertEquals((Long)1L, firstPolicyId);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testClassifyParallelPreservesOrderAndIsolatesFailures() throws Exception {
+        EnvironmentSnapshot environmentSnapshot = mock(EnvironmentSnapshot.class);
+        when(environmentSnapshotCache.get(anyLong())).thenReturn(environmentSnapshot);
+        when(conditionEngine.evaluate(any(DocumentUnderEvaluation.class), eq(1L), any(EnvironmentSnapshot.class))).thenAnswer(invocation -> {
+            DocumentUnderEvaluation documentUnderEvaluation = (DocumentUnderEvaluation) invocation.getArguments()[0];
+            if (documentUnderEvaluation.getReference().equals("doc3")) {
+                throw new BackEndRequestFailedCpeException(new Exception("bad document"));
+            }
+            ConditionEngineResult conditionEngineResult = new ConditionEngineResult();
+            conditionEngineResult.reference = documentUnderEvaluation.getReference();
+            return conditionEngineResult;
+        });
+
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            DocumentImpl document = new DocumentImpl();
+            document.setReference("doc" + i);
+            documents.add(document);
+        }
+
+        List<ClassifyDocumentResult> results = new ArrayList<>(sut.classifyParallel(1L, documents));
+
+        assertEquals(documents.size(), results.size());
+        for (int i = 0; i < documents.size(); i++) {
+            assertEquals("doc" + i, results.get(i).reference);
+            if (i == 3) {
+                assertNotNull(results.get(i).error);
+            } else {
+                assertNull(results.get(i).error);
+            }
+        }
+        verify(conditionEngine, times(1)).prefetch(anyCollection(), eq(environmentSnapshot));
+    }
+
+    @Test
+    public void testClassifyParallelContinuesWhenPrefetchFails() throws Exception {
+        EnvironmentSnapshot environmentSnapshot = mock(EnvironmentSnapshot.class);
+        when(environmentSnapshotCache.get(anyLong())).thenReturn(environmentSnapshot);
+        doThrow(new BackEndRequestFailedCpeException(new Exception("agent unavailable")))
+                .when(conditionEngine).prefetch(anyCollection(), eq(environmentSnapshot));
+        when(conditionEngine.evaluate(any(DocumentUnderEvaluation.class), eq(1L), any(EnvironmentSnapshot.class))).thenAnswer(invocation -> {
+            ConditionEngineResult conditionEngineResult = new ConditionEngineResult();
+            conditionEngineResult.reference = ((DocumentUnderEvaluation) invocation.getArguments()[0]).getReference();
+            return conditionEngineResult;
+        });
+
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            DocumentImpl document = new DocumentImpl();
+            document.setReference("doc" + i);
+            documents.add(document);
+        }
+
+        List<ClassifyDocumentResult> results = new ArrayList<>(sut.classifyParallel(1L, documents));
+
+        assertEquals(documents.size(), results.size());
+        for (int i = 0; i < documents.size(); i++) {
+            assertEquals("doc" + i, results.get(i).reference);
+            assertNull(results.get(i).error);
+        }
+        verify(conditionEngine, times(3)).evaluate(any(DocumentUnderEvaluation.class), eq(1L), eq(environmentSnapshot));
+    }
+
+    @Test
+    public void testClassifyParallelFetchesWithProjectOfCallerWhenPrefetchFails() throws Exception {
+        EnvironmentSnapshot environmentSnapshot = mock(EnvironmentSnapshot.class);
+        when(environmentSnapshotCache.get(anyLong())).thenReturn(environmentSnapshot);
+        doThrow(new BackEndRequestFailedCpeException(new Exception("agent unavailable")))
+                .when(conditionEngine).prefetch(anyCollection(), eq(environmentSnapshot));
+        // evaluating without a prefetch queries the boolean agents, which needs the project of the request.
+        Collection<String> evaluatedProjectIds = new ConcurrentLinkedQueue<>();
+        when(conditionEngine.evaluate(any(DocumentUnderEvaluation.class), eq(1L), any(EnvironmentSnapshot.class))).thenAnswer(invocation -> {
+            evaluatedProjectIds.add(String.valueOf(userContext.getProjectId()));
+            ConditionEngineResult conditionEngineResult = new ConditionEngineResult();
+            conditionEngineResult.reference = ((DocumentUnderEvaluation) invocation.getArguments()[0]).getReference();
+            return conditionEngineResult;
+        });
+
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            DocumentImpl document = new DocumentImpl();
+            document.setReference("doc" + i);
+            documents.add(document);
+        }
+
+        userContext.setProjectId("project1");
+        List<ClassifyDocumentResult> results;
+        try {
+            results = new ArrayList<>(sut.classifyParallel(1L, documents));
+        } finally {
+            userContext.setProjectId(null);
+        }
+
+        for (ClassifyDocumentResult result : results) {
+            assertNull(result.error);
+        }
+        assertEquals(Collections.nCopies(documents.size(), "project1"), new ArrayList<>(evaluatedProjectIds));
+
+        // the pool threads do not keep the project once the batch is done.
+        assertEquals(Collections.nCopies(4, "null"), classifyExecutionService.invokeAll(Collections.nCopies(4,
+                () -> String.valueOf(userContext.getProjectId()))));
+    }
+
+    @Test
+    public void testClassifyParallelResolvesCustomPoliciesOnCallingThread() throws Exception {
+        Policy policy1 = new Policy();
+        policy1.id = 1L;
+        policy1.typeId = 1L;
+        policy1.priority = 100;
+
+        PolicyType policyType = new PolicyType();
+        policyType.id = 1L;
+        policyType.conflictResolutionMode = ConflictResolutionMode.CUSTOM;
+
+        Collection<Thread> resolvingThreads = new ConcurrentLinkedQueue<>();
+        PolicyHandler policyHandler = mock(PolicyHandler.class);
+        when(policyHandler.getPolicyTypeId()).thenReturn(1L);
+        when(policyHandler.resolve(any(), anyCollection())).thenAnswer(invocation -> {
+            resolvingThreads.add(Thread.currentThread());
+            return Arrays.asList(policy1);
+        });
+        sut.registerPolicyHandler(policyHandler);
+
+        EnvironmentSnapshot environmentSnapshot = mock(EnvironmentSnapshot.class);
+        when(environmentSnapshot.getPolicy(1L)).thenReturn(policy1);
+        when(environmentSnapshot.getPolicyType(1L)).thenReturn(policyType);
+        when(environmentSnapshotCache.get(anyLong())).thenReturn(environmentSnapshot);
+        when(conditionEngine.evaluate(any(DocumentUnderEvaluation.class), eq(1L), any(EnvironmentSnapshot.class))).thenAnswer(invocation -> {
+            ConditionEngineResult conditionEngineResult = new ConditionEngineResult();
+            conditionEngineResult.reference = ((DocumentUnderEvaluation) invocation.getArguments()[0]).getReference();
+            MatchedCollection matchedCollection = new MatchedCollection();
+            CollectionPolicy collectionPolicy = new CollectionPolicy();
+            collectionPolicy.setId(1L);
+            matchedCollection.getPolicies().add(collectionPolicy);
+            conditionEngineResult.matchedCollections.add(matchedCollection);
+            return conditionEngineResult;
+        });
+
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            DocumentImpl document = new DocumentImpl();
+            document.setReference("doc" + i);
+            documents.add(document);
+        }
+
+        List<ClassifyDocumentResult> results = new ArrayList<>(sut.classifyParallel(1L, documents));
+
+        for (int i = 0; i < documents.size(); i++) {
+            assertEquals("doc" + i, results.get(i).reference);
+            assertEquals(Collections.singletonList(1L), new ArrayList<>(results.get(i).resolvedPolicies));
+        }
+        assertEquals(Collections.nCopies(documents.size(), Thread.currentThread()), new ArrayList<>(resolvingThreads));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy;
+
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
+import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
+import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.UserContext;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.ExistsCondition;
+import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
+import com.github.cafdataprocessing.corepolicy.environment.EnvironmentSnapshotIndex;
+import com.github.cafdataprocessing.corepolicy.repositories.ExecutionContextProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StartupWarmUpImplTest {
+
+    @Mock
+    ApplicationContext applicationContext;
+
+    @Mock
+    EngineProperties engineProperties;
+
+    @Mock
+    ApiProperties apiProperties;
+
+    @Mock
+    UserContext userContext;
+
+    @Mock
+    BooleanAgentServices booleanAgentServices;
+
+    @Mock
+    EnvironmentSnapshotCache environmentSnapshotCache;
+
+    @Mock
+    ConditionEngine conditionEngine;
+
+    @Mock
+    ConditionEngineMetadata conditionEngineMetadata;
+
+    private Path cacheLocation;
+    private StartupWarmUpImpl startupWarmUp;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheLocation = Files.createTempDirectory("snapshots");
+        when(engineProperties.getEnvironmentCacheLocation()).thenReturn(cacheLocation.toString());
+        when(engineProperties.getWarmupEnabled()).thenReturn(true);
+        when(engineProperties.getWarmupRecentSequences()).thenReturn(0);
+        when(engineProperties.getWarmupClassifications()).thenReturn(0);
+        when(applicationContext.getBeansOfType(ExecutionContextProvider.class)).thenReturn(Collections.emptyMap());
+        startupWarmUp = new StartupWarmUpImpl(applicationContext, engineProperties, apiProperties, userContext,
+                booleanAgentServices, environmentSnapshotCache, conditionEngine, conditionEngineMetadata);
+    }
+
+    @Test
+    public void testConfiguredAndRecentSequencesAreLoaded() throws Exception {
+        when(engineProperties.getWarmupProjectId()).thenReturn("default");
+        when(engineProperties.getWarmupSequences()).thenReturn("project1:5, 7");
+        when(engineProperties.getWarmupRecentSequences()).thenReturn(1);
+        when(booleanAgentServices.getAvailable()).thenReturn(true);
+        when(booleanAgentServices.canConnect()).thenReturn(true);
+        EnvironmentSnapshotIndex index = new EnvironmentSnapshotIndex(cacheLocation);
+        index.put(8L, new EnvironmentSnapshotIndex.Entry("8-a.json", "a", 1000, false));
+        index.put(9L, new EnvironmentSnapshotIndex.Entry("9-b.json", "b", 2000, false));
+        when(environmentSnapshotCache.get(anyLong())).thenReturn(new EnvironmentSnapshotImpl());
+
+        assertFalse(startupWarmUp.isComplete());
+        startupWarmUp.run();
+
+        assertTrue(startupWarmUp.isComplete());
+        verify(booleanAgentServices).canConnect();
+        InOrder inOrder = inOrder(userContext, environmentSnapshotCache);
+        inOrder.verify(userContext).setProjectId("project1");
+        inOrder.verify(environmentSnapshotCache).get(5L);
+        inOrder.verify(userContext).setProjectId("default");
+        inOrder.verify(environmentSnapshotCache).get(7L);
+        inOrder.verify(userContext).setProjectId("default");
+        inOrder.verify(environmentSnapshotCache).get(9L);
+        inOrder.verify(userContext).setProjectId(null);
+        verify(environmentSnapshotCache, never()).get(8L);
+        assertEquals(3, startupWarmUp.getSequencesLoadedCount());
+        assertEquals(0, startupWarmUp.getSequenceLoadFailureCount());
+    }
+
+    @Test
+    public void testSyntheticDocumentsAreClassified() throws Exception {
+        when(engineProperties.getWarmupSequences()).thenReturn("5");
+        when(engineProperties.getWarmupClassifications()).thenReturn(3);
+        ExistsCondition condition = new ExistsCondition();
+        condition.id = 1L;
+        condition.field = "title";
+        EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
+        environmentSnapshot.getConditions().put(condition.id, condition);
+        when(environmentSnapshotCache.get(5L)).thenReturn(environmentSnapshot);
+
+        startupWarmUp.run();
+
+        ArgumentCaptor<DocumentUnderEvaluation> documents = ArgumentCaptor.forClass(DocumentUnderEvaluation.class);
+        verify(conditionEngine, times(3)).evaluate(documents.capture(), eq(5L), eq(environmentSnapshot));
+        assertTrue(documents.getValue().getMetadata().containsKey("title"));
+        assertEquals(3, startupWarmUp.getClassificationCount());
+        InOrder inOrder = inOrder(userContext, environmentSnapshotCache);
+        inOrder.verify(userContext).setProjectId(null);
+        inOrder.verify(environmentSnapshotCache).get(5L);
+        inOrder.verify(userContext).setProjectId(null);
+    }
+
+    @Test
+    public void testFailuresDoNotPreventCompletion() throws Exception {
+        when(engineProperties.getWarmupSequences()).thenReturn("5,6");
+        when(environmentSnapshotCache.get(5L)).thenThrow(new RuntimeException("Collection sequence 5 does not exist."));
+        when(environmentSnapshotCache.get(6L)).thenReturn(new EnvironmentSnapshotImpl());
+
+        startupWarmUp.run();
+
+        assertTrue(startupWarmUp.isComplete());
+        assertEquals(1, startupWarmUp.getSequencesLoadedCount());
+        assertEquals(1, startupWarmUp.getSequenceLoadFailureCount());
+    }
+
+    @Test
+    public void testDisabledWarmUpIsCompleteOnceStarted() throws Exception {
+        when(engineProperties.getWarmupEnabled()).thenReturn(false);
+
+        startupWarmUp.onApplicationEvent(new ContextRefreshedEvent(applicationContext));
+
+        assertTrue(startupWarmUp.isComplete());
+        verifyZeroInteractions(environmentSnapshotCache, booleanAgentServices);
+    }
+}
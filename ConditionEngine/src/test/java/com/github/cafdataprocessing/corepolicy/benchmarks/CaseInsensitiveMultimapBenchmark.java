@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.benchmarks;
+
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
+import com.github.cafdataprocessing.corepolicy.multimap.utils.CaseInsensitiveMultimap;
+import com.github.cafdataprocessing.corepolicy.multimap.utils.LinkedCaseInsensitiveMultimap;
+import com.google.common.collect.Multimap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares the tree based CaseInsensitiveMultimap, which documents held their metadata in, against the hash based
+ * LinkedCaseInsensitiveMultimap. Each benchmark fills a document's worth of fields, then looks every field up in a
+ * different case along with as many fields the document does not have, as condition evaluation does. Run with the
+ * test classpath, e.g.
+ * java -cp target/test-classes:[test classpath] com.github.cafdataprocessing.corepolicy.benchmarks.CaseInsensitiveMultimapBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseInsensitiveMultimapBenchmark {
+
+    @Param({"20", "500"})
+    public int fieldCount;
+
+    private String[] fields;
+    private String[] lookupFields;
+    private String[] missingFields;
+    private MetadataValue[] values;
+
+    private Multimap<String, MetadataValue> treeMultimap;
+    private Multimap<String, MetadataValue> linkedMultimap;
+
+    @Setup
+    public void setup() {
+        fields = new String[fieldCount];
+        lookupFields = new String[fieldCount];
+        missingFields = new String[fieldCount];
+        values = new MetadataValue[fieldCount * 2];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = "Document_Field_" + i;
+            lookupFields[i] = fields[i].toUpperCase(Locale.ROOT);
+            missingFields[i] = "MISSING_FIELD_" + i;
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new MetadataValue(null, "value of the field number " + i);
+        }
+        treeMultimap = fill(CaseInsensitiveMultimap::create);
+        linkedMultimap = fill(LinkedCaseInsensitiveMultimap::create);
+    }
+
+    private Multimap<String, MetadataValue> fill(Supplier<Multimap<String, MetadataValue>> supplier) {
+        Multimap<String, MetadataValue> multimap = supplier.get();
+        for (int i = 0; i < fieldCount; i++) {
+            multimap.put(fields[i], values[i * 2]);
+            multimap.put(fields[i], values[i * 2 + 1]);
+        }
+        return multimap;
+    }
+
+    private int lookup(Multimap<String, MetadataValue> multimap) {
+        int found = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            found += multimap.get(lookupFields[i]).size();
+            if (multimap.containsKey(missingFields[i])) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public Multimap<String, MetadataValue> treeFill() {
+        return fill(CaseInsensitiveMultimap::create);
+    }
+
+    @Benchmark
+    public Multimap<String, MetadataValue> linkedFill() {
+        return fill(LinkedCaseInsensitiveMultimap::create);
+    }
+
+    @Benchmark
+    public int treeLookup() {
+        return lookup(treeMultimap);
+    }
+
+    @Benchmark
+    public int linkedLookup() {
+        return lookup(linkedMultimap);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CaseInsensitiveMultimapBenchmark.class.getSimpleName()).build()).run();
+    }
+}
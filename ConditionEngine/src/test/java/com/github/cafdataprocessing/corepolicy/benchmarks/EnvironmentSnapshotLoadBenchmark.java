@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.benchmarks;
+
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.common.dto.*;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanOperator;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TextCondition;
+import com.github.cafdataprocessing.corepolicy.common.shared.CorePolicyObjectMapper;
+import com.github.cafdataprocessing.corepolicy.environment.EnvironmentSnapshotBinaryFormat;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading a persisted environment snapshot from the JSON file against the memory-mapped binary file.
+ * The GC profiler is enabled so the allocation per load (gc.alloc.rate.norm) is reported alongside the time. Run with
+ * the test classpath, e.g.
+ * java -cp target/test-classes:[test classpath] com.github.cafdataprocessing.corepolicy.benchmarks.EnvironmentSnapshotLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentSnapshotLoadBenchmark {
+
+    @Param({"50", "500"})
+    public int collectionCount;
+
+    private final CorePolicyObjectMapper objectMapper = new CorePolicyObjectMapper();
+    private final EnvironmentSnapshotBinaryFormat binaryFormat = new EnvironmentSnapshotBinaryFormat();
+    private File directory;
+    private File jsonFile;
+    private File binaryFile;
+
+    @Setup
+    public void setup() throws IOException {
+        EnvironmentSnapshotImpl environmentSnapshot = createSnapshot(collectionCount);
+        directory = Files.createTempDirectory("snapshot-benchmark").toFile();
+        jsonFile = new File(directory, "1-" + environmentSnapshot.getInstanceId() + ".json");
+        binaryFile = EnvironmentSnapshotBinaryFormat.getBinaryFile(jsonFile);
+        objectMapper.writeValue(jsonFile, environmentSnapshot);
+        binaryFormat.write(environmentSnapshot, binaryFile.toPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        jsonFile.delete();
+        binaryFile.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public EnvironmentSnapshotImpl loadJson() throws IOException {
+        return objectMapper.readValue(jsonFile, EnvironmentSnapshotImpl.class);
+    }
+
+    @Benchmark
+    public EnvironmentSnapshotImpl loadBinary() throws IOException {
+        return binaryFormat.read(binaryFile.toPath());
+    }
+
+    private static EnvironmentSnapshotImpl createSnapshot(int collectionCount) {
+        EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
+        environmentSnapshot.setCollectionSequenceId(1L);
+        environmentSnapshot.setCreateDate(DateTime.now(DateTimeZone.UTC));
+        environmentSnapshot.setCollectionSequenceLastModifiedDate(DateTime.now(DateTimeZone.UTC));
+        environmentSnapshot.fingerprint = "fingerprint";
+
+        CollectionSequence collectionSequence = new CollectionSequence();
+        collectionSequence.id = 1L;
+        collectionSequence.name = "sequence";
+        CollectionSequenceEntry collectionSequenceEntry = new CollectionSequenceEntry();
+        collectionSequenceEntry.order = 1;
+        collectionSequence.collectionSequenceEntries.add(collectionSequenceEntry);
+        environmentSnapshot.getCollectionSequences().put(collectionSequence.id, collectionSequence);
+
+        long id = 1;
+        for (int i = 0; i < collectionCount; i++) {
+            List<Condition> children = new ArrayList<>();
+            for (String field : Arrays.asList("CONTENT", "TITLE", "FROM")) {
+                TextCondition textCondition = new TextCondition();
+                textCondition.id = id++;
+                textCondition.field = field;
+                textCondition.value = "value " + i;
+                children.add(textCondition);
+                environmentSnapshot.getConditions().put(textCondition.id, textCondition);
+            }
+            BooleanCondition booleanCondition = new BooleanCondition();
+            booleanCondition.id = id++;
+            booleanCondition.operator = BooleanOperator.OR;
+            booleanCondition.children = children;
+            environmentSnapshot.getConditions().put(booleanCondition.id, booleanCondition);
+
+            DocumentCollection collection = new DocumentCollection();
+            collection.id = (long) i;
+            collection.name = "collection " + i;
+            collection.condition = booleanCondition;
+            collection.policyIds = new HashSet<>(Arrays.asList((long) i));
+            environmentSnapshot.getCollections().put(collection.id, collection);
+            collectionSequenceEntry.collectionIds.add(collection.id);
+
+            Policy policy = new Policy();
+            policy.id = (long) i;
+            policy.name = "policy " + i;
+            policy.typeId = 1L;
+            environmentSnapshot.getPolicies().put(policy.id, policy);
+
+            Lexicon lexicon = new Lexicon();
+            lexicon.id = (long) i;
+            lexicon.name = "lexicon " + i;
+            lexicon.lexiconExpressions = new ArrayList<>();
+            for (int e = 0; e < 10; e++) {
+                LexiconExpression lexiconExpression = new LexiconExpression();
+                lexiconExpression.id = id++;
+                lexiconExpression.lexiconId = lexicon.id;
+                lexiconExpression.type = LexiconExpressionType.TEXT;
+                lexiconExpression.expression = "term" + e + " AND phrase" + i;
+                lexicon.lexiconExpressions.add(lexiconExpression);
+            }
+            environmentSnapshot.getLexicons().put(lexicon.id, lexicon);
+        }
+
+        PolicyType policyType = new PolicyType();
+        policyType.id = 1L;
+        policyType.name = "policy type";
+        policyType.shortName = "PolicyType";
+        environmentSnapshot.getPolicyTypes().put(policyType.id, policyType);
+        return environmentSnapshot;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EnvironmentSnapshotLoadBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
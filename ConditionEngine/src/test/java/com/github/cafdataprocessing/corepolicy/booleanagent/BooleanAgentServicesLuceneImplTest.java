@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.booleanagent;
+
+import com.github.cafdataprocessing.corepolicy.common.ElasticsearchProperties;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionId;
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
+import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocument;
+import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocuments;
+import org.joda.time.Period;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.*;
+
+public class BooleanAgentServicesLuceneImplTest {
+    private static final String INSTANCE_ID = "lucene-instance-id";
+
+    private BooleanAgentServicesLuceneImpl luceneBAS;
+
+    @Before
+    public void setup() {
+        ElasticsearchProperties properties = Mockito.mock(ElasticsearchProperties.class);
+        Mockito.when(properties.getAgentExpiry()).thenReturn(Period.days(1));
+        Mockito.when(properties.getBooleanAgentLuceneMaxInstances()).thenReturn(2);
+        luceneBAS = new BooleanAgentServicesLuceneImpl(properties);
+    }
+
+    @Test
+    public void testCreateAndDelete() {
+        Assert.assertFalse(luceneBAS.existForInstanceId(INSTANCE_ID));
+
+        luceneBAS.create(INSTANCE_ID, createAgents(conditionAgent(1L, "cat")));
+        Assert.assertTrue(luceneBAS.existForInstanceId(INSTANCE_ID));
+
+        luceneBAS.delete(INSTANCE_ID);
+        Assert.assertFalse(luceneBAS.existForInstanceId(INSTANCE_ID));
+    }
+
+    @Test
+    public void testUpdateReplacesAndRemovesAgents() throws Exception {
+        BooleanAgentDocument catAgent = conditionAgent(1L, "cat");
+        catAgent.setFingerprint("cat-fingerprint");
+        luceneBAS.create(INSTANCE_ID, createAgents(catAgent, conditionAgent(2L, "dog"), conditionAgent(3L, "mouse")));
+
+        BooleanAgentDocument ratAgent = conditionAgent(2L, "rat");
+        ratAgent.setFingerprint("rat-fingerprint");
+        luceneBAS.update(INSTANCE_ID, createAgents(ratAgent), Collections.singletonList("3"));
+
+        Map<String, String> fingerprints = luceneBAS.getAgentFingerprints(INSTANCE_ID);
+        Assert.assertEquals(2, fingerprints.size());
+        Assert.assertEquals("cat-fingerprint", fingerprints.get("1"));
+        Assert.assertEquals("rat-fingerprint", fingerprints.get("2"));
+
+        BooleanAgentQueryResult result = luceneBAS.query(INSTANCE_ID, values("cat dog mouse rat"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), result.getConditionIdTerms().keySet());
+        Assert.assertEquals(Collections.singletonList("rat"), new ArrayList<>(result.getConditionIdTerms().get(2L)));
+        Assert.assertTrue(luceneBAS.getAgentFingerprints("unknown-instance-id").isEmpty());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedInstanceIsDropped() throws Exception {
+        luceneBAS.create("instance-1", createAgents(conditionAgent(1L, "cat")));
+        luceneBAS.create("instance-2", createAgents(conditionAgent(1L, "cat")));
+        luceneBAS.query("instance-1", values("cat"));
+
+        luceneBAS.create("instance-3", createAgents(conditionAgent(1L, "cat")));
+
+        Assert.assertTrue(luceneBAS.existForInstanceId("instance-1"));
+        Assert.assertFalse(luceneBAS.existForInstanceId("instance-2"));
+        Assert.assertTrue(luceneBAS.existForInstanceId("instance-3"));
+    }
+
+    @Test
+    public void testQueryConditions() throws Exception {
+        luceneBAS.create(INSTANCE_ID, createAgents(
+                conditionAgent(1L, "cat AND dog"),
+                conditionAgent(2L, "cat OR mouse"),
+                conditionAgent(3L, "\"black cat\""),
+                conditionAgent(4L, "sat /2 mat"),
+                conditionAgent(5L, "bird"),
+                conditionAgent(6L, "ca*")));
+
+        BooleanAgentQueryResult result = luceneBAS.query(INSTANCE_ID, values("The Black Cat sat on the mat with the dog"));
+
+        Assert.assertEquals(Arrays.asList("Cat", "dog"), sorted(result.getConditionIdTerms().get(1L)));
+        Assert.assertEquals(Collections.singletonList("Cat"), sorted(result.getConditionIdTerms().get(2L)));
+        Assert.assertEquals(Arrays.asList("Black", "Cat"), sorted(result.getConditionIdTerms().get(3L)));
+        Assert.assertTrue(result.getConditionIdTerms().containsKey(4L));
+        Assert.assertFalse(result.getConditionIdTerms().containsKey(5L));
+        Assert.assertEquals(Collections.singletonList("Cat"), sorted(result.getConditionIdTerms().get(6L)));
+    }
+
+    @Test
+    public void testProximityIsRespected() throws Exception {
+        luceneBAS.create(INSTANCE_ID, createAgents(conditionAgent(1L, "cat /1 mat")));
+
+        BooleanAgentQueryResult result = luceneBAS.query(INSTANCE_ID, values("the cat sat on the mat"));
+
+        Assert.assertFalse(result.getConditionIdTerms().containsKey(1L));
+    }
+
+    @Test
+    public void testQueryLexiconExpressions() throws Exception {
+        BooleanAgentDocument lexiconAgent = new BooleanAgentDocument();
+        lexiconAgent.setReference("10_20");
+        lexiconAgent.setBooleanRestriction(Collections.singletonList("secret"));
+        lexiconAgent.setLexicon_id(Collections.singletonList("10"));
+        lexiconAgent.setLexicon_expression_id(Collections.singletonList("20"));
+        luceneBAS.create(INSTANCE_ID, createAgents(lexiconAgent));
+
+        BooleanAgentQueryResult result = luceneBAS.query(INSTANCE_ID, values("top secret document"));
+
+        Assert.assertEquals(1, result.getLexiconExpressionIdTerms().keySet().size());
+        LexiconExpressionId lexiconExpressionId = result.getLexiconExpressionIdTerms().keySet().iterator().next();
+        Assert.assertEquals(Long.valueOf(10L), lexiconExpressionId.lexiconId);
+        Assert.assertEquals(Long.valueOf(20L), lexiconExpressionId.lexiconExpressionId);
+        Assert.assertEquals(Collections.singletonList("secret"),
+                new ArrayList<>(result.getLexiconExpressionIdTerms().get(lexiconExpressionId)));
+    }
+
+    @Test
+    public void testQueryBatchPreservesGroupOrder() throws Exception {
+        luceneBAS.create(INSTANCE_ID, createAgents(conditionAgent(1L, "cat"), conditionAgent(2L, "dog")));
+
+        List<BooleanAgentQueryResult> results = luceneBAS.queryBatch(INSTANCE_ID,
+                Arrays.asList(values("a dog"), Collections.emptyList(), values("a cat", "another dog")));
+
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(Collections.singleton(2L), results.get(0).getConditionIdTerms().keySet());
+        Assert.assertTrue(results.get(1).getConditionIdTerms().isEmpty());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), results.get(2).getConditionIdTerms().keySet());
+    }
+
+    @Test
+    public void testQueryUnknownInstanceMatchesNothing() throws Exception {
+        BooleanAgentQueryResult result = luceneBAS.query("unknown-instance-id", values("cat"));
+        Assert.assertTrue(result.getConditionIdTerms().isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testIsValidExpression() {
+        luceneBAS.isValidExpression(null);
+        luceneBAS.isValidExpression("cat /5 dog");
+        luceneBAS.isValidExpression("cat) /5 dog");
+    }
+
+    @Test
+    public void testDoTermGetInfo() {
+        Collection<Term> terms = luceneBAS.doTermGetInfo("dog cat dog");
+
+        Assert.assertEquals(2, terms.size());
+        Term dog = terms.stream().filter(t -> t.getTermString().equals("dog")).findFirst().get();
+        Assert.assertEquals(2, dog.getTotalOccurrences());
+        Assert.assertEquals(0, dog.getStartPosition());
+        Assert.assertEquals(3, dog.getLength());
+    }
+
+    private static BooleanAgentDocument conditionAgent(Long conditionId, String expression) {
+        BooleanAgentDocument document = new BooleanAgentDocument();
+        document.setReference(String.valueOf(conditionId));
+        document.setBooleanRestriction(Collections.singletonList(expression));
+        document.setCondition_id(Collections.singletonList(String.valueOf(conditionId)));
+        return document;
+    }
+
+    private static BooleanAgentDocuments createAgents(BooleanAgentDocument... documents) {
+        BooleanAgentDocuments booleanAgentDocuments = new BooleanAgentDocuments();
+        booleanAgentDocuments.setDocuments(Arrays.asList(documents));
+        return booleanAgentDocuments;
+    }
+
+    private static Collection<MetadataValue> values(String... values) {
+        Collection<MetadataValue> metadataValues = new ArrayList<>();
+        for (String value : values) {
+            metadataValues.add(new MetadataValue(null, value));
+        }
+        return metadataValues;
+    }
+
+    private static List<String> sorted(Collection<String> terms) {
+        List<String> sortedTerms = new ArrayList<>(terms);
+        Collections.sort(sortedTerms);
+        return sortedTerms;
+    }
+}
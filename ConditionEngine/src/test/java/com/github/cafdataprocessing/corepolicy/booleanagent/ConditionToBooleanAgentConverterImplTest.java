@@ -24,6 +24,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 
 public class ConditionToBooleanAgentConverterImplTest {
@@ -77,4 +78,24 @@ public class ConditionToBooleanAgentConverterImplTest {
         Assert.assertTrue(lexiconExpressionId.isPresent());
         Assert.assertEquals(lexiconExpressionId.get(), "88");
     }
+
+    @Test
+    public void testFingerprintChangesWithExpression() throws Exception {
+        ConditionToBooleanAgentConverterImpl conditionToBooleanAgentConverter = new ConditionToBooleanAgentConverterImpl();
+
+        String fingerprint = getFingerprint(conditionToBooleanAgentConverter, 99L, "an expression");
+
+        Assert.assertNotNull(fingerprint);
+        Assert.assertEquals(fingerprint, getFingerprint(conditionToBooleanAgentConverter, 99L, "an expression"));
+        Assert.assertNotEquals(fingerprint, getFingerprint(conditionToBooleanAgentConverter, 99L, "another expression"));
+        Assert.assertNotEquals(fingerprint, getFingerprint(conditionToBooleanAgentConverter, 98L, "an expression"));
+    }
+
+    private static String getFingerprint(ConditionToBooleanAgentConverterImpl conditionToBooleanAgentConverter, Long conditionId, String expression) {
+        TextCondition textCondition = new TextCondition();
+        textCondition.id = conditionId;
+        textCondition.value = expression;
+        return conditionToBooleanAgentConverter.convert(Collections.singletonList(textCondition), null)
+                .getDocuments().iterator().next().getFingerprint();
+    }
 }
\ No newline at end of file
@@ -20,13 +20,16 @@ import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluationI
 import com.github.cafdataprocessing.corepolicy.Helper;
 import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
 import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
 import com.github.cafdataprocessing.corepolicy.common.dto.MatchedCondition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanCondition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanOperator;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.ExistsCondition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TestCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TextCondition;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import org.junit.After;
 import org.junit.Assert;
@@ -41,10 +44,13 @@ import org.mockito.runners.MockitoJUnitRunner;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.stream.Collectors;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -74,6 +80,9 @@ public class BooleanEvaluatorTests {
     @Mock
     private ApiProperties apiProperties;
 
+    @Mock
+    private EngineProperties engineProperties;
+
 //    @Mock
 //    ConditionEvaluator mockEvaluator;
 
@@ -122,7 +131,8 @@ public class BooleanEvaluatorTests {
      * A utility method to create a ConditionSetEvaluator and evaluate the Document field against a provided condition
      * */
     private ConditionEvaluationResult evaluate(BooleanCondition condition)  {
-        ConditionEvaluator<BooleanCondition> evaluator = new BooleanConditionEvaluator(evaluateCondition);
+        ConditionEvaluator<BooleanCondition> evaluator = new BooleanConditionEvaluator(evaluateCondition,
+                new ConditionCostModelImpl(engineProperties));
         return evaluator.evaluate(this.collectionSequence, this.document, condition, environmentSnapshot);
     }
 
@@ -330,6 +340,76 @@ public class BooleanEvaluatorTests {
         Assert.assertEquals(2, evaluationResult.getMatchedConditions().size());
     }
 
+    @Test
+    public void orReportsFirstMatchInStoredOrder()  {
+        matchingStringCondition.id = Helper.getId();
+        matchingNumberCondition.id = Helper.getId();
+        BooleanCondition set = createBooleanCondition(BooleanOperator.OR, notMatchingNumberCondition, matchingStringCondition, matchingNumberCondition);
+
+        Mockito.reset(evaluateCondition);
+        registerEvaluationResult(false, notMatchingNumberCondition, Arrays.asList());
+        registerEvaluationResult(true, matchingStringCondition, Arrays.asList(matchingStringCondition));
+        registerEvaluationResult(true, matchingNumberCondition, Arrays.asList(matchingNumberCondition));
+
+        ConditionEvaluationResult evaluationResult = evaluate(set);
+
+        Assert.assertTrue(evaluationResult.isMatch());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(matchingStringCondition.id, set.id)),
+                evaluationResult.getMatchedConditions().stream().map(c -> c.id).collect(Collectors.toSet()));
+        verify(evaluateCondition, never()).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(matchingNumberCondition), any(EnvironmentSnapshot.class));
+    }
+
+    @Test
+    public void checkAndEvaluatesCheapestSettlingConditionFirst()  {
+        when(engineProperties.getConditionOrderingEnabled()).thenReturn(true);
+        TextCondition textCondition = new TextCondition();
+        textCondition.id = Helper.getId();
+        ExistsCondition existsCondition = new ExistsCondition();
+        existsCondition.id = Helper.getId();
+        BooleanCondition set = createBooleanCondition(BooleanOperator.AND, textCondition, existsCondition);
+
+        Mockito.reset(evaluateCondition);
+        registerEvaluationResult(true, textCondition, Arrays.asList(textCondition));
+        registerEvaluationResult(false, existsCondition, Arrays.asList());
+
+        Assert.assertFalse(evaluate(set).isMatch());
+        verify(evaluateCondition, never()).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(textCondition), any(EnvironmentSnapshot.class));
+    }
+
+    @Test
+    public void checkStoredOrderWhenOrderingDisabled()  {
+        TextCondition textCondition = new TextCondition();
+        textCondition.id = Helper.getId();
+        ExistsCondition existsCondition = new ExistsCondition();
+        existsCondition.id = Helper.getId();
+        BooleanCondition set = createBooleanCondition(BooleanOperator.AND, textCondition, existsCondition);
+
+        Mockito.reset(evaluateCondition);
+        registerEvaluationResult(false, textCondition, Arrays.asList());
+        registerEvaluationResult(false, existsCondition, Arrays.asList());
+
+        Assert.assertFalse(evaluate(set).isMatch());
+        verify(evaluateCondition, never()).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), any(EnvironmentSnapshot.class));
+    }
+
+    @Test
+    public void checkStoredOrderWithFullConditionEvaluation()  {
+        when(engineProperties.getConditionOrderingEnabled()).thenReturn(true);
+        collectionSequence.fullConditionEvaluation = true;
+        TextCondition textCondition = new TextCondition();
+        textCondition.id = Helper.getId();
+        ExistsCondition existsCondition = new ExistsCondition();
+        existsCondition.id = Helper.getId();
+        BooleanCondition set = createBooleanCondition(BooleanOperator.AND, textCondition, existsCondition);
+
+        Mockito.reset(evaluateCondition);
+        registerEvaluationResult(false, textCondition, Arrays.asList());
+        registerEvaluationResult(false, existsCondition, Arrays.asList());
+
+        Assert.assertFalse(evaluate(set).isMatch());
+        verify(evaluateCondition, never()).evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(existsCondition), any(EnvironmentSnapshot.class));
+    }
+
     private void registerEvaluationResult(Boolean isMatch, Condition condition, Collection<Condition> matchingConditions){
         ConditionEvaluationResult mockConditionEvaluationResult = new ConditionEvaluationResult();
 
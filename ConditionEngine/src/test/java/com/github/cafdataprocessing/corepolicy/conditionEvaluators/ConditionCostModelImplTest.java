@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.*;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the ConditionCostModelImpl.
+ */
+public class ConditionCostModelImplTest {
+    private ConditionCostModel conditionCostModel;
+    private EnvironmentSnapshot environmentSnapshot;
+
+    @Before
+    public void setup() {
+        EngineProperties engineProperties = mock(EngineProperties.class);
+        when(engineProperties.getConditionOrderingEnabled()).thenReturn(true);
+        conditionCostModel = new ConditionCostModelImpl(engineProperties);
+        environmentSnapshot = mock(EnvironmentSnapshot.class);
+    }
+
+    @Test
+    public void testDisabled() {
+        Assert.assertTrue(conditionCostModel.isEnabled());
+        Assert.assertFalse(new ConditionCostModelImpl(mock(EngineProperties.class)).isEnabled());
+    }
+
+    @Test
+    public void testCheapConditionsFirst() {
+        TextCondition text = withId(new TextCondition(), 1L);
+        RegexCondition regex = withId(new RegexCondition(), 2L);
+        ExistsCondition exists = withId(new ExistsCondition(), 3L);
+        StringCondition string = withId(new StringCondition(), 4L);
+        NumberCondition number = withId(new NumberCondition(), 5L);
+
+        List<Condition> ordered = conditionCostModel.order(BooleanOperator.AND, Arrays.asList(text, regex, exists, string, number), environmentSnapshot);
+
+        // String and number conditions cost the same, so keep their stored order.
+        Assert.assertEquals(Arrays.asList(exists, string, number, regex, text), ordered);
+    }
+
+    @Test
+    public void testCompositeConditionsCostTheirChildren() {
+        TextCondition text = withId(new TextCondition(), 1L);
+        NotCondition notText = withId(new NotCondition(), 2L);
+        notText.condition = text;
+        RegexCondition regex = withId(new RegexCondition(), 3L);
+        FragmentCondition fragment = withId(new FragmentCondition(), 4L);
+        fragment.value = regex.id;
+        when(environmentSnapshot.getCondition(regex.id)).thenReturn(regex);
+        ExistsCondition exists = withId(new ExistsCondition(), 5L);
+        BooleanCondition booleanCondition = withId(new BooleanCondition(), 6L);
+        booleanCondition.children = Arrays.asList(exists, exists);
+
+        List<Condition> ordered = conditionCostModel.order(BooleanOperator.OR, Arrays.asList(notText, fragment, booleanCondition), environmentSnapshot);
+
+        Assert.assertEquals(Arrays.asList(booleanCondition, fragment, notText), ordered);
+    }
+
+    @Test
+    public void testObservationsRefineOrder() {
+        ExistsCondition alwaysMatches = withId(new ExistsCondition(), 1L);
+        StringCondition neverMatches = withId(new StringCondition(), 2L);
+        for (int i = 0; i < 100; i++) {
+            conditionCostModel.record(alwaysMatches, 1000, true);
+            conditionCostModel.record(neverMatches, 1000, false);
+        }
+
+        // An AND is settled by a condition which does not match, an OR by one which does.
+        Assert.assertEquals(Arrays.asList(neverMatches, alwaysMatches),
+                conditionCostModel.order(BooleanOperator.AND, Arrays.asList(alwaysMatches, neverMatches), environmentSnapshot));
+        Assert.assertEquals(Arrays.asList(alwaysMatches, neverMatches),
+                conditionCostModel.order(BooleanOperator.OR, Arrays.asList(neverMatches, alwaysMatches), environmentSnapshot));
+
+        // A text condition observed to be fast is no longer put last.
+        TextCondition text = withId(new TextCondition(), 3L);
+        for (int i = 0; i < 100; i++) {
+            conditionCostModel.record(text, 100, false);
+        }
+        Assert.assertEquals(Arrays.asList(text, neverMatches),
+                conditionCostModel.order(BooleanOperator.AND, Arrays.asList(neverMatches, text), environmentSnapshot));
+    }
+
+    private static <T extends Condition> T withId(T condition, Long id) {
+        condition.id = id;
+        return condition;
+    }
+}
@@ -18,6 +18,7 @@ package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
 import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
 import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
 import com.github.cafdataprocessing.corepolicy.common.DocumentFields;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
 import com.github.cafdataprocessing.corepolicy.common.dto.MatchedCondition;
@@ -32,6 +33,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
 
 import java.util.Arrays;
 
@@ -305,8 +307,9 @@ public class ConditionEvaluatorBaseTest {
         booleanCondition.children = (Arrays.asList((Condition)stringFieldCondition));
 
         EvaluateCondition evaluateCondition = mock(EvaluateCondition.class);
-        BooleanConditionEvaluator booleanEvaluator = new BooleanConditionEvaluator(evaluateCondition);
-        StringEvaluator stringEvaluator = new StringEvaluator(mock(ApiProperties.class));
+        BooleanConditionEvaluator booleanEvaluator = new BooleanConditionEvaluator(evaluateCondition, new ConditionCostModelImpl(mock(EngineProperties.class)));
+        StringEvaluator stringEvaluator = new StringEvaluator(mock(ApiProperties.class), new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)),
+                mock(ConditionResultCache.class));
 
         when(evaluateCondition.evaluate(any(CollectionSequence.class), any(DocumentUnderEvaluation.class), eq(booleanCondition), any(EnvironmentSnapshot.class))).thenAnswer(a ->
                 {
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.RegexCondition;
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the ConditionResultCacheImpl.
+ */
+public class ConditionResultCacheImplTest {
+    private EngineProperties engineProperties;
+    private ApiProperties apiProperties;
+    private EnvironmentSnapshot environmentSnapshot;
+    private RegexCondition condition;
+
+    @Before
+    public void setup() {
+        engineProperties = mock(EngineProperties.class);
+        when(engineProperties.getConditionResultCacheEnabled()).thenReturn(true);
+        when(engineProperties.getConditionResultCacheMaxWeight()).thenReturn(100000L);
+        apiProperties = mock(ApiProperties.class);
+        environmentSnapshot = mock(EnvironmentSnapshot.class);
+        when(environmentSnapshot.getFingerprint()).thenReturn("snapshot1");
+        when(environmentSnapshot.getCollectionSequenceId()).thenReturn(1L);
+        when(environmentSnapshot.getCollectionSequenceLastModifiedDate()).thenReturn(new DateTime(2000L));
+        condition = new RegexCondition();
+        condition.id = 1L;
+        condition.field = "field";
+        condition.fingerprint = "condition1";
+    }
+
+    @Test
+    public void testResultsKeyedOnFieldValues() {
+        ConditionResultCache cache = new ConditionResultCacheImpl(engineProperties);
+        ConditionResultCache.Key key = cache.getKey(environmentSnapshot, condition, values("a", "b"));
+        cache.put(key, new ConditionResultCache.Result(true, Collections.singletonList("a")));
+
+        ConditionResultCache.Result result = cache.get(cache.getKey(environmentSnapshot, condition, values("a", "b")));
+        Assert.assertNotNull(result);
+        Assert.assertTrue(result.isMatch());
+        Assert.assertEquals(Collections.singletonList("a"), result.getTerms());
+
+        // Values are delimited, so joining them differently gives a different key.
+        Assert.assertNull(cache.get(cache.getKey(environmentSnapshot, condition, values("ab"))));
+        Assert.assertNull(cache.get(cache.getKey(environmentSnapshot, condition, values("a", "b", ""))));
+
+        condition.fingerprint = "condition2";
+        Assert.assertNull(cache.get(cache.getKey(environmentSnapshot, condition, values("a", "b"))));
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testUncacheableKeys() {
+        ConditionResultCache cache = new ConditionResultCacheImpl(engineProperties);
+        Collection<MetadataValue> streamValues = MetadataValue.getMetadataValuesFromStreams(
+                Collections.singletonList(new ByteArrayInputStream(new byte[]{1})), apiProperties);
+        Assert.assertNull(cache.getKey(environmentSnapshot, condition, streamValues));
+
+        condition.fingerprint = null;
+        Assert.assertNull(cache.getKey(environmentSnapshot, condition, values("a")));
+
+        when(engineProperties.getConditionResultCacheEnabled()).thenReturn(false);
+        condition.fingerprint = "condition1";
+        Assert.assertNull(new ConditionResultCacheImpl(engineProperties).getKey(environmentSnapshot, condition, values("a")));
+    }
+
+    @Test
+    public void testNewSnapshotOfSequenceFlushesResults() {
+        ConditionResultCache cache = new ConditionResultCacheImpl(engineProperties);
+        cache.put(cache.getKey(environmentSnapshot, condition, values("a")), new ConditionResultCache.Result(false, null));
+
+        // Another sequence keeps its results alongside.
+        EnvironmentSnapshot otherSnapshot = mock(EnvironmentSnapshot.class);
+        when(otherSnapshot.getFingerprint()).thenReturn("other");
+        when(otherSnapshot.getCollectionSequenceId()).thenReturn(2L);
+        cache.put(cache.getKey(otherSnapshot, condition, values("a")), new ConditionResultCache.Result(false, null));
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertEquals(0, cache.getFlushCount());
+
+        when(environmentSnapshot.getFingerprint()).thenReturn("snapshot2");
+        when(environmentSnapshot.getCollectionSequenceLastModifiedDate()).thenReturn(new DateTime(3000L));
+        Assert.assertNull(cache.get(cache.getKey(environmentSnapshot, condition, values("a"))));
+        Assert.assertEquals(1, cache.getFlushCount());
+        Assert.assertEquals(1, cache.getSize());
+        Assert.assertNotNull(cache.get(cache.getKey(otherSnapshot, condition, values("a"))));
+    }
+
+    @Test
+    public void testOlderSnapshotOfSequenceDoesNotFlushResults() {
+        ConditionResultCache cache = new ConditionResultCacheImpl(engineProperties);
+        EnvironmentSnapshot newerSnapshot = mock(EnvironmentSnapshot.class);
+        when(newerSnapshot.getFingerprint()).thenReturn("snapshot2");
+        when(newerSnapshot.getCollectionSequenceId()).thenReturn(1L);
+        when(newerSnapshot.getCollectionSequenceLastModifiedDate()).thenReturn(new DateTime(3000L));
+
+        // Requests for the old and new snapshot alternate while the new one is being rolled out.
+        cache.put(cache.getKey(newerSnapshot, condition, values("a")), new ConditionResultCache.Result(false, null));
+        cache.put(cache.getKey(environmentSnapshot, condition, values("a")), new ConditionResultCache.Result(true, null));
+        Assert.assertFalse(cache.get(cache.getKey(newerSnapshot, condition, values("a"))).isMatch());
+        Assert.assertTrue(cache.get(cache.getKey(environmentSnapshot, condition, values("a"))).isMatch());
+
+        Assert.assertEquals(0, cache.getFlushCount());
+        Assert.assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testEvictedByWeight() {
+        when(engineProperties.getConditionResultCacheMaxWeight()).thenReturn(1000L);
+        ConditionResultCache cache = new ConditionResultCacheImpl(engineProperties);
+        char[] term = new char[400];
+        Arrays.fill(term, 'x');
+        for (int i = 0; i < 10; i++) {
+            cache.put(cache.getKey(environmentSnapshot, condition, values(String.valueOf(i))),
+                    new ConditionResultCache.Result(true, Collections.singletonList(new String(term))));
+        }
+        Assert.assertTrue(cache.getSize() < 10);
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    private Collection<MetadataValue> values(String... values) {
+        return MetadataValue.getMetadataValues(Arrays.asList(values), apiProperties);
+    }
+}
@@ -36,9 +36,12 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
 
 import java.time.Period;
 
+import static org.mockito.Mockito.mock;
+
 /**
  *
  * Tests for the DateEvaluator.
@@ -113,7 +116,8 @@ public class DateEvaluatorTest {
      * A utility method to create an Evaluator and evaluate the Document field against a provided condition
      */
     private ConditionEvaluationResult evaluate(DateCondition condition) throws CpeException {
-        ConditionEvaluator<DateCondition> evaluator = new DateEvaluator(apiProperties);
+        ConditionEvaluator<DateCondition> evaluator = new DateEvaluator(apiProperties, new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)),
+                mock(ConditionResultCache.class));
 
         DocumentUnderEvaluation documentUnderEvaluation = getDocument();
 
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.*;
+import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.context.ApplicationContext;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the EvaluationPlanCompiler.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class EvaluationPlanCompilerTest {
+    @Mock
+    private ApplicationContext applicationContext;
+
+    @Mock
+    private RegexMatcherFactory regexMatcherFactory;
+
+    @Mock
+    private EnvironmentSnapshot environmentSnapshot;
+
+    @Mock
+    private ConditionEvaluator booleanEvaluator;
+
+    @Mock
+    private ConditionEvaluator stringEvaluator;
+
+    private EvaluationPlanCompiler compiler;
+
+    private BooleanCondition booleanCondition;
+    private StringCondition stringCondition;
+    private RegexCondition regexCondition;
+    private DateCondition dateCondition;
+    private FragmentCondition fragmentCondition;
+
+    @Before
+    public void setup() {
+        stringCondition = new StringCondition();
+        stringCondition.id = 2L;
+        stringCondition.field = "FIELD";
+        stringCondition.value = "value";
+
+        regexCondition = new RegexCondition();
+        regexCondition.id = 3L;
+        regexCondition.field = "FIELD";
+        regexCondition.value = "[a-z]+";
+
+        dateCondition = new DateCondition();
+        dateCondition.id = 4L;
+        dateCondition.field = "FIELD";
+        dateCondition.value = "P1D";
+
+        booleanCondition = new BooleanCondition();
+        booleanCondition.id = 1L;
+        booleanCondition.operator = BooleanOperator.AND;
+        booleanCondition.children = Arrays.asList(stringCondition, regexCondition, dateCondition);
+
+        fragmentCondition = new FragmentCondition();
+        fragmentCondition.id = 5L;
+        fragmentCondition.value = booleanCondition.id;
+
+        Map<Long, Condition> conditions = new HashMap<>();
+        conditions.put(booleanCondition.id, booleanCondition);
+        conditions.put(fragmentCondition.id, fragmentCondition);
+        when(environmentSnapshot.getConditions()).thenReturn(conditions);
+        when(environmentSnapshot.getCondition(eq(booleanCondition.id))).thenReturn(booleanCondition);
+
+        when(applicationContext.getBean(anyString(), eq(ConditionEvaluator.class)))
+                .thenThrow(new NoSuchBeanDefinitionException("none"));
+        doReturn(booleanEvaluator).when(applicationContext).getBean(eq("BooleanCondition"), eq(ConditionEvaluator.class));
+        doReturn(stringEvaluator).when(applicationContext).getBean(eq("StringCondition"), eq(ConditionEvaluator.class));
+        when(regexMatcherFactory.getRegex(regexCondition.value)).thenReturn(new BacktrackingRegex(Pattern.compile(regexCondition.value)));
+
+        compiler = new EvaluationPlanCompiler(applicationContext, regexMatcherFactory);
+    }
+
+    @Test
+    public void testPlanResolvesEvaluatorsIncludingChildConditions() {
+        EvaluationPlan plan = compiler.getPlan(environmentSnapshot);
+
+        Assert.assertSame(booleanEvaluator, plan.getEvaluator(BooleanCondition.class));
+        Assert.assertSame(stringEvaluator, plan.getEvaluator(StringCondition.class));
+        Assert.assertNull(plan.getEvaluator(RegexCondition.class));
+    }
+
+    @Test
+    public void testPlanPrecompilesConditionValues() {
+        EvaluationPlan plan = compiler.getPlan(environmentSnapshot);
+
+        Assert.assertSame(booleanCondition, plan.getFragmentTarget(fragmentCondition.id));
+        Assert.assertEquals(regexCondition.value, plan.getRegex(regexCondition.id).getExpression());
+        Assert.assertEquals(stringCondition.value.toUpperCase(Locale.getDefault()), plan.getUpperCaseStringValue(stringCondition.id));
+        Assert.assertNotNull(plan.getDateTarget(dateCondition.id));
+        Assert.assertNull(plan.getUpperCaseStringValue(null));
+    }
+
+    @Test
+    public void testPlanIsCompiledOncePerSnapshot() {
+        EvaluationPlan plan = compiler.getPlan(environmentSnapshot);
+
+        Assert.assertSame(plan, compiler.getPlan(environmentSnapshot));
+        verify(regexMatcherFactory, times(1)).getRegex(regexCondition.value);
+
+        compiler.remove(environmentSnapshot);
+        Assert.assertNotSame(plan, compiler.getPlan(environmentSnapshot));
+    }
+
+    @Test
+    public void testInvalidRegexIsLeftForTheEvaluator() {
+        when(regexMatcherFactory.getRegex(regexCondition.value)).thenThrow(new BackEndRequestFailedCpeException(new Exception("invalid")));
+
+        EvaluationPlan plan = compiler.getPlan(environmentSnapshot);
+
+        Assert.assertNull(plan.getRegex(regexCondition.id));
+        Assert.assertEquals(stringCondition.value.toUpperCase(Locale.getDefault()), plan.getUpperCaseStringValue(stringCondition.id));
+    }
+}
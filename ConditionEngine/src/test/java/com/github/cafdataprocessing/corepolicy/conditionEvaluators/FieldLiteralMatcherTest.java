@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for the FieldLiteralMatcher.
+ */
+public class FieldLiteralMatcherTest {
+
+    @Test
+    public void testOverlappingLiteralsAreAllMatched() {
+        FieldLiteralMatcher matcher = new FieldLiteralMatcher.Builder(false)
+                .add("he", FieldLiteralMatcher.Position.ANYWHERE, 1L)
+                .add("she", FieldLiteralMatcher.Position.ANYWHERE, 2L)
+                .add("his", FieldLiteralMatcher.Position.ANYWHERE, 3L)
+                .add("hers", FieldLiteralMatcher.Position.ANYWHERE, 4L)
+                .add("shed", FieldLiteralMatcher.Position.ANYWHERE, 5L)
+                .build();
+
+        Assert.assertEquals(Sets.newHashSet(1L, 2L, 4L), matcher.match(Collections.singletonList("ushers")));
+        Assert.assertEquals(Sets.newHashSet(1L, 2L, 3L), matcher.match(Arrays.asList("she", "this")));
+        Assert.assertEquals(Collections.emptySet(), matcher.match(Collections.singletonList("HERS")));
+    }
+
+    @Test
+    public void testPositions() {
+        FieldLiteralMatcher matcher = new FieldLiteralMatcher.Builder(true)
+                .add("Value", FieldLiteralMatcher.Position.START, 1L)
+                .add("value", FieldLiteralMatcher.Position.END, 2L)
+                .add("VALUE", FieldLiteralMatcher.Position.ANYWHERE, 3L)
+                .add("a", FieldLiteralMatcher.Position.START, 4L)
+                .build();
+
+        Assert.assertEquals(Sets.newHashSet(2L, 3L, 4L), matcher.match(Collections.singletonList("AValue")));
+        Assert.assertEquals(Sets.newHashSet(1L, 3L), matcher.match(Collections.singletonList("valueS")));
+        Assert.assertEquals(Sets.newHashSet(1L, 2L, 3L), matcher.match(Collections.singletonList("value")));
+        Assert.assertEquals(Collections.emptySet(), matcher.match(Collections.singletonList("valu")));
+    }
+
+    @Test
+    public void testSameLiteralRegisteredForSeveralIds() {
+        FieldLiteralMatcher matcher = new FieldLiteralMatcher.Builder(true)
+                .add("abc", FieldLiteralMatcher.Position.START, 1L)
+                .add("ABC", FieldLiteralMatcher.Position.END, 2L)
+                .build();
+
+        Assert.assertEquals(Sets.newHashSet(1L), matcher.match(Collections.singletonList("abcd")));
+        Assert.assertEquals(Sets.newHashSet(1L, 2L), matcher.match(Arrays.asList("dabc", "abc")));
+    }
+
+    @Test
+    public void testEmptyLiteralMatchesAnyValue() {
+        FieldLiteralMatcher matcher = new FieldLiteralMatcher.Builder(false)
+                .add("", FieldLiteralMatcher.Position.ANYWHERE, 1L)
+                .add("x", FieldLiteralMatcher.Position.ANYWHERE, 2L)
+                .build();
+
+        Assert.assertTrue(matcher.handles(1L));
+        Assert.assertFalse(matcher.handles(3L));
+        Assert.assertEquals(Sets.newHashSet(1L), matcher.match(Collections.singletonList("")));
+        Assert.assertEquals(Collections.emptySet(), matcher.match(Collections.singletonList(null)));
+        Assert.assertEquals(Collections.emptySet(), matcher.match(Collections.emptyList()));
+    }
+}
@@ -32,12 +32,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static org.mockito.Mockito.mock;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.when;
@@ -66,7 +68,7 @@ public class FragmentPointerEvaluatorTest {
     private EnvironmentSnapshot environmentSnapshot;
 
     @InjectMocks
-    private FragmentPointerEvaluator evaluator = new FragmentPointerEvaluator(evaluateCondition);
+    private FragmentPointerEvaluator evaluator = new FragmentPointerEvaluator(evaluateCondition, new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)));
 
     @Before
     public void setup() {
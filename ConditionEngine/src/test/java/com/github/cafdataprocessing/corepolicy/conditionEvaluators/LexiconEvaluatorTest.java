@@ -25,18 +25,32 @@ import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
 import com.github.cafdataprocessing.corepolicy.common.dto.Lexicon;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionType;
+import com.github.cafdataprocessing.corepolicy.common.dto.MatchedLexiconExpression;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.LexiconCondition;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 /**
@@ -63,14 +77,18 @@ public class LexiconEvaluatorTest {
     @Mock
     private ApiProperties apiProperties;
 
-    private ContentExpressionHelper contentExpressionHelper = new ContentExpressionHelper(new NonCachingRegexMatcherFactoryImpl(),
-            engineProperties);
+    private RegexExecutionService regexExecutionService;
+
+    private ContentExpressionHelper contentExpressionHelper;
 
     DocumentUnderEvaluation document;
 
     @Before
     public void setup(){
         when(engineProperties.getRegexTimeout()).thenReturn(2);
+        when(engineProperties.getRegexExecutorThreads()).thenReturn(2);
+        regexExecutionService = new RegexExecutionServiceImpl(engineProperties);
+        contentExpressionHelper = new ContentExpressionHelper(new NonCachingRegexMatcherFactoryImpl(), regexExecutionService);
         Lexicon lexicon = new Lexicon();
         lexicon.lexiconExpressions = new ArrayList<>();
         when(environmentSnapshot.getLexicon(anyLong())).thenReturn(lexicon);
@@ -90,7 +108,9 @@ public class LexiconEvaluatorTest {
      * A utility method to create an Evaluator and evaluate the Document field against a provided condition
      * */
     private ConditionEvaluationResult evaluate(LexiconCondition condition) throws CpeException {
-        ConditionEvaluator<LexiconCondition> evaluator = new LexiconEvaluator(booleanAgentServices, contentExpressionHelper, apiProperties);
+        ConditionEvaluator<LexiconCondition> evaluator = new LexiconEvaluator(booleanAgentServices, contentExpressionHelper,
+                regexExecutionService, new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)),
+                apiProperties);
         return evaluator.evaluate(this.collectionSequence, this.document, condition, environmentSnapshot);
     }
 
@@ -101,4 +121,131 @@ public class LexiconEvaluatorTest {
         condition.value = 1L;
         evaluate(condition);
     }
+
+    @Test
+    public void testRegexLexiconExpressions() throws CpeException {
+        Lexicon lexicon = new Lexicon();
+        lexicon.lexiconExpressions = new ArrayList<>();
+        lexicon.lexiconExpressions.add(createRegexExpression(1L, "A.*"));
+        lexicon.lexiconExpressions.add(createRegexExpression(2L, "C.*"));
+        lexicon.lexiconExpressions.add(createRegexExpression(3L, "B.*"));
+        when(environmentSnapshot.getLexicon(anyLong())).thenReturn(lexicon);
+
+        LexiconCondition condition = new LexiconCondition();
+        condition.field = "FieldA";
+        condition.value = 1L;
+        ConditionEvaluationResult result = evaluate(condition);
+
+        Assert.assertTrue(result.isMatch());
+        Collection<MatchedLexiconExpression> matchedLexiconExpressions = result.getMatchedConditions().stream()
+                .findFirst().get().getMatchedLexiconExpressions();
+        Assert.assertEquals(Arrays.asList(1L, 3L), matchedLexiconExpressions.stream()
+                .map(MatchedLexiconExpression::getLexiconExpressionId).collect(Collectors.toList()));
+        Assert.assertEquals(2, regexExecutionService.getMatchedCount());
+        Assert.assertEquals(1, regexExecutionService.getUnmatchedCount());
+    }
+
+    @Test
+    public void testLiteralLexiconExpressionsMatchedWithRegexLexiconExpressions() throws CpeException {
+        Lexicon lexicon = new Lexicon();
+        lexicon.lexiconExpressions = new ArrayList<>();
+        lexicon.lexiconExpressions.add(createRegexExpression(1L, "BVal"));
+        lexicon.lexiconExpressions.add(createRegexExpression(2L, "A.*"));
+        lexicon.lexiconExpressions.add(createRegexExpression(3L, "avalue"));
+        lexicon.lexiconExpressions.add(createRegexExpression(4L, "Value"));
+        when(environmentSnapshot.getLexicon(anyLong())).thenReturn(lexicon);
+
+        LexiconCondition condition = new LexiconCondition();
+        condition.id = 10L;
+        condition.field = "FieldA";
+        condition.value = 1L;
+        Map<Long, Condition> conditions = new HashMap<>();
+        conditions.put(condition.id, condition);
+        when(environmentSnapshot.getConditions()).thenReturn(conditions);
+
+        ConditionEvaluationResult result = evaluate(condition);
+
+        Assert.assertTrue(result.isMatch());
+        Collection<MatchedLexiconExpression> matchedLexiconExpressions = result.getMatchedConditions().stream()
+                .findFirst().get().getMatchedLexiconExpressions();
+        Assert.assertEquals(Arrays.asList(1L, 2L, 4L), matchedLexiconExpressions.stream()
+                .map(MatchedLexiconExpression::getLexiconExpressionId).collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList("BVal", "AValue", "Value"), matchedLexiconExpressions.stream()
+                .flatMap(mle -> mle.getTerms().stream()).collect(Collectors.toList()));
+        // Only the expression using regular expression syntax is searched for individually.
+        Assert.assertEquals(1, regexExecutionService.getMatchedCount());
+        Assert.assertEquals(0, regexExecutionService.getUnmatchedCount());
+    }
+
+    @Test
+    public void testRegexLexiconExpressionsNotOccurringAreNotSearched() throws CpeException {
+        Lexicon lexicon = new Lexicon();
+        lexicon.lexiconExpressions = new ArrayList<>();
+        lexicon.lexiconExpressions.add(createRegexExpression(1L, "A.*"));
+        lexicon.lexiconExpressions.add(createRegexExpression(2L, "C.*"));
+        lexicon.lexiconExpressions.add(createRegexExpression(3L, "B\\w+"));
+        lexicon.lexiconExpressions.add(createRegexExpression(4L, "(?i)avalue"));
+        lexicon.lexiconExpressions.add(createRegexExpression(5L, "\\bZ"));
+        when(environmentSnapshot.getLexicon(anyLong())).thenReturn(lexicon);
+
+        LexiconCondition condition = new LexiconCondition();
+        condition.id = 10L;
+        condition.field = "FieldA";
+        condition.value = 1L;
+        Map<Long, Condition> conditions = new HashMap<>();
+        conditions.put(condition.id, condition);
+        when(environmentSnapshot.getConditions()).thenReturn(conditions);
+
+        ConditionEvaluationResult result = evaluate(condition);
+
+        Assert.assertTrue(result.isMatch());
+        Collection<MatchedLexiconExpression> matchedLexiconExpressions = result.getMatchedConditions().stream()
+                .findFirst().get().getMatchedLexiconExpressions();
+        Assert.assertEquals(Arrays.asList(1L, 3L, 4L), matchedLexiconExpressions.stream()
+                .map(MatchedLexiconExpression::getLexiconExpressionId).collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList("AValue", "BValue", "AValue"), matchedLexiconExpressions.stream()
+                .flatMap(mle -> mle.getTerms().stream()).collect(Collectors.toList()));
+        // C.* is ruled out by the scan of the field, the expressions outside the automaton's syntax are searched.
+        Assert.assertEquals(3, regexExecutionService.getMatchedCount());
+        Assert.assertEquals(1, regexExecutionService.getUnmatchedCount());
+        Assert.assertEquals(1, regexExecutionService.getSkippedCount());
+    }
+
+    @Test
+    public void testLiteralLexiconExpressionsMatchedOnStreamField() throws CpeException {
+        ((DocumentUnderEvaluationImpl) document).addMetadataStream("CONTENT",
+                new ByteArrayInputStream("The quarterly report is confidential.".getBytes(StandardCharsets.UTF_8)));
+        Lexicon lexicon = new Lexicon();
+        lexicon.lexiconExpressions = new ArrayList<>();
+        lexicon.lexiconExpressions.add(createRegexExpression(1L, "confidential"));
+        lexicon.lexiconExpressions.add(createRegexExpression(2L, "secret"));
+        when(environmentSnapshot.getLexicon(anyLong())).thenReturn(lexicon);
+
+        LexiconCondition condition = new LexiconCondition();
+        condition.id = 10L;
+        condition.field = "CONTENT";
+        condition.value = 1L;
+        Map<Long, Condition> conditions = new HashMap<>();
+        conditions.put(condition.id, condition);
+        when(environmentSnapshot.getConditions()).thenReturn(conditions);
+
+        ConditionEvaluationResult result = evaluate(condition);
+
+        Assert.assertTrue(result.isMatch());
+        Collection<MatchedLexiconExpression> matchedLexiconExpressions = result.getMatchedConditions().stream()
+                .findFirst().get().getMatchedLexiconExpressions();
+        Assert.assertEquals(Arrays.asList(1L), matchedLexiconExpressions.stream()
+                .map(MatchedLexiconExpression::getLexiconExpressionId).collect(Collectors.toList()));
+        // both expressions are answered by the scan of the stream rather than searched individually.
+        Assert.assertEquals(0, regexExecutionService.getMatchedCount());
+        Assert.assertEquals(0, regexExecutionService.getUnmatchedCount());
+    }
+
+    private static LexiconExpression createRegexExpression(Long id, String expression) {
+        LexiconExpression lexiconExpression = new LexiconExpression();
+        lexiconExpression.id = id;
+        lexiconExpression.type = LexiconExpressionType.REGEX;
+        lexiconExpression.expression = expression;
+        return lexiconExpression;
+    }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for the LinearRegex, comparing its matches with those of java.util.regex.
+ */
+public class LinearRegexTest {
+
+    @Test
+    public void testMatchesAreThoseOfJavaRegex() {
+        List<String> patterns = Arrays.asList("abc", "a.c", "a[bc]+", "colou?r", "(cat|dog)s?", "(?:ab){2,3}",
+                "\\d{3}-\\d{4}", "\\w+@\\w+\\.com", "a*", "a*?", "a+?", "(a|ab)(c|bcd)", "(a|ab)*c", "x*|b",
+                "(a+)*", "(a|b)+b", "(?:a?b){2,}", "[^a]+", ".{2}", "(ab|a)(bc|c)?", "(a?)", "(a|)b");
+        List<String> texts = Arrays.asList("", "abc", "aXc abbc", "color colour", "dogs cat", "ababab",
+                "555-1234 and 555-9876", "me@example.com", "baaab", "abcd", "aabcabc", "xxb", "b\na\nc", "aaab");
+        for (String pattern : patterns) {
+            for (String text : texts) {
+                assertSameMatches(pattern, text);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomPatternsMatchJavaRegex() {
+        String[] atoms = {"a", "b", "c", ".", "[ab]", "[^a]", "\\d", "\\s", "(a|bc)", "(?:b|)", "(a|ab)", "(a*)", "-"};
+        String[] quantifiers = {"", "", "", "*", "+", "?", "{2}", "{1,2}", "{0,}", "*?", "+?", "??", "{1,3}?"};
+        Random random = new Random(7);
+        String alphabet = "abc1 -\nx";
+        for (int i = 0; i < 400; i++) {
+            StringBuilder pattern = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int j = 0; j < length; j++) {
+                pattern.append(atoms[random.nextInt(atoms.length)]).append(quantifiers[random.nextInt(quantifiers.length)]);
+            }
+            if (random.nextInt(4) == 0) {
+                pattern.append('|').append(atoms[random.nextInt(atoms.length)]);
+            }
+            // Quantifiers over the atoms which can match nothing are left to java.util.regex.
+            if (RegexEngine.forExpression(pattern.toString()) != RegexEngine.LINEAR) {
+                continue;
+            }
+            for (int t = 0; t < 20; t++) {
+                StringBuilder text = new StringBuilder();
+                int textLength = random.nextInt(10);
+                for (int j = 0; j < textLength; j++) {
+                    text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                assertSameMatches(pattern.toString(), text.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testNullableRepetitionsUseJavaRegex() {
+        // java.util.regex stops repeating an expression once an iteration matches nothing, which changes the matches.
+        List<String> patterns = Arrays.asList("(a*)*", "(a|)+b", "(?:a?){2,}", "([a-c]*?|[ab])*",
+                "(\\d+?|[^a])([^a]{0,2}?|x)*", "((a?){2}|b)*c??", "(?:)*", "(a*b*){1,3}?");
+        for (String pattern : patterns) {
+            Assert.assertEquals(pattern, RegexEngine.BACKTRACKING, RegexEngine.forExpression(pattern));
+            Assert.assertTrue(pattern, RegexSetAutomaton.isSupported(pattern));
+        }
+    }
+
+    @Test
+    public void testRandomNestedPatternsMatchJavaRegex() {
+        Random random = new Random(11);
+        String alphabet = "abcx 1.\n";
+        int linear = 0;
+        int backtracking = 0;
+        for (int i = 0; i < 3000; i++) {
+            String pattern = randomPattern(random, 3);
+            if (RegexEngine.forExpression(pattern) != RegexEngine.LINEAR) {
+                backtracking++;
+                continue;
+            }
+            linear++;
+            for (int t = 0; t < 10; t++) {
+                StringBuilder text = new StringBuilder();
+                int textLength = random.nextInt(8);
+                for (int j = 0; j < textLength; j++) {
+                    text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                assertSameMatches(pattern, text.toString());
+            }
+        }
+        // Both kinds of expression have to have been generated for the test to mean anything.
+        Assert.assertTrue(linear > 1000);
+        Assert.assertTrue(backtracking > 100);
+    }
+
+    @Test
+    public void testSurrogatesMatchedAsCodePoints() {
+        assertSameMatches("a.b", "a😀b");
+        assertSameMatches("[^x]", "😀x😁");
+    }
+
+    @Test(timeout = 10000)
+    public void testNoCatastrophicBacktracking() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append('a');
+        }
+        RegexMatcher matcher = new LinearRegex(Pattern.compile("(a+)+b")).matcher(text, 2);
+        Assert.assertFalse(matcher.find());
+
+        matcher = new LinearRegex(Pattern.compile("(a|aa)*c|a{2}")).matcher(text, 2);
+        Assert.assertTrue(matcher.find());
+        Assert.assertEquals("aa", matcher.group());
+    }
+
+    private static String randomPattern(Random random, int depth) {
+        String[] atoms = {"a", "b", "c", "x", ".", "[ab]", "[a-c]", "[^a]", "\\d", "\\s", " "};
+        String[] quantifiers = {"", "", "", "*", "+", "?", "{2}", "{0,2}", "{1,}", "*?", "+?", "??", "{0,2}?"};
+        StringBuilder pattern = new StringBuilder();
+        int length = 1 + random.nextInt(3);
+        for (int i = 0; i < length; i++) {
+            if (depth > 0 && random.nextInt(3) == 0) {
+                pattern.append('(').append(randomPattern(random, depth - 1));
+                if (random.nextBoolean()) {
+                    pattern.append('|').append(random.nextInt(4) == 0 ? "" : randomPattern(random, depth - 1));
+                }
+                pattern.append(')');
+            } else {
+                pattern.append(atoms[random.nextInt(atoms.length)]);
+            }
+            pattern.append(quantifiers[random.nextInt(quantifiers.length)]);
+        }
+        return pattern.toString();
+    }
+
+    private static void assertSameMatches(String pattern, String text) {
+        Pattern compiled = Pattern.compile(pattern);
+        Assert.assertTrue(pattern, RegexEngine.forExpression(pattern) == RegexEngine.LINEAR);
+        List<String> expected = new ArrayList<>();
+        Matcher javaMatcher = compiled.matcher(text);
+        while (javaMatcher.find()) {
+            expected.add(javaMatcher.start() + ":" + javaMatcher.group());
+        }
+        List<String> actual = new ArrayList<>();
+        RegexMatcher matcher = new LinearRegex(compiled).matcher(text, 2);
+        while (matcher.find()) {
+            actual.add(matcher.start() + ":" + matcher.group());
+        }
+        Assert.assertEquals("Pattern " + pattern + " on " + text.replace("\n", "\\n"), expected, actual);
+    }
+}
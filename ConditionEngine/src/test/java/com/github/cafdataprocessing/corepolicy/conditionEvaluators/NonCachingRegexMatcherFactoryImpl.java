@@ -27,4 +27,9 @@ public class NonCachingRegexMatcherFactoryImpl implements RegexMatcherFactory {
     public Pattern getPattern(String regexString) throws CpeException {
         return Pattern.compile(regexString);
     }
+
+    @Override
+    public CompiledRegex getRegex(String regexString) throws CpeException {
+        return RegexMatcherFactoryImpl.compile(getPattern(regexString), true);
+    }
 }
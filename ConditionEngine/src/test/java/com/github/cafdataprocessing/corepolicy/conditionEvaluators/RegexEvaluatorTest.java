@@ -31,12 +31,13 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
 
 import java.util.regex.Pattern;
 
+import static org.mockito.Mockito.mock;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.when;
 
@@ -68,7 +69,6 @@ public class RegexEvaluatorTest {
     @Mock
     private ConditionEngineMetadata conditionEngineMetadata;
 
-    @InjectMocks
     private ContentExpressionHelper contentExpressionHelper;
 
     @Before
@@ -82,8 +82,14 @@ public class RegexEvaluatorTest {
             Object[] args = invocation.getArguments();
             return Pattern.compile((String) args[0]);
         });
+        when(regexMatcherFactory.getRegex(anyString())).then(invocation -> {
+            Object[] args = invocation.getArguments();
+            return RegexMatcherFactoryImpl.compile(Pattern.compile((String) args[0]), true);
+        });
 
         when(engineProperties.getRegexTimeout()).thenReturn(2);
+        contentExpressionHelper = new ContentExpressionHelper(regexMatcherFactory,
+                new RegexExecutionServiceImpl(engineProperties));
     }
 
     @After
@@ -95,7 +101,8 @@ public class RegexEvaluatorTest {
      * A utility method to create an Evaluator and evaluate the Document field against a provided condition
      * */
     private ConditionEvaluationResult evaluate(RegexCondition condition) throws CpeException {
-        ConditionEvaluator<RegexCondition> evaluator = new RegexEvaluator(contentExpressionHelper, apiProperties);
+        ConditionEvaluator<RegexCondition> evaluator = new RegexEvaluator(contentExpressionHelper, apiProperties, new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)),
+                mock(ConditionResultCache.class));
         return evaluator.evaluate(this.collectionSequence, this.document, condition, environmentSnapshot);
     }
 
@@ -76,4 +76,26 @@ public class RegexMatcherFactoryImplTest {
 
         Assert.assertTrue(p1 == p2);
     }
+
+    @Test
+    public void testGetRegexChoosesEnginePerExpression() throws CpeException {
+        RegexMatcherFactoryImpl factory = getFactory();
+
+        Assert.assertEquals(RegexEngine.LINEAR, factory.getRegex("(a+)+b").getEngine());
+        Assert.assertEquals(RegexEngine.BACKTRACKING, factory.getRegex("(a)\\1").getEngine());
+        Assert.assertSame(factory.getRegex("abc"), factory.getRegex("abc"));
+    }
+
+    @Test
+    public void testGetRegexBacktrackingOnly() throws CpeException {
+        when(engineProperties.getRegexEngine()).thenReturn("backtracking");
+        RegexMatcherFactoryImpl factory = getFactory();
+
+        Assert.assertEquals(RegexEngine.BACKTRACKING, factory.getRegex("(a+)+b").getEngine());
+    }
+
+    @Test(expected = CpeException.class)
+    public void testGetRegexBadThrows() throws CpeException {
+        getFactory().getRegex("[");
+    }
 }
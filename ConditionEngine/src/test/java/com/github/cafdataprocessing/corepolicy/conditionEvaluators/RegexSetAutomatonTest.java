@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for the RegexSetAutomaton, comparing it with java.util.regex.
+ */
+public class RegexSetAutomatonTest {
+
+    private static final List<String> PATTERNS = Arrays.asList(
+            "abc", "a.c", "a[bc]+d", "[^a-c]x", "colou?r", "(cat|dog)s?", "(?:ab){2,3}", "x{2}y{0,1}z",
+            "\\d{3}-\\d{4}", "\\w+@\\w+\\.com", "\\s\\S", "[\\-.]{2}", "a*", "(a|b)*c", "foo|", "\\x41\\u0042",
+            "[a-]z", "\\.\\*\\?", "(?<word>\\W)q", "a.b", "[]a]", "\\D\\W", "(ab|a)(bc|c)d", "a{1,}?b");
+
+    private static final List<String> TEXTS = Arrays.asList(
+            "", "abc", "aXc", "abbcd", "zx", "color colour", "dogs", "ababab", "xxz", "555-1234",
+            "me@example.com", " a", "a-.b", "bbc", "fo", "AB", "-z", ".*?", "!q", "a\nb", "a\u2028b",
+            "]", "a b", "abcd", "aab", "q\r\nr");
+
+    @Test
+    public void testOccurrencesMatchJavaRegex() {
+        List<String> supported = new ArrayList<>();
+        for (String pattern : PATTERNS) {
+            if (RegexSetAutomaton.isSupported(pattern)) {
+                supported.add(pattern);
+            }
+        }
+        RegexSetAutomaton automaton = new RegexSetAutomaton(supported);
+        for (String text : TEXTS) {
+            BitSet found = new BitSet();
+            automaton.scan(text, found);
+            for (int i = 0; i < supported.size(); i++) {
+                Assert.assertEquals("Pattern " + supported.get(i) + " on " + text,
+                        Pattern.compile(supported.get(i)).matcher(text).find(), found.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testRandomPatternsMatchJavaRegex() {
+        String[] atoms = {"a", "b", "c", ".", "[ab]", "[^a]", "\\d", "\\s", "\\w", "(a|bc)", "(?:b|)", "-", "[a-c]"};
+        String[] quantifiers = {"", "", "", "*", "+", "?", "{2}", "{1,2}", "{0,}", "*?"};
+        Random random = new Random(42);
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            StringBuilder pattern = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int j = 0; j < length; j++) {
+                pattern.append(atoms[random.nextInt(atoms.length)]).append(quantifiers[random.nextInt(quantifiers.length)]);
+            }
+            if (random.nextInt(5) == 0) {
+                pattern.append('|').append(atoms[random.nextInt(atoms.length)]);
+            }
+            patterns.add(pattern.toString());
+        }
+        RegexSetAutomaton automaton = new RegexSetAutomaton(patterns);
+        String alphabet = "abc1 -\nx";
+        for (int t = 0; t < 200; t++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            BitSet found = new BitSet();
+            automaton.scan(text, found);
+            for (int i = 0; i < patterns.size(); i++) {
+                Assert.assertEquals("Pattern " + patterns.get(i) + " on " + text,
+                        Pattern.compile(patterns.get(i)).matcher(text).find(), found.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSupportedSyntax() {
+        for (String pattern : PATTERNS) {
+            if (pattern.equals("[]a]")) {
+                continue;
+            }
+            Assert.assertTrue(pattern, RegexSetAutomaton.isSupported(pattern));
+        }
+        for (String pattern : Arrays.asList("^abc", "abc$", "\\bword", "(a)\\1", "(?i)abc", "(?=a)b", "(?<!a)b",
+                "a*+b", "a{2", "[a-z&&[^b]]", "[[a]]", "\\p{Lu}", "a)", "(a", "*a", "[z-a]", "a{3,2}",
+                "\\Qa\\E", "a{100000}", "(abcdefghij){500}", "\\")) {
+            Assert.assertFalse(pattern, RegexSetAutomaton.isSupported(pattern));
+        }
+    }
+
+    @Test
+    public void testSurrogatesReportEveryPattern() {
+        RegexSetAutomaton automaton = new RegexSetAutomaton(Arrays.asList("a.b", "zzz"));
+        BitSet found = new BitSet();
+        automaton.scan("a\uD83D\uDE00b", found);
+        Assert.assertEquals(2, found.cardinality());
+    }
+
+    @Test
+    public void testFoundPatternsAccumulateAcrossTexts() {
+        RegexSetAutomaton automaton = new RegexSetAutomaton(Arrays.asList("a+", "b+", "c+"));
+        BitSet found = new BitSet();
+        automaton.scan("xa", found);
+        automaton.scan("yc", found);
+        Assert.assertTrue(found.get(0));
+        Assert.assertFalse(found.get(1));
+        Assert.assertTrue(found.get(2));
+        Assert.assertEquals(0, new RegexSetAutomaton(Collections.emptyList()).getPatternCount());
+    }
+}
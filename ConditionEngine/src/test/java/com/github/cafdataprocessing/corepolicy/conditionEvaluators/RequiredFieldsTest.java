@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
+import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
+import com.github.cafdataprocessing.corepolicy.common.dto.FieldLabel;
+import com.github.cafdataprocessing.corepolicy.common.dto.Lexicon;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionType;
+import com.github.cafdataprocessing.corepolicy.common.dto.UnmatchedCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.*;
+import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
+import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluationImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the fields a condition requires before it can match.
+ */
+public class RequiredFieldsTest {
+    private EnvironmentSnapshot environmentSnapshot;
+
+    @Before
+    public void setup() {
+        environmentSnapshot = mock(EnvironmentSnapshot.class);
+    }
+
+    @Test
+    public void testAndRequiresEveryChild() {
+        BooleanCondition and = booleanCondition(BooleanOperator.AND, exists("A"), string("B"));
+
+        Assert.assertEquals(Arrays.asList(fields("A"), fields("B")), RequiredFields.of(and, environmentSnapshot));
+    }
+
+    @Test
+    public void testOrRequiresAnyChild() {
+        BooleanCondition or = booleanCondition(BooleanOperator.OR,
+                booleanCondition(BooleanOperator.AND, exists("A"), booleanCondition(BooleanOperator.OR, exists("B"), exists("C"))),
+                exists("D"));
+
+        Assert.assertEquals(Collections.singletonList(fields("A", "D")), RequiredFields.of(or, environmentSnapshot));
+    }
+
+    @Test
+    public void testOrWithUnrestrictedChildRequiresNothing() {
+        NotCondition not = new NotCondition();
+        not.condition = exists("B");
+        BooleanCondition or = booleanCondition(BooleanOperator.OR, exists("A"), not);
+
+        Assert.assertTrue(RequiredFields.of(not, environmentSnapshot).isEmpty());
+        Assert.assertTrue(RequiredFields.of(or, environmentSnapshot).isEmpty());
+    }
+
+    @Test
+    public void testFieldLabelRequiresAnyLabelledField() {
+        FieldLabel fieldLabel = new FieldLabel();
+        fieldLabel.name = "CONTENT";
+        fieldLabel.fields = Arrays.asList("BODY", "TEXT");
+        when(environmentSnapshot.getFieldLabel("CONTENT")).thenReturn(fieldLabel);
+
+        Assert.assertEquals(Collections.singletonList(fields("BODY", "TEXT")), RequiredFields.of(exists("CONTENT"), environmentSnapshot));
+    }
+
+    @Test
+    public void testFragmentRequiresItsTarget() {
+        ExistsCondition target = exists("A");
+        target.id = 7L;
+        when(environmentSnapshot.getCondition(7L)).thenReturn(target);
+        FragmentCondition fragment = new FragmentCondition();
+        fragment.value = 7L;
+
+        Assert.assertEquals(Collections.singletonList(fields("A")), RequiredFields.of(fragment, environmentSnapshot));
+    }
+
+    @Test
+    public void testChildTargetRequiresNothing() {
+        ExistsCondition exists = exists("A");
+        exists.target = ConditionTarget.CHILDREN;
+
+        Assert.assertTrue(RequiredFields.of(exists, environmentSnapshot).isEmpty());
+    }
+
+    @Test
+    public void testBooleanAgentConditionsRequireNothing() {
+        TextCondition text = new TextCondition();
+        text.field = "A";
+        Assert.assertTrue(RequiredFields.of(text, environmentSnapshot).isEmpty());
+
+        Lexicon lexicon = new Lexicon();
+        lexicon.lexiconExpressions = Arrays.asList(expression(LexiconExpressionType.REGEX), expression(LexiconExpressionType.TEXT));
+        when(environmentSnapshot.getLexicon(3L)).thenReturn(lexicon);
+        LexiconCondition lexiconCondition = new LexiconCondition();
+        lexiconCondition.field = "A";
+        lexiconCondition.value = 3L;
+        Assert.assertTrue(RequiredFields.of(lexiconCondition, environmentSnapshot).isEmpty());
+
+        lexicon.lexiconExpressions = Collections.singletonList(expression(LexiconExpressionType.REGEX));
+        Assert.assertEquals(Collections.singletonList(fields("A")), RequiredFields.of(lexiconCondition, environmentSnapshot));
+    }
+
+    @Test
+    public void testConditionIdsOfContainerConditions() {
+        ExistsCondition target = exists("A");
+        target.id = 7L;
+        when(environmentSnapshot.getCondition(7L)).thenReturn(target);
+        FragmentCondition fragment = new FragmentCondition();
+        fragment.id = 2L;
+        fragment.value = 7L;
+        ExistsCondition childExists = exists("B");
+        childExists.id = 3L;
+        childExists.target = ConditionTarget.CHILDREN;
+        BooleanCondition and = booleanCondition(BooleanOperator.AND, fragment, childExists);
+        and.id = 1L;
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 7L)), RequiredFields.conditionIds(and, environmentSnapshot));
+    }
+
+    @Test
+    public void testMissingFieldsResultIsThatOfEvaluation() {
+        ExistsCondition fragmentTarget = exists("C");
+        when(environmentSnapshot.getCondition(fragmentTarget.id)).thenReturn(fragmentTarget);
+        FragmentCondition fragment = new FragmentCondition();
+        fragment.id = nextId++;
+        fragment.value = fragmentTarget.id;
+        NumberCondition number = new NumberCondition();
+        number.id = nextId++;
+        number.field = "D";
+        number.operator = NumberOperatorType.EQ;
+        number.value = 1L;
+        BooleanCondition or = booleanCondition(BooleanOperator.OR,
+                booleanCondition(BooleanOperator.AND, exists("A"), exists("B")),
+                fragment,
+                booleanCondition(BooleanOperator.AND, number, exists("B")));
+
+        DocumentUnderEvaluation evaluatedDocument = document();
+        ConditionEvaluationResult evaluated = getEvaluateCondition().evaluate(new CollectionSequence(), evaluatedDocument, or, environmentSnapshot);
+        DocumentUnderEvaluation prunedDocument = document();
+        ConditionEvaluationResult pruned = RequiredFields.unmatchedOnMissingFields(or, prunedDocument, environmentSnapshot);
+
+        Assert.assertNotNull(pruned);
+        Assert.assertFalse(evaluated.isMatch());
+        Assert.assertFalse(pruned.isMatch());
+        Assert.assertEquals(6, evaluated.getUnmatchedConditions().size());
+        Assert.assertEquals(conditionIds(evaluated.getUnmatchedConditions()), conditionIds(pruned.getUnmatchedConditions()));
+        Assert.assertTrue(pruned.getAllConditionMatches().isEmpty());
+        Assert.assertTrue(pruned.getUnevaluatedConditions().isEmpty());
+        for (long conditionId = 1; conditionId < nextId; conditionId++) {
+            Assert.assertEquals(evaluatedDocument.hasConditionBeenEvaluatedThisRun(conditionId),
+                    prunedDocument.hasConditionBeenEvaluatedThisRun(conditionId));
+            Assert.assertEquals(evaluatedDocument.getConditionEvaluationResult(conditionId) == null,
+                    prunedDocument.getConditionEvaluationResult(conditionId) == null);
+        }
+    }
+
+    @Test
+    public void testMissingFieldsResultNeedsEvaluationOfEarlierChildren() {
+        BooleanCondition and = booleanCondition(BooleanOperator.AND, exists("B"), exists("A"));
+
+        // evaluation would report the first child as matched before failing on the second.
+        Assert.assertNull(RequiredFields.unmatchedOnMissingFields(and, document(), environmentSnapshot));
+    }
+
+    private DocumentUnderEvaluation document() {
+        DocumentUnderEvaluationImpl document = new DocumentUnderEvaluationImpl(mock(ConditionEngineMetadata.class), mock(ApiProperties.class));
+        document.setReference("document");
+        document.setFullMetadata(true);
+        document.addMetadataString("B", "value");
+        return document;
+    }
+
+    private EvaluateCondition getEvaluateCondition() {
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        EvaluationPlanCompiler evaluationPlanCompiler = new EvaluationPlanCompiler(applicationContext, mock(RegexMatcherFactory.class));
+        EvaluateCondition evaluateCondition = new EvaluateCondition(applicationContext, evaluationPlanCompiler);
+        ApiProperties apiProperties = mock(ApiProperties.class);
+        when(applicationContext.getBean(eq("BooleanCondition"), eq(ConditionEvaluator.class))).thenReturn(new BooleanConditionEvaluator(evaluateCondition,
+                new ConditionCostModelImpl(mock(EngineProperties.class))));
+        when(applicationContext.getBean(eq("FragmentCondition"), eq(ConditionEvaluator.class))).thenReturn(new FragmentPointerEvaluator(evaluateCondition, evaluationPlanCompiler));
+        when(applicationContext.getBean(eq("ExistsCondition"), eq(ConditionEvaluator.class))).thenReturn(new ExistsEvaluator(apiProperties));
+        when(applicationContext.getBean(eq("NumberCondition"), eq(ConditionEvaluator.class))).thenReturn(new NumberEvaluator(apiProperties));
+        return evaluateCondition;
+    }
+
+    private static Set<Long> conditionIds(Collection<UnmatchedCondition> unmatchedConditions) {
+        return unmatchedConditions.stream().map(c -> c.id).collect(Collectors.toSet());
+    }
+
+    private long nextId = 1;
+
+    private ExistsCondition exists(String field) {
+        ExistsCondition condition = new ExistsCondition();
+        condition.id = nextId++;
+        condition.field = field;
+        return condition;
+    }
+
+    private static StringCondition string(String field) {
+        StringCondition condition = new StringCondition();
+        condition.field = field;
+        condition.value = "value";
+        return condition;
+    }
+
+    private BooleanCondition booleanCondition(BooleanOperator operator, Condition... children) {
+        BooleanCondition condition = new BooleanCondition();
+        condition.id = nextId++;
+        condition.operator = operator;
+        condition.children = Arrays.asList(children);
+        return condition;
+    }
+
+    private static LexiconExpression expression(LexiconExpressionType type) {
+        LexiconExpression lexiconExpression = new LexiconExpression();
+        lexiconExpression.type = type;
+        lexiconExpression.expression = "value";
+        return lexiconExpression;
+    }
+
+    private static Set<String> fields(String... fields) {
+        return new HashSet<>(Arrays.asList(fields));
+    }
+}
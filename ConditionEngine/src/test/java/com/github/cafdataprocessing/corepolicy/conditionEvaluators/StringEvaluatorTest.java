@@ -17,22 +17,36 @@ package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
 
 import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
 import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.StringCondition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.StringOperatorType;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluationImpl;
+import com.google.common.collect.Iterables;
+import org.joda.time.DateTime;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class StringEvaluatorTest {
@@ -49,6 +63,10 @@ public class StringEvaluatorTest {
     @Mock
     private ApiProperties apiProperties;
 
+    private EvaluationPlanCompiler evaluationPlanCompiler;
+
+    private ConditionResultCache conditionResultCache;
+
     @Before
     public void setUp() throws Exception {
 
@@ -83,7 +101,10 @@ public class StringEvaluatorTest {
             document = getDocumentUnderEvaluation();
         }
 
-        ConditionEvaluator<StringCondition> evaluator = new StringEvaluator(apiProperties);
+        ConditionEvaluator<StringCondition> evaluator = new StringEvaluator(apiProperties, evaluationPlanCompiler != null
+                ? evaluationPlanCompiler
+                : new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class)),
+                conditionResultCache != null ? conditionResultCache : mock(ConditionResultCache.class));
         return evaluator.evaluate(this.collectionSequence, document, condition, environmentSnapshot);
     }
 
@@ -376,4 +397,105 @@ public class StringEvaluatorTest {
         Assert.assertTrue(ConditionKeyHelper.containsKey(evaluate(stringCondition).getUnmatchedConditions(), stringCondition).isPresent());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSnapshotConditionsMatchedInOneScan() throws Exception {
+        List<StringCondition> fieldAConditions = createStringConditions(1L, "FieldA");
+        List<StringCondition> fieldBConditions = createStringConditions(5L, "FieldB");
+        Map<Long, Condition> conditions = new HashMap<>();
+        for (StringCondition condition : Iterables.concat(fieldAConditions, fieldBConditions)) {
+            conditions.put(condition.id, condition);
+        }
+        when(environmentSnapshot.getConditions()).thenReturn(conditions);
+        evaluationPlanCompiler = new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class));
+
+        // The same document is used so the later conditions take their result from the first scan of each field.
+        DocumentUnderEvaluation document = getDocumentUnderEvaluation();
+        for (List<StringCondition> fieldConditions : Arrays.asList(fieldAConditions, fieldBConditions)) {
+            Assert.assertTrue(evaluate(fieldConditions.get(0), document).isMatch());
+            Assert.assertTrue(evaluate(fieldConditions.get(1), document).isMatch());
+            Assert.assertFalse(evaluate(fieldConditions.get(2), document).isMatch());
+            Assert.assertTrue(evaluate(fieldConditions.get(3), document).isMatch());
+        }
+    }
+
+    @Test
+    public void testResultCachedForRepeatedFieldValues() throws Exception {
+        EngineProperties engineProperties = mock(EngineProperties.class);
+        when(engineProperties.getConditionResultCacheEnabled()).thenReturn(true);
+        when(engineProperties.getConditionResultCacheMaxWeight()).thenReturn(100000L);
+        conditionResultCache = new ConditionResultCacheImpl(engineProperties);
+        when(environmentSnapshot.getFingerprint()).thenReturn("snapshot1");
+        when(environmentSnapshot.getCollectionSequenceId()).thenReturn(1L);
+        when(environmentSnapshot.getCollectionSequenceLastModifiedDate()).thenReturn(new DateTime(2000L));
+        StringCondition condition = createStringCondition(1L, "FieldA", StringOperatorType.CONTAINS, "valu");
+        condition.fingerprint = "condition1";
+
+        ConditionEvaluationResult result = evaluate(condition, getDocumentUnderEvaluation());
+        Assert.assertTrue(result.isMatch());
+        Assert.assertEquals(0, conditionResultCache.getHitCount());
+
+        // A second document with the same values takes the result, with its terms, from the cache.
+        result = evaluate(condition, getDocumentUnderEvaluation());
+        Assert.assertTrue(result.isMatch());
+        Assert.assertEquals(Collections.singletonList("valu"), new ArrayList<>(result.getMatchedConditions().iterator().next().getTerms()));
+        Assert.assertEquals(1, conditionResultCache.getHitCount());
+        Assert.assertEquals(1, conditionResultCache.getSize());
+
+        // A new snapshot of the sequence discards the results of the previous one.
+        when(environmentSnapshot.getFingerprint()).thenReturn("snapshot2");
+        when(environmentSnapshot.getCollectionSequenceLastModifiedDate()).thenReturn(new DateTime(3000L));
+        Assert.assertTrue(evaluate(condition, getDocumentUnderEvaluation()).isMatch());
+        Assert.assertEquals(1, conditionResultCache.getHitCount());
+        Assert.assertEquals(1, conditionResultCache.getFlushCount());
+        Assert.assertEquals(1, conditionResultCache.getSize());
+    }
+
+    @Test
+    public void testLongStreamMatchedAcrossWindows() throws Exception {
+        when(apiProperties.getStreamsSpillThreshold()).thenReturn(1000);
+        StringBuilder text = new StringBuilder("start ");
+        while (text.length() < UpperCaseWindows.WINDOW_LENGTH * 2) {
+            text.append("filler text ");
+        }
+        text.insert(UpperCaseWindows.WINDOW_LENGTH + 4, "spanning").append("end");
+        List<StringCondition> conditions = Arrays.asList(
+                createStringCondition(1L, "FieldC", StringOperatorType.CONTAINS, "SPANNING"),
+                createStringCondition(2L, "FieldC", StringOperatorType.STARTS_WITH, "Start"),
+                createStringCondition(3L, "FieldC", StringOperatorType.ENDS_WITH, "text END"),
+                createStringCondition(4L, "FieldC", StringOperatorType.CONTAINS, "missing"));
+
+        // Evaluated both condition by condition and with one scan of the field for all of them.
+        for (boolean oneScan : Arrays.asList(false, true)) {
+            if (oneScan) {
+                Map<Long, Condition> conditionMap = new HashMap<>();
+                conditions.forEach(condition -> conditionMap.put(condition.id, condition));
+                when(environmentSnapshot.getConditions()).thenReturn(conditionMap);
+                evaluationPlanCompiler = new EvaluationPlanCompiler(mock(ApplicationContext.class), mock(RegexMatcherFactory.class));
+            }
+            DocumentUnderEvaluationImpl document = getDocumentUnderEvaluation();
+            document.addMetadataStream("FieldC", getInputStream(text.toString()));
+
+            Assert.assertTrue(evaluate(conditions.get(0), document).isMatch());
+            Assert.assertTrue(evaluate(conditions.get(1), document).isMatch());
+            Assert.assertTrue(evaluate(conditions.get(2), document).isMatch());
+            Assert.assertFalse(evaluate(conditions.get(3), document).isMatch());
+        }
+    }
+
+    private static List<StringCondition> createStringConditions(long firstId, String field) {
+        return Arrays.asList(
+                createStringCondition(firstId, field, StringOperatorType.CONTAINS, "valu"),
+                createStringCondition(firstId + 1, field, StringOperatorType.STARTS_WITH, "bv"),
+                createStringCondition(firstId + 2, field, StringOperatorType.ENDS_WITH, "AVAL"),
+                createStringCondition(firstId + 3, field, StringOperatorType.IS, "bvalue"));
+    }
+
+    private static StringCondition createStringCondition(long id, String field, StringOperatorType operator, String value) {
+        StringCondition stringCondition = new StringCondition();
+        stringCondition.id = id;
+        stringCondition.operator = operator;
+        stringCondition.field = field;
+        stringCondition.value = value;
+        return stringCondition;
+    }
+}
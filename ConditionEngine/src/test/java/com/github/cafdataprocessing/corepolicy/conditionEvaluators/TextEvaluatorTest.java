@@ -25,8 +25,10 @@ import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
 import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
 import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TextCondition;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.CpeException;
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -36,12 +38,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
-import java.util.Collection;
+import java.util.*;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
-import static org.mockito.Mockito.when;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
 
 /**
  * The tests here should be the same as the field exists expression, because that's what it's doing under the covers.
@@ -97,7 +101,7 @@ public class TextEvaluatorTest {
      * */
     private ConditionEvaluationResult evaluate(TextCondition condition) throws CpeException {
         ConditionEvaluator<TextCondition> evaluator = new TextEvaluator(booleanAgentServices,
-                contentExpressionHelper, apiProperties);
+                contentExpressionHelper, apiProperties, mock(ConditionResultCache.class));
         return evaluator.evaluate(this.collectionSequence, this.document, condition, environmentSnapshot);
     }
 
@@ -150,4 +154,95 @@ public class TextEvaluatorTest {
         Assert.assertTrue(result.getUnevaluatedConditions().size() == 1);
         Assert.assertTrue(ConditionKeyHelper.containsKey(result.getUnevaluatedConditions(), notMatchingExpression).isPresent());
     }
+
+    @Test
+    public void testPrefetchQueriesAllFieldsInOneBatch() throws Exception {
+        this.document.addMetadataString("otherfield", "another value");
+
+        TextCondition firstExpression = new TextCondition();
+        firstExpression.field = "field";
+        firstExpression.id = Helper.getId();
+        firstExpression.value = "hello";
+
+        TextCondition secondExpression = new TextCondition();
+        secondExpression.field = "otherfield";
+        secondExpression.id = Helper.getId();
+        secondExpression.value = "another";
+
+        TextCondition missingFieldExpression = new TextCondition();
+        missingFieldExpression.field = "missingfield";
+        missingFieldExpression.id = Helper.getId();
+        missingFieldExpression.value = "missing";
+
+        Map<Long, Condition> conditions = new HashMap<>();
+        conditions.put(firstExpression.id, firstExpression);
+        conditions.put(secondExpression.id, secondExpression);
+        conditions.put(missingFieldExpression.id, missingFieldExpression);
+        when(environmentSnapshot.getConditions()).thenReturn(conditions);
+        when(environmentSnapshot.getInstanceId()).thenReturn("instance");
+
+        BooleanAgentQueryResult firstResult = new BooleanAgentQueryResultImpl();
+        firstResult.getConditionIdTerms().put(firstExpression.id, "HELLO");
+        BooleanAgentQueryResult secondResult = new BooleanAgentQueryResultImpl();
+        secondResult.getConditionIdTerms().put(secondExpression.id, "ANOTHER");
+
+        when(booleanAgentServices.queryBatch(eq("instance"), any(List.class))).then(invocation -> {
+            List<Collection<MetadataValue>> groups = (List<Collection<MetadataValue>>) invocation.getArguments()[1];
+            Assert.assertEquals("Only fields present on the document should be queried", 2, groups.size());
+            return groups.stream()
+                    .map(g -> MetadataValue.getStringValues(g).contains("another value") ? secondResult : firstResult)
+                    .collect(Collectors.toList());
+        });
+
+        contentExpressionHelper.prefetchBooleanAgentExpressions(environmentSnapshot, booleanAgentServices,
+                Collections.singletonList(document));
+
+        Assert.assertTrue(evaluate(firstExpression).isMatch());
+        Assert.assertTrue(evaluate(secondExpression).isMatch());
+
+        verify(booleanAgentServices, times(1)).queryBatch(anyString(), any(List.class));
+        verify(booleanAgentServices, never()).query(anyString(), any(Collection.class));
+    }
+
+    @Test
+    public void testPrefetchOnlyQueriesFieldsCarriedByTheDocuments() throws Exception {
+        TextCondition childExpression = new TextCondition();
+        childExpression.field = "childfield";
+        childExpression.id = Helper.getId();
+        childExpression.value = "child";
+
+        TextCondition missingFieldExpression = new TextCondition();
+        missingFieldExpression.field = "missingfield";
+        missingFieldExpression.id = Helper.getId();
+        missingFieldExpression.value = "missing";
+
+        Map<Long, Condition> conditions = new HashMap<>();
+        conditions.put(childExpression.id, childExpression);
+        conditions.put(missingFieldExpression.id, missingFieldExpression);
+        when(environmentSnapshot.getConditions()).thenReturn(conditions);
+        when(environmentSnapshot.getInstanceId()).thenReturn("instance");
+
+        // a tree which carries none of the fields is not queried at all
+        contentExpressionHelper.prefetchBooleanAgentExpressions(environmentSnapshot, booleanAgentServices,
+                Collections.singletonList(document));
+        verify(booleanAgentServices, never()).queryBatch(anyString(), any(List.class));
+
+        // only the child carrying the field is queried, and only for that field
+        DocumentUnderEvaluationImpl child = new DocumentUnderEvaluationImpl(conditionEngineMetadata, apiProperties);
+        child.addMetadataString("CHILDFIELD", "child value");
+        document.getDocuments().add(child);
+        when(booleanAgentServices.queryBatch(eq("instance"), any(List.class))).then(invocation -> {
+            List<Collection<MetadataValue>> groups = (List<Collection<MetadataValue>>) invocation.getArguments()[1];
+            Assert.assertEquals(1, groups.size());
+            Assert.assertEquals(Collections.singletonList("child value"), MetadataValue.getStringValues(groups.get(0)));
+            return Collections.singletonList(new BooleanAgentQueryResultImpl());
+        });
+
+        contentExpressionHelper.prefetchBooleanAgentExpressions(environmentSnapshot, booleanAgentServices,
+                Collections.singletonList(document));
+
+        verify(booleanAgentServices, times(1)).queryBatch(anyString(), any(List.class));
+        Assert.assertNotNull(child.getBooleanAgentQueryResult("childfield"));
+        Assert.assertNull(document.getBooleanAgentQueryResult("childfield"));
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.conditionEvaluators;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for upper casing field values a window at a time.
+ */
+public class UpperCaseWindowsTest {
+
+    @Test
+    public void testShortValueIsOneWindow() {
+        List<String> windows = new ArrayList<>();
+        UpperCaseWindows.anyMatch("value", 3, (window, first, last) -> {
+            Assert.assertTrue(first && last);
+            return !windows.add(window);
+        });
+        Assert.assertEquals(Arrays.asList("VALUE"), windows);
+    }
+
+    @Test
+    public void testWindowsOverlap() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < UpperCaseWindows.WINDOW_LENGTH * 3) {
+            builder.append("abcdefghij");
+        }
+        builder.setCharAt(UpperCaseWindows.WINDOW_LENGTH * 2 - 2, '#');
+        String value = builder.toString();
+
+        List<String> windows = new ArrayList<>();
+        UpperCaseWindows.anyMatch(value, 4, (window, first, last) -> {
+            Assert.assertEquals(windows.isEmpty(), first);
+            return !windows.add(window);
+        });
+        Assert.assertEquals(3, windows.size());
+        Assert.assertEquals(value.toUpperCase(), String.join("", windows.get(0).substring(0, UpperCaseWindows.WINDOW_LENGTH),
+                windows.get(1).substring(0, UpperCaseWindows.WINDOW_LENGTH), windows.get(2)));
+
+        // Text spanning the end of a window is found whole in the next.
+        String spanning = value.substring(UpperCaseWindows.WINDOW_LENGTH * 2 - 3, UpperCaseWindows.WINDOW_LENGTH * 2 + 1).toUpperCase();
+        Assert.assertTrue(UpperCaseWindows.anyMatch(value, spanning.length(), (window, first, last) -> window.contains(spanning)));
+        Assert.assertFalse(UpperCaseWindows.anyMatch(value, 4, (window, first, last) -> window.contains("##")));
+    }
+
+    @Test
+    public void testSurrogatePairsNotSplit() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < UpperCaseWindows.WINDOW_LENGTH * 2) {
+            builder.append("\uD801\uDC28");
+        }
+        String value = builder.toString();
+        String upperCase = value.toUpperCase();
+
+        Assert.assertFalse(UpperCaseWindows.anyMatch(value, 3, (window, first, last) -> !upperCase.contains(window)));
+        Assert.assertEquals(upperCase.substring(upperCase.length() - 4), UpperCaseWindows.upperCaseSuffix(value, 3));
+        Assert.assertEquals(upperCase.substring(0, 4), UpperCaseWindows.upperCasePrefix(value, 3));
+    }
+}
@@ -20,6 +20,9 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 /**
  * Tests for the case insensitive multimap.
  */
@@ -73,6 +76,18 @@ public class CaseInsensitiveMultimapTest {
         Assert.assertEquals(2, caseInsensitiveMultimap.get("name").size());
     }
 
+    @Test
+    public void createLinkedKeepsInsertionOrderTest(){
+        CaseInsensitiveMultimap<String> linkedMultimap = CaseInsensitiveMultimap.createLinked();
+        linkedMultimap.put("Name", "Value2");
+        linkedMultimap.put("Another", "Value");
+        linkedMultimap.put("NAME", "Value1");
+        linkedMultimap.put("name", "Value2");
+
+        Assert.assertEquals(Arrays.asList("Name", "Another"), new ArrayList<>(linkedMultimap.keySet()));
+        Assert.assertEquals(Arrays.asList("Value2", "Value1"), new ArrayList<>(linkedMultimap.get("nAmE")));
+    }
+
     @Test(expected = NullPointerException.class)
     public void putNullNameThrowsTest(){
         caseInsensitiveMultimap.put(null, "Value");
@@ -19,8 +19,12 @@ import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
 import com.google.common.collect.Multimap;
 import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
 import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
+import com.github.cafdataprocessing.corepolicy.common.DocumentFields;
 import com.github.cafdataprocessing.corepolicy.common.DocumentImpl;
 import com.github.cafdataprocessing.corepolicy.common.dto.ConditionEngineResult;
+import com.github.cafdataprocessing.corepolicy.common.dto.MatchedCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.UnmatchedCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.ExistsCondition;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -28,9 +32,12 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -69,4 +76,39 @@ public class DocumentUnderEvaluationImplTest {
         Assert.assertNotNull(values);
         Assert.assertTrue(values.isEmpty());
     }
-}
\ No newline at end of file
+
+    // Test that previous evaluation information on the root is decoded once and given to the documents it refers to
+    @Test
+    public void preevaluatedInformationAppliedByReferenceTest(){
+        DocumentImpl originalDocument = new DocumentImpl();
+        originalDocument.setReference("root");
+        originalDocument.getMetadata().put(DocumentFields.EvaluationInformationBlob, "blob");
+        originalDocument.getMetadata().put(DocumentFields.MetadataHash, "hash");
+        DocumentImpl child = new DocumentImpl();
+        child.setReference("child");
+        DocumentImpl grandChild = new DocumentImpl();
+        grandChild.setReference("grandchild");
+        child.getDocuments().add(grandChild);
+        originalDocument.getDocuments().add(child);
+
+        ExistsCondition condition = new ExistsCondition();
+        condition.id = 1L;
+        condition.field = "f";
+        ConditionEngineResult previousResult = new ConditionEngineResult();
+        previousResult.matchedConditions.add(new MatchedCondition("grandchild", condition));
+        previousResult.unmatchedConditions.add(new UnmatchedCondition("child", condition));
+        when(conditionEngineMetadata.createResult(any(Multimap.class))).thenReturn(previousResult);
+
+        DocumentUnderEvaluationImpl documentUnderEvaluation = new DocumentUnderEvaluationImpl(originalDocument,
+                conditionEngineMetadata, apiProperties);
+
+        verify(conditionEngineMetadata, times(1)).createResult(any(Multimap.class));
+        DocumentUnderEvaluation childUnderEvaluation = documentUnderEvaluation.getDocuments().iterator().next();
+        Iterator<DocumentUnderEvaluation> grandChildren = childUnderEvaluation.getDocuments().iterator();
+        DocumentUnderEvaluation grandChildUnderEvaluation = grandChildren.next();
+
+        Assert.assertNull(documentUnderEvaluation.getConditionEvaluationResult(1L));
+        Assert.assertFalse(childUnderEvaluation.getConditionEvaluationResult(1L).isMatch());
+        Assert.assertTrue(grandChildUnderEvaluation.getConditionEvaluationResult(1L).isMatch());
+    }
+}
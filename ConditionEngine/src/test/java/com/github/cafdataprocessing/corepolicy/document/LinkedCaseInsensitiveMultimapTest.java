@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.document;
+
+import com.github.cafdataprocessing.corepolicy.multimap.utils.LinkedCaseInsensitiveMultimap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Tests for the hash based case insensitive multimap.
+ */
+public class LinkedCaseInsensitiveMultimapTest {
+    LinkedCaseInsensitiveMultimap<String> caseInsensitiveMultimap;
+
+    @Before
+    public void setup(){
+        caseInsensitiveMultimap = new LinkedCaseInsensitiveMultimap<>();
+    }
+
+    @Test
+    public void addKeyTest(){
+        caseInsensitiveMultimap.put("Name", "Value");
+        caseInsensitiveMultimap.put("Name1", "Value");
+
+        Assert.assertEquals(1, caseInsensitiveMultimap.get("name").size());
+        Assert.assertEquals(1, caseInsensitiveMultimap.get("name1").size());
+        Assert.assertTrue(caseInsensitiveMultimap.containsKey("NAME1"));
+        Assert.assertFalse(caseInsensitiveMultimap.containsKey("Name2"));
+    }
+
+    /*
+    Test names with different spellings, the first spelling is kept
+     */
+    @Test
+    public void addMultipleKeyTest(){
+        caseInsensitiveMultimap.put("Name", "Value");
+        caseInsensitiveMultimap.put("name", "Value1");
+        caseInsensitiveMultimap.put("NAME", "Value2");
+
+        Assert.assertEquals(3, caseInsensitiveMultimap.get("name").size());
+        Assert.assertEquals(Arrays.asList("Name"), Arrays.asList(caseInsensitiveMultimap.keySet().toArray()));
+        Assert.assertTrue(caseInsensitiveMultimap.keySet().contains("nAmE"));
+        Assert.assertEquals(3, caseInsensitiveMultimap.asMap().get("NAME").size());
+    }
+
+    /*
+    Should add one value as all values are the same
+     */
+    @Test
+    public void addMultipleValueTest(){
+        caseInsensitiveMultimap.put("Name", "Value");
+        caseInsensitiveMultimap.put("Name", "Value");
+        caseInsensitiveMultimap.put("Name", "Value");
+
+        Assert.assertEquals(1, caseInsensitiveMultimap.get("name").size());
+    }
+
+    @Test
+    public void insertionOrderTest(){
+        caseInsensitiveMultimap.put("B", "2");
+        caseInsensitiveMultimap.put("a", "3");
+        caseInsensitiveMultimap.put("b", "1");
+
+        Assert.assertEquals(Arrays.asList("B", "a"), Arrays.asList(caseInsensitiveMultimap.keySet().toArray()));
+        Assert.assertEquals(Arrays.asList("2", "1"), Arrays.asList(caseInsensitiveMultimap.get("b").toArray()));
+    }
+
+    @Test
+    public void getFollowsLaterValuesTest(){
+        Collection<String> values = caseInsensitiveMultimap.get("NAME");
+        Assert.assertTrue(values.isEmpty());
+
+        caseInsensitiveMultimap.put("name", "Value");
+        Assert.assertEquals(1, values.size());
+
+        values.clear();
+        Assert.assertFalse(caseInsensitiveMultimap.containsKey("Name"));
+        Assert.assertTrue(caseInsensitiveMultimap.isEmpty());
+    }
+
+    @Test
+    public void removeKeyTest(){
+        caseInsensitiveMultimap.put("Name", "Value");
+        caseInsensitiveMultimap.put("Name", "Value1");
+
+        Assert.assertTrue(caseInsensitiveMultimap.remove("NAME", "Value"));
+        Assert.assertEquals(1, caseInsensitiveMultimap.get("name").size());
+        Assert.assertEquals(1, caseInsensitiveMultimap.removeAll("name").size());
+        Assert.assertFalse(caseInsensitiveMultimap.containsKey("Name"));
+
+        // Once removed, the key takes the spelling it is added with next.
+        caseInsensitiveMultimap.put("NAME", "Value");
+        Assert.assertEquals(Arrays.asList("NAME"), Arrays.asList(caseInsensitiveMultimap.keySet().toArray()));
+    }
+
+    @Test
+    public void foldsAsCompareToIgnoreCaseTest(){
+        // Dotless i and Kelvin sign are equal ignoring case to i and k as far as String.compareToIgnoreCase goes.
+        caseInsensitiveMultimap.put("\u0131", "Value");
+        caseInsensitiveMultimap.put("\u212A", "Value");
+
+        Assert.assertTrue(caseInsensitiveMultimap.containsKey("I"));
+        Assert.assertTrue(caseInsensitiveMultimap.containsKey("k"));
+    }
+
+    @Test
+    public void putNullValueTest(){
+        caseInsensitiveMultimap.put("Name", "Value");
+        caseInsensitiveMultimap.put("Name", null);
+
+
+        Assert.assertEquals(2, caseInsensitiveMultimap.get("name").size());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void putNullNameThrowsTest(){
+        caseInsensitiveMultimap.put(null, "Value");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void getNullNameThrowsTest(){
+        caseInsensitiveMultimap.get(null);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.environment;
+
+import com.github.cafdataprocessing.corepolicy.common.ElasticsearchProperties;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.common.dto.Lexicon;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionType;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.NumberCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TextCondition;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Period;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ApiInitializerTest {
+
+    @Mock
+    EnvironmentSnapshotApi environmentSnapshotApi;
+
+    @Mock
+    ElasticsearchProperties elasticsearchProperties;
+
+    ApiInitializer apiInitializer;
+
+    EnvironmentSnapshotImpl previousSnapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        when(elasticsearchProperties.getAgentExpiry()).thenReturn(Period.days(8));
+        apiInitializer = new ApiInitializer(environmentSnapshotApi, elasticsearchProperties);
+
+        previousSnapshot = createSnapshot("cat AND dog", "mouse");
+        previousSnapshot.setCreateDate(DateTime.now(DateTimeZone.UTC).minusHours(2));
+        previousSnapshot.setCollectionSequenceLastModifiedDate(DateTime.now(DateTimeZone.UTC).minusHours(3));
+        previousSnapshot.setPersistedDate(DateTime.now(DateTimeZone.UTC).minusHours(2));
+    }
+
+    @Test
+    public void testUnchangedSnapshotIsReturned() throws Exception {
+        when(environmentSnapshotApi.get(anyLong(), any(), any())).thenReturn(null);
+
+        assertSame(previousSnapshot, apiInitializer.initialize(previousSnapshot));
+    }
+
+    @Test
+    public void testRefreshWithSameAgentsKeepsInstance() throws Exception {
+        EnvironmentSnapshotImpl retrievedSnapshot = createSnapshot("cat AND dog", "mouse");
+        NumberCondition numberCondition = new NumberCondition();
+        numberCondition.id = 3L;
+        retrievedSnapshot.getConditions().put(numberCondition.id, numberCondition);
+        when(environmentSnapshotApi.get(anyLong(), any(), any())).thenReturn(retrievedSnapshot);
+
+        EnvironmentSnapshotImpl refreshedSnapshot = apiInitializer.initialize(previousSnapshot);
+
+        assertEquals(previousSnapshot.getInstanceId(), refreshedSnapshot.getInstanceId());
+        assertEquals(previousSnapshot.getCreateDate(), refreshedSnapshot.getCreateDate());
+        assertEquals(retrievedSnapshot.getCollectionSequenceLastModifiedDate(), refreshedSnapshot.getCollectionSequenceLastModifiedDate());
+        assertEquals(2, refreshedSnapshot.getConditions().size());
+    }
+
+    @Test
+    public void testRefreshWithChangedAgentsKeepsInstance() throws Exception {
+        EnvironmentSnapshotImpl retrievedSnapshot = createSnapshot("cat AND dog", "rat");
+        when(environmentSnapshotApi.get(anyLong(), any(), any())).thenReturn(retrievedSnapshot);
+
+        EnvironmentSnapshotImpl refreshedSnapshot = apiInitializer.initialize(previousSnapshot);
+
+        assertEquals(previousSnapshot.getInstanceId(), refreshedSnapshot.getInstanceId());
+        assertEquals(previousSnapshot.getCreateDate(), refreshedSnapshot.getCreateDate());
+        assertEquals("rat", refreshedSnapshot.getLexicons().get(2L).lexiconExpressions.iterator().next().expression);
+    }
+
+    @Test
+    public void testRefreshNearAgentExpiryUsesNewInstance() throws Exception {
+        previousSnapshot.setCreateDate(DateTime.now(DateTimeZone.UTC).minusDays(8));
+        EnvironmentSnapshotImpl retrievedSnapshot = createSnapshot("cat AND dog", "rat");
+        when(environmentSnapshotApi.get(anyLong(), any(), any())).thenReturn(retrievedSnapshot);
+
+        EnvironmentSnapshotImpl refreshedSnapshot = apiInitializer.initialize(previousSnapshot);
+
+        assertNotEquals(previousSnapshot.getInstanceId(), refreshedSnapshot.getInstanceId());
+        assertEquals(retrievedSnapshot.getInstanceId(), refreshedSnapshot.getInstanceId());
+        assertEquals(retrievedSnapshot.getCreateDate(), refreshedSnapshot.getCreateDate());
+    }
+
+    @Test
+    public void testNewSnapshotUsesRetrievedInstance() throws Exception {
+        EnvironmentSnapshotImpl emptySnapshot = new EnvironmentSnapshotImpl();
+        emptySnapshot.setCollectionSequenceId(1L);
+        EnvironmentSnapshotImpl retrievedSnapshot = createSnapshot("cat AND dog", "mouse");
+        when(environmentSnapshotApi.get(anyLong(), any(), any())).thenReturn(retrievedSnapshot);
+
+        EnvironmentSnapshotImpl refreshedSnapshot = apiInitializer.initialize(emptySnapshot);
+
+        assertEquals(retrievedSnapshot.getInstanceId(), refreshedSnapshot.getInstanceId());
+    }
+
+    private EnvironmentSnapshotImpl createSnapshot(String conditionExpression, String lexiconExpressionText) {
+        EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
+        environmentSnapshot.setCollectionSequenceId(1L);
+        environmentSnapshot.setCreateDate(DateTime.now(DateTimeZone.UTC));
+        environmentSnapshot.setCollectionSequenceLastModifiedDate(DateTime.now(DateTimeZone.UTC).minusMinutes(1));
+
+        TextCondition textCondition = new TextCondition();
+        textCondition.id = 1L;
+        textCondition.value = conditionExpression;
+        environmentSnapshot.getConditions().put(textCondition.id, textCondition);
+
+        LexiconExpression lexiconExpression = new LexiconExpression();
+        lexiconExpression.id = 5L;
+        lexiconExpression.lexiconId = 2L;
+        lexiconExpression.type = LexiconExpressionType.TEXT;
+        lexiconExpression.expression = lexiconExpressionText;
+        Lexicon lexicon = new Lexicon();
+        lexicon.id = 2L;
+        lexicon.lexiconExpressions = Arrays.asList(lexiconExpression);
+        environmentSnapshot.getLexicons().put(lexicon.id, lexicon);
+
+        return environmentSnapshot;
+    }
+}
@@ -15,24 +15,163 @@
  */
 package com.github.cafdataprocessing.corepolicy.environment;
 
-import org.junit.After;
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentQueryResult;
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServicesLuceneImpl;
+import com.github.cafdataprocessing.corepolicy.booleanagent.ConditionToBooleanAgentConverterImpl;
+import com.github.cafdataprocessing.corepolicy.common.ElasticsearchProperties;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.common.dto.Lexicon;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionType;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TextCondition;
+import com.github.cafdataprocessing.corepolicy.common.shared.MetadataValue;
+import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocument;
+import com.github.cafdataprocessing.corepolicy.domainModels.BooleanAgentDocuments;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Period;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class BooleanAgentInitializerTest {
 
+    private BooleanAgentServices booleanAgentServices;
+    private BooleanAgentInitializer booleanAgentInitializer;
+
     @Before
     public void setUp() throws Exception {
+        ElasticsearchProperties elasticsearchProperties = mock(ElasticsearchProperties.class);
+        when(elasticsearchProperties.getAgentExpiry()).thenReturn(Period.days(8));
+        when(elasticsearchProperties.getBooleanAgentLuceneMaxInstances()).thenReturn(10);
+        booleanAgentServices = spy(new BooleanAgentServicesLuceneImpl(elasticsearchProperties));
+        booleanAgentInitializer = new BooleanAgentInitializer(elasticsearchProperties, booleanAgentServices,
+                new ConditionToBooleanAgentConverterImpl());
+    }
+
+    @Test
+    public void testInitializeCreatesAgents() throws Exception {
+        EnvironmentSnapshotImpl environmentSnapshot = createSnapshot(DateTime.now(DateTimeZone.UTC), "cat", "dog", "mouse");
+
+        booleanAgentInitializer.initialize(environmentSnapshot);
 
+        verify(booleanAgentServices).create(eq(environmentSnapshot.getInstanceId()), any(BooleanAgentDocuments.class));
+        assertEquals(new HashSet<>(Arrays.asList("1", "2", "10_20", "10_21")),
+                booleanAgentServices.getAgentFingerprints(environmentSnapshot.getInstanceId()).keySet());
     }
 
-    @After
-    public void tearDown() throws Exception {
+    @Test
+    public void testInitializeUnchangedAgentsRegistersNothing() throws Exception {
+        DateTime createDate = DateTime.now(DateTimeZone.UTC);
+        booleanAgentInitializer.initialize(createSnapshot(createDate, "cat", "dog", "mouse"));
+        reset(booleanAgentServices);
+
+        booleanAgentInitializer.initialize(createSnapshot(createDate, "cat", "dog", "mouse"));
 
+        verify(booleanAgentServices, never()).create(anyString(), any(BooleanAgentDocuments.class));
+        verify(booleanAgentServices, never()).update(anyString(), any(BooleanAgentDocuments.class), anyCollectionOf(String.class));
     }
 
     @Test
-    public void testInitialize() throws Exception {
+    public void testInitializeRegistersOnlyChangedAgents() throws Exception {
+        DateTime createDate = DateTime.now(DateTimeZone.UTC);
+        EnvironmentSnapshotImpl previousSnapshot = createSnapshot(createDate, "cat", "dog", "mouse");
+        booleanAgentInitializer.initialize(previousSnapshot);
+        reset(booleanAgentServices);
+
+        EnvironmentSnapshotImpl environmentSnapshot = createSnapshot(createDate, "cat", "dog", "rat");
+        environmentSnapshot.getConditions().remove(2L);
+        booleanAgentInitializer.initialize(environmentSnapshot);
+
+        ArgumentCaptor<BooleanAgentDocuments> documents = ArgumentCaptor.forClass(BooleanAgentDocuments.class);
+        ArgumentCaptor<Collection> removedReferences = ArgumentCaptor.forClass(Collection.class);
+        verify(booleanAgentServices, never()).create(anyString(), any(BooleanAgentDocuments.class));
+        verify(booleanAgentServices).update(eq(environmentSnapshot.getInstanceId()), documents.capture(), removedReferences.capture());
+        assertEquals(Collections.singletonList("10_21"), getReferences(documents.getValue()));
+        assertEquals(Collections.singleton("2"), new HashSet<>(removedReferences.getValue()));
+        assertEquals(new HashSet<>(Arrays.asList("1", "10_20", "10_21")),
+                booleanAgentServices.getAgentFingerprints(environmentSnapshot.getInstanceId()).keySet());
+
+        BooleanAgentQueryResult result = booleanAgentServices.query(environmentSnapshot.getInstanceId(),
+                Collections.singletonList(new MetadataValue(null, "the dog chased a mouse and a rat")));
+        assertTrue(result.getConditionIdTerms().isEmpty());
+        assertEquals(Collections.singletonList(21L), result.getLexiconExpressionIdTerms().keySet().stream()
+                .map(lexiconExpressionId -> lexiconExpressionId.lexiconExpressionId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testInitializeAgentsNearExpiryRegistersAllAgents() throws Exception {
+        DateTime createDate = DateTime.now(DateTimeZone.UTC).minusDays(8);
+        booleanAgentInitializer.initialize(createSnapshot(createDate, "cat", "dog", "mouse"));
+        reset(booleanAgentServices);
+
+        booleanAgentInitializer.initialize(createSnapshot(createDate, "cat", "dog", "mouse"));
+
+        ArgumentCaptor<BooleanAgentDocuments> documents = ArgumentCaptor.forClass(BooleanAgentDocuments.class);
+        verify(booleanAgentServices).update(anyString(), documents.capture(), anyCollectionOf(String.class));
+        assertEquals(Arrays.asList("1", "10_20", "10_21", "2"), getReferences(documents.getValue()));
+    }
+
+    private static List<String> getReferences(BooleanAgentDocuments documents) {
+        return documents.getDocuments().stream().map(BooleanAgentDocument::getReference).sorted().collect(Collectors.toList());
+    }
+
+    private static EnvironmentSnapshotImpl createSnapshot(DateTime createDate, String firstCondition, String secondCondition,
+                                                          String lexiconExpressionText) {
+        EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
+        environmentSnapshot.setInstanceId("boolean-agent-initializer-instance");
+        environmentSnapshot.setCollectionSequenceId(1L);
+        environmentSnapshot.setCreateDate(createDate);
+
+        for (TextCondition textCondition : Arrays.asList(createTextCondition(1L, firstCondition), createTextCondition(2L, secondCondition))) {
+            environmentSnapshot.getConditions().put(textCondition.id, textCondition);
+        }
+
+        Lexicon lexicon = new Lexicon();
+        lexicon.id = 10L;
+        lexicon.lexiconExpressions = new ArrayList<>(Arrays.asList(
+                createLexiconExpression(lexicon.id, 20L, "bird"), createLexiconExpression(lexicon.id, 21L, lexiconExpressionText)));
+        environmentSnapshot.getLexicons().put(lexicon.id, lexicon);
+
+        return environmentSnapshot;
+    }
+
+    private static TextCondition createTextCondition(Long id, String expression) {
+        TextCondition textCondition = new TextCondition();
+        textCondition.id = id;
+        textCondition.value = expression;
+        return textCondition;
+    }
 
+    private static LexiconExpression createLexiconExpression(Long lexiconId, Long id, String expression) {
+        LexiconExpression lexiconExpression = new LexiconExpression();
+        lexiconExpression.lexiconId = lexiconId;
+        lexiconExpression.id = id;
+        lexiconExpression.type = LexiconExpressionType.TEXT;
+        lexiconExpression.expression = expression;
+        return lexiconExpression;
     }
-}
\ No newline at end of file
+}
@@ -45,6 +45,8 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -104,6 +106,30 @@ public class EnvironmentSnapshotApiImplTest {
         assertNull(initializedEnvironmentSnapshot);
     }
 
+    @Test
+    public void testRecordedSnapshotIsUsedForCurrentSequenceVersion(){
+        CollectionSequence collectionSequence = new CollectionSequence();
+        collectionSequence.id = 1L;
+        collectionSequence.lastModified = new DateTime().minusHours(2);
+        when(classificationApi.retrieveCollectionSequences(any())).thenReturn(Arrays.asList(collectionSequence));
+
+        EnvironmentSnapshotImpl recordedSnapshot = new EnvironmentSnapshotImpl();
+        recordedSnapshot.setCollectionSequenceId(1L);
+        recordedSnapshot.setCollectionSequenceLastModifiedDate(collectionSequence.lastModified);
+        recordedSnapshot.setCreateDate(new DateTime().minusDays(3));
+        recordedSnapshot.getCollectionSequences().put(1L, collectionSequence);
+        String recordedInstanceId = recordedSnapshot.getInstanceId();
+        when(environmentSnapshotRepository.retrieveSnapshot(1L, collectionSequence.lastModified)).thenReturn(recordedSnapshot);
+
+        EnvironmentSnapshot initializedEnvironmentSnapshot = environmentSnapshotApi.get(1L, null, null);
+
+        Assert.assertSame(recordedSnapshot, initializedEnvironmentSnapshot);
+        Assert.assertNotEquals(recordedInstanceId, initializedEnvironmentSnapshot.getInstanceId());
+        Assert.assertTrue(initializedEnvironmentSnapshot.getCreateDate().isAfter(new DateTime().minusMinutes(1)));
+        verify(classificationApi, never()).retrieveCollections(any(), anyBoolean(), anyBoolean());
+        verify(environmentSnapshotRepository, never()).recordSnapshot(any());
+    }
+
     @Test
     public void testReturnCollectionSequence() throws CpeException {
         //Set up collectionSequence
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.environment;
+
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.common.dto.*;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.*;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Period;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.github.cafdataprocessing.corepolicy.Helper.getTempFolder;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EnvironmentSnapshotBinaryFormatTest {
+
+    @Mock
+    EngineProperties engineProperties;
+
+    @Mock
+    BooleanAgentServices booleanAgentServices;
+
+    private final EnvironmentSnapshotBinaryFormat binaryFormat = new EnvironmentSnapshotBinaryFormat();
+
+    @Before
+    public void setUp() throws Exception {
+        when(engineProperties.getEnvironmentCacheLocation()).thenReturn(getTempFolder());
+        when(engineProperties.getEnvironmentCacheExpiry()).thenReturn(new Period(1, 0, 0, 0));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        EnvironmentSnapshotImpl environmentSnapshot = createSnapshot(10L);
+        environmentSnapshot.setInvalidatedCache(true);
+
+        EnvironmentSnapshotImpl retrieved = binaryFormat.read(ByteBuffer.wrap(toBytes(environmentSnapshot)));
+
+        assertEquals(environmentSnapshot.getCollectionSequenceId(), retrieved.getCollectionSequenceId());
+        assertEquals(environmentSnapshot.getInstanceId(), retrieved.getInstanceId());
+        assertEquals(environmentSnapshot.getFingerprint(), retrieved.getFingerprint());
+        assertEquals(environmentSnapshot.getCreateDate(), retrieved.getCreateDate());
+        assertEquals(environmentSnapshot.getCollectionSequenceLastModifiedDate(), retrieved.getCollectionSequenceLastModifiedDate());
+        assertNull(retrieved.getPersistedDate());
+        assertTrue(retrieved.getInvalidatedCache());
+
+        assertEquals(environmentSnapshot.getCollectionSequences().keySet(), retrieved.getCollectionSequences().keySet());
+        assertEquals(2, retrieved.getCollectionSequences().get(10L).collectionSequenceEntries.size());
+        assertEquals(environmentSnapshot.getCollections().keySet(), retrieved.getCollections().keySet());
+        assertEquals(environmentSnapshot.getConditions().keySet(), retrieved.getConditions().keySet());
+        assertEquals("the value", ((TextCondition) retrieved.getCondition(3L)).value);
+        assertTrue(retrieved.getCondition(4L).isFragment);
+        assertEquals(environmentSnapshot.getFieldLabels().keySet(), retrieved.getFieldLabels().keySet());
+        assertEquals(2, retrieved.getLexicon(5L).lexiconExpressions.size());
+        assertEquals(environmentSnapshot.getPolicies().keySet(), retrieved.getPolicies().keySet());
+        assertEquals(environmentSnapshot.getPolicyTypes().keySet(), retrieved.getPolicyTypes().keySet());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptSectionIsDetected() throws Exception {
+        byte[] bytes = toBytes(createSnapshot(10L));
+        bytes[bytes.length / 2] ^= 0x5A;
+
+        binaryFormat.read(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedFileIsDetected() throws Exception {
+        byte[] bytes = toBytes(createSnapshot(10L));
+
+        binaryFormat.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 3)));
+    }
+
+    @Test
+    public void testInitializerFallsBackToJsonWhenBinaryIsCorrupt() throws Exception {
+        EnvironmentSnapshotImpl environmentSnapshot = createSnapshot(ThreadLocalRandom.current().nextLong(1_000_000L, Long.MAX_VALUE));
+        new FilesystemPersistence(engineProperties).initialize(environmentSnapshot);
+
+        File jsonFile = new File(engineProperties.getEnvironmentCacheLocation(),
+                environmentSnapshot.getCollectionSequenceId() + "-" + environmentSnapshot.getInstanceId() + ".json");
+        File binaryFile = EnvironmentSnapshotBinaryFormat.getBinaryFile(jsonFile);
+        assertTrue(binaryFile.exists());
+
+        FilesystemInitializer filesystemInitializer = new FilesystemInitializer(engineProperties);
+        assertEquals(environmentSnapshot.getInstanceId(), filesystemInitializer.readFromFile(jsonFile).getInstanceId());
+
+        byte[] bytes = Files.readAllBytes(binaryFile.toPath());
+        bytes[bytes.length - 2] ^= 0x5A;
+        Files.write(binaryFile.toPath(), bytes);
+
+        EnvironmentSnapshotImpl retrieved = filesystemInitializer.readFromFile(jsonFile);
+
+        assertEquals(environmentSnapshot.getInstanceId(), retrieved.getInstanceId());
+        assertEquals(environmentSnapshot.getConditions().keySet(), retrieved.getConditions().keySet());
+        assertFalse("Corrupt binary file should have been removed.", binaryFile.exists());
+    }
+
+    private byte[] toBytes(EnvironmentSnapshotImpl environmentSnapshot) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        binaryFormat.write(environmentSnapshot, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static EnvironmentSnapshotImpl createSnapshot(Long collectionSequenceId) {
+        EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
+        environmentSnapshot.setCollectionSequenceId(collectionSequenceId);
+        environmentSnapshot.setCreateDate(DateTime.now(DateTimeZone.UTC));
+        environmentSnapshot.setCollectionSequenceLastModifiedDate(DateTime.now(DateTimeZone.UTC).minusHours(1));
+        environmentSnapshot.fingerprint = "fingerprint";
+
+        TextCondition textCondition = new TextCondition();
+        textCondition.id = 3L;
+        textCondition.field = "CONTENT";
+        textCondition.value = "the value";
+        BooleanCondition booleanCondition = new BooleanCondition();
+        booleanCondition.id = 2L;
+        booleanCondition.operator = BooleanOperator.AND;
+        booleanCondition.children = new ArrayList<>(Arrays.asList(textCondition));
+
+        DocumentCollection collection = new DocumentCollection();
+        collection.id = 1L;
+        collection.name = "collection";
+        collection.condition = booleanCondition;
+        collection.policyIds = new HashSet<>(Arrays.asList(7L));
+        environmentSnapshot.getCollections().put(collection.id, collection);
+        environmentSnapshot.getConditions().put(booleanCondition.id, booleanCondition);
+        environmentSnapshot.getConditions().put(textCondition.id, textCondition);
+
+        ExistsCondition fragment = new ExistsCondition();
+        fragment.id = 4L;
+        fragment.field = "TITLE";
+        fragment.isFragment = true;
+        environmentSnapshot.getConditions().put(fragment.id, fragment);
+
+        CollectionSequence collectionSequence = new CollectionSequence();
+        collectionSequence.id = collectionSequenceId;
+        collectionSequence.name = "sequence";
+        collectionSequence.collectionSequenceEntries.add(new CollectionSequenceEntry());
+        collectionSequence.collectionSequenceEntries.add(new CollectionSequenceEntry());
+        environmentSnapshot.getCollectionSequences().put(collectionSequence.id, collectionSequence);
+
+        Lexicon lexicon = new Lexicon();
+        lexicon.id = 5L;
+        lexicon.name = "lexicon";
+        lexicon.lexiconExpressions = new ArrayList<>();
+        for (String expression : Arrays.asList("alpha", "beta")) {
+            LexiconExpression lexiconExpression = new LexiconExpression();
+            lexiconExpression.id = (long) lexicon.lexiconExpressions.size() + 1;
+            lexiconExpression.lexiconId = lexicon.id;
+            lexiconExpression.type = LexiconExpressionType.TEXT;
+            lexiconExpression.expression = expression;
+            lexicon.lexiconExpressions.add(lexiconExpression);
+        }
+        environmentSnapshot.getLexicons().put(lexicon.id, lexicon);
+
+        FieldLabel fieldLabel = new FieldLabel();
+        fieldLabel.id = 6L;
+        fieldLabel.name = "Content";
+        fieldLabel.fields = Arrays.asList("CONTENT", "BODY");
+        environmentSnapshot.getFieldLabels().put(fieldLabel.name, fieldLabel);
+
+        Policy policy = new Policy();
+        policy.id = 7L;
+        policy.name = "policy";
+        policy.typeId = 8L;
+        environmentSnapshot.getPolicies().put(policy.id, policy);
+
+        PolicyType policyType = new PolicyType();
+        policyType.id = 8L;
+        policyType.name = "policy type";
+        policyType.shortName = "PolicyType";
+        environmentSnapshot.getPolicyTypes().put(policyType.id, policyType);
+
+        return environmentSnapshot;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.environment;
+
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.UserContext;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import org.joda.time.Period;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EnvironmentSnapshotCacheImplTest {
+
+    @Mock
+    ApplicationContext applicationContext;
+    @Mock
+    EngineProperties engineProperties;
+
+    private final AtomicInteger loadCount = new AtomicInteger();
+    private final List<String> loadedProjectIds = new CopyOnWriteArrayList<>();
+    // holds a project id per thread, as the thread scoped ThreadUserContext does.
+    private final UserContext userContext = new UserContext() {
+        private final ThreadLocal<String> projectId = new ThreadLocal<>();
+
+        @Override
+        public String getProjectId() {
+            return projectId.get();
+        }
+
+        @Override
+        public void setProjectId(String projectId) {
+            this.projectId.set(projectId);
+        }
+    };
+    private volatile CountDownLatch reloadStarted;
+    private volatile CountDownLatch reloadPermitted;
+
+    private EnvironmentSnapshotCacheImpl environmentSnapshotCache;
+
+    @Before
+    public void setUp() throws Exception {
+        when(engineProperties.getEnvironmentCacheMaxsize()).thenReturn(10);
+        when(engineProperties.getEnvironmentCacheVerifyPeriod()).thenReturn("PT0.2S");
+        when(engineProperties.getEnvironmentCacheMaxStalePeriod()).thenReturn(Period.minutes(1));
+        when(engineProperties.getEnvironmentCacheRefreshThreads()).thenReturn(1);
+        when(applicationContext.getBean(eq("Pipeline"), eq(EnvironmentInitializer.class))).thenReturn(new EnvironmentInitializer() {
+            @Override
+            public EnvironmentSnapshotImpl initialize(EnvironmentSnapshotImpl environmentSnapshot) {
+                loadedProjectIds.add(String.valueOf(userContext.getProjectId()));
+                if (loadCount.incrementAndGet() > 1 && reloadPermitted != null) {
+                    reloadStarted.countDown();
+                    try {
+                        reloadPermitted.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return environmentSnapshot;
+            }
+
+            @Override
+            public EnvironmentSnapshotImpl remove(EnvironmentSnapshotImpl environmentSnapshot) {
+                return environmentSnapshot;
+            }
+        });
+
+        environmentSnapshotCache = new EnvironmentSnapshotCacheImpl(applicationContext, engineProperties, userContext);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        environmentSnapshotCache.destroy();
+        userContext.setProjectId(null);
+    }
+
+    @Test
+    public void testStaleSnapshotIsServedWhileReloading() throws Exception {
+        EnvironmentSnapshot first = environmentSnapshotCache.get(1L);
+        assertSame(first, environmentSnapshotCache.get(1L));
+
+        reloadStarted = new CountDownLatch(1);
+        reloadPermitted = new CountDownLatch(1);
+        Thread.sleep(300);
+
+        // past the verify period, the existing snapshot is returned without waiting for the reload.
+        assertSame(first, environmentSnapshotCache.get(1L));
+        assertTrue("Reload should have started in the background", reloadStarted.await(10, TimeUnit.SECONDS));
+        assertSame(first, environmentSnapshotCache.get(1L));
+        assertEquals(2, environmentSnapshotCache.getStaleServedCount());
+        assertEquals(2, loadCount.get());
+
+        reloadPermitted.countDown();
+        EnvironmentSnapshot reloaded = first;
+        for (int i = 0; i < 100 && reloaded == first; i++) {
+            Thread.sleep(50);
+            reloaded = environmentSnapshotCache.get(1L);
+        }
+        assertNotSame(first, reloaded);
+        assertEquals(2, loadCount.get());
+        assertEquals(2, environmentSnapshotCache.getLoadCount());
+    }
+
+    @Test
+    public void testBackgroundReloadUsesProjectOfRequest() throws Exception {
+        userContext.setProjectId("project1");
+        EnvironmentSnapshot first = environmentSnapshotCache.get(1L);
+        userContext.setProjectId("project2");
+
+        Thread.sleep(300);
+        EnvironmentSnapshot reloaded = environmentSnapshotCache.get(1L);
+        for (int i = 0; i < 100 && reloaded == first; i++) {
+            Thread.sleep(50);
+            reloaded = environmentSnapshotCache.get(1L);
+        }
+
+        assertNotSame(first, reloaded);
+        assertEquals(2, loadedProjectIds.size());
+        assertEquals("The reload should see the project the snapshot was loaded for, not that of the refresh thread",
+                "project1", loadedProjectIds.get(1));
+        assertEquals("project2", userContext.getProjectId());
+    }
+
+    @Test
+    public void testInvalidateReloadsImmediately() throws Exception {
+        EnvironmentSnapshot first = environmentSnapshotCache.get(1L);
+
+        environmentSnapshotCache.invalidate(1L);
+
+        EnvironmentSnapshot reloaded = environmentSnapshotCache.get(1L);
+        assertNotSame(first, reloaded);
+        assertEquals(2, loadCount.get());
+        assertEquals(0, environmentSnapshotCache.getStaleServedCount());
+        assertEquals("The load made by invalidate should be counted", 2, environmentSnapshotCache.getLoadCount());
+    }
+
+    @Test
+    public void testLoadTimesForgottenOnEviction() throws Exception {
+        for (long sequenceId = 1; sequenceId <= 50; sequenceId++) {
+            environmentSnapshotCache.get(sequenceId);
+        }
+        environmentSnapshotCache.invalidate(50L);
+
+        assertEquals(51, environmentSnapshotCache.getLoadCount());
+        assertTrue("Load times should only be held for cached sequences",
+                environmentSnapshotCache.getLoadedTimeCount() <= 10);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.environment;
+
+import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.TextCondition;
+import org.joda.time.Period;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EnvironmentSnapshotJanitorTest {
+
+    @Mock
+    EngineProperties engineProperties;
+
+    @Mock
+    BooleanAgentServices booleanAgentServices;
+
+    private Path cacheLocation;
+    private EnvironmentSnapshotJanitor janitor;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheLocation = Files.createTempDirectory("snapshots");
+        when(engineProperties.getEnvironmentCacheLocation()).thenReturn(cacheLocation.toString());
+        when(engineProperties.getEnvironmentCacheJanitorPeriod()).thenReturn(Period.hours(1));
+        when(booleanAgentServices.getAvailable()).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (janitor != null) {
+            janitor.destroy();
+        }
+    }
+
+    @Test
+    public void testExpiredSnapshotsAreRemoved() throws Exception {
+        when(engineProperties.getEnvironmentCacheExpiry()).thenReturn(Period.ZERO);
+        EnvironmentSnapshotImpl environmentSnapshot = persistSnapshot(1L);
+        Thread.sleep(50);
+
+        janitor = new EnvironmentSnapshotJanitor(engineProperties, booleanAgentServices);
+        janitor.run();
+
+        assertEquals(0, cacheLocation.toFile().listFiles(File::isFile).length);
+        assertNull(new EnvironmentSnapshotIndex(cacheLocation).get(1L));
+        verify(booleanAgentServices).delete(environmentSnapshot.getInstanceId());
+        assertEquals(1, janitor.getRunCount());
+        assertEquals(2, janitor.getFilesExpiredCount());
+        assertEquals(2, janitor.getLastFilesScanned());
+    }
+
+    @Test
+    public void testCurrentSnapshotsAreKept() throws Exception {
+        when(engineProperties.getEnvironmentCacheExpiry()).thenReturn(Period.days(1));
+        persistSnapshot(1L);
+
+        janitor = new EnvironmentSnapshotJanitor(engineProperties, booleanAgentServices);
+        janitor.run();
+
+        assertEquals(2, cacheLocation.toFile().listFiles(File::isFile).length);
+        assertNotNull(new EnvironmentSnapshotIndex(cacheLocation).get(1L));
+        verify(booleanAgentServices, never()).delete(anyString());
+        assertEquals(0, janitor.getFilesExpiredCount());
+    }
+
+    @Test
+    public void testSnapshotRewrittenUnderSameNameIsAgedByIndex() throws Exception {
+        when(engineProperties.getEnvironmentCacheExpiry()).thenReturn(Period.hours(1));
+        EnvironmentSnapshotImpl environmentSnapshot = persistSnapshot(1L);
+        // A refresh which reuses the instance id rewrites the same files, which keep their original timestamps.
+        ageFiles(2);
+
+        janitor = new EnvironmentSnapshotJanitor(engineProperties, booleanAgentServices);
+        janitor.run();
+
+        assertEquals(2, cacheLocation.toFile().listFiles(File::isFile).length);
+        verify(booleanAgentServices, never()).delete(anyString());
+
+        // Once invalidated the index no longer keeps the files, which expire from their last write.
+        new FilesystemPersistence(engineProperties).remove(environmentSnapshot);
+        ageFiles(2);
+        janitor.run();
+
+        assertEquals(0, cacheLocation.toFile().listFiles(File::isFile).length);
+        verify(booleanAgentServices).delete(environmentSnapshot.getInstanceId());
+        assertEquals(2, janitor.getFilesExpiredCount());
+    }
+
+    private void ageFiles(int hours) throws Exception {
+        FileTime fileTime = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(hours));
+        for (File file : cacheLocation.toFile().listFiles(File::isFile)) {
+            Files.getFileAttributeView(file.toPath(), BasicFileAttributeView.class).setTimes(fileTime, fileTime, fileTime);
+        }
+    }
+
+    private EnvironmentSnapshotImpl persistSnapshot(Long collectionSequenceId) {
+        EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
+        environmentSnapshot.setCollectionSequenceId(collectionSequenceId);
+        environmentSnapshot.getConditions().put(1L, new TextCondition());
+        new FilesystemPersistence(engineProperties).initialize(environmentSnapshot);
+        return environmentSnapshot;
+    }
+}
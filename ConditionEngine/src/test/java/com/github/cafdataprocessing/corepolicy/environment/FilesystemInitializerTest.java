@@ -27,11 +27,13 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.nio.file.Files;
 import java.util.Arrays;
 
 import static com.github.cafdataprocessing.corepolicy.Helper.getTempFolder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -85,7 +87,7 @@ public class FilesystemInitializerTest {
         FilesystemPersistence filesystemPersistence = new FilesystemPersistence(engineProperties);
         filesystemPersistence.initialize(environmentSnapshot);
 
-        FilesystemInitializer filesystemInitializer = new FilesystemInitializer(engineProperties, booleanAgentServices);
+        FilesystemInitializer filesystemInitializer = new FilesystemInitializer(engineProperties);
 
         EnvironmentSnapshotImpl newEnvironmentSnapshot = new EnvironmentSnapshotImpl();
         newEnvironmentSnapshot.setCollectionSequenceId(environmentSnapshot.getCollectionSequenceId());
@@ -94,4 +96,28 @@ public class FilesystemInitializerTest {
         assertEquals(environmentSnapshot.getCollectionSequenceId(), newEnvironmentSnapshot.getCollectionSequenceId());
     }
 
+    @Test
+    public void testInvalidatedSnapshotIsNotReused() throws Exception {
+        when(engineProperties.getEnvironmentCacheLocation()).thenReturn(Files.createTempDirectory("snapshots").toString());
+        when(engineProperties.getEnvironmentCacheExpiry()).thenReturn(new Period(1,0,0,0));
+
+        EnvironmentSnapshotImpl environmentSnapshot = new EnvironmentSnapshotImpl();
+        environmentSnapshot.setCollectionSequenceId(1L);
+        environmentSnapshot.getConditions().put(1L, new TextCondition());
+
+        FilesystemPersistence filesystemPersistence = new FilesystemPersistence(engineProperties);
+        filesystemPersistence.initialize(environmentSnapshot);
+
+        FilesystemInitializer filesystemInitializer = new FilesystemInitializer(engineProperties);
+        EnvironmentSnapshotImpl request = new EnvironmentSnapshotImpl();
+        request.setCollectionSequenceId(1L);
+        assertEquals(environmentSnapshot.getInstanceId(), filesystemInitializer.initialize(request).getInstanceId());
+
+        filesystemPersistence.remove(environmentSnapshot);
+
+        request = new EnvironmentSnapshotImpl();
+        request.setCollectionSequenceId(1L);
+        assertSame(request, filesystemInitializer.initialize(request));
+    }
+
 }
\ No newline at end of file
@@ -76,7 +76,7 @@ public class FilesystemPersistenceTest {
         filesystemPersistence.initialize(environmentSnapshot);
 
         //Save some effort by using the initializer, not a true unit test I know.
-        FilesystemInitializer filesystemInitializer = new FilesystemInitializer(engineProperties, booleanAgentServices);
+        FilesystemInitializer filesystemInitializer = new FilesystemInitializer(engineProperties);
         EnvironmentSnapshotImpl retrieved = new EnvironmentSnapshotImpl();
         retrieved.setCollectionSequenceId(1L);
         retrieved = filesystemInitializer.initialize(retrieved);
@@ -15,9 +15,17 @@
  */
 package com.github.cafdataprocessing.corepolicy.validation;
 
+import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.RegexEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
 import java.util.Collection;
 import java.util.LinkedList;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 /**
  *
  */
@@ -39,6 +47,37 @@ public class RegexValidatorTest extends BaseValidatorTests<String> {
 
     @Override
     protected Validator<String> getValidator() {
-        return new RegexValidator();
+        return createValidator("auto");
+    }
+
+    @Test
+    public void testReportsEngine() {
+        RegexValidationResult linear = createValidator("auto").validate("\\d{3}-\\d{4}");
+        Assert.assertTrue(linear.isValid());
+        Assert.assertEquals(RegexEngine.LINEAR, linear.getEngine());
+        Assert.assertNull(linear.getWarning());
+
+        RegexValidationResult backtracking = createValidator("auto").validate("(\\w+)\\s\\1");
+        Assert.assertTrue(backtracking.isValid());
+        Assert.assertEquals(RegexEngine.BACKTRACKING, backtracking.getEngine());
+        Assert.assertNotNull(backtracking.getWarning());
+
+        Assert.assertNull(createValidator("auto").validate("[").getEngine());
+    }
+
+    @Test
+    public void testReportsConfiguredBacktrackingEngine() {
+        RegexValidationResult result = createValidator("backtracking").validate("\\d{3}-\\d{4}");
+        Assert.assertTrue(result.isValid());
+        Assert.assertEquals(RegexEngine.BACKTRACKING, result.getEngine());
+        Assert.assertNotNull(result.getWarning());
+
+        Assert.assertFalse(createValidator("backtracking").validate("[").isValid());
+    }
+
+    private static RegexValidator createValidator(String regexEngine) {
+        EngineProperties engineProperties = mock(EngineProperties.class);
+        when(engineProperties.getRegexEngine()).thenReturn(regexEngine);
+        return new RegexValidator(engineProperties);
     }
 }
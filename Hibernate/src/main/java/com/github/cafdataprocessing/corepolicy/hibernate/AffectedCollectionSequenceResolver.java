@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.hibernate;
+
+import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
+import com.github.cafdataprocessing.corepolicy.common.dto.DocumentCollection;
+import com.github.cafdataprocessing.corepolicy.common.dto.FieldLabel;
+import com.github.cafdataprocessing.corepolicy.common.dto.Lexicon;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
+import com.github.cafdataprocessing.corepolicy.common.dto.Policy;
+import com.github.cafdataprocessing.corepolicy.common.dto.PolicyType;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.hibernate.dto.HibernateCollectionPolicy;
+import com.github.cafdataprocessing.corepolicy.repositories.v2.CollectionRepository;
+import com.github.cafdataprocessing.corepolicy.repositories.v2.CollectionSequenceEntryRepository;
+import com.google.common.collect.Iterables;
+import org.hibernate.FlushMode;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works out which collection sequences depend on a set of changed items, by following the references already held
+ * in the database (collection sequence entries, collection conditions, condition parents and fragments, lexicon and
+ * field references, and collection policies) from each item up to the sequences that use it.
+ * <p>
+ * Once a change is written these references lead to the item's new dependents only, so the references an item is
+ * stored with are also followed before it is changed, see {@link #resolveStored}.
+ */
+class AffectedCollectionSequenceResolver {
+
+    private final static int maxParameters = 500;
+
+    private final Session session;
+
+    private final Set<Long> collectionSequenceIds = new HashSet<>();
+    private final Set<Long> collectionIds = new HashSet<>();
+    private final Set<Long> conditionIds = new HashSet<>();
+    private final Set<Long> lexiconIds = new HashSet<>();
+    private final Set<String> fieldNames = new HashSet<>();
+    private final Set<Long> policyIds = new HashSet<>();
+    private final Set<Long> policyTypeIds = new HashSet<>();
+    private boolean stored;
+
+    AffectedCollectionSequenceResolver(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * @param changedEntities the entities saved or updated in the session.
+     * @return the ids of the collection sequences depending on the changed entities, or null if the entities include
+     * a type whose dependents cannot be worked out, in which case every sequence should be treated as affected.
+     */
+    Set<Long> resolve(Collection<Object> changedEntities) {
+        for (Object entity : changedEntities) {
+            if (!addChangedEntity(entity)) {
+                return null;
+            }
+        }
+        return resolveDependents();
+    }
+
+    /**
+     * Works out the collection sequences depending on entities as they are currently stored, before the session
+     * writes their changes. A condition moved to another parent, a lexicon expression moved to another lexicon, a
+     * renamed field label or a sequence entry moved to another sequence still lead to the sequences using them before
+     * the change. Entities which have not been stored yet have no such sequences.
+     * @param changedEntities the entities about to be saved or updated in the session.
+     * @return the ids of the collection sequences depending on the stored entities.
+     */
+    Set<Long> resolveStored(Collection<Object> changedEntities) {
+        stored = true;
+        Set<Long> lexiconExpressionIds = new HashSet<>();
+        Set<Long> fieldLabelIds = new HashSet<>();
+        Set<Long> collectionSequenceEntryIds = new HashSet<>();
+        for (Object entity : changedEntities) {
+            if (entity instanceof Condition) {
+                addIfNotNull(conditionIds, ((Condition) entity).id);
+            } else if (entity instanceof LexiconExpression) {
+                addIfNotNull(lexiconExpressionIds, ((LexiconExpression) entity).id);
+            } else if (entity instanceof FieldLabel) {
+                addIfNotNull(fieldLabelIds, ((FieldLabel) entity).id);
+            } else if (entity instanceof CollectionSequenceEntryRepository.Item) {
+                addIfNotNull(collectionSequenceEntryIds, ((CollectionSequenceEntryRepository.Item) entity).id);
+            }
+            // The references of other items cannot change, or are held by the item they lead to.
+        }
+
+        lexiconIds.addAll(queryIds("select lexicon_id from tbl_lexicon_expression where id in (:ids)", lexiconExpressionIds));
+        fieldNames.addAll(queryNames("select label_name from tbl_field_label where id in (:ids)", fieldLabelIds));
+        collectionSequenceIds.addAll(queryIds("select collection_sequence_id from tbl_collection_sequence_entry where id in (:ids)", collectionSequenceEntryIds));
+        return resolveDependents();
+    }
+
+    private Set<Long> resolveDependents() {
+        policyIds.addAll(queryIds("select id from tbl_policy where policy_type_id in (:ids)", policyTypeIds));
+        collectionIds.addAll(queryIds("select collection_id from tbl_collection_policy where policy_id in (:ids)", policyIds));
+
+        conditionIds.addAll(queryIds("select id from tbl_condition where lexicon_id in (:ids)", lexiconIds));
+        conditionIds.addAll(queryIds("select id from tbl_condition where field_name in (:ids)", fieldNames));
+        addReferencingConditions();
+
+        collectionIds.addAll(queryIds("select id from tbl_collection where condition_id in (:ids)", conditionIds));
+        collectionSequenceIds.addAll(queryIds("select id from tbl_collection_sequence where excluded_condition_id in (:ids)", conditionIds));
+
+        collectionSequenceIds.addAll(queryIds("select id from tbl_collection_sequence where default_collection_id in (:ids)", collectionIds));
+        collectionSequenceIds.addAll(queryIds("select entry.collection_sequence_id from tbl_collection_sequence_entry entry " +
+                "join tbl_collection_sequence_entry_collection entryCollection on entryCollection.collection_sequence_entry_id = entry.id " +
+                "where entryCollection.collection_id in (:ids)", collectionIds));
+
+        return collectionSequenceIds;
+    }
+
+    private boolean addChangedEntity(Object entity) {
+        if (entity instanceof CollectionSequence) {
+            addIfNotNull(collectionSequenceIds, ((CollectionSequence) entity).id);
+        } else if (entity instanceof CollectionSequenceEntryRepository.Item) {
+            addIfNotNull(collectionSequenceIds, ((CollectionSequenceEntryRepository.Item) entity).collectionSequenceId);
+        } else if (entity instanceof CollectionRepository.Item) {
+            DocumentCollection collection = ((CollectionRepository.Item) entity).collection;
+            addIfNotNull(collectionIds, collection == null ? null : collection.id);
+        } else if (entity instanceof DocumentCollection) {
+            addIfNotNull(collectionIds, ((DocumentCollection) entity).id);
+        } else if (entity instanceof HibernateCollectionPolicy) {
+            addIfNotNull(collectionIds, ((HibernateCollectionPolicy) entity).collectionId);
+        } else if (entity instanceof Condition) {
+            addIfNotNull(conditionIds, ((Condition) entity).id);
+        } else if (entity instanceof Lexicon) {
+            addIfNotNull(lexiconIds, ((Lexicon) entity).id);
+        } else if (entity instanceof LexiconExpression) {
+            addIfNotNull(lexiconIds, ((LexiconExpression) entity).lexiconId);
+        } else if (entity instanceof FieldLabel) {
+            addIfNotNull(fieldNames, ((FieldLabel) entity).name);
+        } else if (entity instanceof Policy) {
+            addIfNotNull(policyIds, ((Policy) entity).id);
+        } else if (entity instanceof PolicyType) {
+            addIfNotNull(policyTypeIds, ((PolicyType) entity).id);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the ancestors of the changed conditions, and the conditions that use any of them as a fragment, until no
+     * further conditions are found.
+     */
+    private void addReferencingConditions() {
+        Set<Long> newConditionIds = new HashSet<>(conditionIds);
+        while (!newConditionIds.isEmpty()) {
+            Set<Long> foundConditionIds = new HashSet<>();
+            foundConditionIds.addAll(queryIds("select parent_condition_id from tbl_condition where id in (:ids) and parent_condition_id is not null", newConditionIds));
+            foundConditionIds.addAll(queryIds("select id from tbl_condition where condition_fragment_id in (:ids)", newConditionIds));
+            foundConditionIds.removeAll(conditionIds);
+            conditionIds.addAll(foundConditionIds);
+            newConditionIds = foundConditionIds;
+        }
+    }
+
+    private Set<Long> queryIds(String sql, Collection<?> parameters) {
+        Set<Long> ids = new HashSet<>();
+        for (Object result : query(sql, parameters)) {
+            ids.add(((Number) result).longValue());
+        }
+        return ids;
+    }
+
+    private Set<String> queryNames(String sql, Collection<?> parameters) {
+        Set<String> names = new HashSet<>();
+        for (Object result : query(sql, parameters)) {
+            names.add(result.toString());
+        }
+        return names;
+    }
+
+    private List<Object> query(String sql, Collection<?> parameters) {
+        List<Object> results = new ArrayList<>();
+        for (List<?> parameterBatch : Iterables.partition(parameters, maxParameters)) {
+            SQLQuery query = session.createSQLQuery(sql);
+            if (stored) {
+                // Flushing would write the pending changes, and the stored references would be lost.
+                query.setFlushMode(FlushMode.MANUAL);
+            }
+            for (Object result : query.setParameterList("ids", parameterBatch).list()) {
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+        }
+        return results;
+    }
+
+    private static <T> void addIfNotNull(Set<T> set, T value) {
+        if (value != null) {
+            set.add(value);
+        }
+    }
+}
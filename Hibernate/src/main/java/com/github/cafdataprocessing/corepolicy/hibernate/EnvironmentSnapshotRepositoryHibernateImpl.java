@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.hibernate;
+
+import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.UserContext;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.environment.EnvironmentSnapshotBinaryFormat;
+import com.github.cafdataprocessing.corepolicy.repositories.EnvironmentSnapshotRepository;
+import com.github.cafdataprocessing.corepolicy.repositories.ExecutionContextProvider;
+import com.github.cafdataprocessing.corepolicy.repositories.RepositoryType;
+import com.github.cafdataprocessing.corepolicy.repositories.v2.ExecutionContext;
+import com.google.common.io.ByteStreams;
+import org.hibernate.Session;
+import org.hibernate.type.StandardBasicTypes;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records environment snapshots in tbl_environment_snapshot, keyed by collection sequence and fingerprint, so that a
+ * worker can load the snapshot for the current version of a sequence in a single query rather than rebuilding it.
+ * Snapshots are stored in the compressed binary snapshot format. The table is only an accelerator, so failures are
+ * logged and the snapshot is built as normal.
+ */
+public class EnvironmentSnapshotRepositoryHibernateImpl implements EnvironmentSnapshotRepository {
+    private static final Logger logger = LoggerFactory.getLogger(EnvironmentSnapshotRepositoryHibernateImpl.class);
+
+    private final ExecutionContextProvider executionContextProvider;
+    private final UserContext userContext;
+    private final EnvironmentSnapshotBinaryFormat binaryFormat = new EnvironmentSnapshotBinaryFormat();
+
+    @Autowired
+    public EnvironmentSnapshotRepositoryHibernateImpl(@Qualifier("repositoryExecutionContextProvider") ExecutionContextProvider executionContextProvider,
+                                                      UserContext userContext) {
+        this.executionContextProvider = executionContextProvider;
+        this.userContext = userContext;
+    }
+
+    @Override
+    public void recordSnapshot(EnvironmentSnapshot snapshot) {
+        if (!(snapshot instanceof EnvironmentSnapshotImpl) || snapshot.getCollectionSequenceId() == null
+                || snapshot.getFingerprint() == null || snapshot.getCollectionSequenceLastModifiedDate() == null) {
+            return;
+        }
+        try {
+            byte[] compressedSnapshot = compress((EnvironmentSnapshotImpl) snapshot);
+            String projectId = userContext.getProjectId();
+            try (ExecutionContext executionContext = getExecutionContext()) {
+                executionContext.retryNoReturn(r -> {
+                    Session session = getSession(executionContext);
+                    Number existing = (Number) session.createSQLQuery("select count(*) from tbl_environment_snapshot " +
+                            "where collection_sequence_id = :collectionSequenceId and fingerprint = :fingerprint")
+                            .setLong("collectionSequenceId", snapshot.getCollectionSequenceId())
+                            .setString("fingerprint", snapshot.getFingerprint())
+                            .uniqueResult();
+                    if (existing.longValue() > 0) {
+                        return;
+                    }
+
+                    long lastModified = snapshot.getCollectionSequenceLastModifiedDate().getMillis();
+                    session.createSQLQuery("insert into tbl_environment_snapshot (collection_sequence_id, fingerprint, " +
+                            "project_id, collection_sequence_lastmodified, create_date, snapshot) " +
+                            "values (:collectionSequenceId, :fingerprint, :projectId, :lastModified, :createDate, :snapshot)")
+                            .setLong("collectionSequenceId", snapshot.getCollectionSequenceId())
+                            .setString("fingerprint", snapshot.getFingerprint())
+                            .setString("projectId", projectId)
+                            .setLong("lastModified", lastModified)
+                            .setTimestamp("createDate", new Timestamp(System.currentTimeMillis()))
+                            .setParameter("snapshot", compressedSnapshot, StandardBasicTypes.BINARY)
+                            .executeUpdate();
+
+                    // Lookups are always for the sequence's current version, so earlier versions are never used again.
+                    session.createSQLQuery("delete from tbl_environment_snapshot " +
+                            "where collection_sequence_id = :collectionSequenceId and collection_sequence_lastmodified < :lastModified")
+                            .setLong("collectionSequenceId", snapshot.getCollectionSequenceId())
+                            .setLong("lastModified", lastModified)
+                            .executeUpdate();
+                });
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to record environment snapshot for collection sequence " + snapshot.getCollectionSequenceId(), e);
+        }
+    }
+
+    @Override
+    public EnvironmentSnapshotImpl retrieveSnapshot(Long collectionSequenceId, DateTime collectionSequenceLastModified) {
+        if (collectionSequenceId == null || collectionSequenceLastModified == null) {
+            return null;
+        }
+        try {
+            String projectId = userContext.getProjectId();
+            byte[] compressedSnapshot;
+            try (ExecutionContext executionContext = getExecutionContext()) {
+                compressedSnapshot = executionContext.retryNonTransactional(r ->
+                        (byte[]) getSession(executionContext).createSQLQuery("select snapshot from tbl_environment_snapshot " +
+                                "where collection_sequence_id = :collectionSequenceId and collection_sequence_lastmodified = :lastModified " +
+                                "and (project_id = :projectId or project_id is null) order by create_date desc")
+                                .addScalar("snapshot", StandardBasicTypes.BINARY)
+                                .setLong("collectionSequenceId", collectionSequenceId)
+                                .setLong("lastModified", collectionSequenceLastModified.getMillis())
+                                .setString("projectId", projectId)
+                                .setMaxResults(1)
+                                .uniqueResult());
+            }
+            return compressedSnapshot == null ? null : decompress(compressedSnapshot);
+        } catch (Exception e) {
+            logger.warn("Unable to retrieve recorded environment snapshot for collection sequence " + collectionSequenceId, e);
+            return null;
+        }
+    }
+
+    private ExecutionContext getExecutionContext() {
+        return executionContextProvider.getExecutionContext(RepositoryType.CONDITION_ENGINE);
+    }
+
+    private static Session getSession(ExecutionContext executionContext) {
+        return ((HibernateExecutionContextImpl) executionContext).getSession();
+    }
+
+    private byte[] compress(EnvironmentSnapshotImpl snapshot) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            binaryFormat.write(snapshot, gzipOutputStream);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private EnvironmentSnapshotImpl decompress(byte[] compressedSnapshot) throws IOException {
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(compressedSnapshot))) {
+            return binaryFormat.read(ByteBuffer.wrap(ByteStreams.toByteArray(gzipInputStream)));
+        }
+    }
+}
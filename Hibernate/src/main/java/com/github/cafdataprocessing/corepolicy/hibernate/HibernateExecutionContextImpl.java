@@ -30,6 +30,7 @@ import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -150,14 +151,43 @@ public class HibernateExecutionContextImpl implements ExecutionContext {
         return session;
     }
 
+    /**
+     * Only the collection sequences depending on the items changed in this session need to be marked as modified,
+     * so that snapshots of unrelated sequences stay valid. These include the sequences the items depended on before
+     * they were changed.
+     * @return the affected sequence ids, or null if every sequence in the project should be marked as modified.
+     */
+    private Set<Long> getAffectedCollectionSequenceIds() {
+        if (session.hasUntrackedUpdates()) {
+            return null;
+        }
+        try {
+            Set<Long> affectedSequenceIds = new AffectedCollectionSequenceResolver(session).resolve(session.getChangedEntities());
+            if (affectedSequenceIds != null) {
+                affectedSequenceIds.addAll(session.getStoredDependentSequenceIds());
+            }
+            return affectedSequenceIds;
+        } catch (Exception e) {
+            logger.warn("Unable to determine the collection sequences affected by an update, all will be marked as modified.", e);
+            return null;
+        }
+    }
+
     @Override
     public void close() throws Exception {
 
         if(session.isUpdated()) {
             try {
                 Transaction transaction = session.beginTransaction();
-                String hql = "update CollectionSequence set lastModified= :date where projectId= :projectId";
-                session.createQuery(hql).setParameter("date", DateTime.now(DateTimeZone.UTC)).setString("projectId", userContext.getProjectId()).executeUpdate();
+                Set<Long> affectedSequenceIds = getAffectedCollectionSequenceIds();
+                if (affectedSequenceIds == null) {
+                    String hql = "update CollectionSequence set lastModified= :date where projectId= :projectId";
+                    session.createQuery(hql).setParameter("date", DateTime.now(DateTimeZone.UTC)).setString("projectId", userContext.getProjectId()).executeUpdate();
+                } else if (!affectedSequenceIds.isEmpty()) {
+                    String hql = "update CollectionSequence set lastModified= :date where projectId= :projectId and id in (:ids)";
+                    session.createQuery(hql).setParameter("date", DateTime.now(DateTimeZone.UTC)).setString("projectId", userContext.getProjectId())
+                            .setParameterList("ids", affectedSequenceIds).executeUpdate();
+                }
                 transaction.commit();
             } catch (Exception e) {
 
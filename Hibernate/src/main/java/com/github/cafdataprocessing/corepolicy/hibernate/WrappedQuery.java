@@ -25,7 +25,8 @@ import java.math.BigInteger;
 import java.util.*;
 
 /**
- * Wrapper class to hold a query and a WrappedSession
+ * Wrapper class to hold a query and a WrappedSession.
+ * The setters return the wrapper, so that a chained executeUpdate still records the update on the session.
  */
 public class WrappedQuery implements Query {
 
@@ -49,7 +50,8 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setMaxResults(int i) {
-        return query.setMaxResults(i);
+        query.setMaxResults(i);
+        return this;
     }
 
     @Override
@@ -59,7 +61,8 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setFirstResult(int i) {
-        return query.setFirstResult(i);
+        query.setFirstResult(i);
+        return this;
     }
 
     @Override
@@ -69,7 +72,8 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setFlushMode(FlushMode flushMode) {
-        return query.setFlushMode(flushMode);
+        query.setFlushMode(flushMode);
+        return this;
     }
 
     @Override
@@ -79,7 +83,8 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setCacheMode(CacheMode cacheMode) {
-        return query.setCacheMode(cacheMode);
+        query.setCacheMode(cacheMode);
+        return this;
     }
 
     @Override
@@ -89,7 +94,8 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setCacheable(boolean b) {
-        return query.setCacheable(b);
+        query.setCacheable(b);
+        return this;
     }
 
     @Override
@@ -99,7 +105,8 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setCacheRegion(String s) {
-        return query.setCacheRegion(s);
+        query.setCacheRegion(s);
+        return this;
     }
 
     @Override
@@ -109,7 +116,8 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setTimeout(int i) {
-        return query.setTimeout(i);
+        query.setTimeout(i);
+        return this;
     }
 
     @Override
@@ -119,7 +127,8 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setFetchSize(int i) {
-        return query.setFetchSize(i);
+        query.setFetchSize(i);
+        return this;
     }
 
     @Override
@@ -129,7 +138,8 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setReadOnly(boolean b) {
-        return query.setReadOnly(b);
+        query.setReadOnly(b);
+        return this;
     }
 
     @Override
@@ -144,12 +154,14 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setLockOptions(LockOptions lockOptions) {
-        return query.setLockOptions(lockOptions);
+        query.setLockOptions(lockOptions);
+        return this;
     }
 
     @Override
     public Query setLockMode(String s, LockMode lockMode) {
-        return query.setLockMode(s, lockMode);
+        query.setLockMode(s, lockMode);
+        return this;
     }
 
     @Override
@@ -159,12 +171,14 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setComment(String s) {
-        return query.setComment(s);
+        query.setComment(s);
+        return this;
     }
 
     @Override
     public Query addQueryHint(String s) {
-        return query.addQueryHint(s);
+        query.addQueryHint(s);
+        return this;
     }
 
     @Override
@@ -210,271 +224,325 @@ public class WrappedQuery implements Query {
 
     @Override
     public Query setParameter(int i, Object o, Type type) {
-        return query.setParameter(i, o, type);
+        query.setParameter(i, o, type);
+        return this;
     }
 
     @Override
     public Query setParameter(String s, Object o, Type type) {
-        return query.setParameter(s, o, type);
+        query.setParameter(s, o, type);
+        return this;
     }
 
     @Override
     public Query setParameter(int i, Object o) {
-        return query.setParameter(i, o);
+        query.setParameter(i, o);
+        return this;
     }
 
     @Override
     public Query setParameter(String s, Object o) {
-        return query.setParameter(s,o);
+        query.setParameter(s,o);
+        return this;
     }
 
     @Override
     public Query setParameters(Object[] objects, Type[] types) {
-        return query.setParameters(objects, types);
+        query.setParameters(objects, types);
+        return this;
     }
 
     @Override
     public Query setParameterList(String s, Collection collection, Type type) {
-        return query.setParameterList(s, collection, type);
+        query.setParameterList(s, collection, type);
+        return this;
     }
 
     @Override
     public Query setParameterList(String s, Collection collection) {
-        return query.setParameterList(s, collection);
+        query.setParameterList(s, collection);
+        return this;
     }
 
     @Override
     public Query setParameterList(String s, Object[] objects, Type type) {
-        return query.setParameterList(s, objects, type);
+        query.setParameterList(s, objects, type);
+        return this;
     }
 
     @Override
     public Query setParameterList(String s, Object[] objects) {
-        return query.setParameterList(s, objects);
+        query.setParameterList(s, objects);
+        return this;
     }
 
     @Override
     public Query setProperties(Object o) {
-        return query.setProperties(o);
+        query.setProperties(o);
+        return this;
     }
 
     @Override
     public Query setProperties(Map map) {
-        return query.setProperties(map);
+        query.setProperties(map);
+        return this;
     }
 
     @Override
     public Query setString(int i, String s) {
-        return query.setString(i, s);
+        query.setString(i, s);
+        return this;
     }
 
     @Override
     public Query setCharacter(int i, char c) {
-        return query.setCharacter(i, c);
+        query.setCharacter(i, c);
+        return this;
     }
 
     @Override
     public Query setBoolean(int i, boolean b) {
-        return query.setBoolean(i, b);
+        query.setBoolean(i, b);
+        return this;
     }
 
     @Override
     public Query setByte(int i, byte b) {
-        return query.setByte(i, b);
+        query.setByte(i, b);
+        return this;
     }
 
     @Override
     public Query setShort(int i, short i1) {
-        return query.setShort(i, i1);
+        query.setShort(i, i1);
+        return this;
     }
 
     @Override
     public Query setInteger(int i, int i1) {
-        return query.setInteger(i, i1);
+        query.setInteger(i, i1);
+        return this;
     }
 
     @Override
     public Query setLong(int i, long l) {
-        return query.setLong(i, l);
+        query.setLong(i, l);
+        return this;
     }
 
     @Override
     public Query setFloat(int i, float v) {
-        return query.setFloat(i, v);
+        query.setFloat(i, v);
+        return this;
     }
 
     @Override
     public Query setDouble(int i, double v) {
-        return query.setDouble(i, v);
+        query.setDouble(i, v);
+        return this;
     }
 
     @Override
     public Query setBinary(int i, byte[] bytes) {
-        return query.setBinary(i, bytes);
+        query.setBinary(i, bytes);
+        return this;
     }
 
     @Override
     public Query setText(int i, String s) {
-        return query.setText(i, s);
+        query.setText(i, s);
+        return this;
     }
 
     @Override
     public Query setSerializable(int i, Serializable serializable) {
-        return query.setSerializable(i, serializable);
+        query.setSerializable(i, serializable);
+        return this;
     }
 
     @Override
     public Query setLocale(int i, Locale locale) {
-        return query.setLocale(i, locale);
+        query.setLocale(i, locale);
+        return this;
     }
 
     @Override
     public Query setBigDecimal(int i, BigDecimal bigDecimal) {
-        return query.setBigDecimal(i, bigDecimal);
+        query.setBigDecimal(i, bigDecimal);
+        return this;
     }
 
     @Override
     public Query setBigInteger(int i, BigInteger bigInteger) {
-        return query.setBigInteger(i, bigInteger);
+        query.setBigInteger(i, bigInteger);
+        return this;
     }
 
     @Override
     public Query setDate(int i, Date date) {
-        return query.setDate(i, date);
+        query.setDate(i, date);
+        return this;
     }
 
     @Override
     public Query setTime(int i, Date date) {
-        return query.setTime(i, date);
+        query.setTime(i, date);
+        return this;
     }
 
     @Override
     public Query setTimestamp(int i, Date date) {
-        return query.setTimestamp(i, date);
+        query.setTimestamp(i, date);
+        return this;
     }
 
     @Override
     public Query setCalendar(int i, Calendar calendar) {
-        return query.setCalendar(i, calendar);
+        query.setCalendar(i, calendar);
+        return this;
     }
 
     @Override
     public Query setCalendarDate(int i, Calendar calendar) {
-        return query.setCalendarDate(i, calendar);
+        query.setCalendarDate(i, calendar);
+        return this;
     }
 
     @Override
     public Query setString(String s, String s1) {
-        return query.setString(s, s1);
+        query.setString(s, s1);
+        return this;
     }
 
     @Override
     public Query setCharacter(String s, char c) {
-        return query.setCharacter(s, c);
+        query.setCharacter(s, c);
+        return this;
     }
 
     @Override
     public Query setBoolean(String s, boolean b) {
-        return query.setBoolean(s, b);
+        query.setBoolean(s, b);
+        return this;
     }
 
     @Override
     public Query setByte(String s, byte b) {
-        return query.setByte(s, b);
+        query.setByte(s, b);
+        return this;
     }
 
     @Override
     public Query setShort(String s, short i) {
-        return query.setShort(s, i);
+        query.setShort(s, i);
+        return this;
     }
 
     @Override
     public Query setInteger(String s, int i) {
-        return query.setInteger(s, i);
+        query.setInteger(s, i);
+        return this;
     }
 
     @Override
     public Query setLong(String s, long l) {
-        return query.setLong(s, l);
+        query.setLong(s, l);
+        return this;
     }
 
     @Override
     public Query setFloat(String s, float v) {
-        return query.setFloat(s, v);
+        query.setFloat(s, v);
+        return this;
     }
 
     @Override
     public Query setDouble(String s, double v) {
-        return query.setDouble(s, v);
+        query.setDouble(s, v);
+        return this;
     }
 
     @Override
     public Query setBinary(String s, byte[] bytes) {
-        return query.setBinary(s, bytes);
+        query.setBinary(s, bytes);
+        return this;
     }
 
     @Override
     public Query setText(String s, String s1) {
-        return query.setText(s, s1);
+        query.setText(s, s1);
+        return this;
     }
 
     @Override
     public Query setSerializable(String s, Serializable serializable) {
-        return query.setSerializable(s, serializable);
+        query.setSerializable(s, serializable);
+        return this;
     }
 
     @Override
     public Query setLocale(String s, Locale locale) {
-        return query.setLocale(s, locale);
+        query.setLocale(s, locale);
+        return this;
     }
 
     @Override
     public Query setBigDecimal(String s, BigDecimal bigDecimal) {
-        return query.setBigDecimal(s, bigDecimal);
+        query.setBigDecimal(s, bigDecimal);
+        return this;
     }
 
     @Override
     public Query setBigInteger(String s, BigInteger bigInteger) {
-        return query.setBigInteger(s, bigInteger);
+        query.setBigInteger(s, bigInteger);
+        return this;
     }
 
     @Override
     public Query setDate(String s, Date date) {
-        return query.setDate(s, date);
+        query.setDate(s, date);
+        return this;
     }
 
     @Override
     public Query setTime(String s, Date date) {
-        return query.setTime(s, date);
+        query.setTime(s, date);
+        return this;
     }
 
     @Override
     public Query setTimestamp(String s, Date date) {
-        return query.setTimestamp(s, date);
+        query.setTimestamp(s, date);
+        return this;
     }
 
     @Override
     public Query setCalendar(String s, Calendar calendar) {
-        return query.setCalendar(s, calendar);
+        query.setCalendar(s, calendar);
+        return this;
     }
 
     @Override
     public Query setCalendarDate(String s, Calendar calendar) {
-        return query.setCalendarDate(s, calendar);
+        query.setCalendarDate(s, calendar);
+        return this;
     }
 
     @Override
     public Query setEntity(int i, Object o) {
-        return query.setEntity(i, o);
+        query.setEntity(i, o);
+        return this;
     }
 
     @Override
     public Query setEntity(String s, Object o) {
-        return query.setEntity(s, o);
+        query.setEntity(s, o);
+        return this;
     }
 
     @Override
     public Query setResultTransformer(ResultTransformer resultTransformer) {
-        return query.setResultTransformer(resultTransformer);
+        query.setResultTransformer(resultTransformer);
+        return this;
     }
 }
@@ -23,6 +23,11 @@ import org.hibernate.stat.SessionStatistics;
 
 import java.io.Serializable;
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Wrapper class to hold a Session and whether it has been updated
@@ -31,6 +36,9 @@ public class WrappedSession implements Session {
 
     private Session session;
     private Boolean updated = false;
+    private Boolean untrackedUpdate = false;
+    private final Collection<Object> changedEntities = new ArrayList<>();
+    private final Set<Long> storedDependentSequenceIds = new HashSet<>();
 
     public WrappedSession(Session session) {
         this.session = session;
@@ -168,37 +176,37 @@ public class WrappedSession implements Session {
 
     @Override
     public Serializable save(Object o) {
-        updated = true;
+        recordChange(o);
         return session.save(o);
     }
 
     @Override
     public Serializable save(String s, Object o) {
-        updated = true;
+        recordChange(o);
         return session.save(s, o);
     }
 
     @Override
     public void saveOrUpdate(Object o) {
-        updated = true;
+        recordChange(o);
         session.saveOrUpdate(o);
     }
 
     @Override
     public void saveOrUpdate(String s, Object o) {
-        updated = true;
+        recordChange(o);
         session.saveOrUpdate(s, o);
     }
 
     @Override
     public void update(Object o) {
-        updated = true;
+        recordChange(o);
         session.update(o);
     }
 
     @Override
     public void update(String s, Object o) {
-        updated = true;
+        recordChange(o);
         session.update(s, o);
     }
 
@@ -224,25 +232,25 @@ public class WrappedSession implements Session {
 
     @Override
     public void delete(Object o) {
-        updated = true;
+        wasUpdated();
         session.delete(o);
     }
 
     @Override
     public void delete(String s, Object o) {
-        updated = true;
+        wasUpdated();
         session.delete(s, o);
     }
 
     @Override
     public void lock(Object o, LockMode lockMode) {
-        updated = true;
+        wasUpdated();
         session.lock(o, lockMode);
     }
 
     @Override
     public void lock(String s, Object o, LockMode lockMode) {
-        updated = true;
+        wasUpdated();
         session.lock(s, o, lockMode);
     }
 
@@ -509,7 +517,51 @@ public class WrappedSession implements Session {
     public Boolean isUpdated() {
         return updated;
     }
+
+    /**
+     * Records an update whose affected items are not known, e.g. a bulk query or a delete.
+     */
     public void wasUpdated() {
         updated = true;
+        untrackedUpdate = true;
+    }
+
+    /**
+     * Records an update to the supplied entity, so that only the collection sequences depending on it need be
+     * marked as modified.
+     */
+    public void recordChange(Object entity) {
+        updated = true;
+        changedEntities.add(entity);
+        recordStoredDependents(entity);
+    }
+
+    /**
+     * Records the collection sequences depending on the entity as it is stored, before the change is written, so
+     * that the sequences it no longer belongs to are also marked as modified.
+     */
+    private void recordStoredDependents(Object entity) {
+        if (untrackedUpdate) {
+            return;
+        }
+        try {
+            storedDependentSequenceIds.addAll(
+                    new AffectedCollectionSequenceResolver(session).resolveStored(Collections.singletonList(entity)));
+        } catch (RuntimeException e) {
+            // Without them every sequence in the project has to be marked as modified.
+            untrackedUpdate = true;
+        }
+    }
+
+    public Boolean hasUntrackedUpdates() {
+        return untrackedUpdate;
+    }
+
+    public Collection<Object> getChangedEntities() {
+        return changedEntities;
+    }
+
+    public Set<Long> getStoredDependentSequenceIds() {
+        return storedDependentSequenceIds;
     }
 }
@@ -163,7 +163,9 @@ public class CollectionSequenceEntryRepositoryImpl extends HibernateBaseReposito
         //todo try to rewrite as hql
         BigInteger collectionCount = (BigInteger)session.createSQLQuery(selectCollectionCountSQL).setLong("sequenceId", collectionSequenceId).uniqueResult();
 
-        session.createQuery("update CollectionSequence set collectionCount=:count where id=:sequenceId")
+        // The sequence is already recorded as changed through its entry, so this update is made directly rather than
+        // through the session, which would treat it as an untracked change to every sequence in the project.
+        session.createSQLQuery("update tbl_collection_sequence set collection_count=:count where id=:sequenceId")
                 .setInteger("count", collectionCount.intValue())
                 .setLong("sequenceId", collectionSequenceId)
                 .executeUpdate();
@@ -22,9 +22,11 @@ import com.github.cafdataprocessing.corepolicy.common.dto.Sort;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanCondition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.NotCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.RegexCondition;
 import com.github.cafdataprocessing.corepolicy.hibernate.HibernateExecutionContextImpl;
 import com.github.cafdataprocessing.corepolicy.repositories.v2.ConditionRepository;
 import com.github.cafdataprocessing.corepolicy.repositories.v2.ExecutionContext;
+import com.github.cafdataprocessing.corepolicy.validation.RegexValidator;
 import com.google.common.base.Strings;
 import com.github.cafdataprocessing.corepolicy.common.AnnotationHelper;
 import com.github.cafdataprocessing.corepolicy.common.ApiStrings;
@@ -50,9 +52,12 @@ public class ConditionRepositoryImpl extends HibernateBaseRepositoryUtils implem
 
     Class<Condition> typeParameterClass = Condition.class;
 
+    private final RegexValidator regexValidator;
+
     @Autowired
-    public ConditionRepositoryImpl(UserContext userContext,  ApplicationContext context ){
+    public ConditionRepositoryImpl(UserContext userContext,  ApplicationContext context, RegexValidator regexValidator ){
         super(userContext, context);
+        this.regexValidator = regexValidator;
     }
 
     @Override
@@ -274,6 +279,10 @@ public class ConditionRepositoryImpl extends HibernateBaseRepositoryUtils implem
 
         //todo find a way to do this automatically
         for (Condition condition : conditions) {
+            if (condition instanceof RegexCondition) {
+                RegexCondition regexCondition = (RegexCondition) condition;
+                regexCondition.warning = regexCondition.value == null ? null : regexValidator.validate(regexCondition.value).getWarning();
+            }
             if (includeChildren) {
                 //Load the children recursively
                 if (condition instanceof NotCondition) {
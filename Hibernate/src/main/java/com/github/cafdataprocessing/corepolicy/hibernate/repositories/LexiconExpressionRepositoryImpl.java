@@ -18,8 +18,11 @@ package com.github.cafdataprocessing.corepolicy.hibernate.repositories;
 import com.github.cafdataprocessing.corepolicy.common.EngineProperties;
 import com.github.cafdataprocessing.corepolicy.common.UserContext;
 import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpression;
+import com.github.cafdataprocessing.corepolicy.common.dto.LexiconExpressionType;
+import com.github.cafdataprocessing.corepolicy.hibernate.WrappedSession;
 import com.github.cafdataprocessing.corepolicy.repositories.v2.ExecutionContext;
 import com.github.cafdataprocessing.corepolicy.repositories.v2.LexiconExpressionRepository;
+import com.github.cafdataprocessing.corepolicy.validation.RegexValidator;
 import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
@@ -38,9 +41,12 @@ import java.util.List;
 @Component
 public class LexiconExpressionRepositoryImpl extends HibernateBaseRepositoryImpl<LexiconExpression> implements LexiconExpressionRepository {
 
+    private final RegexValidator regexValidator;
+
     @Autowired
-    public LexiconExpressionRepositoryImpl(UserContext userContext, ApplicationContext context ) {
+    public LexiconExpressionRepositoryImpl(UserContext userContext, ApplicationContext context, RegexValidator regexValidator ) {
         super(userContext, LexiconExpression.class, "LexiconExpression", context);
+        this.regexValidator = regexValidator;
     }
 
     @Override
@@ -54,11 +60,12 @@ public class LexiconExpressionRepositoryImpl extends HibernateBaseRepositoryImpl
                                 Restrictions.isNull("projectId"))
                 );
 
-        List list = criteria.list();
+        List<LexiconExpression> list = criteria.list();
 
         for (Object item: list) {
             session.evict(item);
         }
+        addWarnings(list);
         return list;
     }
 
@@ -104,6 +111,8 @@ public class LexiconExpressionRepositoryImpl extends HibernateBaseRepositoryImpl
         if (stringBuilder.length() > 0) {
             executeBatchInsert(stringBuilder.toString(), session);
         }
+        // the batch insert bypasses the session, so record the change to the lexicon explicitly.
+        ((WrappedSession) session).recordChange(lexiconExpressions.stream().findFirst().get());
         return retrieve(executionContext, lexiconId);
     }
 
@@ -115,8 +124,16 @@ public class LexiconExpressionRepositoryImpl extends HibernateBaseRepositoryImpl
     @Override
     protected void forceLazyInitializedPropsToNull( Collection<LexiconExpression> items ) {
 
-        // nothing to do here, as it has no lazy initialized props!
-        return;
+        // it has no lazy initialized props, but every item retrieved passes through here, so add the warnings.
+        addWarnings(items);
+    }
+
+    private void addWarnings(Collection<LexiconExpression> items) {
+        for (LexiconExpression item : items) {
+            if (item.type == LexiconExpressionType.REGEX && item.expression != null) {
+                item.warning = regexValidator.validate(item.expression).getWarning();
+            }
+        }
     }
 
     @Override
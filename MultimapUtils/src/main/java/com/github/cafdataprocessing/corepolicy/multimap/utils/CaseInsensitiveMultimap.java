@@ -43,10 +43,22 @@ public class CaseInsensitiveMultimap<V extends Comparable> implements Multimap<S
         inner = TreeMultimap.create(new IgnoreCaseStringComparator(), Ordering.natural().<V>nullsFirst());
     }
 
+    private CaseInsensitiveMultimap(Multimap<String, V> inner){
+        this.inner = inner;
+    }
+
     public static <T extends Comparable> CaseInsensitiveMultimap<T> create(){
         return new CaseInsensitiveMultimap<T>();
     }
 
+    /**
+     * Creates a multimap held in a LinkedCaseInsensitiveMultimap, so keys are found with a hash lookup and keys and
+     * values keep the order they were added in rather than being sorted.
+     */
+    public static <T extends Comparable> CaseInsensitiveMultimap<T> createLinked(){
+        return new CaseInsensitiveMultimap<T>(LinkedCaseInsensitiveMultimap.create());
+    }
+
     public static <T extends Comparable> CaseInsensitiveMultimap<T> create(Multimap<String, T> multimap){
         CaseInsensitiveMultimap<T> caseInsensitiveMultimap = new CaseInsensitiveMultimap<>();
         caseInsensitiveMultimap.putAll(multimap);
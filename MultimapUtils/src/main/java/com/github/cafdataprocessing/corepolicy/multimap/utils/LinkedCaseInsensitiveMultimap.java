@@ -0,0 +1,332 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.multimap.utils;
+
+import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.ForwardingSet;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
+
+import javax.annotation.Nullable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A case insensitive multimap where the key is a string, backed by hash tables rather than a tree.
+ * Keys are case folded once when they are looked up, so each lookup is a hash lookup instead of a chain of case
+ * insensitive comparisons. Keys keep the spelling they were first added with, keys and values keep the order they
+ * were added in, and as with the CaseInsensitiveMultimap each key holds a value only once. Values do not have to be
+ * Comparable.
+ */
+public class LinkedCaseInsensitiveMultimap<V> implements Multimap<String, V> {
+
+    private final Multimap<String, V> inner = LinkedHashMultimap.create();
+
+    /**
+     * The spelling each key is held under in the inner multimap, by its case folded key.
+     */
+    private final Map<String, String> spellings = new HashMap<>();
+
+    public LinkedCaseInsensitiveMultimap(){
+    }
+
+    public static <T> LinkedCaseInsensitiveMultimap<T> create(){
+        return new LinkedCaseInsensitiveMultimap<T>();
+    }
+
+    public static <T> LinkedCaseInsensitiveMultimap<T> create(Multimap<String, T> multimap){
+        LinkedCaseInsensitiveMultimap<T> caseInsensitiveMultimap = new LinkedCaseInsensitiveMultimap<>();
+        caseInsensitiveMultimap.putAll(multimap);
+        return caseInsensitiveMultimap;
+    }
+
+    /**
+     * Folds the case of the key so that keys which are equal ignoring case, as String.compareToIgnoreCase sees them,
+     * fold to the same string. Field names are usually upper case, so keys fold to upper case where they are ASCII and
+     * keys which are already folded are returned as they are, without allocating.
+     */
+    static String fold(String key) {
+        int length = key.length();
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (foldChar(c) != c) {
+                char[] folded = key.toCharArray();
+                for (int j = i; j < length; j++) {
+                    folded[j] = foldChar(folded[j]);
+                }
+                return new String(folded);
+            }
+        }
+        return key;
+    }
+
+    private static char foldChar(char c) {
+        if (c < 128) {
+            return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+        }
+        // Folded as compareToIgnoreCase compares characters, keeping those which fold into ASCII in upper case.
+        char folded = Character.toLowerCase(Character.toUpperCase(c));
+        return folded >= 'a' && folded <= 'z' ? (char) (folded - ('a' - 'A')) : folded;
+    }
+
+    /**
+     * Gets the spelling the key is held under, or null if the key is not held.
+     */
+    private String getSpelling(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        return spellings.get(fold((String) key));
+    }
+
+    @Override
+    public int size() {
+        return inner.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return inner.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object o) {
+        String spelling = getSpelling(o);
+        return spelling != null && inner.containsKey(spelling);
+    }
+
+    @Override
+    public boolean containsValue(@Nullable Object o) {
+        return inner.containsValue(o);
+    }
+
+    @Override
+    public boolean containsEntry(Object o, @Nullable Object o2) {
+        String spelling = getSpelling(o);
+        return spelling != null && inner.containsEntry(spelling, o2);
+    }
+
+    /*
+    Put a name and value into the multimap. Null names are invalid.
+     */
+    @Override
+    public boolean put(String s, @Nullable V v) {
+        return inner.put(getOrAddSpelling(s), v);
+    }
+
+    private String getOrAddSpelling(String key) {
+        String folded = fold(key);
+        String spelling = spellings.get(folded);
+        // Values may have been removed through one of the views, in which case the key is spelt as it is added now.
+        if (spelling == null || !inner.containsKey(spelling)) {
+            spellings.put(folded, key);
+            return key;
+        }
+        return spelling;
+    }
+
+    @Override
+    public boolean remove(Object o, @Nullable Object o2) {
+        String spelling = getSpelling(o);
+        if (spelling == null || !inner.remove(spelling, o2)) {
+            return false;
+        }
+        if (!inner.containsKey(spelling)) {
+            spellings.remove(fold(spelling));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean putAll(String s, Iterable<? extends V> vs) {
+        Iterator<? extends V> iterator = vs.iterator();
+        if (!iterator.hasNext()) {
+            return false;
+        }
+        String spelling = getOrAddSpelling(s);
+        boolean changed = false;
+        while (iterator.hasNext()) {
+            changed |= inner.put(spelling, iterator.next());
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean putAll(Multimap<? extends String, ? extends V> multimap) {
+        boolean changed = false;
+        for (Map.Entry<? extends String, ? extends V> entry : multimap.entries()) {
+            changed |= put(entry.getKey(), entry.getValue());
+        }
+        return changed;
+    }
+
+    @Override
+    public Collection<V> replaceValues(String s, Iterable<? extends V> vs) {
+        Collection<V> removed = removeAll(s);
+        putAll(s, vs);
+        return removed;
+    }
+
+    @Override
+    public Collection<V> removeAll(@Nullable Object o) {
+        if (!(o instanceof String)) {
+            return Collections.emptySet();
+        }
+        String spelling = spellings.remove(fold((String) o));
+        return spelling == null ? Collections.emptySet() : inner.removeAll(spelling);
+    }
+
+    @Override
+    public void clear() {
+        inner.clear();
+        spellings.clear();
+    }
+
+    /**
+     * Gets a view of the values of the key, which follows the values added afterwards under any spelling of the key.
+     */
+    @Override
+    public Collection<V> get(String s) {
+        return new ValueSet(s);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new KeySet();
+    }
+
+    @Override
+    public Multiset<String> keys() {
+        return inner.keys();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return inner.values();
+    }
+
+    @Override
+    public Collection<Map.Entry<String, V>> entries() {
+        return inner.entries();
+    }
+
+    @Override
+    public Map<String, Collection<V>> asMap() {
+        return new AsMap();
+    }
+
+    @Override
+    public String toString() {
+        return inner.toString();
+    }
+
+    private class ValueSet extends AbstractSet<V> {
+        private final String key;
+        private final String folded;
+
+        ValueSet(String key) {
+            this.key = key;
+            this.folded = fold(key);
+        }
+
+        private Collection<V> getValues() {
+            String spelling = spellings.get(folded);
+            return spelling == null ? Collections.emptySet() : inner.get(spelling);
+        }
+
+        @Override
+        public int size() {
+            return getValues().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getValues().isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return getValues().contains(o);
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return getValues().iterator();
+        }
+
+        @Override
+        public boolean add(V v) {
+            return put(key, v);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return LinkedCaseInsensitiveMultimap.this.remove(key, o);
+        }
+
+        @Override
+        public void clear() {
+            LinkedCaseInsensitiveMultimap.this.removeAll(key);
+        }
+    }
+
+    private class KeySet extends ForwardingSet<String> {
+        @Override
+        protected Set<String> delegate() {
+            return inner.keySet();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return !LinkedCaseInsensitiveMultimap.this.removeAll(o).isEmpty();
+        }
+    }
+
+    private class AsMap extends ForwardingMap<String, Collection<V>> {
+        @Override
+        protected Map<String, Collection<V>> delegate() {
+            return inner.asMap();
+        }
+
+        @Override
+        public boolean containsKey(Object o) {
+            return LinkedCaseInsensitiveMultimap.this.containsKey(o);
+        }
+
+        @Override
+        public Collection<V> get(Object o) {
+            String spelling = getSpelling(o);
+            return spelling == null ? null : inner.asMap().get(spelling);
+        }
+
+        @Override
+        public Collection<V> remove(Object o) {
+            Collection<V> removed = removeAll(o);
+            return removed.isEmpty() ? null : removed;
+        }
+    }
+}
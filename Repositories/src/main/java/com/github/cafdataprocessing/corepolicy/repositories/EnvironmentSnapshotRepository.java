@@ -16,10 +16,19 @@
 package com.github.cafdataprocessing.corepolicy.repositories;
 
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import org.joda.time.DateTime;
 
 /**
  * This interface defines the saving and retrieving of current and past environment snapshots
  */
 public interface EnvironmentSnapshotRepository {
     void recordSnapshot(EnvironmentSnapshot snapshot);
+
+    /**
+     * @param collectionSequenceId the collection sequence the snapshot was built for.
+     * @param collectionSequenceLastModified the last modified time of the collection sequence when it was built.
+     * @return a snapshot recorded for the sequence at that last modified time, or null if there is none.
+     */
+    EnvironmentSnapshotImpl retrieveSnapshot(Long collectionSequenceId, DateTime collectionSequenceLastModified);
 }
@@ -16,6 +16,8 @@
 package com.github.cafdataprocessing.corepolicy.repositories;
 
 import com.github.cafdataprocessing.corepolicy.common.EnvironmentSnapshot;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import org.joda.time.DateTime;
 
 /**
  * Allows the environment snapshot apis to be called without throwing errors when running in a system that doesn't
@@ -26,4 +28,9 @@ public class EnvironmentSnapshotRepositoryNullImpl implements EnvironmentSnapsho
     public void recordSnapshot(EnvironmentSnapshot snapshot) {
 
     }
+
+    @Override
+    public EnvironmentSnapshotImpl retrieveSnapshot(Long collectionSequenceId, DateTime collectionSequenceLastModified) {
+        return null;
+    }
 }
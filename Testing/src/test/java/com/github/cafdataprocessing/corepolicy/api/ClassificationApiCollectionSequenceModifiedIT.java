@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.api;
+
+import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
+import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
+import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequenceEntry;
+import com.github.cafdataprocessing.corepolicy.common.dto.DocumentCollection;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanCondition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.BooleanOperator;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.Condition;
+import com.github.cafdataprocessing.corepolicy.common.dto.conditions.ExistsCondition;
+import com.github.cafdataprocessing.corepolicy.testing.Assume;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static com.github.cafdataprocessing.corepolicy.TestHelper.getUniqueString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a change marks the collection sequences depending on the changed item as modified, both those it depends
+ * on after the change and those it depended on before it, and leaves unrelated sequences alone.
+ */
+public class ClassificationApiCollectionSequenceModifiedIT extends ClassificationApiTestBase {
+
+    private SequenceUnderTest first;
+    private SequenceUnderTest second;
+    private SequenceUnderTest unrelated;
+
+    @Before
+    public void createSequences() throws Exception {
+        Assume.assumeTrue(Assume.AssumeReason.BY_DESIGN, "Need to be in API Direct mode / Repository=Hibernate for this test",
+                apiProperties.isInApiMode(ApiProperties.ApiMode.direct) && apiProperties.isInRepository(ApiProperties.ApiDirectRepository.hibernate),
+                genericApplicationContext);
+
+        first = new SequenceUnderTest();
+        second = new SequenceUnderTest();
+        unrelated = new SequenceUnderTest();
+    }
+
+    /**
+     * Takes the modified dates once every sequence has been set up, and waits so that a later change gets a
+     * different timestamp, even where the database only stores whole seconds.
+     */
+    private void refreshAfterSetUp() throws InterruptedException {
+        first.refresh();
+        second.refresh();
+        unrelated.refresh();
+        Thread.sleep(1100);
+    }
+
+    @Test
+    public void testCreateMarksDependentSequence() throws Exception {
+        ExistsCondition condition = newExistsCondition(first.booleanConditionId);
+
+        refreshAfterSetUp();
+        sut.create(condition);
+
+        assertTrue("Sequence using the new condition", first.wasModified());
+        assertFalse("Unrelated sequence", second.wasModified());
+        assertFalse("Unrelated sequence", unrelated.wasModified());
+    }
+
+    @Test
+    public void testUpdateMarksDependentSequence() throws Exception {
+        ExistsCondition condition = sut.create(newExistsCondition(first.booleanConditionId));
+        condition.field = "updated field";
+        refreshAfterSetUp();
+        sut.update(condition);
+
+        assertTrue("Sequence using the updated condition", first.wasModified());
+        assertFalse("Unrelated sequence", second.wasModified());
+        assertFalse("Unrelated sequence", unrelated.wasModified());
+    }
+
+    @Test
+    public void testReparentMarksPreviousAndNewDependentSequences() throws Exception {
+        ExistsCondition condition = sut.create(newExistsCondition(first.booleanConditionId));
+        condition.parentConditionId = second.booleanConditionId;
+        refreshAfterSetUp();
+        sut.update(condition);
+
+        Condition moved = sut.retrieveConditions(Collections.singletonList(condition.id), false).stream().findFirst().get();
+        assertEquals(second.booleanConditionId, moved.parentConditionId);
+        assertTrue("Sequence the condition was moved from", first.wasModified());
+        assertTrue("Sequence the condition was moved to", second.wasModified());
+        assertFalse("Unrelated sequence", unrelated.wasModified());
+    }
+
+    @Test
+    public void testDeleteMarksDependentSequence() throws Exception {
+        ExistsCondition condition = sut.create(newExistsCondition(first.booleanConditionId));
+        refreshAfterSetUp();
+        sut.deleteCondition(condition.id);
+
+        // A delete is not traced to its dependents, so every sequence in the project may be marked.
+        assertTrue("Sequence the condition was deleted from", first.wasModified());
+    }
+
+    private ExistsCondition newExistsCondition(Long parentConditionId) {
+        ExistsCondition condition = new ExistsCondition();
+        condition.name = getUniqueString("Exists");
+        condition.field = "my field";
+        condition.parentConditionId = parentConditionId;
+        return condition;
+    }
+
+    /**
+     * A collection sequence with a single collection, whose condition is an empty boolean condition.
+     */
+    private class SequenceUnderTest {
+        private final Long collectionSequenceId;
+        private final Long booleanConditionId;
+        private DateTime lastModified;
+
+        SequenceUnderTest() {
+            BooleanCondition booleanCondition = new BooleanCondition();
+            booleanCondition.name = getUniqueString("Boolean");
+            booleanCondition.operator = BooleanOperator.AND;
+            booleanCondition.children = new ArrayList<>();
+
+            DocumentCollection collection = new DocumentCollection();
+            collection.name = getUniqueString("Collection");
+            collection.condition = booleanCondition;
+            collection = sut.create(collection);
+            booleanConditionId = collection.condition.id;
+
+            CollectionSequenceEntry entry = new CollectionSequenceEntry();
+            entry.collectionIds = new HashSet<>(Arrays.asList(collection.id));
+            entry.order = 100;
+
+            CollectionSequence collectionSequence = new CollectionSequence();
+            collectionSequence.name = getUniqueString("Sequence");
+            collectionSequence.collectionSequenceEntries = new ArrayList<>(Arrays.asList(entry));
+            collectionSequenceId = sut.create(collectionSequence).id;
+        }
+
+        void refresh() {
+            lastModified = retrieveLastModified();
+        }
+
+        boolean wasModified() {
+            return !lastModified.equals(retrieveLastModified());
+        }
+
+        private DateTime retrieveLastModified() {
+            return sut.retrieveCollectionSequences(Collections.singletonList(collectionSequenceId)).stream().findFirst().get().lastModified;
+        }
+    }
+}
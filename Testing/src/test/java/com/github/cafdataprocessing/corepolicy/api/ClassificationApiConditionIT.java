@@ -1023,6 +1023,34 @@ public class ClassificationApiConditionIT extends ClassificationApiTestBase {
         RegexCondition created = sut.create(regexCondition);
     }
 
+    @Test
+    public void regexConditionInvalidValue() {
+        RegexCondition regexCondition = new RegexCondition();
+        regexCondition.field = "field";
+        regexCondition.value = "(value";
+
+        TestHelper.shouldThrow((o) -> {
+            sut.create(regexCondition);
+        });
+    }
+
+    @Test
+    public void regexConditionWarning() {
+        RegexCondition linearCondition = new RegexCondition();
+        linearCondition.field = "field";
+        linearCondition.value = "\\d{3}-\\d{4}";
+        assertNull(sut.create(linearCondition).warning);
+
+        RegexCondition backtrackingCondition = new RegexCondition();
+        backtrackingCondition.field = "field";
+        backtrackingCondition.value = "(\\w+)\\s\\1";
+        RegexCondition created = sut.create(backtrackingCondition);
+        assertNotNull(created.warning);
+
+        RegexCondition retrieved = (RegexCondition) sut.retrieveConditions(Arrays.asList(created.id), false).stream().findFirst().get();
+        assertEquals(created.warning, retrieved.warning);
+    }
+
     @Test
     public void stringCondition() {
         StringCondition stringCondition = new StringCondition();
@@ -72,6 +72,22 @@ public class ClassificationApiLexiconIT extends ClassificationApiTestBase {
         shouldThrow(o-> sut.create(lexicon));
     }
 
+    @Test
+    public void testAddLexiconExpressionWarning() throws Exception {
+        Lexicon lexicon = new Lexicon();
+        lexicon.name = "Lexicon with a backtracking expression";
+        lexicon.lexiconExpressions = new ArrayList<>();
+
+        LexiconExpression lexiconExpression = new LexiconExpression();
+        lexiconExpression.type = LexiconExpressionType.REGEX;
+        lexiconExpression.expression = "(\\w+)\\s\\1";
+        lexicon.lexiconExpressions.add(lexiconExpression);
+
+        Lexicon created = sut.create(lexicon);
+
+        assertNotNull(created.lexiconExpressions.stream().findFirst().get().warning);
+    }
+
     @Test
     public void testAddLexiconNoName() throws Exception {
         Lexicon lexicon = new Lexicon();
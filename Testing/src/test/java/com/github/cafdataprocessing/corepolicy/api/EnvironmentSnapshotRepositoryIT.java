@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.api;
+
+import com.github.cafdataprocessing.corepolicy.common.ApiProperties;
+import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
+import com.github.cafdataprocessing.corepolicy.common.domainModels.EnvironmentSnapshotImpl;
+import com.github.cafdataprocessing.corepolicy.repositories.EnvironmentSnapshotRepository;
+import com.github.cafdataprocessing.corepolicy.testing.Assume;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests recording and retrieving environment snapshots in tbl_environment_snapshot, as created by the
+ * adding_environment_snapshot_table-1 changeset.
+ */
+public class EnvironmentSnapshotRepositoryIT extends ClassificationApiTestBase {
+
+    private EnvironmentSnapshotRepository repository;
+    private Long collectionSequenceId;
+    private DateTime lastModified;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Assume.AssumeReason.BY_DESIGN, "Need to be in API Direct mode / Repository=Hibernate for this test",
+                apiProperties.isInApiMode(ApiProperties.ApiMode.direct) && apiProperties.isInRepository(ApiProperties.ApiDirectRepository.hibernate),
+                genericApplicationContext);
+
+        repository = genericApplicationContext.getBean(EnvironmentSnapshotRepository.class);
+        // The table holds no reference to the sequence, so an id unused by other tests is enough.
+        collectionSequenceId = ThreadLocalRandom.current().nextLong(1_000_000_000L, Long.MAX_VALUE);
+        lastModified = DateTime.now(DateTimeZone.UTC);
+    }
+
+    @Test
+    public void testRecordedSnapshotIsRetrieved() {
+        repository.recordSnapshot(createSnapshot("fingerprint", lastModified));
+
+        EnvironmentSnapshotImpl retrieved = repository.retrieveSnapshot(collectionSequenceId, lastModified);
+
+        assertNotNull(retrieved);
+        assertEquals(collectionSequenceId, retrieved.getCollectionSequenceId());
+        assertEquals("fingerprint", retrieved.getFingerprint());
+        assertEquals(lastModified.getMillis(), retrieved.getCollectionSequenceLastModifiedDate().getMillis());
+        assertEquals("Sequence name", retrieved.getSequence(collectionSequenceId).name);
+    }
+
+    @Test
+    public void testSnapshotOfAnotherVersionIsNotRetrieved() {
+        repository.recordSnapshot(createSnapshot("fingerprint", lastModified));
+
+        assertNull(repository.retrieveSnapshot(collectionSequenceId, lastModified.plusMillis(1)));
+        assertNull(repository.retrieveSnapshot(collectionSequenceId + 1, lastModified));
+    }
+
+    @Test
+    public void testLatestSnapshotOfVersionIsRetrieved() throws InterruptedException {
+        repository.recordSnapshot(createSnapshot("first", lastModified));
+        // create_date orders the snapshots, so make sure the second is recorded later.
+        Thread.sleep(50);
+        repository.recordSnapshot(createSnapshot("second", lastModified));
+
+        assertEquals("second", repository.retrieveSnapshot(collectionSequenceId, lastModified).getFingerprint());
+    }
+
+    @Test
+    public void testRecordingSameFingerprintAgainIsIgnored() {
+        repository.recordSnapshot(createSnapshot("fingerprint", lastModified));
+        repository.recordSnapshot(createSnapshot("fingerprint", lastModified));
+
+        assertEquals("fingerprint", repository.retrieveSnapshot(collectionSequenceId, lastModified).getFingerprint());
+    }
+
+    @Test
+    public void testRecordingNewVersionPrunesEarlierVersions() {
+        DateTime newLastModified = lastModified.plusSeconds(1);
+        repository.recordSnapshot(createSnapshot("earlier", lastModified));
+        repository.recordSnapshot(createSnapshot("later", newLastModified));
+
+        assertNull(repository.retrieveSnapshot(collectionSequenceId, lastModified));
+        assertEquals("later", repository.retrieveSnapshot(collectionSequenceId, newLastModified).getFingerprint());
+    }
+
+    @Test
+    public void testSnapshotWithoutFingerprintIsNotRecorded() {
+        repository.recordSnapshot(createSnapshot(null, lastModified));
+
+        assertNull(repository.retrieveSnapshot(collectionSequenceId, lastModified));
+    }
+
+    private EnvironmentSnapshotImpl createSnapshot(String fingerprint, DateTime collectionSequenceLastModified) {
+        CollectionSequence collectionSequence = new CollectionSequence();
+        collectionSequence.id = collectionSequenceId;
+        collectionSequence.name = "Sequence name";
+        collectionSequence.lastModified = collectionSequenceLastModified;
+
+        EnvironmentSnapshotImpl snapshot = new EnvironmentSnapshotImpl();
+        snapshot.setCollectionSequenceId(collectionSequenceId);
+        snapshot.setCollectionSequenceLastModifiedDate(collectionSequenceLastModified);
+        snapshot.setCreateDate(DateTime.now(DateTimeZone.UTC));
+        snapshot.fingerprint = fingerprint;
+        snapshot.collectionSequences.put(collectionSequenceId, collectionSequence);
+        return snapshot;
+    }
+}
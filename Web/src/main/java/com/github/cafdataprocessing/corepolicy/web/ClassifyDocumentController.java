@@ -15,10 +15,14 @@
  */
 package com.github.cafdataprocessing.corepolicy.web;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.base.Strings;
 import com.github.cafdataprocessing.corepolicy.common.ClassificationApi;
 import com.github.cafdataprocessing.corepolicy.common.ClassifyDocumentApi;
+import com.github.cafdataprocessing.corepolicy.common.Document;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.ConditionEngineException;
+import com.github.cafdataprocessing.corepolicy.common.dto.ClassifyDocumentResult;
 import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
 import com.github.cafdataprocessing.corepolicy.common.dtoweb.ClassifyDocumentResponse;
 import com.github.cafdataprocessing.corepolicy.common.dtoweb.DocumentArrayWrapper;
@@ -36,6 +40,10 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -49,6 +57,8 @@ public class ClassifyDocumentController extends BaseErrorHandlingController {
 
     private ClassificationApi classificationApi;
     private final ClassifyDocumentApi classifyDocumentApi;
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
     CorePolicyObjectMapper objectMapper = new CorePolicyObjectMapper();
 
     @SuppressWarnings("SpringJavaAutowiringInspection")
@@ -62,6 +72,7 @@ public class ClassifyDocumentController extends BaseErrorHandlingController {
     public ClassifyDocumentResponse classifyDocument(
             @RequestParam("json") String json,
             @RequestParam("collection_sequence") String sequenceIdentifier,
+            @RequestParam(value = "parallel", required = false, defaultValue = "false") boolean parallel,
             HttpServletRequest request
     ) throws Exception {
         logRequest(logger, request);
@@ -73,11 +84,64 @@ public class ClassifyDocumentController extends BaseErrorHandlingController {
         DocumentArrayWrapper classifyDocumentRequest = objectMapper.readValue(json, DocumentArrayWrapper.class);
         ClassifyDocumentResponse classifyDocumentResponse = new ClassifyDocumentResponse();
         if (classifyDocumentRequest.document != null) {
-            classifyDocumentResponse.result = classifyDocumentApi.classify(sequence.id, classifyDocumentRequest.document);
+            classifyDocumentResponse.result = parallel && classifyDocumentRequest.document.size() > 1
+                    ? classifyDocumentApi.classifyParallel(sequence.id, classifyDocumentRequest.document)
+                    : classifyDocumentApi.classify(sequence.id, classifyDocumentRequest.document);
         }
         return classifyDocumentResponse;
     }
 
+    /**
+     * Classifies a request body of newline delimited json documents, writing each result back as a line of json as
+     * soon as its document has been classified, so neither the request nor the response is held in memory.
+     */
+    @RequestMapping(method = RequestMethod.POST, value = "/classifydocumentstream")
+    public void classifyDocumentStream(
+            @RequestParam("collection_sequence") String sequenceIdentifier,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws Exception {
+        logRequest(logger, request);
+
+        CollectionSequence sequence = getCollectionSequence(sequenceIdentifier);
+
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream outputStream = response.getOutputStream();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream())) {
+            while (true) {
+                Document document;
+                try {
+                    if (parser.nextToken() == null) {
+                        break;
+                    }
+                    document = objectMapper.readValue(parser, Document.class);
+                } catch (JsonProcessingException e) {
+                    // The rest of the stream cannot be trusted, report the failure as the last line.
+                    logger.warn("Failed to read document from classify stream.", e);
+                    writeLine(outputStream, ClassifyDocumentResult.createFailed(null, e));
+                    break;
+                }
+
+                ClassifyDocumentResult result;
+                try {
+                    result = classifyDocumentApi.classify(sequence.id, document);
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to classify document " + document.getReference() + ".", e);
+                    result = ClassifyDocumentResult.createFailed(document.getReference(), e);
+                }
+                writeLine(outputStream, result);
+            }
+        }
+    }
+
+    private void writeLine(OutputStream outputStream, ClassifyDocumentResult result) throws IOException {
+        outputStream.write(objectMapper.writeValueAsBytes(result));
+        outputStream.write('\n');
+        outputStream.flush();
+    }
+
     @RequestMapping(method = {RequestMethod.GET, RequestMethod.POST}, value = "/executepolicy")
     public ExecutePolicyResponse executePolicy(
             @RequestParam("json") String json,
@@ -16,7 +16,13 @@
 package com.github.cafdataprocessing.corepolicy.web;
 
 import com.github.cafdataprocessing.corepolicy.ConditionEngine;
+import com.github.cafdataprocessing.corepolicy.EnvironmentSnapshotCache;
 import com.github.cafdataprocessing.corepolicy.GenerateDemoContent;
+import com.github.cafdataprocessing.corepolicy.StartupWarmUp;
+import com.github.cafdataprocessing.corepolicy.api.WebApiBase;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.ConditionResultCache;
+import com.github.cafdataprocessing.corepolicy.conditionEvaluators.RegexExecutionService;
+import com.github.cafdataprocessing.corepolicy.environment.EnvironmentSnapshotJanitor;
 import com.github.cafdataprocessing.corepolicy.common.*;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluation;
 import com.github.cafdataprocessing.corepolicy.document.DocumentUnderEvaluationImpl;
@@ -28,6 +34,7 @@ import com.github.cafdataprocessing.corepolicy.common.dto.conditions.ConditionTa
 import com.github.cafdataprocessing.corepolicy.common.dto.conditions.FieldCondition;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.ConditionEngineException;
 import com.github.cafdataprocessing.corepolicy.common.shared.CommaSeparated;
+import org.apache.http.pool.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -55,6 +62,11 @@ public class DebugController extends BaseErrorHandlingController {
     private ApiProperties apiProperties;
     private EngineProperties engineProperties;
     private ApplicationContext applicationContext;
+    private RegexExecutionService regexExecutionService;
+    private EnvironmentSnapshotCache environmentSnapshotCache;
+    private EnvironmentSnapshotJanitor environmentSnapshotJanitor;
+    private StartupWarmUp startupWarmUp;
+    private ConditionResultCache conditionResultCache;
 
     @Autowired
     public DebugController(
@@ -64,7 +76,12 @@ public class DebugController extends BaseErrorHandlingController {
             ConditionEngineMetadata conditionEngineMetadata,
             ApiProperties apiProperties,
             ApplicationContext applicationContext,
-            EngineProperties engineProperties
+            EngineProperties engineProperties,
+            RegexExecutionService regexExecutionService,
+            EnvironmentSnapshotCache environmentSnapshotCache,
+            EnvironmentSnapshotJanitor environmentSnapshotJanitor,
+            StartupWarmUp startupWarmUp,
+            ConditionResultCache conditionResultCache
     ){
         this.generateDemoContent = generateDemoContent;
         this.classificationApi = classificationApi;
@@ -74,6 +91,11 @@ public class DebugController extends BaseErrorHandlingController {
         this.engineProperties = engineProperties;
         // now created using beans, so we can shutdown the item, on reload of webcontext.
         this.applicationContext = applicationContext;
+        this.regexExecutionService = regexExecutionService;
+        this.environmentSnapshotCache = environmentSnapshotCache;
+        this.environmentSnapshotJanitor = environmentSnapshotJanitor;
+        this.startupWarmUp = startupWarmUp;
+        this.conditionResultCache = conditionResultCache;
     }
 
     /**
@@ -111,6 +133,104 @@ public class DebugController extends BaseErrorHandlingController {
         sb.append("</ul>");
         return sb.toString();
     }
+    /**
+     * Returns the counts of regular expression evaluations made by the engine since startup.
+     * @return  map of counter name to count
+     */
+    @RequestMapping(value = "/regexstats", method = RequestMethod.GET)
+    public ApiResult getRegexStats(){
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("matched", regexExecutionService.getMatchedCount());
+        stats.put("unmatched", regexExecutionService.getUnmatchedCount());
+        stats.put("skipped", regexExecutionService.getSkippedCount());
+        stats.put("timedOut", regexExecutionService.getTimedOutCount());
+        return new ApiResult<>(stats);
+    }
+
+    /**
+     * Returns the condition result cache statistics since startup.
+     * @return  map of statistic name to value
+     */
+    @RequestMapping(value = "/conditionresultcachestats", method = RequestMethod.GET)
+    public ApiResult getConditionResultCacheStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        long hits = conditionResultCache.getHitCount();
+        long requests = hits + conditionResultCache.getMissCount();
+        stats.put("hits", hits);
+        stats.put("misses", requests - hits);
+        stats.put("hitRate", requests == 0 ? 1.0 : (double) hits / requests);
+        stats.put("evictions", conditionResultCache.getEvictionCount());
+        stats.put("flushes", conditionResultCache.getFlushCount());
+        stats.put("size", conditionResultCache.getSize());
+        return new ApiResult<>(stats);
+    }
+
+    /**
+     * Returns the environment snapshot cache statistics since startup.
+     * @return  map of statistic name to value
+     */
+    @RequestMapping(value = "/environmentcachestats", method = RequestMethod.GET)
+    public ApiResult getEnvironmentCacheStats(){
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("hits", environmentSnapshotCache.getHitCount());
+        stats.put("misses", environmentSnapshotCache.getMissCount());
+        stats.put("loads", environmentSnapshotCache.getLoadCount());
+        stats.put("loadFailures", environmentSnapshotCache.getLoadFailureCount());
+        stats.put("averageLoadMillis", environmentSnapshotCache.getAverageLoadMillis());
+        stats.put("staleServed", environmentSnapshotCache.getStaleServedCount());
+        return new ApiResult<>(stats);
+    }
+
+    /**
+     * Returns the connection pool statistics of the http client used by the api in web mode, which are empty until
+     * this service has made a web api request.
+     * @return  map of statistic name to value
+     */
+    @RequestMapping(value = "/webapipoolstats", method = RequestMethod.GET)
+    public ApiResult getWebApiPoolStats(){
+        Map<String, Integer> stats = new LinkedHashMap<>();
+        PoolStats poolStats = WebApiBase.getConnectionPoolStats();
+        if (poolStats != null) {
+            stats.put("leased", poolStats.getLeased());
+            stats.put("available", poolStats.getAvailable());
+            stats.put("pending", poolStats.getPending());
+            stats.put("max", poolStats.getMax());
+        }
+        return new ApiResult<>(stats);
+    }
+
+    /**
+     * Returns the statistics of the background janitor which expires persisted environment snapshots.
+     * @return  map of statistic name to value
+     */
+    @RequestMapping(value = "/environmentcachejanitorstats", method = RequestMethod.GET)
+    public ApiResult getEnvironmentCacheJanitorStats(){
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("runs", environmentSnapshotJanitor.getRunCount());
+        stats.put("lastRunMillis", environmentSnapshotJanitor.getLastRunMillis());
+        stats.put("lastRunDurationMillis", environmentSnapshotJanitor.getLastRunDurationMillis());
+        stats.put("lastFilesScanned", environmentSnapshotJanitor.getLastFilesScanned());
+        stats.put("filesExpired", environmentSnapshotJanitor.getFilesExpiredCount());
+        stats.put("fileDeleteFailures", environmentSnapshotJanitor.getFileDeleteFailureCount());
+        stats.put("agentDeleteFailures", environmentSnapshotJanitor.getAgentDeleteFailureCount());
+        return new ApiResult<>(stats);
+    }
+
+    /**
+     * Returns the statistics of the warm-up run when the service started.
+     * @return  map of statistic name to value
+     */
+    @RequestMapping(value = "/warmupstats", method = RequestMethod.GET)
+    public ApiResult getWarmUpStats(){
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("complete", startupWarmUp.isComplete());
+        stats.put("durationMillis", startupWarmUp.getDurationMillis());
+        stats.put("sequencesLoaded", startupWarmUp.getSequencesLoadedCount());
+        stats.put("sequenceLoadFailures", startupWarmUp.getSequenceLoadFailureCount());
+        stats.put("classifications", startupWarmUp.getClassificationCount());
+        return new ApiResult<>(stats);
+    }
+
     /**
      * Use to test that the server is contactable and params are understandable. Returns a string representation of
      * the url and all parameters called.
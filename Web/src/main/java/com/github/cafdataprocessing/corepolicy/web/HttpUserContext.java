@@ -19,19 +19,19 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.github.cafdataprocessing.corepolicy.common.UserContext;
 import org.apache.commons.lang3.NotImplementedException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
-import org.springframework.context.annotation.ScopedProxyMode;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import javax.servlet.http.HttpServletRequest;
 
 /**
- *
+ * Takes the project id from the current request. Threads which are not handling a request, such as the startup
+ * warm-up, must set their own project id instead, and set it back to null once they are done.
  */
-@Scope(value = "request", proxyMode = ScopedProxyMode.INTERFACES)
 @Component
 public class HttpUserContext implements UserContext {
     private final HttpServletRequest httpServletRequest;
+    private final ThreadLocal<String> backgroundProjectId = new ThreadLocal<>();
 
     @Autowired
     public HttpUserContext (HttpServletRequest httpServletRequest){
@@ -40,12 +40,26 @@ public class HttpUserContext implements UserContext {
 
     @Override
     public String getProjectId() {
+        if (RequestContextHolder.getRequestAttributes() == null) {
+            String projectId = backgroundProjectId.get();
+            if (projectId == null) {
+                throw new IllegalStateException("No request is bound to this thread and no project id has been set on it.");
+            }
+            return projectId;
+        }
         return getParameter("project_id");
     }
 
     @Override
     public void setProjectId(String projectId) {
-        throw new NotImplementedException("setProjectId is not implemented.");
+        if (RequestContextHolder.getRequestAttributes() != null) {
+            throw new NotImplementedException("setProjectId is not implemented.");
+        }
+        if (projectId == null) {
+            backgroundProjectId.remove();
+        } else {
+            backgroundProjectId.set(projectId);
+        }
     }
 
     private String getParameter(String name) {
@@ -15,6 +15,7 @@
  */
 package com.github.cafdataprocessing.corepolicy.web;
 
+import com.github.cafdataprocessing.corepolicy.StartupWarmUp;
 import com.github.cafdataprocessing.corepolicy.booleanagent.BooleanAgentServices;
 import com.github.cafdataprocessing.corepolicy.common.ElasticsearchProperties;
 import com.github.cafdataprocessing.corepolicy.common.exceptions.BackEndRequestFailedCpeException;
@@ -34,17 +35,24 @@ public class PolicyHealthCheckController extends BaseErrorHandlingController {
 
     private BooleanAgentServices booleanAgentServices;
     private ElasticsearchProperties elasticsearchProperties;
+    private StartupWarmUp startupWarmUp;
 
     @SuppressWarnings("SpringJavaAutowiringInspection")
     @Autowired
-    public PolicyHealthCheckController(BooleanAgentServices booleanAgentServices, ElasticsearchProperties elasticsearchProperties){
+    public PolicyHealthCheckController(BooleanAgentServices booleanAgentServices, ElasticsearchProperties elasticsearchProperties,
+                                       StartupWarmUp startupWarmUp){
         this.booleanAgentServices = booleanAgentServices;
         this.elasticsearchProperties = elasticsearchProperties;
+        this.startupWarmUp = startupWarmUp;
     }
 
     @RequestMapping()
     public Boolean checkHealth() {
 
+        // not ready to take requests until the warm-up has finished.
+        if (!startupWarmUp.isComplete())
+            throw new BackEndRequestFailedCpeException(BackEndRequestFailedErrors.WarmUpInProgress);
+
         // if elasticsearch is disabled, then return true
         if (elasticsearchProperties.isElasticsearchDisabled())
             return true;
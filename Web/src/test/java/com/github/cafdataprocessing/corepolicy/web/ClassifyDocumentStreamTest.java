@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.cafdataprocessing.corepolicy.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.cafdataprocessing.corepolicy.common.ClassificationApi;
+import com.github.cafdataprocessing.corepolicy.common.ClassifyDocumentApi;
+import com.github.cafdataprocessing.corepolicy.common.ConditionEngineMetadata;
+import com.github.cafdataprocessing.corepolicy.common.Document;
+import com.github.cafdataprocessing.corepolicy.common.dto.ClassifyDocumentResult;
+import com.github.cafdataprocessing.corepolicy.common.dto.CollectionSequence;
+import com.github.cafdataprocessing.corepolicy.common.dto.ConditionEngineResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the newline delimited json classify endpoint against a request that is handed to the controller one line at a
+ * time, so results can be checked as the stream is read.
+ */
+public class ClassifyDocumentStreamTest {
+    private static final long SEQUENCE_ID = 5L;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConditionEngineMetadata metadata = mock(ConditionEngineMetadata.class);
+    private ClassifyDocumentApi classifyDocumentApi;
+    private ClassifyDocumentController controller;
+    private ByteArrayOutputStream responseBody;
+    private HttpServletResponse response;
+
+    @Before
+    public void setup() throws IOException {
+        CollectionSequence sequence = new CollectionSequence();
+        sequence.id = SEQUENCE_ID;
+        ClassificationApi classificationApi = mock(ClassificationApi.class);
+        when(classificationApi.retrieveCollectionSequences(anyCollectionOf(Long.class)))
+                .thenReturn(Collections.singletonList(sequence));
+
+        classifyDocumentApi = mock(ClassifyDocumentApi.class);
+        when(classifyDocumentApi.classify(anyLong(), any(Document.class))).thenAnswer(invocation -> {
+            Document document = (Document) invocation.getArguments()[1];
+            ClassifyDocumentResult result = ClassifyDocumentResult.create(new ConditionEngineResult(), metadata);
+            result.reference = document.getReference();
+            return result;
+        });
+
+        controller = new ClassifyDocumentController(classificationApi, classifyDocumentApi);
+
+        responseBody = new ByteArrayOutputStream();
+        response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                responseBody.write(b);
+            }
+        });
+    }
+
+    /**
+     * Each result should already have been written by the time the controller asks for the next line of the request.
+     */
+    @Test
+    public void testResultsWrittenBeforeNextLineIsRead() throws Exception {
+        LineByLineInputStream requestBody = new LineByLineInputStream(
+                "{\"reference\":\"doc1\"}\n",
+                "{\"reference\":\"doc2\"}\n",
+                "{\"reference\":\"doc3\"}\n");
+
+        classifyDocumentStream(requestBody);
+
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), requestBody.linesWrittenBeforeRead);
+        Assert.assertEquals(Arrays.asList("doc1", "doc2", "doc3"), readReferences());
+    }
+
+    /**
+     * A document spread over several reads of the request should still produce a single result.
+     */
+    @Test
+    public void testDocumentSplitAcrossReads() throws Exception {
+        classifyDocumentStream(new LineByLineInputStream(
+                "{\"refer",
+                "ence\":\"doc1\"}\n{\"reference\"",
+                ":\"doc2\"}\n"));
+
+        Assert.assertEquals(Arrays.asList("doc1", "doc2"), readReferences());
+    }
+
+    /**
+     * Results must come back in the order the documents were sent, whatever their references.
+     */
+    @Test
+    public void testResultsKeepRequestOrder() throws Exception {
+        List<String> expected = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        for (int i = 20; i > 0; i--) {
+            expected.add("doc" + i);
+            lines.add("{\"reference\":\"doc" + i + "\"}\n");
+        }
+
+        classifyDocumentStream(new LineByLineInputStream(lines.toArray(new String[lines.size()])));
+
+        Assert.assertEquals(expected, readReferences());
+    }
+
+    /**
+     * A malformed line should be reported as an error line after the results for the documents before it, and nothing
+     * after it should be classified.
+     */
+    @Test
+    public void testBadLineMidStreamWritesErrorLine() throws Exception {
+        classifyDocumentStream(new LineByLineInputStream(
+                "{\"reference\":\"doc1\"}\n",
+                "{\"reference\":\"doc2\"}\n",
+                "{\"reference\": oops}\n",
+                "{\"reference\":\"doc4\"}\n"));
+
+        List<JsonNode> results = readResults();
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals("doc1", results.get(0).get("reference").asText());
+        Assert.assertFalse(results.get(0).has("error"));
+        Assert.assertEquals("doc2", results.get(1).get("reference").asText());
+        Assert.assertFalse(results.get(1).has("error"));
+        Assert.assertTrue(results.get(2).get("reference").isNull());
+        Assert.assertFalse(results.get(2).get("error").asText().isEmpty());
+    }
+
+    /**
+     * A document that fails to classify should get an error line without stopping the documents after it.
+     */
+    @Test
+    public void testClassifyFailureDoesNotStopStream() throws Exception {
+        doAnswer(invocation -> {
+            Document document = (Document) invocation.getArguments()[1];
+            if (document.getReference().equals("doc2")) {
+                throw new RuntimeException("Classification failed.");
+            }
+            ClassifyDocumentResult result = ClassifyDocumentResult.create(new ConditionEngineResult(), metadata);
+            result.reference = document.getReference();
+            return result;
+        }).when(classifyDocumentApi).classify(anyLong(), any(Document.class));
+
+        classifyDocumentStream(new LineByLineInputStream(
+                "{\"reference\":\"doc1\"}\n",
+                "{\"reference\":\"doc2\"}\n",
+                "{\"reference\":\"doc3\"}\n"));
+
+        List<JsonNode> results = readResults();
+        Assert.assertEquals(Arrays.asList("doc1", "doc2", "doc3"), readReferences());
+        Assert.assertEquals("Classification failed.", results.get(1).get("error").asText());
+        Assert.assertFalse(results.get(2).has("error"));
+    }
+
+    private void classifyDocumentStream(LineByLineInputStream requestBody) throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getInputStream()).thenReturn(requestBody);
+        controller.classifyDocumentStream(String.valueOf(SEQUENCE_ID), request, response);
+    }
+
+    private List<JsonNode> readResults() throws IOException {
+        String body = new String(responseBody.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertTrue("Response should end with a newline.", body.endsWith("\n"));
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            results.add(mapper.readTree(line));
+        }
+        return results;
+    }
+
+    private List<String> readReferences() throws IOException {
+        List<String> references = new ArrayList<>();
+        for (JsonNode result : readResults()) {
+            references.add(result.get("reference").asText());
+        }
+        return references;
+    }
+
+    /**
+     * Hands out at most one of its chunks per read, recording how many response lines had been written each time the
+     * controller asked for more of the request.
+     */
+    private class LineByLineInputStream extends ServletInputStream {
+        private final String[] chunks;
+        private int chunkIndex;
+        private byte[] current = new byte[0];
+        private int position;
+        final List<Integer> linesWrittenBeforeRead = new ArrayList<>();
+
+        LineByLineInputStream(String... chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position == current.length) {
+                linesWrittenBeforeRead.add(countResponseLines());
+                if (chunkIndex == chunks.length) {
+                    return -1;
+                }
+                current = chunks[chunkIndex++].getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private int countResponseLines() {
+            int lines = 0;
+            for (byte b : responseBody.toByteArray()) {
+                if (b == '\n') {
+                    lines++;
+                }
+            }
+            return lines;
+        }
+    }
+}